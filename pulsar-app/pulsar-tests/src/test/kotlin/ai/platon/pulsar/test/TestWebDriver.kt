@@ -5,12 +5,16 @@ import ai.platon.pulsar.context.PulsarContexts
 import ai.platon.pulsar.crawl.fetch.driver.WebDriver
 import ai.platon.pulsar.protocol.browser.driver.WebDriverControl
 import ai.platon.pulsar.protocol.browser.emulator.DefaultWebDriverPoolManager
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
 import org.junit.AfterClass
 import org.junit.BeforeClass
 import org.junit.Ignore
 import org.junit.Test
 import org.openqa.selenium.remote.CapabilityType
 import org.slf4j.LoggerFactory
+import java.time.Duration
 import java.util.*
 import java.util.concurrent.ArrayBlockingQueue
 import java.util.concurrent.TimeUnit
@@ -85,6 +89,35 @@ class TestWebDriver {
         assertEquals(10, driverPool.counterQuit.count)
     }
 
+    @Test
+    fun testWaitersAreServedByPriority() {
+        val driverPool = driverPoolManager.createUnmanagedDriverPool()
+        val volatileConfig = conf.toVolatileConfig()
+        val workingDrivers = mutableListOf<WebDriver>()
+        repeat(driverPool.capacity) {
+            workingDrivers.add(driverPool.poll(volatileConfig))
+        }
+        assertEquals(driverPool.capacity, driverPool.numOnline)
+
+        val servedPriorities = Collections.synchronizedList(mutableListOf<Int>())
+        runBlocking {
+            val waiters = listOf(10, -10, 0).map { priority ->
+                async {
+                    driverPool.pollDeferred(priority, volatileConfig, Duration.ofSeconds(30)).also {
+                        servedPriorities.add(priority)
+                    }
+                }.also { delay(100) }
+            }
+            assertEquals(3, driverPool.numWaiting.get())
+
+            workingDrivers.take(3).forEach { driverPool.put(it) }
+            waiters.forEach { driverPool.put(it.await()) }
+        }
+
+        assertEquals(listOf(-10, 0, 10), servedPriorities)
+        driverPool.close()
+    }
+
     @Ignore("Time consuming (and also bugs)")
     @Test
     fun testWebDriverPoolMultiThreaded() {
@@ -2,11 +2,13 @@ package ai.platon.pulsar.test.collect
 
 import ai.platon.pulsar.common.collect.FatLinkExtractor
 import ai.platon.pulsar.common.collect.HyperlinkExtractor
+import ai.platon.pulsar.common.collect.StreamingHyperlinkExtractor
 import ai.platon.pulsar.common.urls.sites.amazon.AmazonUrls
 import ai.platon.pulsar.common.urls.sites.amazon.AsinUrlNormalizer
 import ai.platon.pulsar.test.TestBase
 import org.junit.Test
 import kotlin.test.assertEquals
+import kotlin.test.assertFalse
 import kotlin.test.assertNotNull
 import kotlin.test.assertTrue
 
@@ -31,6 +33,22 @@ class TestHyperlinkExtractors: TestBase() {
         }
     }
 
+    @Test
+    fun testStreamingHyperlinkExtractor() {
+        val page = session.load(portalUrl)
+        val document = session.parse(page)
+        val normalizer = AsinUrlNormalizer()
+        val selector = "div a"
+        assertTrue { StreamingHyperlinkExtractor.isSupported(selector) }
+        assertFalse { StreamingHyperlinkExtractor.isSupported("a[href~=/dp/]") }
+
+        val expected = HyperlinkExtractor(page, document, selector, normalizer).extract()
+        val links = StreamingHyperlinkExtractor(page, selector, normalizer).extract()
+        assertTrue { links.isNotEmpty() }
+        assertEquals(expected.map { "${it.url} ${it.text} ${it.href}" }, links.map { "${it.url} ${it.text} ${it.href}" })
+        links.forEach { assertEquals(portalUrl, it.referer) }
+    }
+
     @Test
     fun testFatLinkExtractorWithNormalizer() {
         val extractor = FatLinkExtractor(session).apply { normalizer.addFirst(AsinUrlNormalizer()) }
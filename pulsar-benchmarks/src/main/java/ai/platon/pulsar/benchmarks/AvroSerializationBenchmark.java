@@ -0,0 +1,62 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.persist.WebPage;
+import ai.platon.pulsar.persist.gora.generated.GWebPage;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize and deserialize parsed pages in the Avro binary format, which is the format the stores use.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvroSerializationBenchmark {
+
+    @Param({"mia-00f3a63c.html", "jd-0af8bc70.html"})
+    public String fixture;
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private final SpecificDatumWriter<GWebPage> writer = new SpecificDatumWriter<>(GWebPage.class);
+    private final SpecificDatumReader<GWebPage> reader = new SpecificDatumReader<>(GWebPage.class);
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+    private GWebPage page;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        WebPage webPage = Fixtures.get(fixture).newParsedPage(conf);
+        page = webPage.unbox();
+        bytes = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        out.reset();
+        encoder = EncoderFactory.get().directBinaryEncoder(out, encoder);
+        writer.write(page, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public GWebPage deserialize() throws IOException {
+        decoder = DecoderFactory.get().binaryDecoder(bytes, decoder);
+        return reader.read(null, decoder);
+    }
+}
@@ -0,0 +1,69 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.concurrent.ConcurrentLRUCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access a {@link ConcurrentLRUCache} from many threads, the key space is larger than the capacity,
+ * so both hits and evictions happen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentLRUCacheBenchmark {
+
+    @Param({"1000", "100000"})
+    public int capacity;
+
+    private ConcurrentLRUCache<String, String> cache;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        cache = new ConcurrentLRUCache<>(0, capacity);
+        keys = new String[capacity * 2];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = "http://example.com/item/" + i;
+        }
+        for (int i = 0; i < capacity; ++i) {
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String get() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String computeIfAbsent() {
+        return cache.computeIfAbsent(nextKey(), k -> k);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(6)
+    public String readWriteGet() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public String readWritePut() {
+        String key = nextKey();
+        return cache.put(key, key);
+    }
+
+    private String nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+}
@@ -0,0 +1,82 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.EncodingDetector;
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.persist.WebPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Detect the encodings of the stored pages re-encoded in UTF-8, GBK and Big5, with the charset declared in a meta
+ * tag, and with no declaration at all so the detector falls back to ICU.
+ *
+ * The stored pages are simplified Chinese, Big5 can not map many of the characters, they are written as '?', so the
+ * Big5 pages are not real Big5 text, ICU might report a lower confidence on them than on a real Big5 page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingDetectionBenchmark {
+
+    private static final String[] CHARSETS = {"UTF-8", "GBK", "Big5"};
+    private static final Pattern CHARSET_DECLARATION = Pattern.compile("charset=[\"']?[-\\w]+", Pattern.CASE_INSENSITIVE);
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private final List<WebPage> declaredPages = new ArrayList<>();
+    private final List<WebPage> undeclaredPages = new ArrayList<>();
+    private EncodingDetector icuDetector;
+    private int i;
+
+    @Setup
+    public void setup() {
+        for (Fixtures.Fixture fixture : Fixtures.all()) {
+            for (String charset : CHARSETS) {
+                String declared = CHARSET_DECLARATION.matcher(fixture.html).replaceAll("charset=" + charset);
+                declaredPages.add(newPage(fixture.url, declared, charset));
+
+                String undeclared = CHARSET_DECLARATION.matcher(fixture.html).replaceAll("");
+                undeclaredPages.add(newPage(fixture.url, undeclared, charset));
+            }
+        }
+
+        VolatileConfig icuConf = new VolatileConfig();
+        icuConf.setInt(EncodingDetector.MIN_CONFIDENCE_KEY, 50);
+        icuDetector = new EncodingDetector(icuConf);
+    }
+
+    @Benchmark
+    public String detectFast() {
+        return EncodingDetector.detectFast(next(declaredPages));
+    }
+
+    @Benchmark
+    public String sniffEncodingDeclared() {
+        return icuDetector.sniffEncoding(next(declaredPages));
+    }
+
+    @Benchmark
+    public String sniffEncodingUndeclared() {
+        return icuDetector.sniffEncoding(next(undeclaredPages));
+    }
+
+    private WebPage next(List<WebPage> pages) {
+        i = (i + 1) % pages.size();
+        return pages.get(i);
+    }
+
+    private WebPage newPage(String url, String html, String charset) {
+        WebPage page = WebPage.newWebPage(url, conf);
+        page.setLocation(url);
+        page.setContentType("text/html");
+        page.setContent(html.getBytes(Charset.forName(charset)));
+        return page;
+    }
+}
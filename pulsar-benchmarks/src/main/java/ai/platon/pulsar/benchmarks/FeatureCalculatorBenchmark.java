@@ -0,0 +1,47 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.dom.FeatureCalculatorFactory;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculate the features of a document.
+ *
+ * Only the pages captured by a real browser carry the raw features, so only the mia.com fixtures are used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureCalculatorBenchmark {
+
+    @Param({"mia-00f3a63c.html", "mia-detail-b0fdd747.html"})
+    public String fixture;
+
+    private Fixtures.Fixture page;
+    private Document document;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        page = Fixtures.get(fixture);
+    }
+
+    /**
+     * The features are written into the document, so every calculation needs a fresh one. A page parse
+     * costs milliseconds, so the invocation level setup does not disturb the result too much.
+     */
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        document = page.parse();
+    }
+
+    @Benchmark
+    public Document calculate() {
+        FeatureCalculatorFactory.INSTANCE.getCalculator().calculate(document);
+        return document;
+    }
+}
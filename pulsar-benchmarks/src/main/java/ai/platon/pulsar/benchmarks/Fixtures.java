@@ -0,0 +1,158 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.ResourceLoader;
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.persist.WebPage;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The local fixtures shared by all benchmarks, they are stored product pages listed in webpages/index.txt,
+ * so the benchmarks never touch the network. The pages themselves are the test pages of pulsar-app-common-resources,
+ * the index gives each of them a short name and the url it was fetched from.
+ */
+public final class Fixtures {
+
+    public static final String INDEX_RESOURCE = "webpages/index.txt";
+
+    private static volatile List<Fixture> fixtures;
+
+    private Fixtures() {
+    }
+
+    public static final class Fixture {
+        public final String resource;
+        public final String url;
+        public final byte[] content;
+        public final String html;
+
+        /**
+         * The title, the page text and the content text, the fixture is parsed only once for all the parsed pages
+         */
+        private volatile String[] texts;
+
+        Fixture(String resource, String url, byte[] content) {
+            this.resource = resource;
+            this.url = url;
+            this.content = content;
+            this.html = new String(content, StandardCharsets.UTF_8);
+        }
+
+        public Document parse() {
+            return Jsoup.parse(html, url);
+        }
+
+        /**
+         * Create a page as if it's just fetched, the content, the encoding and the location are set
+         */
+        public WebPage newPage(VolatileConfig conf) {
+            return newPage(url, conf);
+        }
+
+        /**
+         * Create a page with the fixture's content but a different url, so a store can hold many copies of the fixture
+         */
+        public WebPage newPage(String url, VolatileConfig conf) {
+            WebPage page = WebPage.newWebPage(url, conf);
+            page.setLocation(url);
+            page.setEncoding(StandardCharsets.UTF_8.name());
+            page.setContent(content);
+            return page;
+        }
+
+        /**
+         * Create a page as if it's just parsed, the page text and the content text are also set
+         */
+        public WebPage newParsedPage(VolatileConfig conf) {
+            return newParsedPage(url, conf);
+        }
+
+        public WebPage newParsedPage(String url, VolatileConfig conf) {
+            WebPage page = newPage(url, conf);
+            String[] texts = texts();
+            page.setPageTitle(texts[0]);
+            page.setPageText(texts[1]);
+            page.setContentText(texts[2]);
+            return page;
+        }
+
+        private String[] texts() {
+            if (texts == null) {
+                Document document = parse();
+                texts = new String[] {document.title(), document.text(), document.body().text()};
+            }
+            return texts;
+        }
+
+        @Override
+        public String toString() {
+            return resource;
+        }
+    }
+
+    public static List<Fixture> all() {
+        if (fixtures == null) {
+            synchronized (Fixtures.class) {
+                if (fixtures == null) {
+                    fixtures = Collections.unmodifiableList(load());
+                }
+            }
+        }
+        return fixtures;
+    }
+
+    public static Fixture get(String resource) {
+        return all().stream().filter(f -> f.resource.equals(resource)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown fixture " + resource));
+    }
+
+    /**
+     * All links in the fixtures, resolved to absolute urls
+     */
+    public static List<String> links() {
+        List<String> links = new ArrayList<>();
+        for (Fixture fixture : all()) {
+            fixture.parse().select("a[href]").forEach(a -> {
+                String href = a.absUrl("href");
+                if (!href.isEmpty()) {
+                    links.add(href);
+                }
+            });
+        }
+        return links;
+    }
+
+    private static List<Fixture> load() {
+        List<Fixture> list = new ArrayList<>();
+        for (String line : ResourceLoader.INSTANCE.readAllLines(INDEX_RESOURCE)) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length == 3) {
+                String resource = "webpages/" + parts[1];
+                list.add(new Fixture(parts[0], parts[2], readBytes(resource)));
+            }
+        }
+
+        if (list.isEmpty()) {
+            throw new IllegalStateException("No fixture is found in " + INDEX_RESOURCE);
+        }
+
+        return list;
+    }
+
+    private static byte[] readBytes(String resource) {
+        try (InputStream in = ResourceLoader.INSTANCE.getResourceAsStream(resource)) {
+            return Objects.requireNonNull(in, "Missing fixture " + resource).readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
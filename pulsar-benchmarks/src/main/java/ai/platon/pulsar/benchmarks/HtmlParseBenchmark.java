@@ -0,0 +1,74 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.crawl.parse.html.HTMLMetaTags;
+import ai.platon.pulsar.crawl.parse.html.JsoupParser;
+import ai.platon.pulsar.dom.FeaturedDocument;
+import ai.platon.pulsar.persist.WebPage;
+import org.jsoup.Jsoup;
+import org.jsoup.helper.W3CDom;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse stored product pages, from a string, from the raw bytes, and through {@link JsoupParser} as the parse
+ * component does. The meta tags are extracted from the jsoup tree directly, and from a W3C DOM converted from it
+ * as the html parser used to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlParseBenchmark {
+
+    @Param({"mia-00f3a63c.html", "mia-detail-b0fdd747.html", "jd-0af8bc70.html", "jd-17b7a755.html"})
+    public String fixture;
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private Fixtures.Fixture page;
+    private WebPage webPage;
+    private Document document;
+    private URL baseURL;
+
+    @Setup
+    public void setup() throws MalformedURLException {
+        page = Fixtures.get(fixture);
+        webPage = page.newPage(conf);
+        document = page.parse();
+        baseURL = new URL(page.url);
+    }
+
+    @Benchmark
+    public Document jsoupParseString() {
+        return Jsoup.parse(page.html, page.url);
+    }
+
+    @Benchmark
+    public Document jsoupParseBytes() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(page.content), StandardCharsets.UTF_8.name(), page.url);
+    }
+
+    @Benchmark
+    public FeaturedDocument jsoupParser() {
+        return new JsoupParser(webPage, conf).parse();
+    }
+
+    @Benchmark
+    public HTMLMetaTags metaTagsFromJsoup() {
+        return new HTMLMetaTags(document, baseURL);
+    }
+
+    @Benchmark
+    public HTMLMetaTags metaTagsFromW3CDom() {
+        return new HTMLMetaTags(new W3CDom().fromJsoup(document), baseURL);
+    }
+}
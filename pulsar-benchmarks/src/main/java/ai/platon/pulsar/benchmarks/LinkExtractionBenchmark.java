@@ -0,0 +1,79 @@
+package ai.platon.pulsar.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.StreamingLinkExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extract the out links of stored product pages, straight from the token stream by {@link StreamingLinkExtractor},
+ * and by parsing the page into a document and selecting the anchors as the link extractors used to do. The top links
+ * cases stop as soon as enough links are found, which only the streaming extractor can do before the whole page is read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+
+    private static final String SELECTOR = "div a";
+    private static final int TOP_LINKS = 20;
+
+    @Param({"mia-00f3a63c.html", "mia-detail-b0fdd747.html", "jd-0af8bc70.html", "jd-17b7a755.html"})
+    public String fixture;
+
+    private Fixtures.Fixture page;
+    private StreamingLinkExtractor extractor;
+
+    @Setup
+    public void setup() {
+        page = Fixtures.get(fixture);
+        extractor = new StreamingLinkExtractor(SELECTOR);
+    }
+
+    @Benchmark
+    public List<StreamingLinkExtractor.Link> streaming() {
+        return extractor.extract(page.html, page.url);
+    }
+
+    @Benchmark
+    public List<String> parseAndSelect() {
+        List<String> links = new ArrayList<>();
+        for (Element a : Jsoup.parse(page.html, page.url).select(SELECTOR)) {
+            String href = a.attr("abs:href");
+            if (!href.isEmpty()) {
+                links.add(href + " " + a.text());
+            }
+        }
+        return links;
+    }
+
+    @Benchmark
+    public List<String> streamingTopLinks() {
+        List<String> links = new ArrayList<>();
+        extractor.extract(new StringReader(page.html), page.url, link -> links.add(link.href()) && links.size() < TOP_LINKS);
+        return links;
+    }
+
+    @Benchmark
+    public List<String> parseAndSelectTopLinks() {
+        List<String> links = new ArrayList<>();
+        for (Element a : Jsoup.parse(page.html, page.url).select(SELECTOR)) {
+            String href = a.attr("abs:href");
+            if (!href.isEmpty()) {
+                links.add(href);
+                if (links.size() >= TOP_LINKS) {
+                    break;
+                }
+            }
+        }
+        return links;
+    }
+}
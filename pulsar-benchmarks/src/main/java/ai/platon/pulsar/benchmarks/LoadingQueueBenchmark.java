@@ -0,0 +1,69 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.collect.*;
+import ai.platon.pulsar.common.urls.Hyperlink;
+import ai.platon.pulsar.common.urls.UrlAware;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offer and poll urls on the loading queues in UrlQueues.kt, every thread offers an url and then polls one.
+ *
+ * The queues are pre-filled, so the cost which grows with the queue size shows up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadingQueueBenchmark {
+
+    private static final int CAPACITY = 100_000;
+
+    @Param({"reentrant", "nonReentrant"})
+    public String queueType;
+
+    @Param({"0", "1000"})
+    public int prefill;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private ExternalUrlLoader loader;
+    private AbstractLoadingQueue queue;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        loader = new TemporaryLocalFileUrlLoader();
+        UrlGroup group = new UrlGroup("benchmark", 0, 0, CAPACITY, 0, 0);
+        if (queueType.equals("reentrant")) {
+            queue = new ConcurrentLoadingQueue(loader, group, CAPACITY, u -> u);
+        } else {
+            ConcurrentFingerprintSet history = new ConcurrentFingerprintSet(
+                    ConcurrentFingerprintSet.DEFAULT_INITIAL_CAPACITY, ConcurrentFingerprintSet.Storage.HEAP, null);
+            queue = new ConcurrentNonReentrantLoadingQueue(loader, group, CAPACITY, u -> u, history);
+        }
+
+        for (int i = 0; i < prefill; ++i) {
+            queue.offer(nextUrl());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        queue.clear();
+        queue.externalClear();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UrlAware offerAndPoll() {
+        queue.offer(nextUrl());
+        return queue.poll();
+    }
+
+    private Hyperlink nextUrl() {
+        return new Hyperlink("http://example.com/item/" + sequence.incrementAndGet(), "", 0, null, null, null);
+    }
+}
@@ -0,0 +1,45 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.dom.FeatureCalculatorFactory;
+import ai.platon.pulsar.dom.select.MathematicalSelector;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Select elements from a document whose features are calculated, plain css queries are included as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MathematicalSelectorBenchmark {
+
+    @Param({"mia-00f3a63c.html", "mia-detail-b0fdd747.html"})
+    public String fixture;
+
+    @Param({
+            "div.colum a[href]",
+            "*:expr(width >= 300 && height >= 300)",
+            "*:expr(img > 0 && width > 200 && sibling > 3) a[href~=item]",
+            "*:in-box(200,200,300,300,50)"
+    })
+    public String cssQuery;
+
+    private Document document;
+
+    @Setup
+    public void setup() {
+        document = Fixtures.get(fixture).parse();
+        FeatureCalculatorFactory.INSTANCE.getCalculator().calculate(document);
+    }
+
+    @Benchmark
+    public Elements select() {
+        return MathematicalSelector.INSTANCE.select(cssQuery, document);
+    }
+}
@@ -0,0 +1,138 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.persist.WebDb;
+import ai.platon.pulsar.persist.WebPage;
+import ai.platon.pulsar.persist.gora.FileBackendPageStore;
+import ai.platon.pulsar.persist.gora.LocalPageStore;
+import ai.platon.pulsar.persist.gora.generated.GWebPage;
+import org.apache.commons.io.FileUtils;
+import org.apache.gora.query.Query;
+import org.apache.gora.query.Result;
+import org.apache.gora.store.DataStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Put, get and scan parsed pages on the embedded stores, the {@link LocalPageStore} for single node deployments
+ * and the {@link FileBackendPageStore} for dry runs.
+ *
+ * The metadata get is the first phase of a two phase load, it projects out the heavy fields. The bytes read
+ * from the store are reported as an auxiliary counter, the local store reads a page as a whole record, so the
+ * projection saves decoding but not reading.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageStoreBenchmark {
+
+    private static final int NUM_PAGES = 1000;
+    private static final int SCAN_SIZE = 20;
+
+    @Param({"local", "fileBackend"})
+    public String storeType;
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private Path directory;
+    private DataStore<String, GWebPage> store;
+    private String[] keys;
+    private GWebPage[] pages;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ReadCounter {
+        public long reads;
+        public long bytesRead;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("benchmark");
+        if (storeType.equals("local")) {
+            store = new LocalPageStore(directory);
+        } else {
+            store = new FileBackendPageStore(directory);
+        }
+        store.initialize(String.class, GWebPage.class, new Properties());
+
+        Fixtures.Fixture fixture = Fixtures.get("mia-00f3a63c.html");
+        keys = new String[NUM_PAGES];
+        pages = new GWebPage[NUM_PAGES];
+        for (int i = 0; i < NUM_PAGES; ++i) {
+            String url = String.format("http://www.mia.com/item-%06d.html", i);
+            WebPage page = fixture.newParsedPage(url, conf);
+            keys[i] = page.getReversedUrl();
+            pages[i] = page.unbox();
+            store.put(keys[i], pages[i]);
+        }
+        store.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        store.close();
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) throws Exception {
+        int i = cursor.next;
+        cursor.next = (cursor.next + 1) % NUM_PAGES;
+        store.put(keys[i], pages[i]);
+    }
+
+    @Benchmark
+    public GWebPage get(ReadCounter counter) throws Exception {
+        long bytesRead = bytesRead();
+        GWebPage page = store.get(keys[ThreadLocalRandom.current().nextInt(NUM_PAGES)]);
+        count(counter, bytesRead);
+        return page;
+    }
+
+    @Benchmark
+    public GWebPage getMetadata(ReadCounter counter) throws Exception {
+        long bytesRead = bytesRead();
+        GWebPage page = store.get(keys[ThreadLocalRandom.current().nextInt(NUM_PAGES)], WebDb.Companion.getMetadataFields());
+        count(counter, bytesRead);
+        return page;
+    }
+
+    @Benchmark
+    public int scan() throws Exception {
+        int start = ThreadLocalRandom.current().nextInt(NUM_PAGES - SCAN_SIZE);
+        Query<String, GWebPage> query = store.newQuery();
+        query.setKeyRange(keys[start], keys[start + SCAN_SIZE - 1]);
+        int count = 0;
+        try (Result<String, GWebPage> result = store.execute(query)) {
+            while (result.next()) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private void count(ReadCounter counter, long bytesReadBefore) {
+        ++counter.reads;
+        counter.bytesRead += bytesRead() - bytesReadBefore;
+    }
+
+    private long bytesRead() {
+        if (store instanceof LocalPageStore) {
+            return ((LocalPageStore) store).getBytesRead();
+        }
+        return ((FileBackendPageStore) store).getBytesRead();
+    }
+}
@@ -0,0 +1,68 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.config.ImmutableConfig;
+import ai.platon.pulsar.common.proxy.IpSegmentTrie;
+import ai.platon.pulsar.common.proxy.ProxyEntry;
+import ai.platon.pulsar.common.proxy.ProxyPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Take and return proxies from many threads, every taken proxy is offered back immediately, so the pool is never
+ * exhausted and the benchmark measures the contention of the pool itself. The ban lookups run against
+ * a trie of banned segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyPoolBenchmark {
+
+    @Param({"10", "100"})
+    public int numProxies;
+
+    private ProxyPool proxyPool;
+    private IpSegmentTrie bannedSegments;
+    private String[] ips;
+
+    @Setup
+    public void setup() {
+        proxyPool = new ProxyPool(new ImmutableConfig());
+        ips = new String[numProxies];
+        for (int i = 0; i < numProxies; ++i) {
+            ips[i] = "58.218." + (i % 256) + "." + (i + 1);
+            proxyPool.offer(ProxyEntry.Companion.parse(ips[i] + ":" + (6000 + i)));
+        }
+
+        bannedSegments = new IpSegmentTrie();
+        for (int i = 0; i < 1000; ++i) {
+            bannedSegments.add("117." + (i / 256) + "." + (i % 256));
+        }
+        bannedSegments.add("58.218.1");
+    }
+
+    @TearDown
+    public void tearDown() {
+        proxyPool.close();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ProxyEntry pollAndOffer() {
+        ProxyEntry proxy = proxyPool.poll();
+        if (proxy != null) {
+            proxyPool.offer(proxy);
+        }
+        return proxy;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean bannedSegmentLookup() {
+        return bannedSegments.contains(ips[ThreadLocalRandom.current().nextInt(ips.length)]);
+    }
+}
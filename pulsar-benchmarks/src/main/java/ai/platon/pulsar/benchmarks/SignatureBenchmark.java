@@ -0,0 +1,51 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.crawl.signature.MD5Signature;
+import ai.platon.pulsar.crawl.signature.TextMD5Signature;
+import ai.platon.pulsar.crawl.signature.TextProfileSignature;
+import ai.platon.pulsar.persist.WebPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculate page signatures over parsed pages, the signatures are calculated for every parsed page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureBenchmark {
+
+    @Param({"mia-00f3a63c.html", "jd-0af8bc70.html"})
+    public String fixture;
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private final MD5Signature md5Signature = new MD5Signature();
+    private final TextMD5Signature textMD5Signature = new TextMD5Signature();
+    private final TextProfileSignature textProfileSignature = new TextProfileSignature(conf);
+    private WebPage page;
+
+    @Setup
+    public void setup() {
+        page = Fixtures.get(fixture).newParsedPage(conf);
+    }
+
+    @Benchmark
+    public byte[] md5() {
+        return md5Signature.calculate(page);
+    }
+
+    @Benchmark
+    public byte[] textMD5() {
+        return textMD5Signature.calculate(page);
+    }
+
+    @Benchmark
+    public byte[] textProfile() {
+        return textProfileSignature.calculate(page);
+    }
+}
@@ -0,0 +1,106 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.config.CapabilityTypes;
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.common.message.MiscMessageWriter;
+import ai.platon.pulsar.crawl.common.URLUtil;
+import ai.platon.pulsar.crawl.fetch.CoreMetrics;
+import ai.platon.pulsar.crawl.fetch.JobFetchTask;
+import ai.platon.pulsar.crawl.fetch.TaskMonitor;
+import ai.platon.pulsar.crawl.fetch.TaskPool;
+import ai.platon.pulsar.crawl.fetch.data.PoolId;
+import ai.platon.pulsar.persist.WebPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produce, consume and finish fetch tasks, on a single {@link TaskPool} and through a {@link TaskMonitor}
+ * which dispatches the tasks to the pools of their hosts.
+ *
+ * The crawl delays are zero and the tasks are finished asap, so a task is always ready to consume.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskPoolBenchmark {
+
+    private static final int NUM_TASKS = 10_000;
+
+    @Param({"1", "100"})
+    public int numHosts;
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private MiscMessageWriter messageWriter;
+    private CoreMetrics coreMetrics;
+    private TaskMonitor taskMonitor;
+    private TaskPool taskPool;
+    private JobFetchTask[] tasks;
+    private JobFetchTask[] singleHostTasks;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() {
+        conf.setDuration(CapabilityTypes.FETCH_QUEUE_DELAY, Duration.ZERO);
+        conf.setDuration(CapabilityTypes.FETCH_QUEUE_MIN_DELAY, Duration.ZERO);
+
+        messageWriter = new MiscMessageWriter(conf);
+        coreMetrics = new CoreMetrics(messageWriter, conf);
+        taskMonitor = new TaskMonitor(coreMetrics, messageWriter, conf);
+
+        WebPage page = WebPage.newWebPage("http://h0.example.com/", conf);
+        tasks = new JobFetchTask[NUM_TASKS];
+        singleHostTasks = new JobFetchTask[NUM_TASKS];
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            String url = "http://h" + (i % numHosts) + ".example.com/item/" + i;
+            tasks[i] = JobFetchTask.Companion.create(0, 0, url, page, URLUtil.GroupMode.BY_HOST);
+            singleHostTasks[i] = JobFetchTask.Companion.create(0, 0, "http://h0.example.com/item/" + i,
+                    page, URLUtil.GroupMode.BY_HOST);
+        }
+
+        PoolId poolId = singleHostTasks[0].getPoolId();
+        taskPool = new TaskPool(poolId, URLUtil.GroupMode.BY_HOST, 5, Duration.ZERO, Duration.ZERO, Duration.ofMinutes(5));
+    }
+
+    @TearDown
+    public void tearDown() {
+        taskMonitor.close();
+        coreMetrics.close();
+        messageWriter.close();
+    }
+
+    @Benchmark
+    public JobFetchTask taskPool(Cursor cursor) {
+        taskPool.produce(next(singleHostTasks, cursor));
+        JobFetchTask task = taskPool.consume();
+        if (task != null) {
+            taskPool.finish(task, true);
+        }
+        return task;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JobFetchTask taskMonitor(Cursor cursor) {
+        taskMonitor.produce(next(tasks, cursor));
+        JobFetchTask task = taskMonitor.consume(null);
+        if (task != null) {
+            taskMonitor.finishAsap(task);
+        }
+        return task;
+    }
+
+    private JobFetchTask next(JobFetchTask[] tasks, Cursor cursor) {
+        JobFetchTask task = tasks[cursor.next];
+        cursor.next = (cursor.next + 1) % tasks.length;
+        return task;
+    }
+}
@@ -0,0 +1,84 @@
+package ai.platon.pulsar.benchmarks;
+
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.crawl.filter.CrawlUrlFilters;
+import ai.platon.pulsar.crawl.filter.CrawlUrlNormalizers;
+import ai.platon.pulsar.filter.*;
+import ai.platon.pulsar.normalizer.BasicUrlNormalizer;
+import ai.platon.pulsar.normalizer.PassUrlNormalizer;
+import ai.platon.pulsar.normalizer.RegexUrlNormalizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalize and filter all the links in the fixtures, the chains are the same as the ones defined in
+ * urlfilter-context.xml.
+ *
+ * The score is the time to process a single link.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlFilterBenchmark {
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private CrawlUrlNormalizers normalizers;
+    private CrawlUrlFilters filters;
+    private String[] links;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() {
+        normalizers = new CrawlUrlNormalizers(Arrays.asList(
+                new RegexUrlNormalizer(conf),
+                new BasicUrlNormalizer(conf),
+                new PassUrlNormalizer(conf)
+        ), CrawlUrlNormalizers.SCOPE_DEFAULT, conf);
+
+        filters = new CrawlUrlFilters(Arrays.asList(
+                new PrefixUrlFilter(conf),
+                new SuffixUrlFilter(conf),
+                new RegexUrlFilter(conf),
+                new UrlValidator(conf),
+                new AutomatonUrlFilter(conf)
+        ), conf);
+
+        List<String> list = Fixtures.links();
+        links = list.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public String normalize(Cursor cursor) {
+        return normalizers.normalize(nextLink(cursor), CrawlUrlNormalizers.SCOPE_DEFAULT);
+    }
+
+    @Benchmark
+    public String filter(Cursor cursor) {
+        return filters.filter(nextLink(cursor));
+    }
+
+    @Benchmark
+    public void normalizeAndFilter(Cursor cursor, Blackhole blackhole) {
+        String url = normalizers.normalize(nextLink(cursor), CrawlUrlNormalizers.SCOPE_DEFAULT);
+        if (url != null) {
+            blackhole.consume(filters.filter(url));
+        }
+    }
+
+    private String nextLink(Cursor cursor) {
+        String link = links[cursor.next];
+        cursor.next = (cursor.next + 1) % links.length;
+        return link;
+    }
+}
@@ -118,6 +118,8 @@ public interface AppConstants {
     String MEM_STORE_CLASS = "org.apache.gora.memory.store.MemStore";
     /** A minimal file backend store */
     String FILE_BACKEND_STORE_CLASS = "ai.platon.pulsar.persist.gora.FileBackendPageStore";
+    /** An embedded persistent store for single node deployments */
+    String LOCAL_STORE_CLASS = "ai.platon.pulsar.persist.gora.LocalPageStore";
     String MONGO_STORE_CLASS = "org.apache.gora.mongodb.store.MongoStore";
     String HBASE_STORE_CLASS = "org.apache.gora.hbase.store.HBaseStore";
 
@@ -198,6 +200,7 @@ public interface AppConstants {
     Dimension DEFAULT_VIEW_PORT = new Dimension(1920, 1080);
     String PULSAR_META_INFORMATION_ID = "PulsarMetaInformation";
     String PULSAR_SCRIPT_SECTION_ID = "PulsarScriptSection";
+    String PULSAR_GEOMETRY_SECTION_ID = "PulsarGeometrySection";
     String PULSAR_ATTR_HIDDEN = "_h";
     String PULSAR_ATTR_OVERFLOW_HIDDEN = "_oh";
     String PULSAR_ATTR_OVERFLOW_VISIBLE = "_visible";
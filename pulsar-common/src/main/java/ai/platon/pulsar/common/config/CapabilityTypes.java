@@ -180,6 +180,8 @@ public interface CapabilityTypes {
     String STORAGE_DATUM_EXPIRES = "storage.datum.expires";
     /** Constant <code>STORAGE_EMBED_MONGO="storage.embed.mongo"</code> */
     String STORAGE_EMBED_MONGO = "storage.embed.mongo";
+    /** Constant <code>STORAGE_BATCH_PARALLELISM="storage.batch.parallelism"</code> */
+    String STORAGE_BATCH_PARALLELISM = "storage.batch.parallelism";
 
     /** Constant <code>GORA_MONGODB_SERVERS="gora.mongodb.servers"</code> */
     String GORA_MONGODB_SERVERS = "gora.mongodb.servers";
@@ -344,6 +346,10 @@ public interface CapabilityTypes {
      * The max value of tabs a browser can open
      */
     String BROWSER_MAX_ACTIVE_TABS = "browser.max.active.tabs";
+    /**
+     * The max number of web drivers a browser instance can create in parallel
+     * */
+    String BROWSER_DRIVER_MAX_CONCURRENT_CREATIONS = "browser.driver.max.concurrent.creations";
     /**
      * Open a set of blank tabs before the first page view
      * */
@@ -488,6 +494,10 @@ public interface CapabilityTypes {
     String PARSE_DEFAULT_ENCODING = "parser.character.encoding.default";
     /** Constant <code>PARSE_CACHING_FORBIDDEN_POLICY="parser.caching.forbidden.policy"</code> */
     String PARSE_CACHING_FORBIDDEN_POLICY = "parser.caching.forbidden.policy";
+    /**
+     * Handle the meta tags in the html head: noindex, refresh, pragma no-cache and the meta_* metadata, off by default
+     * */
+    String PARSE_SUPPORT_META_TAGS = "parser.support.meta.tags";
     /** Constant <code>PARSE_TIKA_HTML_MAPPER_NAME="tika.htmlmapper.classname"</code> */
     String PARSE_TIKA_HTML_MAPPER_NAME = "tika.htmlmapper.classname";
 
@@ -555,6 +565,14 @@ public interface CapabilityTypes {
      * The size of global document cache
      * */
     String GLOBAL_DOCUMENT_CACHE_SIZE = "global.document.cache.size";
+    /**
+     * The max total weight of global page cache, a page weights it's content length in bytes
+     * */
+    String GLOBAL_PAGE_CACHE_WEIGHT = "global.page.cache.weight";
+    /**
+     * The max total weight of global document cache, a document weights it's node count
+     * */
+    String GLOBAL_DOCUMENT_CACHE_WEIGHT = "global.document.cache.weight";
 
     /**
      * Stat
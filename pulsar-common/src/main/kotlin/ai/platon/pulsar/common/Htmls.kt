@@ -1,6 +1,7 @@
 package ai.platon.pulsar.common
 
 import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
 import java.util.regex.Pattern
 
 const val DEFAULT_SUPPORTED_CHARSETS = "UTF-8|GB2312|GB18030|GBK|Big5|ISO-8859-1" +
@@ -81,6 +82,64 @@ fun replaceHTMLCharset(htmlContent: String, charsetPattern: Pattern, targetChars
     return sb
 }
 
+/**
+ * Replace the charset to the target charset, the content is modified in place if the length is not changed,
+ * the content is returned as is if there is no charset to replace
+ * */
+fun replaceHTMLCharset(htmlContent: ByteArray, charsetPattern: Pattern, targetCharset: String = "UTF-8"): ByteArray {
+    val pos = indexOfAscii(htmlContent, "</head>")
+    if (pos < 0) {
+        return htmlContent
+    }
+
+    // ISO-8859-1 maps every byte to exactly one char, so the bytes of the head survive the round trip
+    val head = String(htmlContent, 0, pos, StandardCharsets.ISO_8859_1)
+    val matcher = charsetPattern.matcher(head)
+    if (!matcher.find()) {
+        return htmlContent
+    }
+
+    val newHead = matcher.replaceAll(targetCharset).toByteArray(StandardCharsets.ISO_8859_1)
+    if (newHead.size == pos) {
+        System.arraycopy(newHead, 0, htmlContent, 0, pos)
+        return htmlContent
+    }
+
+    val result = ByteArray(newHead.size + htmlContent.size - pos)
+    System.arraycopy(newHead, 0, result, 0, newHead.size)
+    System.arraycopy(htmlContent, pos, result, newHead.size, htmlContent.size - pos)
+    return result
+}
+
+/**
+ * Find the first occurrence of an ASCII string in the byte array, the UTF-8 bytes of an ASCII string
+ * are the chars themselves
+ * */
+fun indexOfAscii(content: ByteArray, target: String, fromIndex: Int = 0, toIndex: Int = content.size): Int {
+    val n = target.length
+    if (n == 0) {
+        return fromIndex
+    }
+
+    val first = target[0].toByte()
+    val max = toIndex.coerceAtMost(content.size) - n
+    var i = fromIndex.coerceAtLeast(0)
+    while (i <= max) {
+        if (content[i] == first) {
+            var j = 1
+            while (j < n && content[i + j] == target[j].toByte()) {
+                ++j
+            }
+            if (j == n) {
+                return i
+            }
+        }
+        ++i
+    }
+
+    return -1
+}
+
 fun hasHtmlTags(htmlContent: String): Boolean {
     return htmlContent.indexOf("<html") != -1 && htmlContent.lastIndexOf("</html>") != -1
 }
@@ -117,3 +176,22 @@ fun isBlankBody(htmlContent: String): Boolean {
 
     return true
 }
+
+fun isBlankBody(htmlContent: ByteArray): Boolean {
+    val tagEnd = "</body>"
+
+    var p = indexOfAscii(htmlContent, "<body")
+    if (p < 0) {
+        return false
+    }
+    p = indexOfAscii(htmlContent, ">", p) + 1
+    if (p <= 0) {
+        return false
+    }
+
+    while (p < htmlContent.size && htmlContent[p].toChar().isWhitespace()) {
+        ++p
+    }
+
+    return indexOfAscii(htmlContent, tagEnd, p, p + tagEnd.length) == p
+}
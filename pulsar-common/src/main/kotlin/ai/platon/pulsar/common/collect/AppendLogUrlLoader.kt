@@ -0,0 +1,342 @@
+package ai.platon.pulsar.common.collect
+
+import ai.platon.pulsar.common.urls.Hyperlink
+import ai.platon.pulsar.common.urls.HyperlinkDatum
+import ai.platon.pulsar.common.urls.UrlAware
+import com.google.gson.GsonBuilder
+import org.slf4j.LoggerFactory
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * An external url store backed by append only logs in the local file system.
+ *
+ * Every url group has it's own log, a log is a sequence of memory mapped segment files, and a record is
+ * a 4 bytes length followed by the json of the hyperlink. A persisted read cursor remembers where the next
+ * load starts, so every url is loaded exactly once, and segments fully consumed are deleted.
+ *
+ * Saved urls are buffered and written to the segments in batches, the pending urls are committed if there
+ * are enough of them, or before any read, or when the loader is closed.
+ *
+ * Nothing in the framework creates the loader, pass it to a loading fetch cache or a loading queue as their
+ * external store. Seed files are still read by [LocalFileUrlLoader].
+ * */
+open class AppendLogUrlLoader(
+    /**
+     * The directory to hold the logs
+     * */
+    val directory: Path,
+    /**
+     * The size of a segment file in bytes
+     * */
+    val segmentSize: Int = DEFAULT_SEGMENT_SIZE,
+    /**
+     * Commit the pending urls if there are so many of them
+     * */
+    val commitBatchSize: Int = DEFAULT_COMMIT_BATCH_SIZE
+): AbstractExternalUrlLoader(), AutoCloseable {
+    companion object {
+        const val DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024
+        const val DEFAULT_COMMIT_BATCH_SIZE = 100
+        const val RECORD_HEADER_SIZE = 4
+
+        private const val SEGMENT_FILE_PREFIX = "segment-"
+        private const val SEGMENT_FILE_SUFFIX = ".log"
+        private const val CURSOR_FILE_NAME = "cursor"
+    }
+
+    private val log = LoggerFactory.getLogger(AppendLogUrlLoader::class.java)
+    private val gson = GsonBuilder().create()
+    private val logs = ConcurrentHashMap<String, GroupLog>()
+
+    init {
+        Files.createDirectories(directory)
+        // open the logs left by the last run
+        Files.list(directory).use { stream ->
+            stream.iterator().asSequence().filter { Files.isDirectory(it) }
+                .forEach { logs[it.fileName.toString()] = GroupLog(it) }
+        }
+    }
+
+    override fun save(url: UrlAware, group: UrlGroup) {
+        logOf(group).append(encode(url))
+    }
+
+    override fun saveAll(urls: Iterable<UrlAware>, group: UrlGroup) {
+        val groupLog = logOf(group)
+        urls.forEach { groupLog.append(encode(it)) }
+    }
+
+    override fun countRemaining() = logs.values.sumOf { it.remaining }
+
+    override fun countRemaining(group: UrlGroup) = logOf(group).remaining
+
+    override fun <T> loadToNow(sink: MutableCollection<T>, size: Int, group: UrlGroup, transformer: (UrlAware) -> T): Collection<T> {
+        if (size <= 0) {
+            return listOf()
+        }
+
+        val records = logOf(group).read(size)
+        return records.mapNotNull { decode(it) }.mapTo(sink) { transformer(it) }
+    }
+
+    override fun deleteAll(group: UrlGroup): Long {
+        return logOf(group).deleteAll()
+    }
+
+    /**
+     * Commit all pending urls
+     * */
+    fun flush() {
+        logs.values.forEach { it.commit() }
+    }
+
+    override fun close() {
+        logs.values.forEach { it.close() }
+        logs.clear()
+    }
+
+    private fun logOf(group: UrlGroup): GroupLog {
+        val name = listOf(group.jobId, group.group, group.priority).joinToString(".")
+            .replace("[^a-zA-Z0-9._-]".toRegex(), "_")
+        return logs.computeIfAbsent(name) { GroupLog(directory.resolve(it)) }
+    }
+
+    private fun encode(url: UrlAware): ByteArray {
+        val hyperlink = if (url is Hyperlink) url else Hyperlink(url)
+        return gson.toJson(hyperlink.data()).toByteArray()
+    }
+
+    private fun decode(record: ByteArray): Hyperlink? {
+        return kotlin.runCatching { Hyperlink(gson.fromJson(String(record), HyperlinkDatum::class.java)) }
+            .onFailure { log.warn("Failed to decode url record | {}", it.message) }
+            .getOrNull()
+    }
+
+    private class Segment(val seq: Long, val path: Path, val buffer: MappedByteBuffer) {
+        val capacity get() = buffer.capacity()
+
+        fun lengthAt(pos: Int): Int {
+            return if (pos + RECORD_HEADER_SIZE > capacity) 0 else buffer.getInt(pos)
+        }
+    }
+
+    private inner class GroupLog(val dir: Path) {
+        private val lock = ReentrantLock()
+        private val pending = ConcurrentLinkedQueue<ByteArray>()
+        private val pendingCount = AtomicInteger()
+        private val segments = ArrayDeque<Segment>()
+        private val cursorPath = dir.resolve(CURSOR_FILE_NAME)
+
+        private var readSeq = 0L
+        private var readPos = 0
+        private var writePos = 0
+        @Volatile
+        private var committedRemaining = 0
+
+        /**
+         * The number of urls not loaded yet, including the pending ones
+         * */
+        val remaining get() = committedRemaining + pendingCount.get()
+
+        init {
+            Files.createDirectories(dir)
+            open()
+        }
+
+        fun append(record: ByteArray) {
+            pending.add(record)
+            if (pendingCount.incrementAndGet() >= commitBatchSize) {
+                commit()
+            }
+        }
+
+        /**
+         * Write all pending records to the segments, one commit for all the records saved by all threads
+         * */
+        fun commit() {
+            if (pending.isEmpty()) {
+                return
+            }
+
+            lock.withLock {
+                var n = 0
+                var record = pending.poll()
+                while (record != null) {
+                    pendingCount.decrementAndGet()
+                    write(record)
+                    ++n
+                    record = pending.poll()
+                }
+                committedRemaining += n
+            }
+        }
+
+        fun read(size: Int): List<ByteArray> {
+            commit()
+
+            lock.withLock {
+                val records = mutableListOf<ByteArray>()
+                while (records.size < size && committedRemaining > 0) {
+                    val segment = segments.firstOrNull { it.seq == readSeq } ?: break
+                    val length = if (segment === segments.last() && readPos >= writePos) 0 else segment.lengthAt(readPos)
+                    if (length <= 0) {
+                        if (segment === segments.last()) break
+                        // the rest of the segment is unused, move to the next one
+                        readSeq = segments.first { it.seq > readSeq }.seq
+                        readPos = 0
+                        continue
+                    }
+
+                    val bytes = ByteArray(length)
+                    segment.buffer.duplicate().position(readPos + RECORD_HEADER_SIZE).get(bytes)
+                    readPos += RECORD_HEADER_SIZE + length
+                    records.add(bytes)
+                    --committedRemaining
+                }
+
+                if (records.isNotEmpty()) {
+                    saveCursor()
+                    compact()
+                }
+
+                return records
+            }
+        }
+
+        fun deleteAll(): Long {
+            lock.withLock {
+                pending.clear()
+                pendingCount.set(0)
+                val count = committedRemaining.toLong()
+                segments.forEach { delete(it.path) }
+                segments.clear()
+                committedRemaining = 0
+                readSeq = 0
+                readPos = 0
+                writePos = 0
+                delete(cursorPath)
+                return count
+            }
+        }
+
+        fun close() {
+            commit()
+            lock.withLock {
+                segments.forEach { it.buffer.force() }
+                saveCursor()
+            }
+        }
+
+        private fun write(record: ByteArray) {
+            val size = RECORD_HEADER_SIZE + record.size
+            var segment = segments.lastOrNull()
+            if (segment == null || writePos + size > segment.capacity) {
+                segment = newSegment((segment?.seq ?: readSeq - 1) + 1, maxOf(segmentSize, size))
+                writePos = 0
+            }
+
+            // write the body first, a reader never sees a length without a body
+            segment.buffer.duplicate().position(writePos + RECORD_HEADER_SIZE).put(record)
+            segment.buffer.putInt(writePos, record.size)
+            writePos += size
+        }
+
+        /**
+         * Delete the segments before the read cursor
+         * */
+        private fun compact() {
+            while (segments.size > 1 && segments.first().seq < readSeq) {
+                delete(segments.removeFirst().path)
+            }
+        }
+
+        private fun open() {
+            readCursor()
+
+            val paths = Files.list(dir).use { stream ->
+                stream.iterator().asSequence().filter { it.fileName.toString().startsWith(SEGMENT_FILE_PREFIX) }.toList()
+            }
+            paths.map { seqOf(it) to it }.sortedBy { it.first }.forEach { (seq, path) ->
+                if (seq < readSeq) {
+                    delete(path)
+                } else {
+                    segments.add(Segment(seq, path, map(path, Files.size(path).toInt())))
+                }
+            }
+
+            if (segments.isEmpty()) {
+                readPos = 0
+                return
+            }
+            if (segments.none { it.seq == readSeq }) {
+                readSeq = segments.first().seq
+                readPos = 0
+            }
+
+            // recover the write position and the number of unread records, the only scan of the log
+            var count = 0
+            segments.forEach { segment ->
+                var pos = if (segment.seq == readSeq) readPos else 0
+                var length = segment.lengthAt(pos)
+                while (length > 0 && pos + RECORD_HEADER_SIZE + length <= segment.capacity) {
+                    pos += RECORD_HEADER_SIZE + length
+                    ++count
+                    length = segment.lengthAt(pos)
+                }
+                writePos = pos
+            }
+            committedRemaining = count
+        }
+
+        private fun newSegment(seq: Long, capacity: Int): Segment {
+            val path = dir.resolve("$SEGMENT_FILE_PREFIX$seq$SEGMENT_FILE_SUFFIX")
+            return Segment(seq, path, map(path, capacity)).also { segments.add(it) }
+        }
+
+        private fun map(path: Path, capacity: Int): MappedByteBuffer {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE).use {
+                it.map(FileChannel.MapMode.READ_WRITE, 0, capacity.toLong())
+            }
+        }
+
+        private fun seqOf(path: Path): Long {
+            return path.fileName.toString().removePrefix(SEGMENT_FILE_PREFIX).removeSuffix(SEGMENT_FILE_SUFFIX).toLong()
+        }
+
+        private fun readCursor() {
+            if (!Files.exists(cursorPath)) {
+                return
+            }
+
+            val parts = Files.readString(cursorPath).trim().split(" ")
+            readSeq = parts.getOrNull(0)?.toLongOrNull() ?: 0
+            readPos = parts.getOrNull(1)?.toIntOrNull() ?: 0
+        }
+
+        private fun saveCursor() {
+            val tmp = dir.resolve("$CURSOR_FILE_NAME.tmp")
+            Files.writeString(tmp, "$readSeq $readPos")
+            Files.move(tmp, cursorPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        }
+
+        private fun delete(path: Path) {
+            kotlin.runCatching { Files.deleteIfExists(path) }
+                .onFailure { log.warn("Failed to delete {} | {}", path, it.message) }
+        }
+    }
+}
+
+/**
+ * An append log url loader in a temporary directory
+ * */
+open class TemporaryAppendLogUrlLoader: AppendLogUrlLoader(Files.createTempDirectory("hyperlink"))
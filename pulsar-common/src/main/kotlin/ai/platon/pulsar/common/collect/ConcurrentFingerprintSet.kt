@@ -0,0 +1,297 @@
+package ai.platon.pulsar.common.collect
+
+import java.lang.invoke.MethodHandles
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * A concurrent open addressing set of 64-bit fingerprints with small counters.
+ *
+ * Every slot is a primitive long, the high 60 bits hold the fingerprint and the low 4 bits hold the count,
+ * so a slot is never zero once used, and a zero slot means empty. Slots are updated by CAS, lookups and
+ * insertions never block.
+ *
+ * The set never rehashes. When the newest table is half full, it's sealed and a larger table is appended, all new
+ * fingerprints go to the new table and lookups probe all tables. A table is sealed only after the writers
+ * in it are drained, so a fingerprint is never counted in two tables at the same time.
+ * The slots can live in the java heap, in direct memory, or in memory mapped files so the history survives restarts.
+ * */
+class ConcurrentFingerprintSet(
+    /**
+     * The number of slots of the first table, rounded up to a power of two
+     * */
+    val initialCapacity: Int = DEFAULT_INITIAL_CAPACITY,
+    val storage: Storage = Storage.HEAP,
+    /**
+     * The directory to hold the table files, required if the storage is [Storage.MAPPED]
+     * */
+    val directory: Path? = null
+): UrlHistory {
+    companion object {
+        const val DEFAULT_INITIAL_CAPACITY = 4096
+        const val MAX_TABLE_CAPACITY = 1 shl 27
+        const val COUNT_BITS = 4
+        const val COUNT_MASK = (1L shl COUNT_BITS) - 1
+        const val KEY_MASK = COUNT_MASK.inv()
+        const val MAX_COUNT = COUNT_MASK.toInt()
+        const val LOAD_FACTOR = 0.5
+        const val GROWTH_FACTOR = 4
+
+        private const val TABLE_FILE_PREFIX = "fingerprints-"
+        private const val TABLE_FILE_SUFFIX = ".bin"
+    }
+
+    enum class Storage { HEAP, OFF_HEAP, MAPPED }
+
+    private val tables = AtomicReference<Array<Table>>()
+
+    override val maxCount = MAX_COUNT
+
+    override val size get() = tables.get().sumOf { it.used.get() }
+
+    /**
+     * The number of tables, every table is larger than the previous one
+     * */
+    val numTables get() = tables.get().size
+
+    init {
+        require(initialCapacity > 0) { "Initial capacity must be positive" }
+        require(storage != Storage.MAPPED || directory != null) { "A directory is required for mapped storage" }
+
+        tables.set(openTables().takeIf { it.isNotEmpty() } ?: arrayOf(newTable(0, tableSizeFor(initialCapacity))))
+    }
+
+    override fun count(fingerprint: Long): Int {
+        val key = fingerprint and KEY_MASK
+        return tables.get().sumOf { it.count(key) }
+    }
+
+    override fun tryAdd(fingerprint: Long, limit: Int): Boolean {
+        val key = fingerprint and KEY_MASK
+        val l = limit.coerceAtMost(MAX_COUNT)
+
+        while (true) {
+            val current = tables.get()
+            val newest = current.last()
+            // old tables are only looked up, a key recorded in them is counted against the limit
+            var count = 0
+            for (i in 0 until current.size - 1) {
+                count += current[i].count(key)
+            }
+            if (count >= l) {
+                return false
+            }
+
+            when (newest.tryIncrement(key, l - count)) {
+                Table.ADDED -> return true
+                Table.REJECTED -> return false
+                Table.FULL -> grow(newest)
+            }
+        }
+    }
+
+    override fun flush() {
+        tables.get().forEach { it.slots.flush() }
+    }
+
+    @Synchronized
+    private fun grow(full: Table) {
+        val current = tables.get()
+        if (current.last() !== full) {
+            // another thread has grown it
+            return
+        }
+
+        // writers holding the old snapshot either finish before the new table is visible, or see the seal and retry
+        full.seal()
+        val capacity = (full.slots.length.toLong() * GROWTH_FACTOR).coerceAtMost(MAX_TABLE_CAPACITY.toLong()).toInt()
+        tables.set(current + newTable(current.size, capacity))
+    }
+
+    private fun newTable(index: Int, capacity: Int): Table {
+        val slots = when (storage) {
+            Storage.HEAP -> HeapLongSlots(capacity)
+            Storage.OFF_HEAP -> BufferLongSlots(ByteBuffer.allocateDirect(capacity * 8))
+            Storage.MAPPED -> BufferLongSlots(map(tableFile(index), capacity * 8L))
+        }
+        return Table(slots)
+    }
+
+    private fun openTables(): Array<Table> {
+        if (storage != Storage.MAPPED || directory == null || !Files.isDirectory(directory)) {
+            return arrayOf()
+        }
+
+        val tables = mutableListOf<Table>()
+        var index = 0
+        var path = tableFile(index)
+        while (Files.exists(path)) {
+            tables.add(Table(BufferLongSlots(map(path, Files.size(path)))).also { it.recount() })
+            path = tableFile(++index)
+        }
+        return tables.toTypedArray()
+    }
+
+    private fun tableFile(index: Int): Path {
+        return requireNotNull(directory).resolve("$TABLE_FILE_PREFIX$index$TABLE_FILE_SUFFIX")
+    }
+
+    private fun map(path: Path, bytes: Long): MappedByteBuffer {
+        Files.createDirectories(path.parent)
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE).use {
+            // the mapping is still valid after the channel is closed
+            it.map(FileChannel.MapMode.READ_WRITE, 0, bytes)
+        }
+    }
+
+    private fun tableSizeFor(capacity: Int): Int {
+        val n = capacity.coerceIn(16, MAX_TABLE_CAPACITY)
+        return Integer.highestOneBit(n - 1) shl 1
+    }
+
+    private class Table(val slots: LongSlots) {
+        companion object {
+            const val ADDED = 0
+            const val REJECTED = 1
+            const val FULL = 2
+        }
+
+        val mask = slots.length - 1
+        val threshold = (slots.length * LOAD_FACTOR).toInt()
+        val used = AtomicInteger()
+        private val writers = AtomicInteger()
+        @Volatile
+        private var sealed = false
+
+        fun count(key: Long): Int {
+            var i = indexFor(key)
+            repeat(slots.length) {
+                val slot = slots[i]
+                if (slot == 0L) {
+                    return 0
+                }
+                if (slot and KEY_MASK == key) {
+                    return (slot and COUNT_MASK).toInt()
+                }
+                i = (i + 1) and mask
+            }
+            return 0
+        }
+
+        fun tryIncrement(key: Long, limit: Int): Int {
+            writers.incrementAndGet()
+            try {
+                return if (sealed) FULL else doIncrement(key, limit)
+            } finally {
+                writers.decrementAndGet()
+            }
+        }
+
+        /**
+         * Reject all the later writes and wait for the writes in progress
+         * */
+        fun seal() {
+            sealed = true
+            while (writers.get() > 0) {
+                Thread.onSpinWait()
+            }
+        }
+
+        private fun doIncrement(key: Long, limit: Int): Int {
+            var i = indexFor(key)
+            var probes = 0
+            while (probes < slots.length) {
+                val slot = slots[i]
+                if (slot == 0L) {
+                    if (limit <= 0) {
+                        return REJECTED
+                    }
+                    // reserve the room before taking the slot, so the table never holds more than the threshold
+                    if (used.incrementAndGet() > threshold) {
+                        used.decrementAndGet()
+                        return FULL
+                    }
+                    if (slots.compareAndSet(i, 0L, key or 1L)) {
+                        return ADDED
+                    }
+                    // lost the race, check the same slot again
+                    used.decrementAndGet()
+                    continue
+                }
+
+                if (slot and KEY_MASK == key) {
+                    val count = (slot and COUNT_MASK).toInt()
+                    if (count >= limit) {
+                        return REJECTED
+                    }
+                    if (slots.compareAndSet(i, slot, key or (count + 1L))) {
+                        return ADDED
+                    }
+                    continue
+                }
+
+                i = (i + 1) and mask
+                ++probes
+            }
+            return FULL
+        }
+
+        fun recount() {
+            var n = 0
+            for (i in 0 until slots.length) {
+                if (slots[i] != 0L) ++n
+            }
+            used.set(n)
+        }
+
+        private fun indexFor(key: Long): Int {
+            // the fingerprint is already well distributed, skip the count bits
+            return (key ushr COUNT_BITS).toInt() and mask
+        }
+    }
+}
+
+internal interface LongSlots {
+    val length: Int
+    operator fun get(i: Int): Long
+    fun compareAndSet(i: Int, expect: Long, update: Long): Boolean
+    fun flush() {}
+}
+
+internal class HeapLongSlots(override val length: Int): LongSlots {
+    private val array = AtomicLongArray(length)
+    override fun get(i: Int) = array.get(i)
+    override fun compareAndSet(i: Int, expect: Long, update: Long) = array.compareAndSet(i, expect, update)
+}
+
+/**
+ * Long slots backed by a direct or memory mapped buffer, the buffer is page aligned so atomic access is supported
+ * */
+internal class BufferLongSlots(private val buffer: ByteBuffer): LongSlots {
+    companion object {
+        private val LONGS = MethodHandles.byteBufferViewVarHandle(LongArray::class.java, ByteOrder.LITTLE_ENDIAN)
+    }
+
+    init {
+        require(buffer.isDirect) { "Buffer must be direct" }
+    }
+
+    override val length = buffer.capacity() / 8
+
+    override fun get(i: Int) = LONGS.getVolatile(buffer, i * 8) as Long
+
+    override fun compareAndSet(i: Int, expect: Long, update: Long) =
+        LONGS.compareAndSet(buffer, i * 8, expect, update) as Boolean
+
+    override fun flush() {
+        (buffer as? MappedByteBuffer)?.force()
+    }
+}
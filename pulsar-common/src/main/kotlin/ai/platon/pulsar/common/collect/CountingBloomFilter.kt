@@ -0,0 +1,145 @@
+package ai.platon.pulsar.common.collect
+
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.roundToInt
+
+/**
+ * A scalable counting bloom filter of 64-bit fingerprints.
+ *
+ * Every stage is a counting bloom filter with 4-bit counters packed in longs. When a stage holds as many
+ * fingerprints as expected, a new stage with double capacity and half false positive probability is appended,
+ * so the overall false positive probability is bounded by 2 * fpp.
+ *
+ * The count of a fingerprint is never underestimated, it might be overestimated with the false positive probability,
+ * which means at worst a few urls are dropped by mistake.
+ *
+ * The check and the increment of [tryAdd] hold the lock stripe of the fingerprint, so concurrent callers never take
+ * a fingerprint beyond the limit.
+ * */
+class CountingBloomFilter(
+    val expectedInsertions: Int = DEFAULT_EXPECTED_INSERTIONS,
+    val fpp: Double = DEFAULT_FPP
+): UrlHistory {
+    companion object {
+        const val DEFAULT_EXPECTED_INSERTIONS = 1_000_000
+        const val DEFAULT_FPP = 0.001
+        const val COUNTER_BITS = 4
+        const val COUNTER_MASK = (1L shl COUNTER_BITS) - 1
+        const val COUNTERS_PER_WORD = 64 / COUNTER_BITS
+        const val MAX_COUNT = COUNTER_MASK.toInt()
+        private const val NUM_STRIPES = 256
+    }
+
+    private val stages = AtomicReference<Array<Stage>>()
+    private val stripes = Array(NUM_STRIPES) { Any() }
+
+    override val maxCount = MAX_COUNT
+
+    override val size get() = stages.get().sumOf { it.insertions.sum() }.toInt()
+
+    val numStages get() = stages.get().size
+
+    init {
+        require(expectedInsertions > 0) { "Expected insertions must be positive" }
+        require(fpp > 0 && fpp < 1) { "False positive probability must be in (0, 1)" }
+
+        stages.set(arrayOf(Stage(expectedInsertions.toLong(), fpp)))
+    }
+
+    override fun count(fingerprint: Long): Int {
+        return stages.get().sumOf { it.count(fingerprint) }.coerceAtMost(MAX_COUNT)
+    }
+
+    override fun tryAdd(fingerprint: Long, limit: Int): Boolean {
+        val newest: Stage
+        val count: Int
+        synchronized(stripeOf(fingerprint)) {
+            val current = stages.get()
+            count = current.sumOf { it.count(fingerprint) }
+            if (count >= limit.coerceAtMost(MAX_COUNT)) {
+                return false
+            }
+
+            newest = current.last()
+            newest.increment(fingerprint)
+        }
+
+        if (count == 0) {
+            newest.insertions.increment()
+            if (newest.insertions.sum() >= newest.capacity) {
+                grow(newest)
+            }
+        }
+
+        return true
+    }
+
+    private fun stripeOf(fingerprint: Long) = stripes[((fingerprint xor (fingerprint ushr 32)).toInt()) and (NUM_STRIPES - 1)]
+
+    @Synchronized
+    private fun grow(full: Stage) {
+        val current = stages.get()
+        if (current.last() === full) {
+            stages.set(current + Stage(full.capacity * 2, full.fpp / 2))
+        }
+    }
+
+    private class Stage(val capacity: Long, val fpp: Double) {
+        val numCounters: Long
+        val numHashFunctions: Int
+        val words: AtomicLongArray
+        val insertions = LongAdder()
+
+        init {
+            val m = ceil(-capacity * ln(fpp) / (ln(2.0) * ln(2.0))).toLong()
+            val numWords = ((m + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD).coerceIn(1, Int.MAX_VALUE.toLong())
+            numCounters = numWords * COUNTERS_PER_WORD
+            numHashFunctions = (numCounters.toDouble() / capacity * ln(2.0)).roundToInt().coerceIn(1, 16)
+            words = AtomicLongArray(numWords.toInt())
+        }
+
+        fun count(fingerprint: Long): Int {
+            var min = MAX_COUNT
+            forEachCounter(fingerprint) { word, shift ->
+                val c = ((words.get(word) ushr shift) and COUNTER_MASK).toInt()
+                if (c < min) min = c
+                min > 0
+            }
+            return min
+        }
+
+        fun increment(fingerprint: Long) {
+            forEachCounter(fingerprint) { word, shift ->
+                while (true) {
+                    val w = words.get(word)
+                    val c = (w ushr shift) and COUNTER_MASK
+                    // saturate, a counter never wraps around
+                    if (c == COUNTER_MASK || words.compareAndSet(word, w, w + (1L shl shift))) {
+                        break
+                    }
+                }
+                true
+            }
+        }
+
+        /**
+         * Double hashing, the two halves of the fingerprint are used as two independent hash values
+         * */
+        private inline fun forEachCounter(fingerprint: Long, action: (word: Int, shift: Int) -> Boolean) {
+            val h1 = fingerprint.toInt()
+            val h2 = (fingerprint ushr 32).toInt()
+            var combined = h1.toLong()
+            for (i in 0 until numHashFunctions) {
+                combined += h2
+                val index = (combined and Long.MAX_VALUE) % numCounters
+                if (!action((index / COUNTERS_PER_WORD).toInt(), (index % COUNTERS_PER_WORD).toInt() * COUNTER_BITS)) {
+                    return
+                }
+            }
+        }
+    }
+}
@@ -10,6 +10,13 @@ import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.StandardOpenOption
 
+/**
+ * Load urls from a plain text file, a line is either a group and a json hyperlink separated by a tab, or any text
+ * contains an url.
+ *
+ * There is no read cursor, every load reads the file from the beginning, so it's fine to read seed files, but it's not
+ * an external queue store, use [AppendLogUrlLoader] instead.
+ * */
 open class LocalFileUrlLoader(val path: Path): AbstractExternalUrlLoader() {
     private val log = LoggerFactory.getLogger(LocalFileUrlLoader::class.java)
     private val delimiter = "\t"
@@ -21,7 +28,16 @@ open class LocalFileUrlLoader(val path: Path): AbstractExternalUrlLoader() {
     override fun save(url: UrlAware, group: UrlGroup) {
         val hyperlink = if (url is Hyperlink) url else Hyperlink(url)
         val json = gson.toJson(hyperlink.data())
-        Files.writeString(path, "${group.group}$delimiter$json\n", StandardOpenOption.APPEND)
+        Files.writeString(path, "${group.group}$delimiter$json\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+    }
+
+    override fun saveAll(urls: Iterable<UrlAware>, group: UrlGroup) {
+        // one open and one write for all the urls
+        val lines = urls.joinToString("") { url ->
+            val hyperlink = if (url is Hyperlink) url else Hyperlink(url)
+            "${group.group}$delimiter${gson.toJson(hyperlink.data())}\n"
+        }
+        Files.writeString(path, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
     }
 
     override fun loadToNow(sink: MutableCollection<UrlAware>, size: Int, group: UrlGroup): Collection<UrlAware> {
@@ -29,12 +45,7 @@ open class LocalFileUrlLoader(val path: Path): AbstractExternalUrlLoader() {
             return listOf()
         }
 
-        val g = "${group.group}"
-        runCatching {
-            Files.readAllLines(path).mapNotNullTo(sink) { parse(it, g) }
-        }.onFailure { log.warn("Failed to load urls from $path", it) }
-
-        return sink
+        return loadToNow(sink, size, group) { it }
     }
 
     override fun <T> loadToNow(sink: MutableCollection<T>, size: Int, group: UrlGroup, transformer: (UrlAware) -> T): Collection<T> {
@@ -44,7 +55,10 @@ open class LocalFileUrlLoader(val path: Path): AbstractExternalUrlLoader() {
 
         val g = "${group.group}"
         runCatching {
-            Files.readAllLines(path).mapNotNull { parse(it, g) }.mapTo(sink) { transformer(it) }
+            // read lazily and stop as soon as there are enough urls
+            Files.newBufferedReader(path).useLines { lines ->
+                lines.mapNotNull { parse(it, g) }.take(size).mapTo(sink) { transformer(it) }
+            }
         }.onFailure { log.warn("Failed to load urls from $path", it) }
 
         return sink
@@ -65,6 +79,10 @@ open class LocalFileUrlLoader(val path: Path): AbstractExternalUrlLoader() {
     }
 }
 
+/**
+ * A local file loader reads urls from a plain text file, every load reads the file from the beginning,
+ * use [AppendLogUrlLoader] as an external queue store
+ * */
 open class TemporaryLocalFileUrlLoader: LocalFileUrlLoader(
         Files.createTempFile("hyperlink", ".txt")
 )
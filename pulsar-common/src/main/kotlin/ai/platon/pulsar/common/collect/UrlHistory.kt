@@ -0,0 +1,54 @@
+package ai.platon.pulsar.common.collect
+
+import com.google.common.hash.Hashing
+
+/**
+ * Remember how many times every url is seen, the urls are identified by their 64-bit fingerprints.
+ *
+ * Implementations are thread safe, lookups never block.
+ * */
+interface UrlHistory: AutoCloseable {
+    companion object {
+        private val HASH_FUNCTION = Hashing.murmur3_128()
+
+        /**
+         * Calculate the 64-bit fingerprint of an url
+         * */
+        fun fingerprint(url: CharSequence): Long = HASH_FUNCTION.hashUnencodedChars(url).asLong()
+    }
+
+    /**
+     * The max count can be recorded for a fingerprint
+     * */
+    val maxCount: Int
+
+    /**
+     * The number of distinct fingerprints, it's an estimation for probabilistic implementations
+     * */
+    val size: Int
+
+    /**
+     * How many times the fingerprint is recorded
+     * */
+    fun count(fingerprint: Long): Int
+
+    /**
+     * Increase the count of the fingerprint by one if the count is less than the limit.
+     *
+     * @return true if the count is increased
+     * */
+    fun tryAdd(fingerprint: Long, limit: Int = 1): Boolean
+
+    operator fun contains(fingerprint: Long) = count(fingerprint) > 0
+
+    fun count(url: CharSequence) = count(fingerprint(url))
+
+    fun tryAdd(url: CharSequence, limit: Int = 1) = tryAdd(fingerprint(url), limit)
+
+    /**
+     * Write the history to the backend storage if there is one
+     * */
+    fun flush() {}
+
+    override fun close() = flush()
+}
@@ -18,19 +18,38 @@ class ExpiringItem<T>(
     }
 }
 
+/**
+ * A LRU cache whose items expire after ttl, the cache is bounded by the number of items and,
+ * if a weigher is given, the total weight of the items.
+ * */
 class ConcurrentExpiringLRUCache<T>(
         val capacity: Int,
-        val ttl: Duration = CACHE_TTL
+        val ttl: Duration = CACHE_TTL,
+        val maxWeight: Long = 0,
+        weigher: ((T) -> Int)? = null
 ) {
     companion object {
         val CACHE_TTL = Duration.ofMinutes(5)
         const val CACHE_CAPACITY = 200
     }
 
-    val cache = ConcurrentLRUCache<String, ExpiringItem<T>>(ttl.seconds, capacity)
+    val cache = ConcurrentLRUCache<String, ExpiringItem<T>>(ttl.seconds, capacity, maxWeight,
+        weigher?.let { w -> { _: String, item: ExpiringItem<T> -> w(item.datum) } })
 
     val size get() = cache.size
 
+    val weight get() = cache.weight
+
+    val hitCount get() = cache.hitCount
+
+    val missCount get() = cache.missCount
+
+    val evictionCount get() = cache.evictionCount
+
+    val expirationCount get() = cache.expirationCount
+
+    val hitRate get() = cache.hitRate
+
     fun put(key: String, item: ExpiringItem<T>) {
         cache.put(key, item)
     }
@@ -63,5 +82,7 @@ class ConcurrentExpiringLRUCache<T>(
 
     fun removeAll(keys: Iterable<String>) = keys.forEach { cache.remove(it) }
 
+    fun evictExpired() = cache.evictExpired()
+
     fun clear() = cache.clear()
 }
@@ -2,22 +2,223 @@ package ai.platon.pulsar.common.concurrent
 
 import java.time.Duration
 import java.util.*
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 
 /**
- * A very simple yet fast LRU cache with TTL support
+ * A fast LRU cache with per-entry TTL support.
+ *
+ * The cache is split into lock-striped segments, each segment is an access ordered [LinkedHashMap]
+ * guarded by it's own lock, so threads working on different keys rarely contend.
+ *
+ * The cache is bounded by both the number of entries and, if a weigher is given, the total weight of
+ * the entries. When either bound is exceeded, the least recently used entries of the segment are evicted.
  */
-class ConcurrentLRUCache<K, V> {
+class ConcurrentLRUCache<K, V> @JvmOverloads constructor(
     /**
-     * A fast yet short life least recently used cache
+     * Time to live for items, in seconds, a non-positive value means items never expire
      */
-    private val cache: LinkedHashMap<String, V>
+    val ttl: Long,
     /**
-     * Expires in seconds
+     * The max number of items in the cache
      */
-    var ttl: Long
-        private set
+    val capacity: Int,
+    /**
+     * The max total weight of items in the cache, a non-positive value means no weight bound
+     */
+    val maxWeight: Long = 0,
+    /**
+     * Estimate the weight of an item, every item weights 1 if no weigher is specified
+     */
+    val weigher: ((K, V) -> Int)? = null
+) {
+    companion object {
+        /**
+         * The max number of segments
+         * */
+        const val MAX_SEGMENTS = 16
+        /**
+         * A segment should hold at least so many items, or the LRU order degrades too much
+         * */
+        const val MIN_SEGMENT_CAPACITY = 32
+
+        fun computeNumSegments(capacity: Int): Int {
+            var n = 1
+            while (n < MAX_SEGMENTS && capacity / (n * 2) >= MIN_SEGMENT_CAPACITY) {
+                n *= 2
+            }
+            return n
+        }
+    }
+
+    private class Entry<V>(val value: V, val weight: Int, val expireAt: Long) {
+        fun isExpired(now: Long) = expireAt in 1..now
+    }
+
+    private inner class Segment(val capacity: Int, val maxWeight: Long) {
+        val lock = ReentrantLock()
+        val map = LinkedHashMap<K, Entry<V>>(16, 0.75f, true)
+        @Volatile
+        var size = 0
+        var weight = 0L
+
+        fun get(key: K, now: Long): V? {
+            lock.withLock {
+                val entry = map[key] ?: return null
+                if (entry.isExpired(now)) {
+                    removeEntry(key)
+                    expirations.increment()
+                    return null
+                }
+                return entry.value
+            }
+        }
+
+        fun put(key: K, value: V, now: Long): V? {
+            lock.withLock {
+                val old = putEntry(key, value, now)
+                evictIfNecessary()
+                return old?.takeUnless { it.isExpired(now) }?.value
+            }
+        }
+
+        fun remove(key: K, now: Long): V? {
+            lock.withLock {
+                return removeEntry(key)?.takeUnless { it.isExpired(now) }?.value
+            }
+        }
 
-    val size get() = cache.size
+        fun computeIfAbsent(key: K, now: Long, mappingFunction: (K) -> V): V {
+            lock.withLock {
+                val entry = map[key]
+                if (entry != null && !entry.isExpired(now)) {
+                    hits.increment()
+                    return entry.value
+                }
+
+                misses.increment()
+                val value = mappingFunction(key)
+                putEntry(key, value, now)
+                evictIfNecessary()
+                return value
+            }
+        }
+
+        fun evictExpired(now: Long) {
+            lock.withLock {
+                val it = map.entries.iterator()
+                while (it.hasNext()) {
+                    val entry = it.next().value
+                    if (entry.isExpired(now)) {
+                        it.remove()
+                        weight -= entry.weight
+                        expirations.increment()
+                    }
+                }
+                size = map.size
+            }
+        }
+
+        fun clear() {
+            lock.withLock {
+                map.clear()
+                weight = 0
+                size = 0
+            }
+        }
+
+        private fun putEntry(key: K, value: V, now: Long): Entry<V>? {
+            val w = weigher?.invoke(key, value)?.coerceAtLeast(0) ?: 1
+            val expireAt = if (ttlMillis > 0) now + ttlMillis else 0
+            val old = map.put(key, Entry(value, w, expireAt))
+            weight += w - (old?.weight ?: 0)
+            size = map.size
+            return old
+        }
+
+        private fun removeEntry(key: K): Entry<V>? {
+            val old = map.remove(key)
+            if (old != null) {
+                weight -= old.weight
+                size = map.size
+            }
+            return old
+        }
+
+        private fun evictIfNecessary() {
+            val it = map.entries.iterator()
+            while (isOverflow() && it.hasNext()) {
+                val entry = it.next().value
+                it.remove()
+                weight -= entry.weight
+                evictions.increment()
+            }
+            size = map.size
+        }
+
+        private fun isOverflow() = map.size > capacity || (maxWeight > 0 && weight > maxWeight)
+    }
+
+    private val ttlMillis = ttl * 1000
+
+    private val segments: List<Segment>
+
+    private val segmentMask: Int
+
+    private val hits = LongAdder()
+
+    private val misses = LongAdder()
+
+    private val evictions = LongAdder()
+
+    private val expirations = LongAdder()
+
+    /**
+     * The number of items in the cache, expired items who are not evicted yet are included
+     * */
+    val size get() = segments.sumOf { it.size }
+
+    /**
+     * The total weight of items in the cache
+     * */
+    val weight get() = segments.sumOf { it.lock.withLock { it.weight } }
+
+    /**
+     * The number of lookups who find an alive item
+     * */
+    val hitCount get() = hits.sum()
+
+    /**
+     * The number of lookups who find nothing or an expired item
+     * */
+    val missCount get() = misses.sum()
+
+    /**
+     * The number of items evicted because the cache is full
+     * */
+    val evictionCount get() = evictions.sum()
+
+    /**
+     * The number of items removed because they are expired
+     * */
+    val expirationCount get() = expirations.sum()
+
+    val hitRate: Double get() {
+        val total = hitCount + missCount
+        return if (total == 0L) 0.0 else 1.0 * hitCount / total
+    }
+
+    init {
+        require(capacity > 0) { "Capacity must be positive" }
+
+        val numSegments = computeNumSegments(capacity)
+        // round down so the total bounds are never exceeded
+        val segmentCapacity = (capacity / numSegments).coerceAtLeast(1)
+        val segmentMaxWeight = if (maxWeight > 0) (maxWeight / numSegments).coerceAtLeast(1) else 0
+        segments = List(numSegments) { Segment(segmentCapacity, segmentMaxWeight) }
+        segmentMask = numSegments - 1
+    }
 
     constructor(capacity: Int) : this(0, capacity)
 
@@ -27,59 +228,54 @@ class ConcurrentLRUCache<K, V> {
      * @param ttl      Time to live for items
      * @param capacity The max size of the cache
      */
-    constructor(ttl: Duration, capacity: Int) {
-        this.ttl = ttl.seconds
-        cache = object : LinkedHashMap<String, V>(capacity, 0.75f, true) {
-            override fun removeEldestEntry(eldest: Map.Entry<String, V>): Boolean {
-                return size > capacity
-            }
-        }
-    }
+    constructor(ttl: Duration, capacity: Int) : this(ttl.seconds, capacity)
 
     /**
-     * Construct a least recently used cache
+     * Construct a least recently used cache bounded by weight
      *
-     * @param ttl      Time to live for items, in seconds
-     * @param capacity The max size of the cache
+     * @param ttl       Time to live for items
+     * @param capacity  The max size of the cache
+     * @param maxWeight The max total weight of the cache
+     * @param weigher   Estimate the weight of an item
      */
-    constructor(ttl: Long, capacity: Int) {
-        this.ttl = ttl
-        cache = object : LinkedHashMap<String, V>(capacity, 0.75f, true) {
-            override fun removeEldestEntry(eldest: Map.Entry<String, V>): Boolean {
-                return size > capacity
-            }
-        }
-    }
+    constructor(ttl: Duration, capacity: Int, maxWeight: Long, weigher: (K, V) -> Int)
+            : this(ttl.seconds, capacity, maxWeight, weigher)
 
     operator fun get(key: K): V? {
-        val ttlKey = getTTLKey(key)
-        synchronized(cache) { return cache[ttlKey] }
+        val value = segmentFor(key).get(key, System.currentTimeMillis())
+        if (value != null) hits.increment() else misses.increment()
+        return value
     }
 
     fun put(key: K, value: V): V? {
-        val ttlKey = getTTLKey(key)
-        return synchronized(cache) { cache.put(ttlKey, value) }
+        return segmentFor(key).put(key, value, System.currentTimeMillis())
     }
 
     fun remove(key: K): V? {
-        val ttlKey = getTTLKey(key)
-        synchronized(cache) { return cache.remove(ttlKey) }
+        return segmentFor(key).remove(key, System.currentTimeMillis())
     }
 
+    /**
+     * Get the item associated with the key, or compute a new one if absent. The mapping function is called
+     * while the segment is locked, so it should be short.
+     * */
     fun computeIfAbsent(key: K, mappingFunction: (K) -> V): V {
-        val ttlKey = getTTLKey(key)
-        synchronized(cache) {
-            return cache[ttlKey] ?: mappingFunction(key).also { cache[ttlKey] = it }
-        }
+        return segmentFor(key).computeIfAbsent(key, System.currentTimeMillis(), mappingFunction)
     }
 
-    fun clear() = synchronized(cache) { cache.clear() }
+    /**
+     * Remove all expired items
+     * */
+    fun evictExpired() {
+        val now = System.currentTimeMillis()
+        segments.forEach { it.evictExpired(now) }
+    }
 
-    private fun getTTLKey(key: K): String {
-        if (ttl <= 0) {
-            return key.toString()
-        }
-        val secondsDivTTL = System.currentTimeMillis() / 1000 / ttl
-        return secondsDivTTL.toString() + "\t" + key.toString()
+    fun clear() = segments.forEach { it.clear() }
+
+    private fun segmentFor(key: K): Segment {
+        // spread the hash code so the higher bits also take effect
+        val h = key.hashCode()
+        return segments[(h xor (h ushr 16)) and segmentMask]
     }
 }
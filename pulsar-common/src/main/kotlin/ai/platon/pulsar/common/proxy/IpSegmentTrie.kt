@@ -0,0 +1,180 @@
+package ai.platon.pulsar.common.proxy
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A concurrent prefix trie of ips and ip segments. An ip is matched if the ip itself or any of its segments is added,
+ * for example, "192.168.1.5" is matched by "192.168.1" and by "192.168".
+ *
+ * Segments are passed without the trailing dot, as [ProxyEntry.outSegment] is, "192.168." is split into "192", "168"
+ * and an empty octet, so it matches no ip.
+ *
+ * A lookup walks at most four levels, so it costs constant time whatever the size of the trie is.
+ * The entries expire after [ttl], a negative ttl means the entries never expire. Since the ttl is fixed, the entries
+ * expire in the order they are added, expired entries are pruned from the head of an expiry queue by the updates and
+ * by [size], so the trie does not grow with the entries ever added.
+ *
+ * Lookups are lock free, updates which change the structure of the trie are serialized.
+ */
+class IpSegmentTrie @JvmOverloads constructor(val ttl: Duration = Duration.ofSeconds(-1)): Iterable<String> {
+    companion object {
+        private const val ABSENT = 0L
+        private const val NEVER_EXPIRE = Long.MAX_VALUE
+    }
+
+    private class Node {
+        val children = ConcurrentHashMap<String, Node>()
+        val expireTime = AtomicLong(ABSENT)
+    }
+
+    private class Expiry(val segment: String, val expireTime: Long)
+
+    private val root = Node()
+    private val expiries = ConcurrentLinkedQueue<Expiry>()
+    /**
+     * The number of the entries in the trie, the expired entries are counted until they are pruned
+     * */
+    private val numEntries = AtomicInteger()
+
+    /**
+     * The number of entries not expired, it takes constant time besides pruning the expired entries
+     * */
+    val size get() = pruneExpired(System.currentTimeMillis()).let { numEntries.get() }
+
+    fun isEmpty() = size == 0
+
+    /**
+     * Add an ip or an ip segment, return true if it's not present before
+     * */
+    @Synchronized
+    fun add(segment: String): Boolean {
+        val now = System.currentTimeMillis()
+        pruneExpired(now)
+
+        var node = root
+        segment.splitToSequence('.').forEach { octet -> node = node.children.computeIfAbsent(octet) { Node() } }
+
+        val expireTime = if (ttl.isNegative) NEVER_EXPIRE else now + ttl.toMillis()
+        val oldExpireTime = node.expireTime.getAndSet(expireTime)
+        if (oldExpireTime == ABSENT) {
+            numEntries.incrementAndGet()
+        }
+        if (expireTime != NEVER_EXPIRE) {
+            expiries.add(Expiry(segment, expireTime))
+        }
+
+        return oldExpireTime == ABSENT || oldExpireTime <= now
+    }
+
+    /**
+     * Remove an ip or an ip segment, the ips matched by a shorter segment are still matched
+     * */
+    @Synchronized
+    fun remove(segment: String): Boolean {
+        val now = System.currentTimeMillis()
+        pruneExpired(now)
+
+        val node = find(segment) ?: return false
+        val oldExpireTime = node.expireTime.getAndSet(ABSENT)
+        if (oldExpireTime != ABSENT) {
+            numEntries.decrementAndGet()
+            prune(segment)
+        }
+        return oldExpireTime != ABSENT && oldExpireTime > now
+    }
+
+    /**
+     * Check if the ip or segment, or any segment of it is added and not expired
+     * */
+    operator fun contains(ip: String): Boolean {
+        val now = System.currentTimeMillis()
+        var node = root
+        for (octet in ip.splitToSequence('.')) {
+            node = node.children[octet] ?: return false
+            if (isPresent(node, now)) {
+                return true
+            }
+        }
+        return false
+    }
+
+    @Synchronized
+    fun clear() {
+        root.children.clear()
+        expiries.clear()
+        numEntries.set(0)
+    }
+
+    override fun iterator(): Iterator<String> {
+        val now = System.currentTimeMillis()
+        val entries = mutableListOf<String>()
+        collect(root, "", now, entries)
+        return entries.iterator()
+    }
+
+    override fun toString() = joinToString()
+
+    /**
+     * Remove the entries expired before [now] from the head of the expiry queue, an expiry is stale if the entry is
+     * added again or removed after it's queued
+     * */
+    private fun pruneExpired(now: Long) {
+        if ((expiries.peek()?.expireTime ?: NEVER_EXPIRE) > now) {
+            return
+        }
+
+        synchronized(this) {
+            while ((expiries.peek()?.expireTime ?: NEVER_EXPIRE) <= now) {
+                val expiry = expiries.poll()
+                val node = find(expiry.segment) ?: continue
+                if (node.expireTime.compareAndSet(expiry.expireTime, ABSENT)) {
+                    numEntries.decrementAndGet()
+                    prune(expiry.segment)
+                }
+            }
+        }
+    }
+
+    /**
+     * Detach the nodes along the path of [segment] which hold no entry and have no child, from the leaf up
+     * */
+    private fun prune(segment: String) {
+        val path = mutableListOf(root)
+        for (octet in segment.splitToSequence('.')) {
+            path.add(path.last().children[octet] ?: return)
+        }
+
+        val octets = segment.split('.')
+        for (i in octets.indices.reversed()) {
+            val node = path[i + 1]
+            if (node.expireTime.get() != ABSENT || node.children.isNotEmpty()) {
+                break
+            }
+            path[i].children.remove(octets[i], node)
+        }
+    }
+
+    private fun find(segment: String): Node? {
+        var node = root
+        for (octet in segment.splitToSequence('.')) {
+            node = node.children[octet] ?: return null
+        }
+        return node
+    }
+
+    private fun collect(node: Node, prefix: String, now: Long, entries: MutableList<String>) {
+        node.children.forEach { (octet, child) ->
+            val segment = if (prefix.isEmpty()) octet else "$prefix.$octet"
+            if (isPresent(child, now)) {
+                entries.add(segment)
+            }
+            collect(child, segment, now, entries)
+        }
+    }
+
+    private fun isPresent(node: Node, now: Long) = node.expireTime.get().let { it != ABSENT && it > now }
+}
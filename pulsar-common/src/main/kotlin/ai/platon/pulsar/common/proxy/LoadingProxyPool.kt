@@ -3,17 +3,21 @@ package ai.platon.pulsar.common.proxy
 import ai.platon.pulsar.common.AppPaths
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.readable
+import com.google.common.util.concurrent.ThreadFactoryBuilder
 import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.nio.file.Files
 import java.time.Duration
-import java.time.Instant
-import java.util.concurrent.TimeUnit
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
 
 /**
  * Manage all external proxies
  * Check all unavailable proxies, recover them if possible.
  * This might take a long time, so it should be run in a separate thread
+ *
+ * The pool is refilled from the proxy loader in the background, when the free proxies drop to [lowWatermark]
+ * or a taker finds the pool exhausted, so the takers never wait for the loader themselves.
  */
 class LoadingProxyPool(
         val proxyLoader: ProxyLoader,
@@ -22,27 +26,35 @@ class LoadingProxyPool(
 
     private val log = LoggerFactory.getLogger(LoadingProxyPool::class.java)
 
+    companion object {
+        private val refillExecutor = Executors.newSingleThreadExecutor(
+                ThreadFactoryBuilder().setNameFormat("proxy-refill-%d").setDaemon(true).build())
+    }
+
     private val bannedIps get() = proxyLoader.bannedIps
     private val bannedSegments get() = proxyLoader.bannedSegments
+    private val refilling = AtomicBoolean()
 
-    @Throws(ProxyException::class)
-    override fun take(): ProxyEntry? {
-        lastActiveTime = Instant.now()
-
-        var i = 0
-        val maxRetry = 5
-        var proxy: ProxyEntry? = null
-        while (isActive && proxy == null && i++ < maxRetry && !Thread.currentThread().isInterrupted) {
-            if (freeProxies.isEmpty()) {
-                load()
-            }
+    val lowWatermark = capacity / 4
 
-            proxy = poll0()
+    /**
+     * Retrieve and remove the healthiest free proxy which is not banned
+     * */
+    override fun poll(): ProxyEntry? {
+        var proxy = super.poll()
+        while (proxy != null && isBanned(proxy)) {
+            proxy = super.poll()
+        }
+
+        if (size <= lowWatermark) {
+            refillAsync()
         }
 
         return proxy
     }
 
+    override fun onExhausted() = refillAsync()
+
     /**
      * The proxy may be recovered later
      */
@@ -57,7 +69,7 @@ class LoadingProxyPool(
     override fun report(proxyEntry: ProxyEntry) {
         log.info("Ban proxy <{}> after {} pages served in {} | total ban: {}, banned ips: {} | {}",
                 proxyEntry.outIp, proxyEntry.numSuccessPages, proxyEntry.elapsedTime.readable(),
-                numProxyBanned, bannedIps.size, proxyEntry)
+                numProxyBanned.get(), bannedIps.size, proxyEntry)
         val s = bannedSegments.chunked(20).joinToString("\n") { it.joinToString() }
         log.info("Banned segments ({}): {}", bannedSegments.size, s)
     }
@@ -81,12 +93,28 @@ class LoadingProxyPool(
         }
 
         if (banned) {
-            ++numProxyBanned
+            numProxyBanned.incrementAndGet()
             report(proxyEntry)
             // ban speed, proxy change speed
         }
     }
 
+    private fun refillAsync() {
+        if (!isActive || !refilling.compareAndSet(false, true)) {
+            return
+        }
+
+        refillExecutor.execute {
+            try {
+                load()
+            } catch (t: Throwable) {
+                log.warn("Failed to load proxies | {}", t.message)
+            } finally {
+                refilling.set(false)
+            }
+        }
+    }
+
     @Throws(ProxyException::class)
     private fun load() {
         proxyLoader.updateProxies(Duration.ZERO).asSequence()
@@ -96,23 +124,13 @@ class LoadingProxyPool(
                 .forEach { offer(it) }
     }
 
-    // Block until timeout or an available proxy entry returns
-    private fun poll0(): ProxyEntry? {
-        // Retrieves and removes the head of the queue
-        val proxy = try {
-            freeProxies.poll(pollingTimeout.toMillis(), TimeUnit.MILLISECONDS)
-        } catch (e: InterruptedException) {
-            Thread.currentThread().interrupt()
-            null
-        }?:return null
-
-        val banState = handleBanState(proxy).takeIf { it.isBanned }?.also {
-            numProxyBanned++
-            log.info("Proxy is banned <{}> | bp: {}, bh: {}, bs: {} | {}",
-                    it, numProxyBanned, bannedIps.size, bannedSegments.size, proxy.display)
-        }
+    private fun isBanned(proxy: ProxyEntry): Boolean {
+        val banState = handleBanState(proxy).takeIf { it.isBanned } ?: return false
 
-        return proxy.takeIf { banState == null }
+        numProxyBanned.incrementAndGet()
+        log.info("Proxy is banned <{}> | bp: {}, bh: {}, bs: {} | {}",
+                banState, numProxyBanned.get(), bannedIps.size, bannedSegments.size, proxy.display)
+        return true
     }
 
     private fun handleBanState(proxyEntry: ProxyEntry): ProxyEntry.BanState {
@@ -142,5 +160,5 @@ class LoadingProxyPool(
     }
 
     override fun toString(): String = String.format("total %d, free: %d, banH: %d banS: %d",
-            proxyEntries.size, freeProxies.size, bannedIps.size, bannedSegments.size)
+            proxyEntries.size, size, bannedIps.size, bannedSegments.size)
 }
@@ -57,6 +57,15 @@ class ProxyEntry(
     val servedDomains = ConcurrentHashMultiset.create<String>()
     val status = AtomicReference<Status>(Status.FREE)
     val testSpeed get() = accumResponseMillis.get() / numTests.get().coerceAtLeast(1) / 1000.0
+    /**
+     * The health score, the higher the better, it's computed from the success ratio of the served pages,
+     * the test speed and the connection losts
+     * */
+    val healthScore: Double get() {
+        val numSuccesses = numSuccessPages.get()
+        val successRatio = (1.0 + numSuccesses) / (2.0 + numSuccesses + numFailedPages.get())
+        return successRatio / (1.0 + testSpeed) / (1.0 + numConnectionLosts.get())
+    }
     val ttl get() = declaredTTL ?: (availableTime + PROXY_EXPIRED)
     val ttlDuration get() = Duration.between(Instant.now(), ttl).takeIf { !it.isNegative }
     val isExpired get() = willExpireAt(Instant.now())
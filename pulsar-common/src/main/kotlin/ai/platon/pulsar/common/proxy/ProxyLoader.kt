@@ -1,7 +1,6 @@
 package ai.platon.pulsar.common.proxy
 
 import ai.platon.pulsar.common.AppPaths
-import ai.platon.pulsar.common.concurrent.ConcurrentPassiveExpiringSet
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.readable
 import org.slf4j.LoggerFactory
@@ -36,8 +35,8 @@ abstract class ProxyLoader(conf: ImmutableConfig): AutoCloseable {
     var ipTimeToBan = conf.getDuration("proxy.ip.time.to.ban", Duration.ofHours(1))
     var segmentTimeToBan = conf.getDuration("proxy.segment.time.to.ban", Duration.ofHours(2))
 
-    val bannedIps = ConcurrentPassiveExpiringSet<String>(ipTimeToBan)
-    val bannedSegments = ConcurrentPassiveExpiringSet<String>(segmentTimeToBan)
+    val bannedIps = IpSegmentTrie(ipTimeToBan)
+    val bannedSegments = IpSegmentTrie(segmentTimeToBan)
     /**
      * The probability to choose a test ip if absent
      * */
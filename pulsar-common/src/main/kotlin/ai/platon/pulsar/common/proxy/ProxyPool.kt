@@ -4,6 +4,9 @@ import ai.platon.pulsar.common.*
 import ai.platon.pulsar.common.config.CapabilityTypes.PROXY_POOL_CAPACITY
 import ai.platon.pulsar.common.config.CapabilityTypes.PROXY_POOL_POLLING_TIMEOUT
 import ai.platon.pulsar.common.config.ImmutableConfig
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeoutOrNull
 import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.nio.file.Files
@@ -11,59 +14,130 @@ import java.nio.file.Path
 import java.nio.file.StandardOpenOption
 import java.time.Duration
 import java.time.Instant
-import java.util.concurrent.LinkedBlockingDeque
-import java.util.concurrent.TimeUnit
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListSet
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
 
 /**
  * Manage all external proxies
  * Check all unavailable proxies, recover them if possible.
  * This might take a long time, so it should be run in a separate thread
+ *
+ * The pool is thread safe and never blocks a thread on its own: the free proxies are kept in a concurrent skip list
+ * ordered by [ProxyEntry.healthScore], and [take] suspends until a proxy is offered or the timeout is reached.
  */
 open class ProxyPool(conf: ImmutableConfig): AutoCloseable {
 
     private val log = LoggerFactory.getLogger(ProxyPool::class.java)
 
+    /**
+     * A free proxy with its health score at the time it's offered, the score is fixed so the order is stable
+     * */
+    private class ScoredProxy(val proxyEntry: ProxyEntry, val score: Double, val sequence: Long): Comparable<ScoredProxy> {
+        override fun compareTo(other: ScoredProxy): Int {
+            val c = other.score.compareTo(score)
+            return if (c != 0) c else sequence.compareTo(other.sequence)
+        }
+    }
+
     protected val capacity: Int = conf.getInt(PROXY_POOL_CAPACITY, 100)
     protected val pollingTimeout: Duration = conf.getDuration(PROXY_POOL_POLLING_TIMEOUT, Duration.ofSeconds(20))
-    protected val proxyEntries = mutableSetOf<ProxyEntry>()
-    protected val freeProxies = LinkedBlockingDeque<ProxyEntry>(capacity)
-    protected var numProxyBanned = 0
+    /**
+     * All the proxies ever offered to this pool
+     * */
+    protected val proxyEntries: MutableSet<ProxyEntry> = ConcurrentHashMap.newKeySet()
+    protected val numProxyBanned = AtomicInteger()
     protected val closed = AtomicBoolean()
 
+    private val freeProxies = ConcurrentSkipListSet<ScoredProxy>()
+    /**
+     * The index of the free proxies, an item in [freeProxies] is stale if it's not in this index
+     * */
+    private val freeProxyIndex = ConcurrentHashMap<ProxyEntry, ScoredProxy>()
+    private val sequencer = AtomicLong()
+    /**
+     * Completed and replaced every time a proxy is offered, so the waiting coroutines wake up
+     * */
+    private val available = AtomicReference(CompletableDeferred<Unit>())
+
     /**
      * The probability to choose a test ip if absent
      * */
     val isActive get() = !closed.get() && AppContext.isActive
+    @Volatile
     var lastActiveTime = Instant.now()
 
-    operator fun contains(element: ProxyEntry): Boolean = freeProxies.contains(element)
+    operator fun contains(element: ProxyEntry): Boolean = freeProxyIndex.containsKey(element)
 
-    operator fun iterator(): MutableIterator<ProxyEntry> = freeProxies.iterator()
+    operator fun iterator(): MutableIterator<ProxyEntry> = freeProxyIndex.keys.iterator()
 
-    val size get() = freeProxies.size
+    val size get() = freeProxyIndex.size
 
-    fun clear() = freeProxies.clear()
+    fun isEmpty() = freeProxyIndex.isEmpty()
+
+    fun clear() {
+        freeProxyIndex.clear()
+        freeProxies.clear()
+    }
 
     open fun offer(proxyEntry: ProxyEntry): Boolean {
         proxyEntries.add(proxyEntry)
-        return freeProxies.offer(proxyEntry)
+
+        if (freeProxyIndex.size >= capacity) {
+            return false
+        }
+
+        val scoredProxy = ScoredProxy(proxyEntry, proxyEntry.healthScore, sequencer.incrementAndGet())
+        if (freeProxyIndex.putIfAbsent(proxyEntry, scoredProxy) != null) {
+            return false
+        }
+
+        freeProxies.add(scoredProxy)
+        available.getAndSet(CompletableDeferred()).complete(Unit)
+        return true
     }
 
+    /**
+     * Retrieve and remove the healthiest free proxy, or return null if there is no free proxy
+     * */
+    open fun poll(): ProxyEntry? {
+        while (true) {
+            val scoredProxy = freeProxies.pollFirst() ?: return null
+            if (freeProxyIndex.remove(scoredProxy.proxyEntry, scoredProxy)) {
+                return scoredProxy.proxyEntry
+            }
+        }
+    }
+
+    /**
+     * Take the healthiest free proxy, block the current thread for at most [pollingTimeout]
+     * */
+    @Throws(ProxyException::class)
+    open fun take(): ProxyEntry? = runBlocking { take(pollingTimeout) }
+
+    /**
+     * Take the healthiest free proxy, suspend until a proxy is offered, or return null if timeout
+     * */
     @Throws(ProxyException::class)
-    open fun take(): ProxyEntry? {
+    open suspend fun take(timeout: Duration): ProxyEntry? {
         lastActiveTime = Instant.now()
 
-        var retry = 3
-        while (retry-- > 0) {
-            try {
-                return freeProxies.poll(pollingTimeout.toMillis(), TimeUnit.MILLISECONDS)
-            } catch (e: ProxyRetryException) {
-                sleepSeconds(3)
+        return withTimeoutOrNull(timeout.toMillis()) {
+            var proxy: ProxyEntry? = null
+            while (proxy == null && isActive) {
+                // get the signal before polling, so an offer between the polling and the waiting is not missed
+                val signal = available.get()
+                proxy = poll()
+                if (proxy == null) {
+                    onExhausted()
+                    signal.await()
+                }
             }
+            proxy
         }
-
-        return null
     }
 
     /**
@@ -76,7 +150,7 @@ open class ProxyPool(conf: ImmutableConfig): AutoCloseable {
     open fun report(proxyEntry: ProxyEntry) {
         log.info("Ban proxy <{}> after {} pages served in {} | total ban: {} | {}",
                 proxyEntry.outIp, proxyEntry.numSuccessPages, proxyEntry.elapsedTime.readable(),
-                numProxyBanned, proxyEntry)
+                numProxyBanned.get(), proxyEntry)
     }
 
     open fun dump() {
@@ -95,14 +169,20 @@ open class ProxyPool(conf: ImmutableConfig): AutoCloseable {
         }
     }
 
-    override fun toString(): String = String.format("total %d, free: %d", proxyEntries.size, freeProxies.size)
+    override fun toString(): String = String.format("total %d, free: %d", proxyEntries.size, size)
 
     override fun close() {
         if (closed.compareAndSet(false, true)) {
+            available.get().complete(Unit)
             dump()
         }
     }
 
+    /**
+     * Called when a coroutine is going to wait for a proxy since there is no free one
+     * */
+    protected open fun onExhausted() {}
+
     protected fun dump(path: Path, proxyEntries: Collection<ProxyEntry>) {
         val content = proxyEntries.joinToString("\n") { it.serialize() }
         try {
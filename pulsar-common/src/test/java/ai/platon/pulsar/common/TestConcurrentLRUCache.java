@@ -8,8 +8,7 @@ import org.junit.Test;
 
 import java.util.concurrent.TimeUnit;
 
-import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertNull;
+import static org.junit.Assert.*;
 
 public class TestConcurrentLRUCache {
     private ConcurrentLRUCache<Integer, String> cache;
@@ -43,6 +42,36 @@ public class TestConcurrentLRUCache {
         assertNull(cache.get(6));
     }
 
+    @Test
+    public void testWeightBoundedLRUCache() {
+        ConcurrentLRUCache<Integer, String> weightedCache =
+                new ConcurrentLRUCache<>(0, 10, 20, (k, v) -> v.length());
+        for (int i = 0; i < 10; ++i) {
+            weightedCache.put(i, "aaaaa");
+        }
+
+        // every item weights 5, so only 4 items can be hold
+        assertEquals(4, weightedCache.getSize());
+        assertTrue(weightedCache.getWeight() <= 20);
+        assertEquals(6, weightedCache.getEvictionCount());
+        assertNull(weightedCache.get(0));
+        assertNotNull(weightedCache.get(9));
+        assertEquals(1, weightedCache.getHitCount());
+        assertEquals(1, weightedCache.getMissCount());
+    }
+
+    @Test
+    public void testStripedLRUCache() {
+        ConcurrentLRUCache<Integer, String> stripedCache = new ConcurrentLRUCache<>(1000);
+        for (int i = 0; i < 2000; ++i) {
+            stripedCache.put(i, "a" + i);
+        }
+
+        assertTrue(stripedCache.getSize() <= 1000);
+        assertNotNull(stripedCache.get(1999));
+        assertEquals("a1999", stripedCache.computeIfAbsent(1999, k -> "b" + k));
+    }
+
     @Ignore("Time consuming task, should be run separately")
     @Test
     public void testSmallLRUCacheExpires() throws InterruptedException {
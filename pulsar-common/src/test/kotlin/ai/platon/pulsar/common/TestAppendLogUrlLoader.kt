@@ -0,0 +1,77 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.collect.AppendLogUrlLoader
+import ai.platon.pulsar.common.collect.UrlGroup
+import ai.platon.pulsar.common.urls.Hyperlink
+import ai.platon.pulsar.common.urls.UrlAware
+import org.junit.After
+import org.junit.Test
+import java.nio.file.Files
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TestAppendLogUrlLoader {
+    private val directory = Files.createTempDirectory("url-log")
+    private val group = UrlGroup("", 0, 0, 1000)
+    private val urls = IntRange(1, 10_000).map { Hyperlink("https://www.example.com/item/$it") }
+
+    @After
+    fun teardown() {
+        directory.toFile().deleteRecursively()
+    }
+
+    @Test
+    fun testLoadExactlyOnce() {
+        val loader = AppendLogUrlLoader(directory, segmentSize = 64 * 1024)
+        loader.saveAll(urls, group)
+        assertEquals(urls.size, loader.countRemaining(group))
+
+        val sink = mutableListOf<UrlAware>()
+        loader.loadToNow(sink, 100, group)
+        assertEquals(100, sink.size)
+        assertEquals(urls.size - 100, loader.countRemaining(group))
+
+        while (loader.hasMore(group)) {
+            loader.loadToNow(sink, 1000, group)
+        }
+        assertEquals(urls.map { it.url }, sink.map { it.url })
+        assertEquals(0, loader.countRemaining(group))
+        // consumed segments are deleted
+        assertTrue { Files.list(directory.resolve(".0.0")).count() <= 2 }
+        loader.close()
+    }
+
+    @Test
+    fun testReopen() {
+        AppendLogUrlLoader(directory, segmentSize = 64 * 1024).use { loader ->
+            loader.saveAll(urls, group)
+            loader.loadToNow(mutableListOf(), 3000, group)
+        }
+
+        val loader = AppendLogUrlLoader(directory, segmentSize = 64 * 1024)
+        assertEquals(urls.size - 3000, loader.countRemaining())
+
+        val sink = mutableListOf<UrlAware>()
+        loader.loadToNow(sink, 1, group)
+        assertEquals(urls[3000].url, sink.first().url)
+        loader.close()
+    }
+
+    @Test
+    fun testHasMoreOnlyIfExpired() {
+        AppendLogUrlLoader(directory, segmentSize = 64 * 1024).use { loader ->
+            loader.saveAll(urls, group)
+            assertTrue { loader.hasMore(group) }
+
+            // a load starts the cool down
+            loader.loadTo(mutableListOf(), 100, group)
+            assertFalse { loader.isExpired }
+            assertFalse { loader.hasMore(group) }
+            assertEquals(urls.size - 100, loader.countRemaining(group))
+
+            loader.expire()
+            assertTrue { loader.hasMore(group) }
+        }
+    }
+}
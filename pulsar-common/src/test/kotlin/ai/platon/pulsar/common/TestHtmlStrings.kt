@@ -15,6 +15,34 @@ class TestHtmlStrings {
         assertTrue { html2.toString().contains("<meta charset=\"UTF-8\">") }
     }
 
+    @Test
+    fun testHTMLCharsetReplacerOnBytes() {
+        val html = "<html><head><meta charset=\"GBK\"><title>你好</title></head><body><div>世界</div></body></html>"
+        val bytes = replaceHTMLCharset(html.toByteArray(), DEFAULT_CHARSET_PATTERN)
+        assertEquals(html.replace("GBK", "UTF-8"), String(bytes))
+
+        // nothing to replace, the content is returned as is
+        val html2 = "<html><head></head><body><div>Hello World</div></body></html>".toByteArray()
+        assertTrue { html2 === replaceHTMLCharset(html2, DEFAULT_CHARSET_PATTERN) }
+    }
+
+    @Test
+    fun testIndexOfAscii() {
+        val bytes = "<html>世界<body a=1><a href=''>".toByteArray()
+        assertEquals(String(bytes).toByteArray().size - "<a href=''>".length, indexOfAscii(bytes, "<a "))
+        assertEquals(-1, indexOfAscii(bytes, "<a ", 0, 10))
+        assertEquals(-1, indexOfAscii(bytes, "</body>"))
+    }
+
+    @Test
+    fun isBlankBodyOnBytes() {
+        assertTrue(isBlankBody("....<body></body>....".toByteArray()))
+        assertTrue(isBlankBody("<script>....<body   >  \n  </body>....".toByteArray()))
+        assertFalse(isBlankBody("....<body>    body </body>....".toByteArray()))
+        assertFalse(isBlankBody("....<body>世界</body>....".toByteArray()))
+        assertFalse(isBlankBody("....<div></div>....".toByteArray()))
+    }
+
     @Test
     fun isBlankBody() {
         assertTrue(isBlankBody("....<body></body>...."))
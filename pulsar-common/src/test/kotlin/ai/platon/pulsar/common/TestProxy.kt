@@ -1,10 +1,19 @@
 package ai.platon.pulsar.common
 
+import ai.platon.pulsar.common.config.ImmutableConfig
+import ai.platon.pulsar.common.proxy.IpSegmentTrie
 import ai.platon.pulsar.common.proxy.ProxyEntry
+import ai.platon.pulsar.common.proxy.ProxyPool
 import ai.platon.pulsar.common.urls.Urls
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
 import org.junit.Test
 import java.net.URL
+import java.time.Duration
 import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
 import kotlin.test.assertTrue
 
 /**
@@ -38,4 +47,88 @@ class TestProxy {
             assertEquals(it.substringBefore(", "), ProxyEntry.parse(it)?.serialize()?.substringBefore(", "))
         }
     }
+
+    @Test
+    fun testIpSegmentTrie() {
+        val trie = IpSegmentTrie()
+        assertTrue(trie.add("58.218.200"))
+        assertFalse(trie.add("58.218.200"))
+        assertTrue(trie.add("117.90.220.193"))
+
+        assertTrue("58.218.200.226" in trie)
+        assertTrue("58.218.200" in trie)
+        assertFalse("58.218.201.226" in trie)
+        assertTrue("117.90.220.193" in trie)
+        assertFalse("117.90.220.194" in trie)
+        assertEquals(setOf("58.218.200", "117.90.220.193"), trie.toSet())
+
+        assertTrue(trie.remove("58.218.200"))
+        assertFalse("58.218.200.226" in trie)
+        assertEquals(1, trie.size)
+    }
+
+    @Test
+    fun testIpSegmentTrieShortSegment() {
+        val trie = IpSegmentTrie()
+        trie.add("192.168")
+        assertTrue("192.168.1.5" in trie)
+        assertTrue("192.168.1" in trie)
+        assertFalse("192.169.1.5" in trie)
+
+        // the trailing dot makes an empty octet
+        val trailingDot = IpSegmentTrie()
+        trailingDot.add("10.0.")
+        assertFalse("10.0.1.5" in trailingDot)
+    }
+
+    @Test
+    fun testIpSegmentTrieExpiring() {
+        val trie = IpSegmentTrie(Duration.ofMillis(200))
+        trie.add("58.218.200")
+        assertTrue("58.218.200.226" in trie)
+        Thread.sleep(300)
+        assertFalse("58.218.200.226" in trie)
+        assertTrue(trie.isEmpty())
+
+        // an entry added again is not expired by the expiry of the previous add
+        trie.add("117.90.220")
+        Thread.sleep(150)
+        trie.add("117.90.220")
+        Thread.sleep(100)
+        assertEquals(1, trie.size)
+        assertTrue("117.90.220.193" in trie)
+        Thread.sleep(200)
+        assertEquals(0, trie.size)
+        assertTrue(trie.add("117.90.220"))
+    }
+
+    @Test
+    fun testProxyPoolTakesHealthiestFirst() {
+        val proxyPool = ProxyPool(ImmutableConfig())
+        val weak = ProxyEntry("58.218.200.226", 6925).apply { numFailedPages.set(10) }
+        val healthy = ProxyEntry("58.218.200.228", 4169).apply { numSuccessPages.set(10) }
+        assertTrue(proxyPool.offer(weak))
+        assertTrue(proxyPool.offer(healthy))
+        assertFalse(proxyPool.offer(healthy))
+        assertEquals(2, proxyPool.size)
+
+        assertEquals(healthy, proxyPool.poll())
+        assertEquals(weak, proxyPool.poll())
+        assertNull(proxyPool.poll())
+    }
+
+    @Test
+    fun testProxyPoolSuspendTake() {
+        val proxyPool = ProxyPool(ImmutableConfig())
+        val proxy = ProxyEntry("58.218.200.226", 6925)
+
+        runBlocking {
+            assertNull(proxyPool.take(Duration.ofMillis(100)))
+
+            val taker = async { proxyPool.take(Duration.ofSeconds(10)) }
+            delay(100)
+            proxyPool.offer(proxy)
+            assertEquals(proxy, taker.await())
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.collect.ConcurrentFingerprintSet
+import ai.platon.pulsar.common.collect.CountingBloomFilter
+import ai.platon.pulsar.common.collect.UrlHistory
+import org.junit.Test
+import java.nio.file.Files
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TestUrlHistory {
+    private val urls = IntRange(1, 100_000).map { "https://www.example.com/item/$it" }
+
+    @Test
+    fun testFingerprintSet() {
+        val history = ConcurrentFingerprintSet(initialCapacity = 16)
+        urls.forEach { assertTrue { history.tryAdd(it) } }
+        urls.forEach { assertFalse { history.tryAdd(it) } }
+
+        assertEquals(urls.size, history.size)
+        assertTrue { history.numTables > 1 }
+        assertEquals(1, history.count(urls[0]))
+        assertEquals(0, history.count("https://www.example.com/item/0"))
+    }
+
+    @Test
+    fun testFingerprintSetCounts() {
+        val history = ConcurrentFingerprintSet(initialCapacity = 16)
+        val url = urls[0]
+        repeat(5) { history.tryAdd(url, 3) }
+        assertEquals(3, history.count(url))
+
+        // the count of keys in old tables is kept after growth
+        urls.forEach { history.tryAdd(it, 3) }
+        assertEquals(3, history.count(url))
+        assertTrue { history.tryAdd(urls[1], 3) }
+        assertEquals(2, history.count(urls[1]))
+    }
+
+    @Test
+    fun testConcurrentFingerprintSet() {
+        val history = ConcurrentFingerprintSet(initialCapacity = 16, storage = ConcurrentFingerprintSet.Storage.OFF_HEAP)
+        val added = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(8)
+        repeat(8) {
+            executor.submit { urls.forEach { if (history.tryAdd(it)) added.incrementAndGet() } }
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+
+        assertEquals(urls.size, added.get())
+        assertTrue { urls.all { it in history } }
+    }
+
+    @Test
+    fun testMappedFingerprintSet() {
+        val directory = Files.createTempDirectory("url-history")
+        ConcurrentFingerprintSet(1024, ConcurrentFingerprintSet.Storage.MAPPED, directory).use { history ->
+            urls.forEach { history.tryAdd(it) }
+        }
+
+        // reopen, the history survives
+        val history = ConcurrentFingerprintSet(1024, ConcurrentFingerprintSet.Storage.MAPPED, directory)
+        assertEquals(urls.size, history.size)
+        assertTrue { urls.all { it in history } }
+        assertFalse { "https://www.example.com/item/0" in history }
+    }
+
+    @Test
+    fun testCountingBloomFilter() {
+        val history = CountingBloomFilter(expectedInsertions = 10_000, fpp = 0.001)
+        urls.forEach { history.tryAdd(it, 3) }
+        assertTrue { history.numStages > 1 }
+        // no false negatives
+        assertTrue { urls.all { history.count(it) >= 1 } }
+
+        val url = urls[0]
+        repeat(5) { history.tryAdd(url, 3) }
+        assertEquals(3, history.count(url))
+
+        val falsePositives = IntRange(1, 100_000).count { "https://www.example.org/$it" in history }
+        assertTrue("Too many false positives: $falsePositives") { falsePositives < 500 }
+    }
+
+    @Test
+    fun testConcurrentCountingBloomFilter() {
+        val history = CountingBloomFilter(expectedInsertions = 10_000, fpp = 0.001)
+        val limit = 3
+        val added = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(8)
+        repeat(8) {
+            executor.submit { urls.take(1000).forEach { if (history.tryAdd(it, limit)) added.incrementAndGet() } }
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+
+        // a url is never taken beyond the limit, the false positives can only make it less
+        assertTrue { added.get() <= 1000 * limit }
+    }
+
+    private operator fun UrlHistory.contains(url: String) = count(url) > 0
+}
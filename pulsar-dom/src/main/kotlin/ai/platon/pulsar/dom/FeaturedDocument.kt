@@ -4,6 +4,12 @@ import ai.platon.pulsar.common.AppFiles
 import ai.platon.pulsar.common.AppPaths
 import ai.platon.pulsar.common.config.AppConstants.INTERNAL_URL_PREFIX
 import ai.platon.pulsar.common.math.vectors.isNotEmpty
+import ai.platon.pulsar.dom.features.FeatureMatrix
+import ai.platon.pulsar.dom.features.FeatureVector
+import ai.platon.pulsar.dom.features.defined.DNS
+import ai.platon.pulsar.dom.features.defined.HEIGHT
+import ai.platon.pulsar.dom.features.defined.TN
+import ai.platon.pulsar.dom.features.defined.WIDTH
 import ai.platon.pulsar.dom.nodes.forEach
 import ai.platon.pulsar.dom.nodes.forEachElement
 import ai.platon.pulsar.dom.nodes.node.ext.*
@@ -53,6 +59,22 @@ open class FeaturedDocument(val document: Document) {
 
     val fragments by lazy { DocumentFragments(this) }
 
+    /**
+     * The number of nodes in the document, including the document itself
+     * */
+    val numNodes by lazy {
+        featureMatrix?.numRows ?: run {
+            var n = 0
+            document.forEach(includeRoot = true) { ++n }
+            n
+        }
+    }
+
+    /**
+     * The features of all the nodes, or null if the features are not calculated by a matrix
+     * */
+    val featureMatrix: FeatureMatrix? get() = (document.features as? FeatureVector)?.matrix
+
     val documentOrNull get() = document.takeIf { isNotInternal() }
 
     constructor(baseUri: String): this(Document(baseUri))
@@ -86,11 +108,22 @@ open class FeaturedDocument(val document: Document) {
      * Calculate features depend on other features
      * */
     private fun calculateInducedFeatures() {
-        // Calculate text node density
         val unitArea = document.unitArea
-        document.forEach {
+        val matrix = featureMatrix
+        if (matrix == null) {
+            document.forEach {
+                // add a smooth number to make sure the dividend is not zero
+                it.textNodeDensity = 1.0 * it.numTextNodes / it.area.coerceAtLeast(1) * unitArea
+            }
+            return
+        }
+
+        // Calculate text node density over the rows
+        val data = matrix.data
+        matrix.forEachRow { offset ->
+            val area = data[offset + WIDTH].toInt() * data[offset + HEIGHT].toInt()
             // add a smooth number to make sure the dividend is not zero
-            it.textNodeDensity = 1.0 * it.numTextNodes / it.area.coerceAtLeast(1) * unitArea
+            data[offset + DNS] = 1.0 * data[offset + TN].toInt() / area.coerceAtLeast(1) * unitArea
         }
     }
 
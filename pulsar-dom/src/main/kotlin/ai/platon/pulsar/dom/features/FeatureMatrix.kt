@@ -0,0 +1,184 @@
+package ai.platon.pulsar.dom.features
+
+import org.apache.commons.math3.exception.DimensionMismatchException
+import org.apache.commons.math3.exception.OutOfRangeException
+import org.apache.commons.math3.exception.util.LocalizedFormats
+import org.apache.commons.math3.linear.ArrayRealVector
+import org.apache.commons.math3.linear.RealVector
+
+/**
+ * The features of all nodes in a document, stored in one row major primitive array.
+ *
+ * A row holds the features of a node, rows are allocated in the traversal order of the nodes, so the row of
+ * a node is the same as it's sequence. Nodes refer to their rows by [FeatureVector]s, which are light
+ * weight views into the matrix.
+ * */
+class FeatureMatrix(
+    /**
+     * The number of features of every node
+     * */
+    val numFeatures: Int,
+    initialRows: Int = DEFAULT_INITIAL_ROWS
+) {
+    companion object {
+        const val DEFAULT_INITIAL_ROWS = 1024
+    }
+
+    /**
+     * The underlying data, the feature j of row i is at i * numFeatures + j
+     * */
+    var data = DoubleArray(numFeatures * initialRows.coerceAtLeast(1))
+        private set
+
+    var numRows = 0
+        private set
+
+    /**
+     * Allocate a new row, all features of the row are zero
+     * */
+    fun addRow(): Int {
+        val required = (numRows + 1) * numFeatures
+        if (required > data.size) {
+            data = data.copyOf(maxOf(required, data.size * 2))
+        }
+        return numRows++
+    }
+
+    fun view(row: Int): FeatureVector {
+        checkRow(row)
+        return FeatureVector(this, row)
+    }
+
+    operator fun get(row: Int, feature: Int) = data[row * numFeatures + feature]
+
+    operator fun set(row: Int, feature: Int, value: Double) {
+        data[row * numFeatures + feature] = value
+    }
+
+    /**
+     * Copy a column, which is the feature of all nodes in traversal order
+     * */
+    fun column(feature: Int): DoubleArray {
+        val n = numFeatures
+        val d = data
+        return DoubleArray(numRows) { d[it * n + feature] }
+    }
+
+    /**
+     * Perform the given action for every row, the argument is the offset of the row in [data]
+     * */
+    inline fun forEachRow(action: (offset: Int) -> Unit) {
+        var offset = 0
+        for (i in 0 until numRows) {
+            action(offset)
+            offset += numFeatures
+        }
+    }
+
+    internal fun checkRow(row: Int) {
+        if (row < 0 || row >= numRows) {
+            throw OutOfRangeException(row, 0, numRows - 1)
+        }
+    }
+}
+
+/**
+ * A row of a [FeatureMatrix] as a [RealVector], reads and writes go to the matrix directly.
+ * Operations create new vectors return [ArrayRealVector]s detached from the matrix.
+ * */
+class FeatureVector(val matrix: FeatureMatrix, val row: Int): RealVector() {
+
+    private val offset = row * matrix.numFeatures
+
+    override fun getDimension() = matrix.numFeatures
+
+    override fun getEntry(index: Int): Double {
+        checkIndex(index)
+        return matrix.data[offset + index]
+    }
+
+    override fun setEntry(index: Int, value: Double) {
+        checkIndex(index)
+        matrix.data[offset + index] = value
+    }
+
+    override fun addToEntry(index: Int, increment: Double) {
+        checkIndex(index)
+        matrix.data[offset + index] += increment
+    }
+
+    override fun toArray(): DoubleArray {
+        val o = offset
+        return matrix.data.copyOfRange(o, o + dimension)
+    }
+
+    override fun copy(): RealVector = ArrayRealVector(toArray(), false)
+
+    override fun append(v: RealVector): RealVector = ArrayRealVector(toArray(), v.toArray())
+
+    override fun append(d: Double): RealVector = ArrayRealVector(toArray(), doubleArrayOf(d))
+
+    override fun getSubVector(index: Int, n: Int): RealVector {
+        checkIndex(index)
+        checkIndex(index + n - 1)
+        val o = offset + index
+        return ArrayRealVector(matrix.data.copyOfRange(o, o + n), false)
+    }
+
+    override fun setSubVector(index: Int, v: RealVector) {
+        checkIndex(index)
+        checkIndex(index + v.dimension - 1)
+        for (i in 0 until v.dimension) {
+            matrix.data[offset + index + i] = v.getEntry(i)
+        }
+    }
+
+    override fun isNaN(): Boolean {
+        val o = offset
+        return (o until o + dimension).any { matrix.data[it].isNaN() }
+    }
+
+    override fun isInfinite(): Boolean {
+        if (isNaN()) {
+            return false
+        }
+        val o = offset
+        return (o until o + dimension).any { matrix.data[it].isInfinite() }
+    }
+
+    override fun ebeMultiply(v: RealVector): RealVector {
+        checkDimension(v)
+        val values = toArray()
+        for (i in values.indices) values[i] *= v.getEntry(i)
+        return ArrayRealVector(values, false)
+    }
+
+    override fun ebeDivide(v: RealVector): RealVector {
+        checkDimension(v)
+        val values = toArray()
+        for (i in values.indices) values[i] /= v.getEntry(i)
+        return ArrayRealVector(values, false)
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is RealVector || other.isNaN() || isNaN() || other.dimension != dimension) return false
+        return (0 until dimension).all { getEntry(it) == other.getEntry(it) }
+    }
+
+    override fun hashCode(): Int {
+        return if (isNaN()) 9 else toArray().contentHashCode()
+    }
+
+    private fun checkIndex(index: Int) {
+        if (index < 0 || index >= dimension) {
+            throw OutOfRangeException(LocalizedFormats.INDEX, index, 0, dimension - 1)
+        }
+    }
+
+    private fun checkDimension(v: RealVector) {
+        if (v.dimension != dimension) {
+            throw DimensionMismatchException(v.dimension, dimension)
+        }
+    }
+}
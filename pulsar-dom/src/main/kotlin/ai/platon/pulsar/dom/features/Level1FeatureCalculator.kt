@@ -7,7 +7,6 @@ import ai.platon.pulsar.dom.features.defined.*
 import ai.platon.pulsar.dom.nodes.DOMRect
 import ai.platon.pulsar.dom.nodes.forEachElement
 import ai.platon.pulsar.dom.nodes.node.ext.*
-import org.apache.commons.math3.linear.ArrayRealVector
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics
 import org.jsoup.nodes.Document
 import org.jsoup.nodes.Element
@@ -28,7 +27,8 @@ class Level1FeatureCalculator: AbstractFeatureCalculator() {
     }
 
     override fun calculate(document: Document) {
-        NodeTraversor.traverse(Level1NodeFeatureCalculatorVisitor(), document)
+        val geometry = PackedGeometry.load(document)
+        NodeTraversor.traverse(Level1NodeFeatureCalculatorVisitor(geometry), document)
     }
 }
 
@@ -43,13 +43,24 @@ class ClassFactory : ai.platon.pulsar.common.ResourceLoader.ClassFactory {
     }
 }
 
-private class Level1NodeFeatureCalculatorVisitor: NodeVisitor {
+private class Level1NodeFeatureCalculatorVisitor(
+    /**
+     * The packed geometry of the document, if it's null, the geometry is parsed from the node attributes
+     * */
+    val geometry: PackedGeometry?
+): NodeVisitor {
     var sequence: Int = 0
         private set
 
+    /**
+     * The features of all nodes are stored in one matrix, the row of a node is it's sequence
+     * */
+    val matrix = FeatureMatrix(FeatureRegistry.registeredFeatures.size)
+
     // hit when the node is first seen
     override fun head(node: Node, depth: Int) {
-        node.features = ArrayRealVector(FeatureRegistry.registeredFeatures.size)
+        val row = matrix.addRow()
+        node.features = matrix.view(row)
 
         node.features[DEP] = depth.toDouble()
         node.features[SEQ] = sequence.toDouble()
@@ -179,10 +190,22 @@ private class Level1NodeFeatureCalculatorVisitor: NodeVisitor {
     }
 
     private fun getDOMRect(node: Node): DOMRect {
+        if (geometry != null) {
+            return if (node is TextNode) geometry.textRect(ordinalOf(node.parent()), node.siblingIndex())
+            else geometry.elementRect(ordinalOf(node))
+        }
+
         return if (node is TextNode) getDOMRectInternal("tv", node)
         else DOMRect.parseDOMRect(node.attr("vi"))
     }
 
+    /**
+     * The ordinal of the geometry record written by the browser, -1 if the browser has not seen the element
+     * */
+    private fun ordinalOf(node: Node?): Int {
+        return node?.attr(PackedGeometry.ATTR_ORDINAL)?.toIntOrNull() ?: -1
+    }
+
     private fun getDOMRectInternal(attrKey: String, node: TextNode): DOMRect {
         val parent = node.parent()
         val i = node.siblingIndex()
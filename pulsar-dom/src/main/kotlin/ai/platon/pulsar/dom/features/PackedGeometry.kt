@@ -0,0 +1,114 @@
+package ai.platon.pulsar.dom.features
+
+import ai.platon.pulsar.common.config.AppConstants
+import ai.platon.pulsar.dom.nodes.DOMRect
+import org.jsoup.nodes.Document
+import org.slf4j.LoggerFactory
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.*
+
+/**
+ * The geometry of the nodes in a document, written by the injected javascript as a packed block.
+ *
+ * The block is a hidden script node holding base64 encoded little endian floats:
+ * [version, numElements, record*], the browser numbers the elements under body in document order, body itself is
+ * element 0, and the i-th record belongs to the element whose [ATTR_ORDINAL] attribute is i. The order is not
+ * reliable on the jvm side since the document is parsed again: jsoup sees elements in noscript and template,
+ * splits invalid nesting created by scripts, etc. A record is [header, (left, top, width, height)?, (childIndex, left, top, width, height)*],
+ * the header is the number of text node rectangles * 2, plus 1 if the element has a rectangle.
+ *
+ * The block replaces the "vi" and "tv$i" attributes, so the rectangles are decoded once per document
+ * instead of being parsed from attribute strings node by node.
+ * */
+class PackedGeometry private constructor(
+    private val data: FloatArray,
+    /**
+     * The offset of the record of every element in [data]
+     * */
+    private val offsets: IntArray
+) {
+    companion object {
+        const val VERSION = 1
+        /**
+         * The attribute holds the ordinal of the geometry record of an element
+         * */
+        const val ATTR_ORDINAL = "gi"
+        private const val HEADER_SIZE = 2
+
+        private val log = LoggerFactory.getLogger(PackedGeometry::class.java)
+
+        /**
+         * Load the packed geometry block of the document, or null if there is no such block or it's broken
+         * */
+        fun load(document: Document): PackedGeometry? {
+            val script = document.getElementById(AppConstants.PULSAR_GEOMETRY_SECTION_ID) ?: return null
+            return decode(script.data())
+        }
+
+        fun decode(encoded: String): PackedGeometry? {
+            return kotlin.runCatching { decode0(encoded.trim()) }
+                .onFailure { log.warn("Malformed geometry block | {}", it.message) }
+                .getOrNull()
+        }
+
+        private fun decode0(encoded: String): PackedGeometry? {
+            val buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encoded)).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer()
+            val data = FloatArray(buffer.remaining()).also { buffer.get(it) }
+            if (data.size < HEADER_SIZE || data[0].toInt() != VERSION) {
+                return null
+            }
+
+            val numElements = data[1].toInt()
+            val offsets = IntArray(numElements)
+            var offset = HEADER_SIZE
+            for (i in 0 until numElements) {
+                offsets[i] = offset
+                val header = data[offset].toInt()
+                offset += 1 + (header and 1) * 4 + (header shr 1) * 5
+            }
+            require(offset <= data.size) { "Expect at least $offset values, actual ${data.size}" }
+
+            return PackedGeometry(data, offsets)
+        }
+    }
+
+    val numElements get() = offsets.size
+
+    /**
+     * The rectangle of the element with the given ordinal, an empty rectangle if it's unknown
+     * */
+    fun elementRect(ordinal: Int): DOMRect {
+        if (ordinal !in offsets.indices) {
+            return DOMRect()
+        }
+
+        val offset = offsets[ordinal]
+        return if (data[offset].toInt() and 1 == 0) DOMRect() else rectAt(offset + 1)
+    }
+
+    /**
+     * The rectangle of a text node, which is the child at [childIndex] of the element with the given ordinal,
+     * an empty rectangle if it's unknown
+     * */
+    fun textRect(parentOrdinal: Int, childIndex: Int): DOMRect {
+        if (parentOrdinal !in offsets.indices) {
+            return DOMRect()
+        }
+
+        val offset = offsets[parentOrdinal]
+        val header = data[offset].toInt()
+        var pos = offset + 1 + (header and 1) * 4
+        repeat(header shr 1) {
+            if (data[pos].toInt() == childIndex) {
+                return rectAt(pos + 1)
+            }
+            pos += 5
+        }
+        return DOMRect()
+    }
+
+    private fun rectAt(pos: Int): DOMRect {
+        return DOMRect(data[pos].toDouble(), data[pos + 1].toDouble(), data[pos + 2].toDouble(), data[pos + 3].toDouble())
+    }
+}
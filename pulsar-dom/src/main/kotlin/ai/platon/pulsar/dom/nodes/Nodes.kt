@@ -50,7 +50,7 @@ val STANDARD_ATTRIBUTES = setOf(
 )
 
 val TEMPORARY_ATTRIBUTES = setOf(
-        "_ps_lazy", "_ps_tp", "_seq", "_cw", "vi", "tv0", "tv1", "tv2", "tv3", "tv4", "tv5", "tv6"
+        "_ps_lazy", "_ps_tp", "_seq", "_cw", "vi", "gi", "tv0", "tv1", "tv2", "tv3", "tv4", "tv5", "tv6"
 )
 
 /**
@@ -399,8 +399,11 @@ private fun atomSlimHtml(node: Node): String {
     }
 }
 
-private fun createSlimImageHtml(node: Node): String = node.run { String.format("<img src='%s' vi='%s' alt='%s'/>",
-        absUrl("src"), attr("vi"), attr("alt")) }
+private fun createSlimImageHtml(node: Node): String = node.run {
+    // the geometry might come from a packed block rather than the "vi" attribute
+    val vi = if (width > 0 || height > 0) "$left $top $width $height" else attr("vi")
+    String.format("<img src='%s' vi='%s' alt='%s'/>", absUrl("src"), vi, attr("alt"))
+}
 
 val Node.key: String get() = "$location#$sequence"
 
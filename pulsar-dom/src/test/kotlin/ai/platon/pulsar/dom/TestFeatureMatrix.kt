@@ -0,0 +1,46 @@
+package ai.platon.pulsar.dom
+
+import ai.platon.pulsar.common.math.vectors.get
+import ai.platon.pulsar.dom.features.FeatureVector
+import ai.platon.pulsar.dom.features.defined.CH
+import ai.platon.pulsar.dom.features.defined.SEQ
+import ai.platon.pulsar.dom.nodes.forEach
+import ai.platon.pulsar.dom.nodes.node.ext.numChars
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class TestFeatureMatrix {
+    private val html = "<html><head><title>Hello</title></head>" +
+            "<body><div><p>Hello</p><p>World</p></div><a href='/'>home</a></body></html>"
+    private val doc = Documents.parse(html, "http://example.com/")
+
+    @Test
+    fun testFeaturesAreViewsOfTheMatrix() {
+        val matrix = assertNotNull(doc.featureMatrix)
+        assertEquals(doc.numNodes, matrix.numRows)
+
+        doc.document.forEach(includeRoot = true) {
+            val features = it.features
+            assertTrue { features is FeatureVector }
+            features as FeatureVector
+            assertSame(matrix, features.matrix)
+            // the row of a node is it's sequence
+            assertEquals(features.row.toDouble(), features[SEQ])
+        }
+    }
+
+    @Test
+    fun testWriteThrough() {
+        val body = doc.body
+        val row = (body.features as FeatureVector).row
+        assertEquals(14.0, body.features[CH])
+        assertEquals(body.numChars.toDouble(), doc.featureMatrix!![row, CH])
+        assertEquals(body.numChars.toDouble(), doc.featureMatrix!!.column(CH)[row])
+
+        body.features.setEntry(CH, 1.0)
+        assertEquals(1.0, doc.featureMatrix!![row, CH])
+    }
+}
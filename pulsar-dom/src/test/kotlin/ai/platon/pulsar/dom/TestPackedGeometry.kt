@@ -0,0 +1,108 @@
+package ai.platon.pulsar.dom
+
+import ai.platon.pulsar.common.config.AppConstants
+import ai.platon.pulsar.dom.features.PackedGeometry
+import ai.platon.pulsar.dom.nodes.node.ext.height
+import ai.platon.pulsar.dom.nodes.node.ext.left
+import ai.platon.pulsar.dom.nodes.node.ext.top
+import ai.platon.pulsar.dom.nodes.node.ext.width
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.*
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class TestPackedGeometry {
+    private val body = "<div gi='1'>Hello<img gi='2' src='a.png'></div><p gi='3'>World</p>"
+
+    /**
+     * The records of body, div, img and p, in document order
+     * */
+    private val records = listOf(
+        floatArrayOf(1f, 0f, 0f, 1200f, 800f),
+        floatArrayOf(3f, 10f, 20f, 300f, 40f, 0f, 10f, 22f, 50f, 16f),
+        floatArrayOf(1f, 60f, 20f, 100f, 40f),
+        floatArrayOf(2f, 0f, 10f, 70f, 60f, 16f)
+    )
+
+    @Test
+    fun testDecode() {
+        val geometry = assertNotNull(PackedGeometry.decode(encode(records)))
+        assertEquals(4, geometry.numElements)
+        assertEquals(300.0, geometry.elementRect(1).width)
+        assertEquals(22.0, geometry.textRect(1, 0).top)
+        assertEquals(true, geometry.elementRect(3).isEmpty)
+        assertEquals(16.0, geometry.textRect(3, 0).height)
+        assertEquals(true, geometry.textRect(3, 1).isEmpty)
+        assertEquals(true, geometry.elementRect(4).isEmpty)
+
+        assertNull(PackedGeometry.decode("not a block"))
+    }
+
+    @Test
+    fun testFeaturesFromPackedGeometry() {
+        val script = "<script type='application/octet-stream' id='${AppConstants.PULSAR_GEOMETRY_SECTION_ID}'>" +
+                encode(records) + "</script>"
+        // the attributes are ignored if there is a packed block
+        val html = "<html><body gi='0'>${body.replace("<div ", "<div vi='1 1 1 1' ")}$script</body></html>"
+        val doc = Documents.parse(html, "http://example.com/")
+
+        val div = doc.selectFirst("div")
+        assertEquals(20, div.top)
+        assertEquals(300, div.width)
+        val text = div.childNode(0)
+        assertEquals(22, text.top)
+        assertEquals(50, text.width)
+
+        val img = doc.selectFirst("img")
+        assertEquals(60, img.left)
+        assertEquals(100, img.width)
+
+        val p = doc.selectFirst("p")
+        assertEquals(0, p.width)
+        assertEquals(16, p.childNode(0).height)
+    }
+
+    @Test
+    fun testElementsNotSeenByBrowser() {
+        // the browser does not see the content of noscript and template as elements, but jsoup does
+        val script = "<script type='application/octet-stream' id='${AppConstants.PULSAR_GEOMETRY_SECTION_ID}'>" +
+                encode(listOf(records[0], floatArrayOf(0f), floatArrayOf(0f), records[1], records[2], records[3])) +
+                "</script>"
+        val html = "<html><body gi='0'><noscript gi='1'><img src='b.png'></noscript>" +
+                "<template gi='2'><span>Hidden</span></template>" +
+                "<div gi='3'>Hello<img gi='4' src='a.png'></div><p gi='5'>World</p>" +
+                "$script</body></html>"
+        val doc = Documents.parse(html, "http://example.com/")
+
+        assertEquals(0, doc.selectFirst("noscript img").width)
+        assertEquals(0, doc.selectFirst("template span").width)
+
+        val div = doc.selectFirst("div")
+        assertEquals(20, div.top)
+        assertEquals(300, div.width)
+        assertEquals(50, div.childNode(0).width)
+        assertEquals(100, doc.selectFirst("div img").width)
+        assertEquals(16, doc.selectFirst("p").childNode(0).height)
+    }
+
+    @Test
+    fun testFeaturesFromAttributes() {
+        val html = "<html><body><div vi='10 20 300 40' tv0='10 22 50 16'>Hello</div></body></html>"
+        val doc = Documents.parse(html, "http://example.com/")
+
+        val div = doc.selectFirst("div")
+        assertEquals(300, div.width)
+        assertEquals(22, div.childNode(0).top)
+    }
+
+    private fun encode(records: List<FloatArray>): String {
+        val size = 2 + records.sumOf { it.size }
+        val buffer = ByteBuffer.allocate(size * 4).order(ByteOrder.LITTLE_ENDIAN)
+        buffer.putFloat(PackedGeometry.VERSION.toFloat()).putFloat(records.size.toFloat())
+        records.forEach { record -> record.forEach { buffer.putFloat(it) } }
+        return Base64.getEncoder().encodeToString(buffer.array())
+    }
+}
@@ -42,6 +42,7 @@ import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 import static ai.platon.pulsar.common.PulsarParams.VAR_LOAD_OPTIONS;
@@ -137,6 +138,16 @@ final public class WebPage implements Comparable<WebPage> {
      */
     private volatile ByteBuffer tmpContent = null;
 
+    /**
+     * The fields not loaded from the database yet, they are loaded by the lazy field loader on first access
+     */
+    private volatile Set<GWebPage.Field> lazyFields = Collections.emptySet();
+
+    /**
+     * Load the given fields of the page with the given url from the database
+     */
+    private volatile BiFunction<String, String[], GWebPage> lazyFieldLoader = null;
+
     /**
      * If this page is fetched from internet
      */
@@ -475,6 +486,7 @@ final public class WebPage implements Comparable<WebPage> {
     }
 
     public void unsafeCloneGPage(WebPage page) {
+        page.loadLazyFields();
         unsafeSetGPage(GWebPage.newBuilder(page.unbox()).build());
     }
 
@@ -547,6 +559,28 @@ final public class WebPage implements Comparable<WebPage> {
         isLoaded = loaded;
     }
 
+    /**
+     * Check if there are fields not loaded from the database yet
+     */
+    public boolean hasLazyFields() {
+        return !lazyFields.isEmpty();
+    }
+
+    /**
+     * Set the loader for the fields which are not loaded by a projected database query. Fields already loaded are
+     * ignored, the others are loaded all together on the first access of any of them.
+     *
+     * @param fields The fields not loaded
+     * @param loader Load the given fields of the page with the given url
+     */
+    public void setLazyFieldLoader(
+            @NotNull Collection<GWebPage.Field> fields, @NotNull BiFunction<String, String[], GWebPage> loader) {
+        Set<GWebPage.Field> unloaded = EnumSet.noneOf(GWebPage.Field.class);
+        fields.stream().filter(field -> page.get(field.getIndex()) == null).forEach(unloaded::add);
+        lazyFieldLoader = unloaded.isEmpty() ? null : loader;
+        lazyFields = unloaded;
+    }
+
     public boolean isFetched() {
         return isFetched;
     }
@@ -1168,7 +1202,7 @@ final public class WebPage implements Comparable<WebPage> {
         if (tmpContent != null) {
             return tmpContent;
         }
-        return page.getContent();
+        return getPersistContent();
     }
 
     /**
@@ -1191,6 +1225,7 @@ final public class WebPage implements Comparable<WebPage> {
      */
     @Nullable
     public ByteBuffer getPersistContent() {
+        ensureLoaded(GWebPage.Field.CONTENT);
         return page.getContent();
     }
 
@@ -1275,6 +1310,7 @@ final public class WebPage implements Comparable<WebPage> {
      */
     public void setContent(@Nullable ByteBuffer value) {
         if (value != null) {
+            discardLazy(GWebPage.Field.CONTENT);
             page.setContent(value);
             isContentUpdated = true;
 
@@ -1287,7 +1323,7 @@ final public class WebPage implements Comparable<WebPage> {
     }
 
     public void clearPersistContent() {
-        tmpContent = page.getContent();
+        tmpContent = getPersistContent();
         page.setContent(null);
         setPersistContentLength(0);
     }
@@ -1567,20 +1603,26 @@ final public class WebPage implements Comparable<WebPage> {
 
     @NotNull
     public String getPageText() {
+        ensureLoaded(GWebPage.Field.PAGE_TEXT);
         return page.getPageText() == null ? "" : page.getPageText().toString();
     }
 
     public void setPageText(String value) {
-        if (value != null && !value.isEmpty()) page.setPageText(value);
+        if (value != null && !value.isEmpty()) {
+            discardLazy(GWebPage.Field.PAGE_TEXT);
+            page.setPageText(value);
+        }
     }
 
     @NotNull
     public String getContentText() {
+        ensureLoaded(GWebPage.Field.CONTENT_TEXT);
         return page.getContentText() == null ? "" : page.getContentText().toString();
     }
 
     public void setContentText(String textContent) {
         if (textContent != null && !textContent.isEmpty()) {
+            discardLazy(GWebPage.Field.CONTENT_TEXT);
             page.setContentText(textContent);
             page.setContentTextLen(textContent.length());
         }
@@ -1922,6 +1964,7 @@ final public class WebPage implements Comparable<WebPage> {
 
     @NotNull
     public PageModel getPageModel() {
+        ensureLoaded(GWebPage.Field.PAGE_MODEL);
         return PageModel.box(page.getPageModel());
     }
 
@@ -2055,6 +2098,49 @@ final public class WebPage implements Comparable<WebPage> {
         return firstIndexTime == null ? defaultValue : firstIndexTime;
     }
 
+    private void ensureLoaded(GWebPage.Field field) {
+        if (lazyFields.contains(field)) {
+            loadLazyFields();
+        }
+    }
+
+    /**
+     * Load all the lazy fields in one query, the loaded fields are not dirty so they are not written back
+     */
+    private synchronized void loadLazyFields() {
+        BiFunction<String, String[], GWebPage> loader = lazyFieldLoader;
+        Set<GWebPage.Field> fields = lazyFields;
+        if (loader == null || fields.isEmpty()) {
+            return;
+        }
+
+        lazyFieldLoader = null;
+        lazyFields = Collections.emptySet();
+
+        String[] names = fields.stream().map(GWebPage.Field::getName).toArray(String[]::new);
+        GWebPage loaded = loader.apply(url, names);
+        if (loaded != null) {
+            fields.forEach(field -> {
+                page.put(field.getIndex(), loaded.get(field.getIndex()));
+                page.clearDirty(field.getIndex());
+            });
+        }
+    }
+
+    /**
+     * The field is set explicitly, so it should not be overwritten by the lazy loader
+     */
+    private synchronized void discardLazy(GWebPage.Field field) {
+        if (lazyFields.contains(field)) {
+            Set<GWebPage.Field> fields = EnumSet.copyOf(lazyFields);
+            fields.remove(field);
+            lazyFields = fields;
+            if (fields.isEmpty()) {
+                lazyFieldLoader = null;
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,59 @@
+package ai.platon.pulsar.persist.gora;
+
+import ai.platon.pulsar.persist.gora.generated.GWebPage;
+import org.apache.gora.query.Query;
+import org.apache.gora.query.impl.ResultBase;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+
+/**
+ * The result of a query on a {@link LocalPageStore}, pages are read from the log one by one while iterating the
+ * keys in range.
+ */
+public class LocalPageResult extends ResultBase<String, GWebPage> {
+
+    private final LocalPageStore store;
+    private final NavigableSet<String> keys;
+    private final Iterator<String> iterator;
+    private final String[] fields;
+
+    public LocalPageResult(LocalPageStore store, Query<String, GWebPage> query, NavigableSet<String> keys) {
+        super(store, query);
+        this.store = store;
+        this.keys = keys;
+        this.iterator = keys.iterator();
+        this.fields = query.getFields() == null ? new String[0] : query.getFields();
+    }
+
+    @Override
+    protected boolean nextInner() {
+        while (iterator.hasNext()) {
+            String k = iterator.next();
+            // the key might be deleted after the iteration starts, the fields are projected as LocalPageStore.get does
+            GWebPage page = store.get(k, fields);
+            if (page != null) {
+                key = k;
+                persistent = page;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public float getProgress() {
+        return 0;
+    }
+
+    public int size() {
+        int totalSize = keys.size();
+        int intLimit = (int) limit;
+        return intLimit > 0 && totalSize > intLimit ? intLimit : totalSize;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -92,6 +92,7 @@ public enum Name {
     LAST_CONTENT_BYTES("C_LCB"),
     PERSIST_CONTENT_BYTES("CPCB"),
     AVE_CONTENT_BYTES("C_ACB"),
+    CONTENT_DIGEST("C_MD5"),
 
     META_KEYWORDS("meta_keywords"),
     META_DESCRIPTION("meta_description"),
@@ -54,7 +54,7 @@ class AutoDetectStorageProvider(val conf: ImmutableConfig) {
                 SystemUtils.IS_OS_WINDOWS -> return when {
                     conf.isDryRun -> FILE_BACKEND_STORE_CLASS
                     SystemUtils.IS_OS_WINDOWS && Runtimes.checkIfProcessRunning(".*mongod.exe .+") -> MONGO_STORE_CLASS
-                    else -> FILE_BACKEND_STORE_CLASS
+                    else -> LOCAL_STORE_CLASS
                 }
                 SystemUtils.IS_OS_LINUX -> return when {
                     conf.isDryRun -> FILE_BACKEND_STORE_CLASS
@@ -62,9 +62,9 @@ class AutoDetectStorageProvider(val conf: ImmutableConfig) {
                     Runtimes.checkIfProcessRunning(".+HMaster.+") -> HBASE_STORE_CLASS
                     Runtimes.checkIfProcessRunning(".+/usr/bin/mongod .+") -> MONGO_STORE_CLASS
                     Runtimes.checkIfProcessRunning(".+/tmp/.+extractmongod .+") -> MONGO_STORE_CLASS
-                    else -> FILE_BACKEND_STORE_CLASS
+                    else -> LOCAL_STORE_CLASS
                 }
-                else -> return FILE_BACKEND_STORE_CLASS
+                else -> return LOCAL_STORE_CLASS
             }
         }
 
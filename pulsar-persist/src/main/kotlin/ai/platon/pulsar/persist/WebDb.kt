@@ -2,9 +2,11 @@ package ai.platon.pulsar.persist
 
 import ai.platon.pulsar.common.Strings
 import ai.platon.pulsar.common.config.AppConstants.UNICODE_LAST_CODE_POINT
+import ai.platon.pulsar.common.config.CapabilityTypes.STORAGE_BATCH_PARALLELISM
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.urls.Urls
 import ai.platon.pulsar.common.urls.Urls.reverseUrlOrNull
+import ai.platon.pulsar.persist.gora.BatchDataStore
 import ai.platon.pulsar.persist.gora.db.DbIterator
 import ai.platon.pulsar.persist.gora.db.DbQuery
 import ai.platon.pulsar.persist.gora.generated.GWebPage
@@ -12,6 +14,9 @@ import org.apache.commons.collections4.CollectionUtils
 import org.apache.gora.filter.Filter
 import org.apache.gora.store.DataStore
 import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicLong
@@ -23,6 +28,26 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
         val dbGetAveMillis get() = TimeUnit.MILLISECONDS.convert(
             accumulateGetNanos.get(),  TimeUnit.NANOSECONDS) / dbGetCount.get().coerceAtLeast(1)
 
+        val dbLazyGetCount = AtomicLong()
+
+        /**
+         * The large fields which are not required to decide whether to fetch a page
+         * */
+        val heavyFields = listOf(
+            GWebPage.Field.CONTENT,
+            GWebPage.Field.PAGE_TEXT,
+            GWebPage.Field.CONTENT_TEXT,
+            GWebPage.Field.PAGE_MODEL
+        )
+
+        /**
+         * All fields except the heavy fields
+         * */
+        val metadataFields = GWebPage.Field.values()
+            .filterNot { it in heavyFields }
+            .map { it.getName() }
+            .toTypedArray()
+
         val dbPutCount = AtomicLong()
         val accumulatePutNanos = AtomicLong()
         val dbPutAveMillis get() = TimeUnit.MILLISECONDS.convert(
@@ -32,6 +57,12 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
     private val log = LoggerFactory.getLogger(WebDb::class.java)
     private val tracer = log.takeIf { it.isTraceEnabled }
     private val closed = AtomicBoolean()
+    /**
+     * The max number of concurrent single calls for stores without bulk support
+     * */
+    private val batchParallelism = conf.getInt(STORAGE_BATCH_PARALLELISM, 8)
+    private val lazyBatchPool = lazy { ForkJoinPool(batchParallelism) }
+    private val batchPool by lazyBatchPool
 
     val customStore: DataStore<String, GWebPage>? = null
     val store: DataStore<String, GWebPage> by lazy {
@@ -77,6 +108,56 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
         return null
     }
 
+    /**
+     * Returns the WebPage corresponding to the given url, only the metadata fields are loaded, and the heavy fields
+     * are loaded in a second query on first access.
+     *
+     * @param originalUrl the original url of the page
+     * @return the WebPage corresponding to the key or null if it cannot be found
+     * */
+    fun getLazy(originalUrl: String, norm: Boolean = false): WebPage? {
+        return getOrNull(originalUrl, norm, metadataFields)?.also { setLazyFieldLoader(it) }
+    }
+
+    /**
+     * Returns the WebPages corresponding to the given urls. The pages are read in bulk if the store is
+     * a [BatchDataStore], or by bounded parallel single calls otherwise.
+     *
+     * @param originalUrls the original urls of the pages
+     * @param fields the fields required in the WebPages. Pass null, to retrieve all fields
+     * @return the WebPages in the order of the urls, null if a page cannot be found
+     * */
+    fun getAll(originalUrls: Iterable<String>, norm: Boolean = false, fields: Array<String>? = null): List<WebPage?> {
+        val urlsAndKeys = originalUrls.map { Urls.normalizedUrlAndKey(it, norm) }
+        val keys = urlsAndKeys.map { it.second }.filter { it.isNotEmpty() }.distinct()
+        if (keys.isEmpty()) {
+            return urlsAndKeys.map { null }
+        }
+
+        tracer?.trace("Getting {} keys", keys.size)
+
+        val startTime = System.nanoTime()
+        val pages = getAll0(keys, fields)
+        dbGetCount.addAndGet(keys.size.toLong())
+        accumulateGetNanos.addAndGet(System.nanoTime() - startTime)
+
+        val boxedKeys = mutableSetOf<String>()
+        return urlsAndKeys.map { (url, key) ->
+            pages[key]
+                // a duplicate url gets a copy, so the pages never share the underlying record
+                ?.let { if (boxedKeys.add(key)) it else GWebPage.newBuilder(it).build() }
+                ?.let { WebPage.box(url, key, it, conf.toVolatileConfig()).also { it.isLoaded = true } }
+        }
+    }
+
+    /**
+     * Returns the WebPages corresponding to the given urls, only the metadata fields are loaded in bulk,
+     * see [getLazy]
+     * */
+    fun getAllLazy(originalUrls: Iterable<String>, norm: Boolean = false): List<WebPage?> {
+        return getAll(originalUrls, norm, metadataFields).onEach { it?.let { setLazyFieldLoader(it) } }
+    }
+
     /**
      * Returns the WebPage corresponding to the given url.
      *
@@ -132,7 +213,24 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
         return true
     }
 
-    fun putAll(pages: Iterable<WebPage>) = pages.forEach { put(it, false) }
+    /**
+     * Put all the pages. The pages are written in bulk if the store is a [BatchDataStore], or by bounded
+     * parallel single calls otherwise. NIL pages are ignored.
+     * */
+    fun putAll(pages: Iterable<WebPage>) {
+        val records = pages.filter { it.isNotNil && it.reversedUrl.isNotEmpty() }
+            .associate { it.reversedUrl to it.unbox() }
+        if (records.isEmpty()) {
+            return
+        }
+
+        tracer?.trace("Putting {} keys", records.size)
+
+        val startTime = System.nanoTime()
+        putAll0(records)
+        dbPutCount.addAndGet(records.size.toLong())
+        accumulatePutNanos.addAndGet(System.nanoTime() - startTime)
+    }
 
     @JvmOverloads
     fun delete(originalUrl: String, norm: Boolean = false): Boolean {
@@ -264,6 +362,57 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
         if (closed.compareAndSet(false, true)) {
             flush()
             store.close()
+            if (lazyBatchPool.isInitialized()) {
+                batchPool.shutdown()
+            }
+        }
+    }
+
+    private fun setLazyFieldLoader(page: WebPage) {
+        page.setLazyFieldLoader(heavyFields) { url, fields ->
+            dbLazyGetCount.incrementAndGet()
+            getOrNull(url, false, fields)?.unbox()
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun getAll0(keys: List<String>, fields: Array<String>?): Map<String, GWebPage> {
+        val batchStore = store as? BatchDataStore<String, GWebPage>
+        if (batchStore != null) {
+            return batchStore.getAll(keys, fields)
+        }
+
+        val pages = ConcurrentHashMap<String, GWebPage>()
+        runInBatchPool {
+            keys.parallelStream().forEach { key ->
+                val page = if (fields != null) store.get(key, fields) else store.get(key)
+                page?.let { pages[key] = it }
+            }
+        }
+        return pages
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun putAll0(records: Map<String, GWebPage>) {
+        val batchStore = store as? BatchDataStore<String, GWebPage>
+        if (batchStore != null) {
+            batchStore.putAll(records)
+            return
+        }
+
+        runInBatchPool {
+            records.entries.parallelStream().forEach { (key, page) -> store.put(key, page) }
+        }
+    }
+
+    /**
+     * A parallel stream runs in the pool it's submitted to, so the parallelism is bounded by the pool
+     * */
+    private fun runInBatchPool(action: () -> Unit) {
+        try {
+            batchPool.submit(Runnable { action() }).get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
         }
     }
 
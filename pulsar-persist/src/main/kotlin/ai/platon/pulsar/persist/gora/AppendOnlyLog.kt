@@ -0,0 +1,405 @@
+package ai.platon.pulsar.persist.gora
+
+import org.slf4j.LoggerFactory
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * A persistent key/value log for a single process.
+ *
+ * Records are appended to the active segment file, and a new segment is started when the active one is full.
+ * A record is never modified in place, an update appends a new record, and a delete appends a tombstone.
+ *
+ * The sorted key index maps every live key to the location of it's latest record, it's rebuilt by replaying the
+ * segments on open, so only the keys live on heap. A torn record at the tail of a segment, which is left by a crash,
+ * is detected by the checksum and truncated.
+ *
+ * Segments with too many dead records are rewritten by [compact].
+ *
+ * Record layout:
+ * ```
+ * int length | int crc32 | byte flags | short keyLength | key | value
+ * ```
+ * where length and crc32 cover everything after the crc32, and the value of a compressed record starts with the
+ * uncompressed length.
+ * */
+class AppendOnlyLog(
+    val directory: Path,
+    /**
+     * The max size of a segment file in bytes
+     * */
+    val segmentSize: Int = DEFAULT_SEGMENT_SIZE,
+    /**
+     * Values longer than this are compressed, values are never compressed if it's negative
+     * */
+    val compressThreshold: Int = DEFAULT_COMPRESS_THRESHOLD,
+    /**
+     * A segment is compacted if the ratio of dead bytes exceeds this
+     * */
+    val compactRatio: Double = DEFAULT_COMPACT_RATIO
+): AutoCloseable {
+    companion object {
+        const val DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024
+        const val DEFAULT_COMPRESS_THRESHOLD = 512
+        const val DEFAULT_COMPACT_RATIO = 0.5
+        const val SEGMENT_SUFFIX = ".log"
+
+        const val MAX_KEY_SIZE = 0xFFFF
+
+        private const val HEADER_SIZE = 8
+        private const val FLAG_COMPRESSED = 1
+        private const val FLAG_TOMBSTONE = 2
+    }
+
+    private data class Location(val segment: Int, val offset: Long, val size: Int)
+
+    private class Record(val key: String, val flags: Int, val value: ByteArray, val location: Location) {
+        val isTombstone get() = flags and FLAG_TOMBSTONE != 0
+    }
+
+    private class Segment(val id: Int, val path: Path) {
+        val channel: FileChannel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        @Volatile
+        var size = channel.size()
+        val liveBytes = AtomicLong()
+        val deadRatio get() = if (size == 0L) 0.0 else 1 - liveBytes.get().toDouble() / size
+    }
+
+    private val logger = LoggerFactory.getLogger(AppendOnlyLog::class.java)
+    private val index = ConcurrentSkipListMap<String, Location>()
+    private val segments = ConcurrentHashMap<Int, Segment>()
+    /**
+     * Readers hold the read lock, a segment is only closed with the write lock held
+     * */
+    private val segmentLock = ReentrantReadWriteLock()
+    /**
+     * Appends and index updates are serialized, so the order in the log is the order in the index
+     * */
+    private val appendLock = Any()
+    @Volatile
+    private var active: Segment
+    private val bytesRead0 = AtomicLong()
+
+    val size get() = index.size
+
+    /**
+     * The number of bytes read from the segments by [get]
+     * */
+    val bytesRead get() = bytesRead0.get()
+
+    val numSegments get() = segments.size
+
+    init {
+        Files.createDirectories(directory)
+        val ids = Files.list(directory).use { paths ->
+            paths.iterator().asSequence().map { it.fileName.toString() }
+                .filter { it.endsWith(SEGMENT_SUFFIX) }
+                .mapNotNull { it.removeSuffix(SEGMENT_SUFFIX).toIntOrNull() }
+                .toList()
+        }
+        ids.sorted().forEach { recover(Segment(it, segmentPath(it))) }
+        active = segments.values.maxByOrNull { it.id } ?: newSegment(0)
+    }
+
+    fun get(key: String): ByteArray? {
+        segmentLock.read {
+            val location = index[key] ?: return null
+            val segment = segments[location.segment] ?: return null
+            val buffer = readFully(segment.channel, location.offset, location.size)
+            bytesRead0.addAndGet(location.size.toLong())
+            return decode(buffer, location)?.let { decompress(it) }
+        }
+    }
+
+    fun put(key: String, value: ByteArray) {
+        append(key, value, 0)
+    }
+
+    /**
+     * Delete the key, return false if it does not exist
+     * */
+    fun delete(key: String): Boolean {
+        if (!index.containsKey(key)) {
+            return false
+        }
+        append(key, ByteArray(0), FLAG_TOMBSTONE)
+        return true
+    }
+
+    operator fun contains(key: String) = index.containsKey(key)
+
+    /**
+     * The live keys in range, both ends are inclusive and null means unbounded.
+     * The returned set is a view of the index, it reflects later updates.
+     * */
+    fun keys(startKey: String? = null, endKey: String? = null): NavigableSet<String> {
+        return when {
+            startKey != null && endKey != null -> index.subMap(startKey, true, endKey, true)
+            startKey != null -> index.tailMap(startKey, true)
+            endKey != null -> index.headMap(endKey, true)
+            else -> index
+        }.navigableKeySet()
+    }
+
+    fun flush() {
+        active.channel.force(false)
+    }
+
+    /**
+     * Rewrite the live records of the sealed segments with too many dead records to the active segment, and remove
+     * those segments.
+     *
+     * @return The number of removed segments
+     * */
+    @Synchronized
+    fun compact(): Int {
+        val candidates = segments.values
+            .filter { it !== active && it.deadRatio >= compactRatio }
+            .sortedBy { it.id }
+
+        candidates.forEach { compact(it) }
+        return candidates.size
+    }
+
+    /**
+     * Remove all records
+     * */
+    fun clear() {
+        segmentLock.write {
+            synchronized(appendLock) {
+                index.clear()
+                segments.values.forEach { it.channel.close(); Files.deleteIfExists(it.path) }
+                segments.clear()
+                active = newSegment(0)
+            }
+        }
+    }
+
+    override fun close() {
+        segmentLock.write {
+            synchronized(appendLock) {
+                kotlin.runCatching { flush() }.onFailure { logger.warn("Failed to flush | {}", it.message) }
+                segments.values.forEach { it.channel.close() }
+            }
+        }
+    }
+
+    private fun append(key: String, value: ByteArray, flags: Int) {
+        val compressed = if (compressThreshold in 0 until value.size) compress(value) else null
+        val buffer = if (compressed != null && compressed.size < value.size) {
+            encode(key, compressed, flags or FLAG_COMPRESSED)
+        } else {
+            encode(key, value, flags)
+        }
+
+        synchronized(appendLock) {
+            appendLocked(key, buffer, flags)
+        }
+    }
+
+    private fun appendLocked(key: String, buffer: ByteBuffer, flags: Int) {
+        val recordSize = buffer.remaining()
+        if (active.size > 0 && active.size + recordSize > segmentSize) {
+            active.channel.force(false)
+            active = newSegment(active.id + 1)
+        }
+
+        val segment = active
+        val offset = segment.size
+        var position = offset
+        while (buffer.hasRemaining()) {
+            position += segment.channel.write(buffer, position)
+        }
+        segment.size = position
+
+        val location = Location(segment.id, offset, recordSize)
+        val old = if (flags and FLAG_TOMBSTONE != 0) {
+            index.remove(key)
+        } else {
+            segment.liveBytes.addAndGet(recordSize.toLong())
+            index.put(key, location)
+        }
+        old?.let { segments[it.segment]?.liveBytes?.addAndGet(-it.size.toLong()) }
+    }
+
+    private fun compact(segment: Segment) {
+        val isOldest = segments.keys.minOrNull() == segment.id
+        var numMoved = 0
+        scan(segment) { record, buffer ->
+            synchronized(appendLock) {
+                if (record.isTombstone) {
+                    // a tombstone hides the records in older segments, it can be dropped if there is no older segment
+                    if (!isOldest && !index.containsKey(record.key)) {
+                        appendLocked(record.key, buffer, record.flags)
+                    }
+                } else if (index[record.key] == record.location) {
+                    appendLocked(record.key, buffer, record.flags)
+                    ++numMoved
+                }
+            }
+            true
+        }
+
+        // the moved records must be durable before the old ones are removed
+        flush()
+        segmentLock.write {
+            segments.remove(segment.id)
+            segment.channel.close()
+            Files.deleteIfExists(segment.path)
+        }
+        logger.info("Compacted segment {}, {} records are moved", segment.id, numMoved)
+    }
+
+    /**
+     * Replay the segment to rebuild the index, a broken tail is truncated
+     * */
+    private fun recover(segment: Segment) {
+        segments[segment.id] = segment
+        val end = scan(segment) { record, _ ->
+            val old = if (record.isTombstone) {
+                index.remove(record.key)
+            } else {
+                segment.liveBytes.addAndGet(record.location.size.toLong())
+                index.put(record.key, record.location)
+            }
+            old?.let { segments[it.segment]?.liveBytes?.addAndGet(-it.size.toLong()) }
+            true
+        }
+
+        if (end < segment.size) {
+            logger.warn("Segment {} is truncated from {} to {}, the tail is broken", segment.id, segment.size, end)
+            segment.channel.truncate(end)
+            segment.size = end
+        }
+    }
+
+    /**
+     * Read all the records in the segment sequentially
+     *
+     * @return The end position of the last good record
+     * */
+    private fun scan(segment: Segment, action: (Record, ByteBuffer) -> Boolean): Long {
+        var position = 0L
+        val size = segment.size
+        while (position + HEADER_SIZE <= size) {
+            val length = readFully(segment.channel, position, 4).int
+            if (length <= 0 || position + HEADER_SIZE + length > size) {
+                break
+            }
+
+            val recordSize = HEADER_SIZE + length
+            val buffer = readFully(segment.channel, position, recordSize)
+            val record = decode(buffer.duplicate(), Location(segment.id, position, recordSize)) ?: break
+            if (!action(record, buffer)) {
+                break
+            }
+            position += recordSize
+        }
+        return position
+    }
+
+    private fun newSegment(id: Int): Segment {
+        return Segment(id, segmentPath(id)).also { segments[id] = it }
+    }
+
+    private fun segmentPath(id: Int) = directory.resolve(String.format("%08d", id) + SEGMENT_SUFFIX)
+
+    private fun readFully(channel: FileChannel, position: Long, size: Int): ByteBuffer {
+        val buffer = ByteBuffer.allocate(size)
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break
+            }
+        }
+        buffer.flip()
+        return buffer
+    }
+
+    private fun encode(key: String, value: ByteArray, flags: Int): ByteBuffer {
+        val keyBytes = key.toByteArray(StandardCharsets.UTF_8)
+        require(keyBytes.size <= MAX_KEY_SIZE) { "Key is too long | ${keyBytes.size}" }
+        val length = 1 + 2 + keyBytes.size + value.size
+        val buffer = ByteBuffer.allocate(HEADER_SIZE + length)
+        buffer.putInt(length).putInt(0)
+            .put(flags.toByte()).putShort(keyBytes.size.toShort()).put(keyBytes).put(value)
+        buffer.putInt(4, checksum(buffer.array(), HEADER_SIZE, length))
+        buffer.flip()
+        return buffer
+    }
+
+    /**
+     * Decode a record, or return null if the record is broken
+     * */
+    private fun decode(buffer: ByteBuffer, location: Location): Record? {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null
+        }
+
+        val length = buffer.int
+        val crc = buffer.int
+        if (length != buffer.remaining() || checksum(buffer.array(), HEADER_SIZE, length) != crc) {
+            return null
+        }
+
+        val flags = buffer.get().toInt()
+        val keyBytes = ByteArray(buffer.short.toInt() and MAX_KEY_SIZE)
+        buffer.get(keyBytes)
+        val value = ByteArray(buffer.remaining())
+        buffer.get(value)
+        return Record(String(keyBytes, StandardCharsets.UTF_8), flags, value, location)
+    }
+
+    private fun checksum(bytes: ByteArray, offset: Int, length: Int): Int {
+        return CRC32().also { it.update(bytes, offset, length) }.value.toInt()
+    }
+
+    private fun compress(value: ByteArray): ByteArray {
+        val out = ByteArrayOutputStream(value.size / 2 + 16)
+        DataOutputStream(out).writeInt(value.size)
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        try {
+            DeflaterOutputStream(out, deflater).use { it.write(value) }
+        } finally {
+            deflater.end()
+        }
+        return out.toByteArray()
+    }
+
+    private fun decompress(record: Record): ByteArray {
+        if (record.flags and FLAG_COMPRESSED == 0) {
+            return record.value
+        }
+
+        val buffer = ByteBuffer.wrap(record.value)
+        val value = ByteArray(buffer.int)
+        val inflater = Inflater()
+        try {
+            inflater.setInput(record.value, 4, record.value.size - 4)
+            var n = 0
+            while (n < value.size && !inflater.finished()) {
+                n += inflater.inflate(value, n, value.size - n)
+            }
+            return value
+        } finally {
+            inflater.end()
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ai.platon.pulsar.persist.gora
+
+import org.apache.gora.persistency.Persistent
+
+/**
+ * A data store which reads and writes a batch of records in a few round trips, for example, a `$in` query and a
+ * `bulkWrite` in MongoDB, or a batch get/put in HBase.
+ *
+ * Stores not implementing this interface are accessed by bounded parallel single calls, see WebDb.getAll.
+ * */
+interface BatchDataStore<K, T : Persistent> {
+    /**
+     * Get the records with the given keys, keys not found are absent in the result
+     *
+     * @param keys The keys
+     * @param fields The fields required in the records, null to retrieve all fields
+     * */
+    fun getAll(keys: Collection<K>, fields: Array<String>?): Map<K, T>
+
+    /**
+     * Put all the records, only the dirty fields are written as [org.apache.gora.store.DataStore.put] does
+     * */
+    fun putAll(records: Map<K, T>)
+}
@@ -15,36 +15,71 @@ import java.nio.file.Path
 import java.time.Duration
 import java.time.Instant
 import java.time.temporal.ChronoUnit
+import java.util.concurrent.atomic.AtomicLong
 
 /**
- * A very simple file backend storage for Web pages
+ * A very simple file backend storage for Web pages, the pages live in memory and only the content is written to
+ * files. It serves the local files as a mock site in dry run mode, use [LocalPageStore] for real deployments.
  * */
 class FileBackendPageStore(
         private val persistDirectory: Path = AppPaths.LOCAL_STORAGE_DIR
-) : MemStore<String, GWebPage>() {
+) : MemStore<String, GWebPage>(), BatchDataStore<String, GWebPage> {
 
     private val log = LoggerFactory.getLogger(FileBackendPageStore::class.java)
     private val unsafeConf = VolatileConfig.UNSAFE
-
+    private val bytesRead0 = AtomicLong()
+    private val putLock = Any()
+
+    /**
+     * The number of bytes read from the content files
+     * */
+    val bytesRead get() = bytesRead0.get()
+
+    /**
+     * The fields not in the projection are left null in the returned page, and the content file is not read if
+     * the content is not in the projection
+     * */
     override fun get(reversedUrl: String, vararg fields: String): GWebPage? {
-        val page = map[reversedUrl] as? GWebPage ?: read(reversedUrl)
-        // return getPersistent(page, getFieldsToQuery(fields))
-        return page
+        if (fields.isEmpty()) {
+            return map[reversedUrl] as? GWebPage ?: read(reversedUrl, true)
+        }
+
+        val withContent = GWebPage.Field.CONTENT.getName() in fields
+        val page = map[reversedUrl] as? GWebPage ?: read(reversedUrl, withContent) ?: return null
+        return getPersistent(page, arrayOf(*fields)).also { it.clearDirty() }
     }
 
+    /**
+     * The dirty fields are merged into the existing record, so a page got with a projection never replaces the full
+     * record, and the content file is written only if the content is changed
+     * */
     override fun put(reversedUrl: String, page: GWebPage) {
-        super.put(reversedUrl, page)
-
-        Urls.unreverseUrlOrNull(reversedUrl)?.let {
-            write(WebPage.box(it, page, unsafeConf))
+        val url = Urls.unreverseUrlOrNull(reversedUrl)
+        synchronized(putLock) {
+            val oldPage = map[reversedUrl] as? GWebPage ?: read(reversedUrl, true)
+            val merged = merge(oldPage, page)
+            super.put(reversedUrl, merged)
+
+            if (url != null && (oldPage == null || page.isDirty(GWebPage.Field.CONTENT.index))) {
+                write(WebPage.box(url, merged, unsafeConf))
+            }
         }
     }
 
+    override fun getAll(keys: Collection<String>, fields: Array<String>?): Map<String, GWebPage> {
+        val projection = fields ?: arrayOf()
+        return keys.mapNotNull { key -> get(key, *projection)?.let { key to it } }.toMap()
+    }
+
+    override fun putAll(records: Map<String, GWebPage>) {
+        records.forEach { (key, page) -> put(key, page) }
+    }
+
     override fun getSchemaName() = "FileBackendPageStore"
 
     override fun getFields(): Array<String> = GWebPage._ALL_FIELDS
 
-    private fun read(reversedUrl: String): GWebPage? {
+    private fun read(reversedUrl: String, withContent: Boolean): GWebPage? {
         val url = Urls.unreverseUrlOrNull(reversedUrl) ?: return null
         val filename = AppPaths.fromUri(url, "", ".htm")
         val path = persistDirectory.resolve(filename)
@@ -52,7 +87,8 @@ class FileBackendPageStore(
         log.takeIf { it.isTraceEnabled }?.trace("Getting $reversedUrl $filename " + Files.exists(path))
 
         if (Files.exists(path)) {
-            val content = Files.readAllBytes(path)
+            val content = if (withContent) Files.readAllBytes(path) else null
+            content?.let { bytesRead0.addAndGet(it.size.toLong()) }
             // val lastModified = Files.getLastModifiedTime(path).toInstant()
             // never expire, so it serves as a mock site
             val lastModified = Instant.now()
@@ -63,6 +99,20 @@ class FileBackendPageStore(
         return null
     }
 
+    private fun merge(oldPage: GWebPage?, page: GWebPage): GWebPage {
+        if (oldPage == null || oldPage === page) {
+            return page
+        }
+
+        GWebPage.Field.values().forEach {
+            val i = it.index
+            if (page.isDirty(i)) {
+                oldPage.put(i, page.get(i))
+            }
+        }
+        return oldPage
+    }
+
     private fun write(page: WebPage) {
         val filename = AppPaths.fromUri(page.url, "", ".htm")
         val path = persistDirectory.resolve(filename)
@@ -72,7 +122,7 @@ class FileBackendPageStore(
         page.content?.let { Files.write(path, it.array()) }
     }
 
-    private fun newSuccessPage(url: String, lastModified: Instant, content: ByteArray): WebPage {
+    private fun newSuccessPage(url: String, lastModified: Instant, content: ByteArray?): WebPage {
         val page = WebPage.newWebPage(url, VolatileConfig.UNSAFE)
         page.also {
             it.location = url
@@ -84,7 +134,7 @@ class FileBackendPageStore(
             it.protocolStatus = ProtocolStatus.STATUS_SUCCESS
         }
 
-        page.content = ByteBuffer.wrap(content)
+        content?.let { page.content = ByteBuffer.wrap(it) }
 
         return page
     }
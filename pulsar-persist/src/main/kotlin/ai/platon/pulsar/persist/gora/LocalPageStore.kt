@@ -0,0 +1,203 @@
+package ai.platon.pulsar.persist.gora
+
+import ai.platon.pulsar.common.AppPaths
+import ai.platon.pulsar.common.chrono.scheduleAtFixedRate
+import ai.platon.pulsar.common.config.CapabilityTypes.STORAGE_PREFERRED_SCHEMA_NAME
+import ai.platon.pulsar.persist.gora.generated.GWebPage
+import org.apache.avro.io.DecoderFactory
+import org.apache.avro.io.EncoderFactory
+import org.apache.avro.specific.SpecificDatumReader
+import org.apache.avro.specific.SpecificDatumWriter
+import org.apache.gora.memory.store.MemStore
+import org.apache.gora.query.Query
+import org.apache.gora.query.Result
+import org.slf4j.LoggerFactory
+import java.io.ByteArrayOutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Duration
+import java.util.*
+
+/**
+ * An embedded persistent page store for single node deployments.
+ *
+ * Pages are Avro encoded and appended to an [AppendOnlyLog] in the local storage directory, one directory
+ * per schema. Only the keys, which are reversed urls, are kept in memory, so range scans by [WebDb.scan] and
+ * [WebDb.query] work as other stores. The log is compacted in background.
+ *
+ * Like other Gora stores, only the dirty fields of a page are written, so a page loaded with a field projection
+ * does not erase the fields not loaded.
+ * */
+class LocalPageStore(
+    private val baseDirectory: Path = AppPaths.LOCAL_STORAGE_DIR
+) : MemStore<String, GWebPage>(), BatchDataStore<String, GWebPage> {
+    companion object {
+        val COMPACT_INTERVAL: Duration = Duration.ofMinutes(10)
+        private const val NUM_STRIPES = 64
+    }
+
+    private val logger = LoggerFactory.getLogger(LocalPageStore::class.java)
+    private val writer = SpecificDatumWriter(GWebPage::class.java)
+    private val reader = SpecificDatumReader(GWebPage::class.java)
+    /**
+     * A put is a read-modify-write, puts and deletes on the same key are serialized
+     * */
+    private val stripes = Array(NUM_STRIPES) { Any() }
+    @Volatile
+    private var log0: AppendOnlyLog? = null
+    private var compactTimer: Timer? = null
+    private val log get() = log0 ?: openLog()
+
+    val directory: Path get() = baseDirectory.resolve(schemaName)
+
+    val size get() = log.size
+
+    /**
+     * The number of bytes read from the log
+     * */
+    val bytesRead get() = log0?.bytesRead ?: 0L
+
+    /**
+     * A page is read and decoded as a whole record, the fields not in the projection are left null in the
+     * returned page, as other Gora stores do
+     * */
+    override fun get(reversedUrl: String, vararg fields: String): GWebPage? {
+        val page = log.get(reversedUrl)?.let { decode(it) } ?: return null
+        if (fields.isEmpty()) {
+            return page
+        }
+
+        return getPersistent(page, arrayOf(*fields)).also { it.clearDirty() }
+    }
+
+    override fun put(reversedUrl: String, page: GWebPage) {
+        synchronized(stripeOf(reversedUrl)) {
+            log.put(reversedUrl, encode(merge(log.get(reversedUrl)?.let { decode(it) }, page)))
+        }
+    }
+
+    override fun delete(reversedUrl: String): Boolean {
+        // serialized with puts, so a concurrent read-merge-write can not bring the deleted page back
+        synchronized(stripeOf(reversedUrl)) {
+            return log.delete(reversedUrl)
+        }
+    }
+
+    override fun deleteByQuery(query: Query<String, GWebPage>): Long {
+        val keys = log.keys(query.startKey, query.endKey).toList()
+        val fields = query.fields
+        if (fields == null || fields.size >= GWebPage._ALL_FIELDS.size) {
+            return keys.count { delete(it) }.toLong()
+        }
+
+        // reset the given fields to their default values
+        val defaults = GWebPage.newBuilder().build()
+        val indexes = GWebPage.Field.values().filter { it.getName() in fields }.map { it.index }
+        return keys.count { key ->
+            // a read-modify-write as put
+            synchronized(stripeOf(key)) {
+                val page = get(key) ?: return@count false
+                indexes.forEach { page.put(it, defaults.get(it)) }
+                log.put(key, encode(page))
+            }
+            true
+        }.toLong()
+    }
+
+    override fun execute(query: Query<String, GWebPage>): Result<String, GWebPage> {
+        return LocalPageResult(this, query, log.keys(query.startKey, query.endKey))
+    }
+
+    override fun getAll(keys: Collection<String>, fields: Array<String>?): Map<String, GWebPage> {
+        val projection = fields ?: arrayOf()
+        return keys.mapNotNull { key -> get(key, *projection)?.let { key to it } }.toMap()
+    }
+
+    override fun putAll(records: Map<String, GWebPage>) {
+        records.forEach { (key, page) -> put(key, page) }
+    }
+
+    override fun getSchemaName(): String = getConf()?.get(STORAGE_PREFERRED_SCHEMA_NAME) ?: "webpage"
+
+    override fun getFields(): Array<String> = GWebPage._ALL_FIELDS
+
+    override fun createSchema() {
+        log
+    }
+
+    override fun schemaExists() = Files.exists(directory)
+
+    override fun truncateSchema() {
+        log.clear()
+    }
+
+    override fun deleteSchema() {
+        log.clear()
+        close()
+    }
+
+    override fun flush() {
+        log0?.flush()
+    }
+
+    @Synchronized
+    override fun close() {
+        compactTimer?.cancel()
+        compactTimer = null
+        log0?.close()
+        log0 = null
+    }
+
+    /**
+     * The store is reopened on demand if it's closed, since data stores are shared by all WebDb instances
+     * */
+    @Synchronized
+    private fun openLog(): AppendOnlyLog {
+        log0?.let { return it }
+
+        val log = AppendOnlyLog(directory)
+        logger.info("Local page store is opened with {} pages | {}", log.size, directory)
+        compactTimer = Timer("LocalPageStore", true).also { timer ->
+            timer.scheduleAtFixedRate(COMPACT_INTERVAL, COMPACT_INTERVAL) { compact() }
+        }
+        log0 = log
+        return log
+    }
+
+    private fun stripeOf(reversedUrl: String) = stripes[Math.floorMod(reversedUrl.hashCode(), NUM_STRIPES)]
+
+    private fun compact() {
+        try {
+            log0?.compact()
+        } catch (t: Throwable) {
+            logger.warn("Failed to compact | {}", t.message)
+        }
+    }
+
+    /**
+     * Overwrite the old page with the dirty fields of the new page, a new page is written with all it's fields
+     * */
+    private fun merge(oldPage: GWebPage?, page: GWebPage): GWebPage {
+        val merged = oldPage ?: GWebPage.newBuilder().build()
+        GWebPage.Field.values().forEach {
+            val i = it.index
+            if (page.isDirty(i) || (oldPage == null && page.get(i) != null)) {
+                merged.put(i, page.get(i))
+            }
+        }
+        return merged
+    }
+
+    private fun encode(page: GWebPage): ByteArray {
+        val out = ByteArrayOutputStream()
+        val encoder = EncoderFactory.get().directBinaryEncoder(out, null)
+        writer.write(page, encoder)
+        encoder.flush()
+        return out.toByteArray()
+    }
+
+    private fun decode(bytes: ByteArray): GWebPage {
+        val decoder = DecoderFactory.get().binaryDecoder(bytes, null)
+        return reader.read(null, decoder).also { it.clearDirty() }
+    }
+}
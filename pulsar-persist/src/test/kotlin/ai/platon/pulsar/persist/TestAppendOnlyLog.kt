@@ -0,0 +1,85 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.persist.gora.AppendOnlyLog
+import org.junit.Test
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class TestAppendOnlyLog {
+    private val directory = Files.createTempDirectory("log")
+
+    @Test
+    fun testReadWriteAndReopen() {
+        val largeValue = "a".repeat(10_000).toByteArray()
+        AppendOnlyLog(directory).use { log ->
+            log.put("com.example:http/1", "1".toByteArray())
+            log.put("com.example:http/2", largeValue)
+            log.put("com.example:http/3", "3".toByteArray())
+            log.put("com.example:http/1", "1.1".toByteArray())
+            assertTrue { log.delete("com.example:http/3") }
+            assertFalse { log.delete("com.example:http/4") }
+
+            assertEquals("1.1", log.get("com.example:http/1")?.let { String(it) })
+            assertEquals(listOf("com.example:http/1", "com.example:http/2"), log.keys().toList())
+        }
+        // compressed
+        assertTrue { Files.size(segments().first()) < largeValue.size }
+
+        AppendOnlyLog(directory).use { log ->
+            assertEquals(2, log.size)
+            assertEquals("1.1", log.get("com.example:http/1")?.let { String(it) })
+            assertEquals(largeValue.toList(), log.get("com.example:http/2")?.toList())
+            assertNull(log.get("com.example:http/3"))
+            assertEquals(listOf("com.example:http/2"), log.keys("com.example:http/2", "com.example:http/9").toList())
+        }
+    }
+
+    @Test
+    fun testBrokenTailIsTruncated() {
+        AppendOnlyLog(directory).use { log ->
+            log.put("a", "1".toByteArray())
+            log.put("b", "2".toByteArray())
+        }
+        val segment = segments().first()
+        val size = Files.size(segment)
+        // a torn write
+        Files.newByteChannel(segment, StandardOpenOption.WRITE).use { it.truncate(size - 1) }
+
+        AppendOnlyLog(directory).use { log ->
+            assertEquals(listOf("a"), log.keys().toList())
+            log.put("c", "3".toByteArray())
+        }
+        AppendOnlyLog(directory).use { log ->
+            assertEquals(listOf("a", "c"), log.keys().toList())
+        }
+    }
+
+    @Test
+    fun testCompaction() {
+        AppendOnlyLog(directory, segmentSize = 256).use { log ->
+            repeat(20) { i -> log.put("key-${i % 4}", "value-$i".toByteArray()) }
+            log.delete("key-0")
+            val numSegments = log.numSegments
+            assertTrue { numSegments > 1 }
+
+            assertTrue { log.compact() > 0 }
+            assertTrue { log.numSegments < numSegments }
+            assertEquals(listOf("key-1", "key-2", "key-3"), log.keys().toList())
+            assertEquals("value-19", log.get("key-3")?.let { String(it) })
+        }
+
+        AppendOnlyLog(directory).use { log ->
+            assertEquals(listOf("key-1", "key-2", "key-3"), log.keys().toList())
+            assertEquals("value-17", log.get("key-1")?.let { String(it) })
+        }
+    }
+
+    private fun segments(): List<Path> {
+        return Files.list(directory).use { paths -> paths.iterator().asSequence().sorted().toList() }
+    }
+}
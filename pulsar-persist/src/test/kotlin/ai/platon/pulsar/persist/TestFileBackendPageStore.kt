@@ -0,0 +1,43 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.persist.gora.FileBackendPageStore
+import ai.platon.pulsar.persist.gora.generated.GWebPage
+import org.junit.Before
+import org.junit.Test
+import java.nio.file.Files
+import java.util.*
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class TestFileBackendPageStore {
+    private val conf = VolatileConfig()
+    private val persistDirectory = Files.createTempDirectory("file-backend-store")
+    private lateinit var store: FileBackendPageStore
+
+    @Before
+    fun setup() {
+        store = FileBackendPageStore(persistDirectory)
+        store.initialize(String::class.java, GWebPage::class.java, Properties())
+    }
+
+    @Test
+    fun testProjectedPageDoesNotReplaceTheRecord() {
+        val url = "http://example.com/a"
+        val page = WebPage.newWebPage(url, conf)
+        page.content = "<html>hello</html>"
+        store.put(page.reversedUrl, page.unbox())
+
+        // a page loaded with a field projection, the content is not loaded
+        val projected = assertNotNull(store.get(page.reversedUrl, *WebDb.metadataFields))
+        assertNull(projected.content)
+        val metadataPage = WebPage.box(url, projected, conf)
+        metadataPage.pageTitle = "title"
+        store.put(page.reversedUrl, metadataPage.unbox())
+
+        val loadedPage = WebPage.box(url, assertNotNull(store.get(page.reversedUrl)), conf)
+        assertEquals("title", loadedPage.pageTitle)
+        assertEquals("<html>hello</html>", loadedPage.contentAsString)
+    }
+}
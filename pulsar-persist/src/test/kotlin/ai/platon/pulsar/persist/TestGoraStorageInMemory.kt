@@ -39,6 +39,8 @@ import java.util.concurrent.Callable
 import java.util.concurrent.Executors
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertNotSame
+import kotlin.test.assertNull
 import kotlin.test.assertTrue
 
 /**
@@ -104,6 +106,24 @@ class TestGoraStorageInMemory {
         readWriteWebPage(id, store, conf)
     }
 
+    @Test
+    fun testBatchReadWriteWebPage() {
+        if (store !is MemStore) {
+            return
+        }
+
+        val urls = IntRange(1, 20).map { AppConstants.SHORTEST_VALID_URL + "/testBatchReadWriteWebPage/" + it }
+        webDb.putAll(urls.map { url -> WebPage.newWebPage(url, conf).also { it.pageTitle = "title-$url" } })
+        webDb.flush()
+
+        val unknownUrl = AppConstants.SHORTEST_VALID_URL + "/testBatchReadWriteWebPage/unknown"
+        val pages = webDb.getAll(urls + unknownUrl + urls[0])
+        assertEquals(urls.size + 2, pages.size)
+        urls.forEachIndexed { i, url -> assertEquals("title-$url", pages[i]?.pageTitle) }
+        assertNull(pages[urls.size])
+        assertNotSame(pages[0]?.unbox(), pages[urls.size + 1]?.unbox())
+    }
+
     /**
      * Tests multiple thread reading and writing to the same store, this should be
      * no problem because [DataStore] implementations claim to be thread
@@ -0,0 +1,113 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.persist.gora.LocalPageStore
+import ai.platon.pulsar.persist.gora.generated.GWebPage
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.nio.file.Files
+import java.util.*
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class TestLocalPageStore {
+    private val conf = VolatileConfig()
+    private val baseDirectory = Files.createTempDirectory("store")
+    private lateinit var store: LocalPageStore
+
+    @Before
+    fun setup() {
+        store = LocalPageStore(baseDirectory)
+        store.initialize(String::class.java, GWebPage::class.java, Properties())
+    }
+
+    @After
+    fun teardown() {
+        store.close()
+    }
+
+    @Test
+    fun testPagesSurviveRestart() {
+        val url = "http://example.com/a"
+        val page = WebPage.newWebPage(url, conf)
+        page.pageTitle = "title"
+        page.content = "<html>hello</html>"
+        page.inlinks["http://example.com/"] = "home"
+        store.put(page.reversedUrl, page.unbox())
+        store.close()
+
+        val loaded = assertNotNull(store.get(page.reversedUrl))
+        val loadedPage = WebPage.box(url, loaded, conf)
+        assertEquals("title", loadedPage.pageTitle)
+        assertEquals("<html>hello</html>", loadedPage.contentAsString)
+        assertEquals(1, loadedPage.inlinks.size)
+    }
+
+    @Test
+    fun testOnlyDirtyFieldsAreWritten() {
+        val url = "http://example.com/b"
+        val page = WebPage.newWebPage(url, conf)
+        page.content = "<html>hello</html>"
+        store.put(page.reversedUrl, page.unbox())
+
+        // a page loaded with a field projection, the content is not loaded
+        val projected = GWebPage.newBuilder().build().also { it.clearDirty() }
+        val metadataPage = WebPage.box(url, projected, conf)
+        metadataPage.pageTitle = "title"
+        store.put(page.reversedUrl, metadataPage.unbox())
+
+        val loadedPage = WebPage.box(url, assertNotNull(store.get(page.reversedUrl)), conf)
+        assertEquals("title", loadedPage.pageTitle)
+        assertEquals("<html>hello</html>", loadedPage.contentAsString)
+    }
+
+    @Test
+    fun testFieldProjection() {
+        val url = "http://example.com/c"
+        val page = WebPage.newWebPage(url, conf)
+        page.pageTitle = "title"
+        page.content = "<html>hello</html>"
+        store.put(page.reversedUrl, page.unbox())
+
+        val projected = assertNotNull(store.get(page.reversedUrl, *WebDb.metadataFields))
+        assertEquals("title", projected.pageTitle.toString())
+        assertNull(projected.content)
+
+        val full = assertNotNull(store.get(page.reversedUrl))
+        assertNotNull(full.content)
+    }
+
+    @Test
+    fun testRangeScan() {
+        val urls = listOf("http://a.com/1", "http://b.com/1", "http://b.com/2", "http://c.com/1")
+        urls.map { WebPage.newWebPage(it, conf) }.forEach { store.put(it.reversedUrl, it.unbox()) }
+
+        val query = store.newQuery()
+        query.setKeyRange("com.b:http/", "com.b:http/\uFFFF")
+        val result = store.execute(query)
+        val keys = mutableListOf<String>()
+        while (result.next()) {
+            keys.add(result.key)
+        }
+        assertEquals(listOf("com.b:http/1", "com.b:http/2"), keys)
+    }
+
+    @Test
+    fun testRangeScanFieldProjection() {
+        val page = WebPage.newWebPage("http://d.com/1", conf)
+        page.pageTitle = "title"
+        page.content = "<html>hello</html>"
+        store.put(page.reversedUrl, page.unbox())
+
+        val query = store.newQuery()
+        query.setKeyRange("com.d:http/", "com.d:http/\uFFFF")
+        query.setFields(*WebDb.metadataFields)
+        val result = store.execute(query)
+        assertTrue(result.next())
+        assertEquals("title", result.get().pageTitle.toString())
+        assertNull(result.get().content)
+    }
+}
@@ -0,0 +1,48 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.persist.gora.generated.GWebPage
+import org.junit.Test
+import java.nio.ByteBuffer
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TestWebPageLazyFields {
+    private val url = "http://example.com/"
+
+    @Test
+    fun testHeavyFieldsAreLoadedOnFirstAccess() {
+        var numLoads = 0
+        val page = WebPage.box(url, GWebPage.newBuilder().build(), VolatileConfig())
+        page.setLazyFieldLoader(WebDb.heavyFields) { _, fields ->
+            ++numLoads
+            assertEquals(WebDb.heavyFields.size, fields.size)
+            GWebPage.newBuilder().setContent(ByteBuffer.wrap("<html></html>".toByteArray()))
+                .setPageText("hello").build()
+        }
+        assertTrue { page.hasLazyFields() }
+        assertEquals(0, numLoads)
+
+        assertEquals("<html></html>", page.contentAsString)
+        assertEquals("hello", page.pageText)
+        assertEquals("", page.contentText)
+        assertEquals(1, numLoads)
+        assertFalse { page.hasLazyFields() }
+        // loaded fields are not written back
+        assertFalse { page.unbox().isContentDirty }
+    }
+
+    @Test
+    fun testExplicitlySetFieldsAreNotOverwritten() {
+        val page = WebPage.box(url, GWebPage.newBuilder().build(), VolatileConfig())
+        page.setLazyFieldLoader(WebDb.heavyFields) { _, _ ->
+            GWebPage.newBuilder().setContent(ByteBuffer.wrap("old".toByteArray())).setPageText("old").build()
+        }
+
+        page.setContent("new")
+        assertEquals("new", page.contentAsString)
+        assertTrue { page.hasLazyFields() }
+        assertEquals("old", page.pageText)
+    }
+}
@@ -5,6 +5,7 @@ import ai.platon.pulsar.common.config.CapabilityTypes
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.filter.common.RegexRule
 import ai.platon.pulsar.filter.common.AbstractRegexUrlFilter
+import dk.brics.automaton.Automaton
 import dk.brics.automaton.RegExp
 import dk.brics.automaton.RunAutomaton
 import java.io.IOException
@@ -57,6 +58,10 @@ class AutomatonUrlFilter(reader: Reader?, conf: ImmutableConfig) : AbstractRegex
         return Rule(sign, regex)
     }
 
+    override fun toAutomaton(rule: RegexRule): Automaton {
+        return RegExp(rule.regex, RegExp.ALL).toAutomaton()
+    }
+
     private inner class Rule internal constructor(sign: Boolean, regex: String) : RegexRule(sign, regex) {
         private val automaton = RunAutomaton(RegExp(regex, RegExp.ALL).toAutomaton())
         override fun match(url: String): Boolean {
@@ -24,6 +24,8 @@ import ai.platon.pulsar.common.config.CapabilityTypes
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.filter.common.RegexRule
 import ai.platon.pulsar.filter.common.AbstractRegexUrlFilter
+import ai.platon.pulsar.filter.common.RegexAutomata
+import dk.brics.automaton.Automaton
 import java.io.FileNotFoundException
 import java.io.Reader
 import java.util.regex.Pattern
@@ -56,6 +58,13 @@ class RegexUrlFilter(
         return RegexRuleImpl(sign, regex)
     }
 
+    /**
+     * The rules in the regular subset are combined into a DFA, the others still run with [java.util.regex]
+     */
+    override fun toAutomaton(rule: RegexRule): Automaton? {
+        return RegexAutomata.fromJavaRegex(rule.regex)
+    }
+
     private inner class RegexRuleImpl(sign: Boolean, regex: String) : RegexRule(sign, regex) {
         private val pattern = Pattern.compile(regex)
         override fun match(url: String): Boolean {
@@ -20,6 +20,8 @@ package ai.platon.pulsar.filter.common
 
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.crawl.filter.CrawlUrlFilter
+import dk.brics.automaton.Automaton
+import dk.brics.automaton.RunAutomaton
 import org.slf4j.LoggerFactory
 import java.io.BufferedReader
 import java.io.IOException
@@ -51,6 +53,11 @@ abstract class AbstractRegexUrlFilter(
      */
     protected var rules: List<RegexRule> = listOf()
 
+    /**
+     * The rules actually run, consecutive rules with the same sign are combined into one automaton if possible
+     */
+    private var compiledRules: List<RegexRule> = listOf()
+
     /**
      * Constructs a new RegexUrlFilter and init it with a Reader of rules.
      *
@@ -66,6 +73,7 @@ abstract class AbstractRegexUrlFilter(
         if (reader != null) {
             try {
                 rules = readRules(reader!!)
+                compiledRules = compileRules(rules)
             } catch (e: Exception) {
                 LOG.error(e.message)
                 throw RuntimeException(e.message, e)
@@ -94,8 +102,16 @@ abstract class AbstractRegexUrlFilter(
     @Throws(IOException::class)
     protected abstract fun getRulesReader(conf: ImmutableConfig): Reader
 
+    /**
+     * Convert a rule into an automaton which accepts exactly the urls the rule matches. Return null if the rule
+     * requires features an automaton does not support, such as back references, and the rule is run as it is.
+     *
+     * @param rule is the rule to convert.
+     */
+    protected open fun toAutomaton(rule: RegexRule): Automaton? = null
+
     override fun filter(url: String): String? {
-        for (rule in rules) {
+        for (rule in compiledRules) {
             if (rule.match(url)) {
                 return if (rule.accept()) url else null
             }
@@ -103,6 +119,73 @@ abstract class AbstractRegexUrlFilter(
         return null
     }
 
+    /**
+     * Since the first matching rule decides, a url matches a group of consecutive rules with the same sign if and
+     * only if it matches any rule in the group, so the rules in a group are combined into a single automaton, and
+     * a url is checked in one pass over it.
+     */
+    private fun compileRules(rules: List<RegexRule>): List<RegexRule> {
+        val compiledRules = mutableListOf<RegexRule>()
+        var i = 0
+        while (i < rules.size) {
+            val sign = rules[i].accept()
+            var j = i
+            while (j < rules.size && rules[j].accept() == sign) {
+                ++j
+            }
+
+            val group = rules.subList(i, j)
+            compiledRules.addAll(combineRules(sign, group))
+            i = j
+        }
+
+        if (LOG.isDebugEnabled) {
+            LOG.debug("Compiled {} rules into {} rules", rules.size, compiledRules.size)
+        }
+
+        return compiledRules
+    }
+
+    private fun combineRules(sign: Boolean, group: List<RegexRule>): List<RegexRule> {
+        val automata = mutableListOf<Automaton>()
+        val fallbackRules = mutableListOf<RegexRule>()
+        group.forEach { rule ->
+            val automaton = try {
+                toAutomaton(rule)
+            } catch (e: IllegalArgumentException) {
+                null
+            }
+            if (automaton != null) automata.add(automaton) else fallbackRules.add(rule)
+        }
+
+        if (automata.size < 2) {
+            return group
+        }
+
+        val union = Automaton.union(automata)
+        union.minimize()
+        if (union.numberOfStates > MAX_AUTOMATON_STATES) {
+            LOG.warn("Too many states ({}) to combine {} rules, run them one by one", union.numberOfStates, group.size)
+            return group
+        }
+
+        return listOf(CombinedRule(sign, group, RunAutomaton(union), fallbackRules))
+    }
+
+    /**
+     * A rule matches if the combined automaton accepts the url, or any rule can not be combined matches
+     */
+    private class CombinedRule(
+            sign: Boolean,
+            group: List<RegexRule>,
+            private val automaton: RunAutomaton,
+            private val fallbackRules: List<RegexRule>
+    ): RegexRule(sign, group.joinToString("|") { "(${it.regex})" }) {
+        override fun match(url: String): Boolean {
+            return automaton.run(url) || fallbackRules.any { it.match(url) }
+        }
+    }
+
     /**
      * Read the specified file of rules.
      *
@@ -136,6 +219,11 @@ abstract class AbstractRegexUrlFilter(
     }
 
     companion object {
+        /**
+         * A union of many rules might be too large to determinize, such rules are run one by one
+         */
+        const val MAX_AUTOMATON_STATES = 10_000
+
         /**
          * Filter the standard input using a RegexUrlFilterBase.
          *
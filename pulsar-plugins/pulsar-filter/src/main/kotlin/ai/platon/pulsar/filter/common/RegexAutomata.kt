@@ -0,0 +1,140 @@
+package ai.platon.pulsar.filter.common
+
+import dk.brics.automaton.Automaton
+import dk.brics.automaton.RegExp
+
+/**
+ * Translate java regular expressions into [dk.brics.automaton](http://www.brics.dk/automaton/) automata.
+ *
+ * Only the regular subset is supported: literals, escaped punctuations, character classes, groups, alternations,
+ * the greedy quantifiers, and the anchors at the very beginning and the very end. The expressions use back references,
+ * lookarounds, flags, reluctant or possessive quantifiers, or predefined classes such as \d are not translated.
+ */
+object RegexAutomata {
+
+    /**
+     * Translate a java regex into an automaton accepts exactly the strings in which [java.util.regex.Matcher.find]
+     * finds a match.
+     *
+     * @return The automaton, or null if the regex can not be translated
+     */
+    fun fromJavaRegex(regex: String): Automaton? {
+        val bricsRegex = translate(regex) ?: return null
+        return RegExp(bricsRegex, RegExp.NONE).toAutomaton()
+    }
+
+    /**
+     * Translate a java regex into a dk.brics regex with the find semantics.
+     *
+     * @return The dk.brics regex, or null if the regex can not be translated
+     */
+    fun translate(regex: String): String? {
+        val anchoredStart = regex.startsWith("^")
+        val anchoredEnd = regex.length > 1 && regex.endsWith("$") && !isEscaped(regex, regex.length - 1)
+        if ((anchoredStart || anchoredEnd) && hasTopLevelAlternation(regex)) {
+            // an anchor binds to just one alternative, alternations inside groups are fine
+            return null
+        }
+
+        val start = if (anchoredStart) 1 else 0
+        val end = if (anchoredEnd) regex.length - 1 else regex.length
+        val sb = StringBuilder()
+        var inClass = false
+        var i = start
+        while (i < end) {
+            val c = regex[i]
+            val next = if (i + 1 < end) regex[i + 1] else null
+            when {
+                c == '\\' -> {
+                    if (next == null || next.isLetterOrDigit()) {
+                        // predefined classes, back references, quotations, etc
+                        return null
+                    }
+                    sb.append(c).append(next)
+                    i += 2
+                    continue
+                }
+                inClass -> {
+                    when {
+                        // nested classes, unions and intersections
+                        c == '[' || (c == '&' && next == '&') -> return null
+                        c == ']' -> inClass = false
+                    }
+                    sb.append(c)
+                }
+                c == '[' -> {
+                    if (next == ']' || (next == '^' && i + 2 < end && regex[i + 2] == ']')) {
+                        return null
+                    }
+                    inClass = true
+                    sb.append(c)
+                }
+                c == '(' -> {
+                    if (next == '?') {
+                        // non-capturing groups, flags and lookarounds
+                        return null
+                    }
+                    sb.append(c)
+                }
+                c == '*' || c == '+' || c == '?' || c == '}' -> {
+                    if (next == '?' || next == '+') {
+                        // reluctant and possessive quantifiers
+                        return null
+                    }
+                    sb.append(c)
+                }
+                c == '^' || c == '$' -> return null
+                // string literals in dk.brics
+                c == '"' -> sb.append("\\\"")
+                else -> sb.append(c)
+            }
+            ++i
+        }
+
+        if (inClass) {
+            return null
+        }
+
+        val prefix = if (anchoredStart) "" else ".*"
+        val suffix = if (anchoredEnd) "" else ".*"
+        return "$prefix($sb)$suffix"
+    }
+
+    /**
+     * Check if there is a '|' outside all groups and character classes
+     */
+    private fun hasTopLevelAlternation(regex: String): Boolean {
+        var depth = 0
+        var inClass = false
+        var i = 0
+        while (i < regex.length) {
+            when (val c = regex[i]) {
+                '\\' -> ++i
+                else -> when {
+                    inClass -> if (c == ']') inClass = false
+                    c == '[' -> {
+                        inClass = true
+                        // a ']' right after '[' or '[^' is a literal
+                        if (i + 1 < regex.length && regex[i + 1] == '^') ++i
+                        if (i + 1 < regex.length && regex[i + 1] == ']') ++i
+                    }
+                    c == '(' -> ++depth
+                    c == ')' -> --depth
+                    c == '|' && depth == 0 -> return true
+                }
+            }
+            ++i
+        }
+        return false
+    }
+
+    private fun isEscaped(regex: String, index: Int): Boolean {
+        var n = 0
+        var i = index - 1
+        while (i >= 0 && regex[i] == '\\') {
+            ++n
+            --i
+        }
+        return n % 2 == 1
+    }
+}
@@ -36,7 +36,7 @@ package ai.platon.pulsar.filter.common
  * is the regular expression used for matching (see
  * [.match] method).
  */
-abstract class RegexRule(private val sign: Boolean, regex: String) {
+abstract class RegexRule(private val sign: Boolean, val regex: String) {
     /**
      * Return if this rule is used for filtering-in or out.
      *
@@ -0,0 +1,144 @@
+package ai.platon.pulsar.normalizer
+
+/**
+ * Find the literals a java regex requires, so a string without the literal can be skipped without running the regex.
+ *
+ * The analysis is conservative: only the top level of the regex is inspected, groups, classes and other
+ * non-literal atoms just break the literal runs, and if the regex has a top level alternation, inline flags,
+ * quotations or escapes not understood, no literal is reported.
+ */
+object RegexLiterals {
+
+    private const val ZERO_WIDTH_ESCAPES = "bBAzZG"
+    private const val CLASS_ESCAPES = "dDsSwWhHvV"
+
+    /**
+     * Find the longest literal every match of the regex contains
+     *
+     * @return The literal, or null if no literal is required
+     */
+    fun requiredLiteral(regex: String): String? {
+        if (regex.contains("\\Q")) {
+            return null
+        }
+
+        var longest = ""
+        val run = StringBuilder()
+
+        fun endRun() {
+            if (run.length > longest.length) {
+                longest = run.toString()
+            }
+            run.setLength(0)
+        }
+
+        var i = 0
+        while (i < regex.length) {
+            val c = regex[i]
+            // the literal char of this atom, or null if the atom is not a literal
+            var literal: Char? = null
+            when (c) {
+                '\\' -> {
+                    val next = regex.getOrNull(i + 1) ?: return null
+                    when {
+                        !next.isLetterOrDigit() -> literal = next
+                        next in ZERO_WIDTH_ESCAPES || next in CLASS_ESCAPES -> {}
+                        else -> return null
+                    }
+                    i += 2
+                }
+                '[' -> {
+                    i = skipClass(regex, i) ?: return null
+                }
+                '(' -> {
+                    if (regex.startsWith("(?", i) && isInlineFlags(regex, i)) {
+                        return null
+                    }
+                    i = skipGroup(regex, i) ?: return null
+                }
+                '|' -> return null
+                '.', '^', '$' -> ++i
+                else -> {
+                    literal = c
+                    ++i
+                }
+            }
+
+            // quantifiers
+            val q = regex.getOrNull(i)
+            val optional = q == '?' || q == '*' || (q == '{' && regex.getOrNull(i + 1) == '0')
+            val repeated = q == '+' || q == '{'
+            if (literal != null && !optional) {
+                run.append(literal)
+            }
+            if (literal == null || optional || repeated) {
+                endRun()
+            }
+            if (q == '?' || q == '*' || q == '+') {
+                ++i
+                // reluctant and possessive modifiers
+                if (regex.getOrNull(i) == '?' || regex.getOrNull(i) == '+') ++i
+            } else if (q == '{') {
+                i = regex.indexOf('}', i).takeIf { it > 0 }?.plus(1) ?: return null
+                if (regex.getOrNull(i) == '?' || regex.getOrNull(i) == '+') ++i
+            }
+        }
+        endRun()
+
+        return longest.takeIf { it.isNotEmpty() }
+    }
+
+    /**
+     * Inline flags like (?i) change the rest of the regex, while (?i:X) is just a group
+     */
+    private fun isInlineFlags(regex: String, start: Int): Boolean {
+        var i = start + 2
+        while (i < regex.length && (regex[i].isLetter() || regex[i] == '-')) {
+            ++i
+        }
+        return i > start + 2 && regex.getOrNull(i) == ')'
+    }
+
+    /**
+     * Return the index after the class starts at start, a ']' right after '[' or '[^' is a literal
+     */
+    private fun skipClass(regex: String, start: Int): Int? {
+        var depth = 0
+        var i = start
+        while (i < regex.length) {
+            when (regex[i]) {
+                '\\' -> ++i
+                '[' -> {
+                    ++depth
+                    var first = i + 1
+                    if (regex.getOrNull(first) == '^') ++first
+                    if (regex.getOrNull(first) == ']') i = first
+                }
+                ']' -> if (--depth == 0) return i + 1
+            }
+            ++i
+        }
+        return null
+    }
+
+    /**
+     * Return the index after the group starts at start
+     */
+    private fun skipGroup(regex: String, start: Int): Int? {
+        var depth = 0
+        var i = start
+        while (i < regex.length) {
+            when (regex[i]) {
+                '\\' -> ++i
+                '[' -> {
+                    i = skipClass(regex, i) ?: return null
+                    continue
+                }
+                '(' -> ++depth
+                ')' -> if (--depth == 0) return i + 1
+            }
+            ++i
+        }
+        return null
+    }
+}
@@ -21,6 +21,7 @@ package ai.platon.pulsar.normalizer
 import ai.platon.pulsar.common.ResourceLoader
 import ai.platon.pulsar.common.Strings
 import ai.platon.pulsar.common.config.CapabilityTypes
+import ai.platon.pulsar.common.concurrent.ConcurrentLRUCache
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.crawl.filter.CrawlUrlNormalizer
 import org.slf4j.LoggerFactory
@@ -31,6 +32,7 @@ import java.io.FileNotFoundException
 import java.io.IOException
 import java.io.Reader
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import java.util.regex.Pattern
 import java.util.regex.PatternSyntaxException
 import javax.xml.parsers.DocumentBuilderFactory
@@ -56,14 +58,14 @@ import javax.xml.parsers.DocumentBuilderFactory
  * @author Andrzej Bialecki
  */
 class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer {
-    private val scopedRulesThreadLocal = object : ThreadLocal<HashMap<String, List<Rule>>>() {
-        override fun initialValue(): HashMap<String, List<Rule>> {
-            return HashMap()
-        }
-    }
+    private val cacheCapacity = conf.getInt(URLNORMALIZER_REGEX_CACHE_CAPACITY, 10_000)
+
+    /**
+     * The rules are read once for each scope and shared by all threads
+     */
+    val scopedRules = ConcurrentHashMap<String, RuleSet>()
 
-    private val defaultRules: List<Rule>
-    val scopedRules: HashMap<String, List<Rule>> get() = scopedRulesThreadLocal.get()
+    private val defaultRules: RuleSet
 
     @Throws(FileNotFoundException::class)
     protected fun getRulesReader(conf: ImmutableConfig): Reader {
@@ -77,7 +79,8 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
     // used in JUnit test.
     fun setConfiguration(reader: Reader, scope: String) {
         val rules = readConfiguration(reader)
-        scopedRules[scope] = rules
+        // a scope without rules falls back to the default rules
+        scopedRules[scope] = if (rules.isEmpty()) defaultRules else RuleSet(rules, cacheCapacity)
         LOG.debug("Set config for scope '" + scope + "': " + rules.size + " rules.")
     }
 
@@ -85,41 +88,29 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
      * This function does the replacements by iterating through all the regex
      * patterns. It accepts a string url as input and returns the altered string.
      */
-    fun regexNormalize(urlString_: String, scope: String): String? {
-        var urlString = urlString_
-        var curRules = scopedRules[scope]
-        if (curRules == null) { // try to populate
-            val fileResource = conf["$URLNORMALIZER_REGEX_FILE.$scope"]
-            if (fileResource != null) {
-                val resourcePrefix = conf[CapabilityTypes.LEGACY_CONFIG_PROFILE, ""]
-                LOG.debug("resource for scope '$scope': $fileResource")
-                ResourceLoader.getResourceAsReader(fileResource, resourcePrefix).use {
-                    reader -> curRules = readConfiguration(reader!!)
-                }
-            }
-            if (curRules == null) {
-                curRules = EMPTY_RULES
-            }
-
-            scopedRules[scope] = curRules!!
-        }
-
-        if (curRules!!.isEmpty()) {
-            curRules = defaultRules
-        }
-
-        for (r in curRules!!) {
-            val matcher = r.pattern!!.matcher(urlString)
-            urlString = matcher.replaceAll(r.substitution)
-        }
-
-        return urlString
+    fun regexNormalize(urlString: String, scope: String): String? {
+        val ruleSet = scopedRules.computeIfAbsent(scope) { loadRuleSet(it) }
+        return ruleSet.normalize(urlString)
     }
 
     override fun normalize(url: String, scope: String): String? {
         return regexNormalize(url, scope)
     }
 
+    private fun loadRuleSet(scope: String): RuleSet {
+        var rules = EMPTY_RULES
+        val fileResource = conf["$URLNORMALIZER_REGEX_FILE.$scope"]
+        if (fileResource != null) {
+            val resourcePrefix = conf[CapabilityTypes.LEGACY_CONFIG_PROFILE, ""]
+            LOG.debug("resource for scope '$scope': $fileResource")
+            ResourceLoader.getResourceAsReader(fileResource, resourcePrefix)?.use { reader ->
+                rules = readConfiguration(reader)
+            }
+        }
+
+        return if (rules.isEmpty()) defaultRules else RuleSet(rules, cacheCapacity)
+    }
+
     private fun readConfiguration(reader: Reader): List<Rule> {
         val rules: MutableList<Rule> = ArrayList()
         try {
@@ -152,15 +143,13 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
                     }
                 }
                 if (patternValue != null && subValue != null) {
-                    val rule = Rule()
-                    try {
-                        rule.pattern = Pattern.compile(patternValue)
+                    val pattern = try {
+                        Pattern.compile(patternValue)
                     } catch (e: PatternSyntaxException) {
                         LOG.error("skipped rule: $patternValue -> $subValue : invalid regular expression pattern: $e")
                         continue
                     }
-                    rule.substitution = subValue
-                    rules.add(rule)
+                    rules.add(Rule(pattern, subValue))
                 }
             }
         } catch (e: Exception) {
@@ -176,14 +165,62 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
      * Class which holds a compiled pattern and its corresponding substition
      * string.
      */
-    class Rule {
-        var pattern: Pattern? = null
-        var substitution: String? = null
+    class Rule(val pattern: Pattern, val substitution: String) {
+        /**
+         * A literal every match contains, a url without it is skipped without running the regex
+         */
+        val requiredLiteral = RegexLiterals.requiredLiteral(pattern.pattern())
+
+        fun mayMatch(url: String) = requiredLiteral == null || url.contains(requiredLiteral)
+    }
+
+    /**
+     * The immutable rules of a scope. The matchers are reused by each thread, and the results are memoized,
+     * since the same links repeat again and again in a crawl.
+     */
+    class RuleSet(val rules: List<Rule>, cacheCapacity: Int) {
+        private val matchers = ThreadLocal.withInitial { rules.map { it.pattern.matcher("") } }
+        private val cache = ConcurrentLRUCache<String, String>(0, cacheCapacity.coerceAtLeast(1))
+
+        val size get() = rules.size
+
+        fun isEmpty() = rules.isEmpty()
+
+        fun normalize(url: String): String {
+            if (rules.isEmpty()) {
+                return url
+            }
+
+            return cache[url] ?: normalize0(url).also { cache.put(url, it) }
+        }
+
+        /**
+         * Apply the rules in order, no string is created unless a rule fires
+         */
+        private fun normalize0(url: String): String {
+            var urlString = url
+            val matchers = matchers.get()
+            for (i in rules.indices) {
+                val rule = rules[i]
+                if (!rule.mayMatch(urlString)) {
+                    continue
+                }
+
+                val matcher = matchers[i].reset(urlString)
+                if (matcher.find()) {
+                    urlString = matcher.replaceAll(rule.substitution)
+                }
+                // do not retain the url
+                matcher.reset("")
+            }
+            return urlString
+        }
     }
 
     companion object {
         const val URLNORMALIZER_REGEX_FILE = "urlnormalizer.regex.file"
         const val URLNORMALIZER_REGEX_RULES = "urlnormalizer.regex.rules"
+        const val URLNORMALIZER_REGEX_CACHE_CAPACITY = "urlnormalizer.regex.cache.capacity"
         private val LOG = LoggerFactory.getLogger(RegexUrlNormalizer::class.java)
         private val EMPTY_RULES: List<Rule> = emptyList()
     }
@@ -195,6 +232,6 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
         } catch (e: IOException) {
             LOG.error(Strings.stringifyException(e))
         }
-        defaultRules = rules
+        defaultRules = RuleSet(rules, cacheCapacity)
     }
 }
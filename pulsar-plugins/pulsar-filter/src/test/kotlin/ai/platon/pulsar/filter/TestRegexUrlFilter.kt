@@ -19,10 +19,15 @@
 package ai.platon.pulsar.filter
 
 import ai.platon.pulsar.crawl.filter.CrawlUrlFilter
+import ai.platon.pulsar.filter.common.RegexAutomata
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.springframework.test.context.junit4.SpringRunner
 import java.io.Reader
+import java.util.regex.Pattern
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
 
 /**
  * JUnit based test of class `RegexURLFilter`.
@@ -46,4 +51,40 @@ class TestRegexUrlFilter : RegexUrlFilterBaseTest("sample") {
         bench(400, "Benchmarks")
         bench(800, "Benchmarks")
     }
+
+    @Test
+    fun testAutomataAgreeWithJavaRegex() {
+        val regexes = listOf(
+            "^(file|ftp|mailto):",
+            "\\.(gif|GIF|jpg|JPG|ico|ICO|css|png)$",
+            "[?*!@=]",
+            "^.*//.*\\.fr/",
+            "^http://([a-z0-9]*\\.)*example.com/",
+            "item-[0-9]{2,4}\\.html",
+            "\"quoted\"",
+            ".",
+            "^a[|]b$",
+            "^a\\|b$",
+            "^(a|(b|c))d$"
+        )
+        val urls = listOf(
+            "http://www.example.com/", "ftp://example.com/a.txt", "http://a.b.example.com/item-123.html",
+            "http://www.example.fr/a/b.png", "http://example.com/?a=b", "mailto:a@example.com",
+            "http://example.com/item-1.html", "http://example.com/\"quoted\"", "",
+            "a|b", "ad", "cd", "abd"
+        )
+
+        regexes.forEach { regex ->
+            val automaton = RegexAutomata.fromJavaRegex(regex)
+            assertNotNull(automaton, regex)
+            val pattern = Pattern.compile(regex)
+            urls.forEach { url ->
+                assertEquals(pattern.matcher(url).find(), automaton.run(url), "$regex | $url")
+            }
+        }
+
+        listOf(".*(/.+?)/.*?\\1/", "(?i)abc", "\\d+", "^a|b$", "^(a)|b", "a|(b)$", "[a-z&&[^e]]").forEach {
+            assertNull(RegexAutomata.fromJavaRegex(it), it)
+        }
+    }
 }
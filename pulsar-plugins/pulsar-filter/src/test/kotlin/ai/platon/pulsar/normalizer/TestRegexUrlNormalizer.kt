@@ -31,6 +31,7 @@ import org.springframework.test.context.junit4.SpringRunner
 import java.io.File
 import java.io.FileReader
 import java.io.IOException
+import java.io.StringReader
 import java.net.URISyntaxException
 import java.nio.file.Files
 import java.nio.file.Paths
@@ -77,6 +78,37 @@ class TestRegexUrlNormalizer {
         }
     }
 
+    @Test
+    fun testEmptyScopeFallsBackToDefaultRules() {
+        val scope = "empty-rules"
+        normalizer!!.setConfiguration(StringReader("<regex-normalize></regex-normalize>"), scope)
+        // a scope never configured uses the default rules
+        val unconfiguredScope = "unconfigured"
+        for (url in testData[CrawlUrlNormalizers.SCOPE_DEFAULT]!!) {
+            Assert.assertEquals(normalizer!!.normalize(url.url, unconfiguredScope), normalizer!!.normalize(url.url, scope))
+        }
+    }
+
+    @Test
+    fun testRequiredLiterals() {
+        val expected = mapOf(
+            "#.*?(\\?|&|$)" to "#",
+            "\\?&" to "?&",
+            "&{2,}" to "&",
+            "^file://+" to "file://",
+            "(?<!:)/{2,}" to "/",
+            "ab?cd" to "cd",
+            "[^]x]yz" to "yz",
+            "[\\?&\\.]$" to null,
+            "a|bc" to null,
+            "(?i)(;?\\b_?(l|j|bv_)?(sid|phpsessid|sessionid)=.*?)(\\?|&|#|$)" to null
+        )
+
+        expected.forEach { (regex, literal) ->
+            Assert.assertEquals(regex, literal, RegexLiterals.requiredLiteral(regex))
+        }
+    }
+
     private fun normalizeTest(urls: List<NormalizedURL>, scope: String) {
         for (url1 in urls) {
             val url = url1.url
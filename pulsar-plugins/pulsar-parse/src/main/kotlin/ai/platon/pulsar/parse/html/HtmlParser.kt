@@ -36,9 +36,7 @@ import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.persist.ParseStatus
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.persist.metadata.ParseStatusCodes
-import org.jsoup.helper.W3CDom
 import org.slf4j.LoggerFactory
-import org.w3c.dom.DocumentFragment
 import java.net.MalformedURLException
 import java.net.URL
 import java.util.concurrent.atomic.AtomicInteger
@@ -60,6 +58,11 @@ class HtmlParser(
     private val defaultCharEncoding = conf.get(CapabilityTypes.PARSE_DEFAULT_ENCODING, "utf-8")
     private val cachingPolicy =
         conf.get(CapabilityTypes.PARSE_CACHING_FORBIDDEN_POLICY, AppConstants.CACHING_FORBIDDEN_CONTENT)
+    /**
+     * The meta tags change the crawl: a refresh page is redirected and a noindex page is not indexed, so they are
+     * handled only if it's enabled explicitly
+     * */
+    private val supportMetaTags = conf.getBoolean(CapabilityTypes.PARSE_SUPPORT_META_TAGS, false)
     private val volatileConfig = conf.toVolatileConfig()
     private val primerParser = PrimerParser(conf)
 
@@ -72,6 +75,7 @@ class HtmlParser(
             "className", this.javaClass.simpleName,
             "defaultCharEncoding", defaultCharEncoding,
             "cachingPolicy", cachingPolicy,
+            "supportMetaTags", supportMetaTags,
             "parseFilters", parseFilters
         )
     }
@@ -143,17 +147,19 @@ class HtmlParser(
         val jsoupParser = JsoupParser(page, conf)
         jsoupParser.parse()
         val document = jsoupParser.document
-        val fragment = W3CDom().fromJsoup(document.document).createDocumentFragment()
 
-        val metaTags = parseMetaTags(baseURL, fragment, page)
-        val parseResult = initParseResult(metaTags)
+        val parseResult = if (supportMetaTags) {
+            initParseResult(parseMetaTags(baseURL, document, page))
+        } else {
+            ParseResult(ParseStatus.SUCCESS, ParseStatus.SUCCESS_OK)
+        }
         parseResult.document = document
 
         return ParseContext(page, parseResult, document)
     }
 
-    private fun parseMetaTags(baseURL: URL, docRoot: DocumentFragment, page: WebPage): HTMLMetaTags {
-        val metaTags = HTMLMetaTags(docRoot, baseURL)
+    private fun parseMetaTags(baseURL: URL, document: FeaturedDocument, page: WebPage): HTMLMetaTags {
+        val metaTags = HTMLMetaTags(document.document, baseURL)
         val tags = metaTags.generalTags
         val metadata = page.metadata
         tags.names().forEach { name: String -> metadata["meta_$name"] = tags[name] }
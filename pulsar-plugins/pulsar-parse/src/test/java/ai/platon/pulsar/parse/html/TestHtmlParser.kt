@@ -18,8 +18,11 @@
  */
 package ai.platon.pulsar.parse.html
 
+import ai.platon.pulsar.common.config.CapabilityTypes
 import ai.platon.pulsar.crawl.parse.PageParser
 import ai.platon.pulsar.crawl.parse.ParseException
+import ai.platon.pulsar.crawl.parse.ParseFilters
+import ai.platon.pulsar.persist.ParseStatus
 import ai.platon.pulsar.persist.metadata.Name
 import org.junit.Assert
 import org.junit.Ignore
@@ -30,6 +33,7 @@ import org.springframework.test.context.junit4.SpringRunner
 import java.nio.charset.Charset
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertNull
 import kotlin.test.assertTrue
 
 @RunWith(SpringRunner::class)
@@ -37,6 +41,14 @@ class TestHtmlParser : HtmlParserTestBase() {
     @Autowired
     private val pageParser: PageParser? = null
 
+    /**
+     * A parser handling the meta tags
+     * */
+    private val metaTagsParser by lazy {
+        val conf = immutableConfig.toVolatileConfig().apply { setBoolean(CapabilityTypes.PARSE_SUPPORT_META_TAGS, true) }
+        HtmlParser(ParseFilters(listOf(), conf), conf)
+    }
+
     @Test
     @Throws(ParseException::class)
     fun testBasicPageParser() {
@@ -74,4 +86,65 @@ class TestHtmlParser : HtmlParserTestBase() {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The meta tags are ignored by default, the crawl is not changed by them
+     * */
+    @Test
+    fun testMetaTagsAreIgnoredByDefault() {
+        val html = "<html><head><title>refresh</title>" +
+                "<meta name='description' content='a page not to be indexed'>" +
+                "<meta http-equiv='pragma' content='no-cache'>" +
+                "<meta http-equiv='refresh' content='5; url=/next.html'>" +
+                "</head><body><p>moved</p></body></html>"
+        val page = getPage(html, Charsets.UTF_8)
+        assertNotNull(pageParser)
+
+        val parseResult = pageParser.parse(page)
+        assertTrue(parseResult.isSuccess)
+        assertEquals(ParseStatus.SUCCESS_OK, parseResult.minorCode)
+        assertNull(page.metadata["meta_description"])
+        assertNull(page.metadata[CapabilityTypes.CACHING_FORBIDDEN_KEY])
+    }
+
+    @Test
+    fun testNoIndexPage() {
+        val html = "<html><head><title>no index</title>" +
+                "<meta name='robots' content='noindex, nofollow'>" +
+                "<meta name='description' content='a page not to be indexed'>" +
+                "<meta http-equiv='pragma' content='no-cache'>" +
+                "</head><body><p>hello</p></body></html>"
+        val page = getPage(html, Charsets.UTF_8)
+
+        val parseResult = metaTagsParser.parse(page)
+        assertTrue(parseResult.isSuccess)
+        assertEquals(ParseStatus.SUCCESS_NO_INDEX, parseResult.minorCode)
+        assertEquals("a page not to be indexed", page.metadata["meta_description"])
+        assertNotNull(page.metadata[CapabilityTypes.CACHING_FORBIDDEN_KEY])
+    }
+
+    @Test
+    fun testRefreshPage() {
+        val html = "<html><head><title>refresh</title>" +
+                "<meta http-equiv='refresh' content='5; url=/next.html'>" +
+                "</head><body><p>moved</p></body></html>"
+        val page = getPage(html, Charsets.UTF_8)
+
+        val parseResult = metaTagsParser.parse(page)
+        assertTrue(parseResult.isSuccess)
+        assertEquals(ParseStatus.SUCCESS_REDIRECT, parseResult.minorCode)
+        assertEquals("5", parseResult.args[ParseStatus.REFRESH_TIME]?.toString())
+        assertTrue(parseResult.args[ParseStatus.REFRESH_HREF].toString().endsWith("/next.html"))
+    }
+
+    @Test
+    fun testMetaTagsInBodyAreIgnored() {
+        val html = "<html><head><title>ok</title></head>" +
+                "<body><meta name='robots' content='noindex'><p>hello</p></body></html>"
+        val page = getPage(html, Charsets.UTF_8)
+
+        val parseResult = metaTagsParser.parse(page)
+        assertTrue(parseResult.isSuccess)
+        assertEquals(ParseStatus.SUCCESS_OK, parseResult.minorCode)
+    }
+}
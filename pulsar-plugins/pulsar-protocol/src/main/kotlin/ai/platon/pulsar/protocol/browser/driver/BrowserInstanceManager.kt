@@ -9,16 +9,42 @@ import java.util.concurrent.atomic.AtomicBoolean
 class BrowserInstanceManager: AutoCloseable {
     private val closed = AtomicBoolean()
     private val browserInstances = ConcurrentHashMap<Path, BrowserInstance>()
+    private val launchLocks = ConcurrentHashMap<Path, Any>()
 
-    @Synchronized
+    /**
+     * Launch the browser instance if absent, launches of different data dirs do not block each other
+     * */
     fun launchIfAbsent(launcherConfig: LauncherConfig, launchOptions: ChromeDevtoolsOptions): BrowserInstance {
-        return browserInstances.computeIfAbsent(launchOptions.userDataDir) {
-            BrowserInstance(launcherConfig, launchOptions).apply { launch() }
+        val dataDir = launchOptions.userDataDir
+        browserInstances[dataDir]?.let { return it }
+
+        while (true) {
+            val lock = launchLocks.computeIfAbsent(dataDir) { Any() }
+            synchronized(lock) {
+                // the lock is removed if the browser is closed meanwhile, try again with a new one
+                if (launchLocks[dataDir] === lock) {
+                    return browserInstances.getOrPut(dataDir) {
+                        BrowserInstance(launcherConfig, launchOptions).apply { launch() }
+                    }
+                }
+            }
         }
     }
 
+    /**
+     * Close the browser instance and remove its launch lock, so the locks do not pile up with the data dirs
+     * */
     fun closeIfPresent(dataDir: Path) {
-        browserInstances.remove(dataDir)?.close()
+        val lock = launchLocks[dataDir]
+        if (lock == null) {
+            browserInstances.remove(dataDir)?.close()
+            return
+        }
+
+        synchronized(lock) {
+            browserInstances.remove(dataDir)?.close()
+            launchLocks.remove(dataDir, lock)
+        }
     }
 
     override fun close() {
@@ -31,6 +57,7 @@ class BrowserInstanceManager: AutoCloseable {
         kotlin.runCatching {
             val unSynchronized = browserInstances.values.toList()
             browserInstances.clear()
+            launchLocks.clear()
             unSynchronized.parallelStream().forEach { it.close() }
         }.onFailure {
             // kill -9
@@ -12,19 +12,33 @@ import ai.platon.pulsar.crawl.fetch.driver.WebDriver
 import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
 import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolException
 import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolExhaustedException
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import org.slf4j.LoggerFactory
 import oshi.SystemInfo
 import java.time.Duration
 import java.time.Instant
+import java.util.*
 import java.util.concurrent.ArrayBlockingQueue
 import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 
 /**
+ * A web driver pool for a browser instance.
+ *
+ * Callers wait for a free driver without blocking a thread, the waiters are served in the order of their priorities,
+ * the smaller the value, the higher the priority, waiters with the same priority are served in FIFO order.
+ *
+ * Drivers of the same browser instance are created in parallel, at most [maxConcurrentCreations] at a time.
+ *
  * Created by vincent on 18-1-1.
  * Copyright @ 2013-2017 Platon AI. All rights reserved
  */
@@ -38,7 +52,39 @@ class LoadingWebDriverPool(
     companion object {
         val CLOSE_ALL_TIMEOUT = Duration.ofSeconds(60)
         val POLLING_TIMEOUT = Duration.ofSeconds(60)
+        val MEMORY_SAMPLE_INTERVAL = Duration.ofSeconds(1)
         val instanceSequencer = AtomicInteger()
+
+        private val systemInfo = SystemInfo()
+        private val memorySampler = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactoryBuilder().setNameFormat("memory-sampler-%d").setDaemon(true).build())
+
+        /**
+         * The available memory sampled every [MEMORY_SAMPLE_INTERVAL], so it costs nothing to check it
+         * before every driver creation
+         * */
+        @Volatile
+        var availableMemory = systemInfo.hardware.memory.available
+            private set
+
+        init {
+            val interval = MEMORY_SAMPLE_INTERVAL.toMillis()
+            memorySampler.scheduleAtFixedRate({ sampleAvailableMemory() }, interval, interval, TimeUnit.MILLISECONDS)
+        }
+
+        private fun sampleAvailableMemory() {
+            availableMemory = systemInfo.runCatching { hardware.memory.available }.getOrDefault(availableMemory)
+        }
+    }
+
+    /**
+     * A coroutine waiting for a free driver, guarded by [lock]
+     * */
+    private class Waiter(val priority: Int, val sequence: Long): Comparable<Waiter> {
+        val deferred = CompletableDeferred<WebDriver>()
+        var driver: WebDriver? = null
+
+        override fun compareTo(other: Waiter) = compareValuesBy(this, other, { it.priority }, { it.sequence })
     }
 
     private val log = LoggerFactory.getLogger(LoadingWebDriverPool::class.java)
@@ -49,17 +95,20 @@ class LoadingWebDriverPool(
 
     private val lock = ReentrantLock()
     private val notBusy = lock.newCondition()
-    private val notEmpty = lock.newCondition()
+    private val waiters = PriorityQueue<Waiter>()
+    private val waiterSequencer = AtomicLong()
+
+    val maxConcurrentCreations = conf.getInt(BROWSER_DRIVER_MAX_CONCURRENT_CREATIONS, 4).coerceAtLeast(1)
+    private val creationPermits = Semaphore(maxConcurrentCreations)
+    private val numCreating = AtomicInteger()
 
     private val isHeadless get() = conf.getBoolean(BROWSER_DRIVER_HEADLESS, true)
     private val closed = AtomicBoolean()
-    private val systemInfo = SystemInfo()
-    // OSHI cached the value, so it's fast and safe to be called frequently
-    private val availableMemory get() = systemInfo.hardware.memory.available
 
     private val registry = AppMetrics.defaultMetricRegistry
     val counterRetired = registry.counter(this, "retired")
     val counterQuit = registry.counter(this, "quit")
+    val histogramWaitMillis = registry.histogram(this, "waitMillis")
 
     val isActive get() = !closed.get()
     val numWaiting = AtomicInteger()
@@ -96,20 +145,28 @@ class LoadingWebDriverPool(
         return freeDrivers.poll().also { numWaiting.decrementAndGet() }
     }
 
-    @Throws(WebDriverPoolExhaustedException::class)
+    @Throws(WebDriverPoolException::class)
     fun poll(conf: VolatileConfig): WebDriver = poll(0, conf, POLLING_TIMEOUT.seconds, TimeUnit.SECONDS)
 
-    @Throws(WebDriverPoolExhaustedException::class)
+    @Throws(WebDriverPoolException::class)
     fun poll(conf: VolatileConfig, timeout: Long, unit: TimeUnit): WebDriver = poll(0, conf, timeout, unit)
 
-    @Throws(WebDriverPoolExhaustedException::class)
+    @Throws(WebDriverPoolException::class)
     fun poll(priority: Int, conf: VolatileConfig, timeout: Duration): WebDriver {
-        return poll(0, conf, timeout.seconds, TimeUnit.SECONDS)
+        return runBlocking { pollDeferred(priority, conf, timeout) }
     }
 
-    @Throws(WebDriverPoolExhaustedException::class)
+    @Throws(WebDriverPoolException::class)
     fun poll(priority: Int, conf: VolatileConfig, timeout: Long, unit: TimeUnit): WebDriver {
-        return poll0(priority, conf, timeout, unit).also {
+        return poll(priority, conf, Duration.ofMillis(unit.toMillis(timeout)))
+    }
+
+    /**
+     * Wait for a free driver without blocking the thread, a new driver is created if the pool is not full
+     * */
+    @Throws(WebDriverPoolException::class)
+    suspend fun pollDeferred(priority: Int, conf: VolatileConfig, timeout: Duration): WebDriver {
+        return poll0(priority, conf, timeout).also {
             numWorking.incrementAndGet()
             lastActiveTime = Instant.now()
         }
@@ -172,10 +229,20 @@ class LoadingWebDriverPool(
 
     override fun toString(): String = formatStatus(false)
 
-    @Synchronized
+    /**
+     * Hand the driver over to the waiter with the highest priority, or keep it free if there is no waiter
+     * */
     private fun offer(driver: WebDriver) {
-        freeDrivers.offer(driver.apply { free() })
-        lock.withLock { notEmpty.signalAll() }
+        driver.free()
+        lock.withLock {
+            val waiter = waiters.poll()
+            if (waiter != null) {
+                waiter.driver = driver
+                waiter.deferred.complete(driver)
+            } else {
+                freeDrivers.offer(driver)
+            }
+        }
     }
 
     @Synchronized
@@ -193,47 +260,88 @@ class LoadingWebDriverPool(
     }
 
     @Throws(WebDriverPoolException::class)
-    private fun poll0(priority: Int, conf: VolatileConfig? = null, timeout: Long, unit: TimeUnit): WebDriver {
-        if (conf != null) {
-            createDriverIfNecessary(priority, conf)
+    private suspend fun poll0(priority: Int, conf: VolatileConfig, timeout: Duration): WebDriver {
+        createDriverIfNecessary(priority, conf)
+
+        val startTime = System.currentTimeMillis()
+        val waiter = lock.withLock {
+            checkState()
+            freeDrivers.poll()?.let { driver ->
+                histogramWaitMillis.update(0)
+                return driver
+            }
+            Waiter(priority, waiterSequencer.incrementAndGet()).also { waiters.add(it) }
         }
 
         numWaiting.incrementAndGet()
         val driver = try {
-            freeDrivers.poll(timeout, unit)
-        } catch (e: InterruptedException) {
-            Thread.currentThread().interrupt()
-            throw WebDriverPoolException(e)
+            withTimeoutOrNull(timeout.toMillis()) { waiter.deferred.await() } ?: abandon(waiter)
+        } catch (e: CancellationException) {
+            abandon(waiter)?.let { offer(it) }
+            throw e
         } finally {
             numWaiting.decrementAndGet()
+            histogramWaitMillis.update(System.currentTimeMillis() - startTime)
         }
 
         return driver?:throw WebDriverPoolExhaustedException("Driver pool is exhausted (" + formatStatus() + ")")
     }
 
-    private fun createDriverIfNecessary(priority: Int, conf: VolatileConfig) {
-        if (shouldCreateDriver()) {
-            synchronized(driverFactory) {
-                if (shouldCreateDriver()) {
-                    // log.info("Creating the {}/{}th web driver for context {}", numCreate, capacity, browserInstanceId)
-                    val driver = driverFactory.create(browserInstanceId, priority, conf)
-                    lock.withLock {
-                        freeDrivers.add(driver)
-                        notEmpty.signalAll()
-                        onlineDrivers.add(driver)
-                    }
-                    logDriverOnline(driver)
-                }
+    /**
+     * Remove the waiter from the queue, return the driver if it's handed over just before the waiter gives up
+     * */
+    private fun abandon(waiter: Waiter): WebDriver? {
+        return lock.withLock {
+            waiters.remove(waiter)
+            waiter.driver
+        }
+    }
+
+    private suspend fun createDriverIfNecessary(priority: Int, conf: VolatileConfig) {
+        if (!reserveCreation()) {
+            return
+        }
+
+        try {
+            // once started, the creation is not cancellable, otherwise a driver created for a cancelled caller is lost,
+            // it's offered to the pool as usual and the caller is cancelled at its next suspension point
+            val driver = creationPermits.withPermit {
+                withContext(NonCancellable + Dispatchers.IO) { driverFactory.create(browserInstanceId, priority, conf) }
             }
+
+            if (!isActive) {
+                driver.runCatching { quit().also { counterQuit.inc() } }
+                return
+            }
+
+            onlineDrivers.add(driver)
+            offer(driver)
+            logDriverOnline(driver)
+        } finally {
+            numCreating.decrementAndGet()
+        }
+    }
+
+    /**
+     * Reserve a slot for a new driver, the drivers being created are counted so the pool never exceeds the capacity
+     * */
+    private fun reserveCreation(): Boolean {
+        return lock.withLock {
+            shouldCreateDriver().also { if (it) numCreating.incrementAndGet() }
         }
     }
 
     private fun shouldCreateDriver(): Boolean {
-        return isActive && availableMemory > BROWSER_DRIVER_INSTANCE_REQUIRED_MEMORY && onlineDrivers.size < capacity
+        return isActive && availableMemory > BROWSER_DRIVER_INSTANCE_REQUIRED_MEMORY
+                && onlineDrivers.size + numCreating.get() < capacity
     }
 
     private fun doClose(timeToWait: Duration) {
-        freeDrivers.clear()
+        lock.withLock {
+            freeDrivers.clear()
+            waiters.forEach { it.deferred.completeExceptionally(WebDriverPoolException("Driver pool is closed")) }
+            waiters.clear()
+        }
 
         val nonSynchronized = onlineDrivers.toList().also { onlineDrivers.clear() }
         nonSynchronized.parallelStream().forEach { it.cancel() }
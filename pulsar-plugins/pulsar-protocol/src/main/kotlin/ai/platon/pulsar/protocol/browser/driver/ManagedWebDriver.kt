@@ -11,6 +11,7 @@ import org.apache.commons.lang3.StringUtils
 import org.openqa.selenium.NoSuchSessionException
 import org.openqa.selenium.chrome.ChromeDriver
 import org.slf4j.LoggerFactory
+import java.time.Duration
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.logging.Level
@@ -88,6 +89,9 @@ class ManagedWebDriver(
             else -> false
         }
 
+    override val isReadinessTracked: Boolean
+        get() = driver is ChromeDevtoolsDriver
+
     /**
      * Navigate to the url
      * The browser might redirect, so it might not be the same to [currentUrl]
@@ -112,6 +116,31 @@ class ManagedWebDriver(
         }
     }
 
+    @Throws(NoSuchSessionException::class)
+    override suspend fun evaluateDeferred(expression: String): Any? {
+        return when {
+            isNotWorking -> null
+            driver is ChromeDevtoolsDriver -> driver.evaluateDeferred(expression)
+            else -> evaluate(expression)
+        }
+    }
+
+    override suspend fun waitForLoad(timeout: Duration): Boolean {
+        return when {
+            isNotWorking -> false
+            driver is ChromeDevtoolsDriver -> driver.waitForLoad(timeout)
+            else -> false
+        }
+    }
+
+    override suspend fun waitForReady(timeout: Duration): String? {
+        return when {
+            isNotWorking -> null
+            driver is ChromeDevtoolsDriver -> driver.waitForReady(timeout)
+            else -> null
+        }
+    }
+
     override fun bringToFront() {
         when (driver) {
             is MockWebDriver -> {
@@ -32,9 +32,11 @@ open class WebDriverFactory(
     /**
      * Create a RemoteWebDriver
      * Use reflection so we can make the dependency level to be "provided" rather than "source"
+     *
+     * Drivers can be created in parallel, the launches of the same browser instance are serialized by
+     * [BrowserInstanceManager]
      */
     @Throws(DriverLaunchException::class)
-    @Synchronized
     fun create(browserInstanceId: BrowserInstanceId, priority: Int, conf: VolatileConfig): ManagedWebDriver {
         log.debug("Creating web driver #{} | {}", numDrivers.incrementAndGet(), browserInstanceId)
 
@@ -2,6 +2,7 @@ package ai.platon.pulsar.protocol.browser.driver
 
 import ai.platon.pulsar.common.*
 import ai.platon.pulsar.common.config.CapabilityTypes.BROWSER_EAGER_ALLOCATE_TABS
+import ai.platon.pulsar.common.config.CapabilityTypes.BROWSER_MAX_ACTIVE_TABS
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.config.Parameterized
 import ai.platon.pulsar.common.config.VolatileConfig
@@ -14,6 +15,7 @@ import kotlinx.coroutines.withTimeoutOrNull
 import org.slf4j.LoggerFactory
 import java.time.Duration
 import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentSkipListMap
 import java.util.concurrent.ConcurrentSkipListSet
 import java.util.concurrent.atomic.AtomicBoolean
@@ -22,6 +24,10 @@ class WebDriverTask<R> (
         val browserId: BrowserInstanceId,
         val priority: Int,
         val volatileConfig: VolatileConfig,
+        /**
+         * The url the task loads, the running driver is indexed by the url so it can be canceled immediately
+         * */
+        val url: String? = null,
         val action: suspend (driver: WebDriver) -> R
 )
 
@@ -48,6 +54,15 @@ open class WebDriverPoolManager(
 
     val driverPools = ConcurrentSkipListMap<BrowserInstanceId, LoadingWebDriverPool>()
     val retiredPools = ConcurrentSkipListSet<BrowserInstanceId>()
+    /**
+     * The drivers running tasks and the urls of the tasks, indexed by the driver ids,
+     * tasks of the same url may run on different drivers at the same time
+     * */
+    val runningDrivers = ConcurrentHashMap<Int, Pair<String?, WebDriver>>()
+    /**
+     * The drivers running tasks indexed by the task urls, kept in step with [runningDrivers]
+     * */
+    private val runningDriversByUrl = ConcurrentHashMap<String, MutableSet<WebDriver>>()
 
     val isActive get() = !closed.get() && AppContext.isActive
     val startTime = Instant.now()
@@ -90,7 +105,12 @@ open class WebDriverPoolManager(
     @Throws(IllegalApplicationContextStateException::class)
     suspend fun <R> run(browserId: BrowserInstanceId, priority: Int, volatileConfig: VolatileConfig,
                         action: suspend (driver: WebDriver) -> R?
-    ) = run(WebDriverTask(browserId, priority, volatileConfig, action))
+    ) = run(WebDriverTask(browserId, priority, volatileConfig, action = action))
+
+    @Throws(IllegalApplicationContextStateException::class)
+    suspend fun <R> run(browserId: BrowserInstanceId, url: String, priority: Int, volatileConfig: VolatileConfig,
+                        action: suspend (driver: WebDriver) -> R?
+    ) = run(WebDriverTask(browserId, priority, volatileConfig, url, action))
 
     @Throws(IllegalApplicationContextStateException::class)
     suspend fun <R> run(task: WebDriverTask<R>): R? {
@@ -108,21 +128,43 @@ open class WebDriverPoolManager(
         }
     }
 
+    /**
+     * Create the driver pool for [browserId] and allocate all its drivers ahead of the first task
+     * */
+    fun warmUp(browserId: BrowserInstanceId, priority: Int = 0, volatileConfig: VolatileConfig? = null) {
+        checkState()
+
+        if (isRetiredPool(browserId)) {
+            throw WebDriverPoolException("Web driver pool is retired | $browserId")
+        }
+
+        val conf = volatileConfig ?: immutableConfig.toVolatileConfig()
+        computeDriverPoolIfAbsent(browserId, priority, conf).allocate(conf)
+    }
+
     fun isRetiredPool(browserId: BrowserInstanceId) = retiredPools.contains(browserId)
 
+    /**
+     * Clear the retired mark of [browserId], a new context reuses the browser once the retired pool is closed
+     * */
+    fun unretire(browserId: BrowserInstanceId) {
+        retiredPools.remove(browserId)
+    }
+
+    /**
+     * The number of drivers the pool of [browserId] can still lend, the pool is full capacity if it's not created yet
+     * */
+    fun numAvailableDrivers(browserId: BrowserInstanceId): Int {
+        return driverPools[browserId]?.numAvailable ?: immutableConfig.getInt(BROWSER_MAX_ACTIVE_TABS, AppContext.NCPU)
+    }
+
     /**
      * Cancel the fetch task specified by [url] remotely
      * NOTE: A cancel request should run immediately not waiting for any browser task return
      * */
     fun cancel(url: String): WebDriver? {
         checkState()
-        var driver: WebDriver? = null
-        driverPools.values.forEach { driverPool ->
-            driver = driverPool.firstOrNull { it.url == url }?.also {
-                it.cancel()
-            }
-        }
-        return driver
+        return cancelRunning(url) { true }
     }
 
     /**
@@ -131,8 +173,15 @@ open class WebDriverPoolManager(
      * */
     fun cancel(browserId: BrowserInstanceId, url: String): WebDriver? {
         checkState()
-        val driverPool = driverPools[browserId] ?: return null
-        return driverPool.firstOrNull { it.url == url }?.also { it.cancel() }
+        return cancelRunning(url) { it.browserInstanceId == browserId }
+    }
+
+    /**
+     * Cancel all the drivers running tasks of [url] and accepted by [filter], return the first of them
+     * */
+    private fun cancelRunning(url: String, filter: (WebDriver) -> Boolean): WebDriver? {
+        val drivers = runningDriversByUrl[url] ?: return null
+        return drivers.filter(filter).onEach { it.cancel() }.firstOrNull()
     }
 
     /**
@@ -191,7 +240,7 @@ open class WebDriverPoolManager(
                 throw WebDriverPoolException("Web driver pool is retired | $browserId")
             }
 
-            val driverPool = computeDriverPoolIfAbsent(browserId, task)
+            val driverPool = computeDriverPoolIfAbsent(browserId, task.priority, task.volatileConfig)
             if (!driverPool.isActive) {
                 throw WebDriverPoolException("Driver pool is already closed | $driverPool | $browserId")
             }
@@ -199,7 +248,8 @@ open class WebDriverPoolManager(
             var driver: WebDriver? = null
             try {
                 checkState()
-                driver = driverPool.poll(task.priority, task.volatileConfig, pollingDriverTimeout).apply { startWork() }
+                driver = driverPool.pollDeferred(task.priority, task.volatileConfig, pollingDriverTimeout).apply { startWork() }
+                addRunningDriver(task.url, driver)
                 driverPool.numTasks.incrementAndGet()
                 result = withTimeoutOrNull(taskTimeout.toMillis()) {
                     checkState()
@@ -220,16 +270,40 @@ open class WebDriverPoolManager(
                 }
             }
             finally {
-                driver?.let { driverPool.put(it) }
+                driver?.let {
+                    removeRunningDriver(task.url, it)
+                    driverPool.put(it)
+                }
             }
         }
 
         return result
     }
 
+    private fun addRunningDriver(url: String?, driver: WebDriver) {
+        runningDrivers[driver.id] = url to driver
+        if (url != null) {
+            runningDriversByUrl.compute(url) { _, drivers ->
+                (drivers ?: ConcurrentHashMap.newKeySet()).also { it.add(driver) }
+            }
+        }
+    }
+
+    private fun removeRunningDriver(url: String?, driver: WebDriver) {
+        runningDrivers.remove(driver.id)
+        if (url != null) {
+            // remove the set once it's empty, compute is atomic per key so a concurrent add is not lost
+            runningDriversByUrl.computeIfPresent(url) { _, drivers ->
+                drivers.remove(driver)
+                drivers.takeIf { it.isNotEmpty() }
+            }
+        }
+    }
+
     @Synchronized
-    private fun <R> computeDriverPoolIfAbsent(browserId: BrowserInstanceId, task: WebDriverTask<R>): LoadingWebDriverPool {
-        return driverPools.computeIfAbsent(browserId) { createUnmanagedDriverPool(browserId, task.priority, task.volatileConfig) }
+    private fun computeDriverPoolIfAbsent(
+            browserId: BrowserInstanceId, priority: Int, volatileConfig: VolatileConfig): LoadingWebDriverPool {
+        return driverPools.computeIfAbsent(browserId) { createUnmanagedDriverPool(browserId, priority, volatileConfig) }
     }
 
     private fun doCloseDriverPool(browserId: BrowserInstanceId) {
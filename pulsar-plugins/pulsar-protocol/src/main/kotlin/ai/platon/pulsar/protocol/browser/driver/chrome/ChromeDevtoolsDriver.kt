@@ -26,6 +26,8 @@ import org.openqa.selenium.OutputType
 import org.openqa.selenium.remote.RemoteWebDriver
 import org.openqa.selenium.remote.SessionId
 import org.slf4j.LoggerFactory
+import java.time.Duration
+import java.time.Instant
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
 
@@ -64,6 +66,7 @@ class ChromeDevtoolsDriver(
     val browserInstance: BrowserInstance
     val tab: ChromeTab
     val devTools: RemoteDevTools
+    val readinessTracker: PageReadinessTracker
 
     private var lastSessionId: SessionId? = null
     private val browser get() = devTools.browser
@@ -98,6 +101,8 @@ class ChromeDevtoolsDriver(
             navigateUrl = tab.url ?: ""
 
             devTools = browserInstance.createDevTools(tab, devToolsConfig)
+            readinessTracker = PageReadinessTracker(devTools, enableUrlBlocking)
+            readinessTracker.setup()
 
             if (userAgent.isNotEmpty()) {
                 emulation.setUserAgentOverride(userAgent)
@@ -139,6 +144,50 @@ class ChromeDevtoolsDriver(
         }
     }
 
+    /**
+     * Evaluate the expression without blocking the calling thread
+     * */
+    @Throws(NoSuchSessionException::class)
+    suspend fun evaluateDeferred(expression: String): Any? {
+        if (!isActive) return null
+
+        try {
+            val evaluate = devTools.invokeDeferred { runtime.evaluate(expression) }
+            return evaluate?.result?.value
+        } catch (e: ChromeDevToolsInvocationException) {
+            numSessionLost.incrementAndGet()
+            throw NoSuchSessionException(e.message)
+        }
+    }
+
+    /**
+     * Suspend until the page is loaded, return false if timeout
+     * */
+    suspend fun waitForLoad(timeout: Duration): Boolean {
+        return isActive && readinessTracker.awaitLoaded(timeout)
+    }
+
+    /**
+     * Suspend until the injected script reports the document is ready, return the message reported by
+     * the script, or null if timeout. Returns null as soon as the DOM content is loaded if the document
+     * does not report, so the caller can poll the page in the rest time.
+     * */
+    suspend fun waitForReady(timeout: Duration): String? {
+        if (!isActive) return null
+
+        val startTime = Instant.now()
+        if (!readinessTracker.awaitDomContentLoaded(timeout)) {
+            return null
+        }
+
+        if (evaluateDeferred("__utils__.isReadySignaling()") != true) {
+            return null
+        }
+
+        val remainingTime = timeout - Duration.between(startTime, Instant.now())
+        return readinessTracker.awaitReady(remainingTime)
+    }
+
     @Throws(NoSuchSessionException::class)
     override fun executeScript(script: String, vararg args: Any): Any? {
         TODO("Use evaluate instead")
@@ -317,6 +366,7 @@ class ChromeDevtoolsDriver(
 //            fetch.enable()
 
             navigateUrl = url
+            readinessTracker.reset()
             page.navigate(url)
         } catch (e: ChromeDevToolsInvocationException) {
             numSessionLost.incrementAndGet()
@@ -331,6 +381,7 @@ class ChromeDevtoolsDriver(
         try {
             page.enable()
             navigateUrl = url
+            readinessTracker.reset()
             page.navigate(url)
         } catch (e: ChromeDevToolsInvocationException) {
             numSessionLost.incrementAndGet()
@@ -0,0 +1,179 @@
+package ai.platon.pulsar.protocol.browser.driver.chrome
+
+import ai.platon.pulsar.browser.driver.BrowserControl
+import ai.platon.pulsar.browser.driver.chrome.RemoteDevTools
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.withTimeoutOrNull
+import org.slf4j.LoggerFactory
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Track the readiness of the page in a tab by devtools events instead of polling the page.
+ *
+ * The tracker listens to Page.lifecycleEvent, Page.domContentEventFired, Page.loadEventFired and, if the network
+ * domain is enabled, Network.requestWillBeSent/loadingFinished/loadingFailed to track requests in flight.
+ * The injected script decides when the document is actually ready and notifies the tracker through
+ * a runtime binding, see __utils__.signalReadyWhenReady. Every navigation gets a new id which the script sends back
+ * with the signal, so a late signal of the last document is never taken for the current one.
+ * */
+class PageReadinessTracker(
+    private val devTools: RemoteDevTools,
+    private val trackNetwork: Boolean = false
+) {
+    companion object {
+        const val READY_BINDING_NAME = BrowserControl.READY_BINDING_NAME
+        const val NAVIGATION_ID_NAME = BrowserControl.NAVIGATION_ID_NAME
+        val NETWORK_IDLE_TIME: Duration = Duration.ofMillis(500)
+    }
+
+    enum class Stage { NAVIGATING, DOM_CONTENT_LOADED, LOADED }
+
+    private val logger = LoggerFactory.getLogger(PageReadinessTracker::class.java)
+
+    private val page get() = devTools.page
+    private val runtime get() = devTools.runtime
+    private val network get() = devTools.network
+
+    @Volatile
+    private var mainFrameId: String? = null
+    @Volatile
+    private var loaded = CompletableDeferred<Stage>()
+    @Volatile
+    private var domContentLoaded = CompletableDeferred<Unit>()
+    @Volatile
+    private var ready = CompletableDeferred<String>()
+    private val navigationIds = AtomicInteger()
+    @Volatile
+    private var navigationId = 0
+    private var navigationIdScriptId: String? = null
+    private val inFlightRequests = AtomicInteger()
+    @Volatile
+    private var lastNetworkActiveTime = Instant.now()
+
+    @Volatile
+    var stage = Stage.NAVIGATING
+        private set
+
+    /**
+     * Whether there is no request in flight for a while, always false if the network is not tracked
+     * */
+    val isNetworkIdle get() = trackNetwork && inFlightRequests.get() <= 0
+            && Duration.between(lastNetworkActiveTime, Instant.now()) > NETWORK_IDLE_TIME
+
+    /**
+     * Subscribe events, should be called only once for a tab
+     * */
+    fun setup() {
+        page.setLifecycleEventsEnabled(true)
+        page.onFrameNavigated {
+            if (it.frame.parentId == null) {
+                mainFrameId = it.frame.id
+            }
+        }
+        page.onDomContentEventFired { advance(Stage.DOM_CONTENT_LOADED) }
+        page.onLoadEventFired { advance(Stage.LOADED) }
+        page.onLifecycleEvent {
+            // networkAlmostIdle: there are no more than 2 connections for at least 500 ms
+            if (it.name == "networkAlmostIdle" && isMainFrame(it.frameId) && stage >= Stage.DOM_CONTENT_LOADED) {
+                loaded.complete(stage)
+            }
+        }
+
+        if (trackNetwork) {
+            network.onRequestWillBeSent { onNetworkActive(1) }
+            network.onLoadingFinished { onNetworkActive(-1) }
+            network.onLoadingFailed { onNetworkActive(-1) }
+        }
+
+        runtime.enable()
+        runtime.addBinding(READY_BINDING_NAME)
+        runtime.onBindingCalled {
+            if (it.name == READY_BINDING_NAME) {
+                onReadySignal(it.payload ?: "")
+            }
+        }
+    }
+
+    /**
+     * Reset the state, should be called before every navigation
+     * */
+    fun reset() {
+        stage = Stage.NAVIGATING
+        mainFrameId = null
+        inFlightRequests.set(0)
+        lastNetworkActiveTime = Instant.now()
+        // the old signals are left as is, waiters of the last navigation just time out
+        loaded = CompletableDeferred()
+        domContentLoaded = CompletableDeferred()
+        navigationId = navigationIds.incrementAndGet()
+        ready = CompletableDeferred()
+
+        // tell the documents of this navigation which navigation they belong to
+        navigationIdScriptId?.let { page.removeScriptToEvaluateOnNewDocument(it) }
+        navigationIdScriptId = page.addScriptToEvaluateOnNewDocument("window.$NAVIGATION_ID_NAME = $navigationId;")
+    }
+
+    /**
+     * Suspend until the page is loaded: the load event is fired, or the DOM content is loaded and the network
+     * is almost idle. Returns false if timeout.
+     * */
+    suspend fun awaitLoaded(timeout: Duration): Boolean {
+        return withTimeoutOrNull(timeout.toMillis()) { loaded.await() } != null
+    }
+
+    /**
+     * Suspend until the DOM content of the current navigation is loaded. Returns false if timeout.
+     * */
+    suspend fun awaitDomContentLoaded(timeout: Duration): Boolean {
+        return withTimeoutOrNull(timeout.toMillis()) { domContentLoaded.await() } != null
+    }
+
+    /**
+     * Suspend until the injected script reports the document is ready. Returns the message reported by
+     * the script, or null if timeout.
+     * */
+    suspend fun awaitReady(timeout: Duration): String? {
+        return withTimeoutOrNull(timeout.toMillis()) { ready.await() }
+    }
+
+    private fun advance(newStage: Stage) {
+        if (newStage > stage) {
+            stage = newStage
+        }
+
+        if (stage >= Stage.DOM_CONTENT_LOADED) {
+            domContentLoaded.complete(Unit)
+        }
+
+        if (stage == Stage.LOADED || (stage == Stage.DOM_CONTENT_LOADED && isNetworkIdle)) {
+            loaded.complete(stage)
+        }
+
+        logger.takeIf { it.isTraceEnabled }?.trace("Page stage: {}", stage)
+    }
+
+    /**
+     * The payload is "<navigationId>:<message>", signals of the other navigations are ignored
+     * */
+    private fun onReadySignal(payload: String) {
+        val id = payload.substringBefore(':', "")
+        if (id != navigationId.toString()) {
+            logger.debug("Ignore ready signal of navigation {}, expect {}", id, navigationId)
+            return
+        }
+
+        ready.complete(payload.substringAfter(':'))
+    }
+
+    private fun onNetworkActive(delta: Int) {
+        inFlightRequests.addAndGet(delta)
+        lastNetworkActiveTime = Instant.now()
+    }
+
+    private fun isMainFrame(frameId: String?): Boolean {
+        val id = mainFrameId
+        return id == null || id == frameId
+    }
+}
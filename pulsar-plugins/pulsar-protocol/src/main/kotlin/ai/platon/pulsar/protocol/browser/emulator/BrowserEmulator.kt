@@ -22,6 +22,8 @@ import kotlinx.coroutines.delay
 import kotlinx.coroutines.withContext
 import org.openqa.selenium.WebDriverException
 import org.slf4j.LoggerFactory
+import java.time.Duration
+import java.time.Instant
 import java.util.concurrent.ThreadLocalRandom
 
 /**
@@ -38,6 +40,8 @@ open class BrowserEmulator(
 
     val numDeferredNavigates by lazy { AppMetrics.reg.meter(this, "deferredNavigates") }
 
+    private val noJsMaxWaitTime = Duration.ofSeconds(45)
+
     init {
         params.withLogger(logger).info(true)
     }
@@ -169,6 +173,18 @@ open class BrowserEmulator(
 
     @Throws(NavigateTaskCancellationException::class, IllegalApplicationContextStateException::class)
     protected open suspend fun interactNoJsInvaded(interactTask: InteractTask): InteractResult {
+        val driver = interactTask.driver
+        if (driver.isReadinessTracked) {
+            // wait for the load event instead of polling the page source
+            counterRequests.inc()
+            checkState(driver)
+            checkState(interactTask.fetchTask)
+            driver.waitForLoad(interactTask.driverConfig.pageLoadTimeout.coerceAtMost(noJsMaxWaitTime))
+            checkState(driver)
+            checkState(interactTask.fetchTask)
+            return InteractResult(ProtocolStatus.STATUS_SUCCESS, null)
+        }
+
         var pageSource = ""
         var i = 0
         do {
@@ -233,6 +249,17 @@ open class BrowserEmulator(
         var message: Any? = null
         try {
             var msg: Any? = null
+            if (interactTask.driver.isReadinessTracked) {
+                // the injected script checks the document itself and reports through a runtime binding
+                val startTime = Instant.now()
+                msg = interactTask.driver.waitForReady(scriptTimeout)
+                if (msg == null) {
+                    // the script did not report, poll the document in the rest rounds, one round every 500 ms
+                    val elapsedRounds = Duration.between(startTime, Instant.now()).toMillis() / 500
+                    i = elapsedRounds.coerceAtMost(maxRound - 1).toInt().coerceAtLeast(0)
+                }
+            }
+
             while ((msg == null || msg == false) && i++ < maxRound) {
                 msg = evaluate(interactTask, expression)
 
@@ -315,7 +342,7 @@ open class BrowserEmulator(
         counterRequests.inc()
         checkState(interactTask.driver)
         checkState(interactTask.fetchTask)
-        val result = interactTask.driver.evaluate(expression)
+        val result = interactTask.driver.evaluateDeferred(expression)
         if (delayMillis > 0) {
             delay(delayMillis)
         }
@@ -73,7 +73,10 @@ open class EventHandler(
         numNavigates.incrementAndGet()
 
         val pageDatum = task.pageDatum
-        val length = task.pageSource.length
+        // The only copy of the page source, all the checks and the charset rewriting work on the UTF-8 bytes,
+        // and the bytes are stored as the page content as is
+        var content = task.pageSource.toByteArray(StandardCharsets.UTF_8)
+        val length = content.size
         pageSourceByteHistogram.update(length)
         pageSourceBytes.mark(length.toLong())
 
@@ -87,7 +90,7 @@ open class EventHandler(
         }
 
         // Check if the page source is integral
-        val integrity = checkHtmlIntegrity(task.pageSource, task.page, pageDatum.protocolStatus, task.task)
+        val integrity = checkHtmlIntegrity(content, task.page, pageDatum.protocolStatus, task.task)
         // Check browse timeout event, transform status to be success if the page source is good
         if (pageDatum.protocolStatus.isTimeout) {
             if (integrity.isOK) {
@@ -97,10 +100,10 @@ open class EventHandler(
             handleBrowseTimeout(task)
         }
 
-        pageDatum.headers.put(HttpHeaders.CONTENT_LENGTH, task.pageSource.length.toString())
+        pageDatum.headers.put(HttpHeaders.CONTENT_LENGTH, length.toString())
         if (integrity.isOK) {
             // Update page source, modify charset directive, do the caching stuff
-            task.pageSource = normalizePageSource(task.pageSource).toString()
+            content = normalizePageSource(content)
         } else {
             // The page seems to be broken, retry it
             pageDatum.protocolStatus = handleBrokenPageSource(task.task, integrity)
@@ -110,7 +113,7 @@ open class EventHandler(
         pageDatum.apply {
             lastBrowser = task.driver.browserType
             htmlIntegrity = integrity
-            content = task.pageSource.toByteArray(StandardCharsets.UTF_8)
+            this.content = content
         }
 
         // Update headers, metadata, do the logging stuff
@@ -129,36 +132,34 @@ open class EventHandler(
      * Check if the html is integral without field extraction, a further html integrity checking can be
      * applied after field extraction.
      * */
-    open fun checkHtmlIntegrity(pageSource: String, page: WebPage, status: ProtocolStatus, task: FetchTask): HtmlIntegrity {
-        val length = pageSource.length.toLong()
+    open fun checkHtmlIntegrity(content: ByteArray, page: WebPage, status: ProtocolStatus, task: FetchTask): HtmlIntegrity {
+        val length = content.size.toLong()
 
         return when {
             length == 0L -> HtmlIntegrity.EMPTY_0B
             length == 39L -> HtmlIntegrity.EMPTY_39B
-            isBlankBody(pageSource) -> HtmlIntegrity.BLANK_BODY
-            else -> checkHtmlIntegrity(pageSource)
+            isBlankBody(content) -> HtmlIntegrity.BLANK_BODY
+            else -> checkHtmlIntegrity(content)
         }
     }
 
-    open fun normalizePageSource(pageSource: String): StringBuilder {
+    open fun normalizePageSource(content: ByteArray): ByteArray {
         // The browser has already convert source code to UTF-8
-        return replaceHTMLCharset(pageSource, charsetPattern, "UTF-8")
+        return replaceHTMLCharset(content, charsetPattern, "UTF-8")
     }
 
-    open fun checkHtmlIntegrity(pageSource: String): HtmlIntegrity {
-        val p1 = pageSource.indexOf("<body")
+    open fun checkHtmlIntegrity(content: ByteArray): HtmlIntegrity {
+        val p1 = indexOfAscii(content, "<body")
         if (p1 <= 0) return HtmlIntegrity.OTHER
-        val p2 = pageSource.indexOf(">", p1)
+        val p2 = indexOfAscii(content, ">", p1)
         if (p2 < p1) return HtmlIntegrity.OTHER
         // no any link, it's broken
-        val p3 = pageSource.indexOf("<a", p2)
+        val p3 = indexOfAscii(content, "<a", p2)
         if (p3 < p2) return HtmlIntegrity.NO_ANCHOR
 
         if (jsInvadingEnabled) {
-            // TODO: optimize using region match
-            val bodyTag = pageSource.substring(p1, p2)
             // The javascript set data-error flag to indicate if the vision information of all DOM nodes is calculated
-            val r = bodyTag.contains("data-error=\"0\"")
+            val r = indexOfAscii(content, "data-error=\"0\"", p1, p2) >= 0
             if (!r) {
                 return HtmlIntegrity.NO_JS_OK_FLAG
             }
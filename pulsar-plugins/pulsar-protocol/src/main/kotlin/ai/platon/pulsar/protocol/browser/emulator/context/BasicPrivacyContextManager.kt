@@ -1,5 +1,6 @@
 package ai.platon.pulsar.protocol.browser.emulator.context
 
+import ai.platon.pulsar.common.config.CapabilityTypes.PRIVACY_CONTEXT_NUMBER
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.proxy.ProxyPoolManager
 import ai.platon.pulsar.crawl.fetch.CoreMetrics
@@ -10,8 +11,23 @@ import ai.platon.pulsar.crawl.fetch.privacy.PrivacyContext
 import ai.platon.pulsar.crawl.fetch.privacy.PrivacyContextId
 import ai.platon.pulsar.crawl.fetch.privacy.PrivacyManager
 import ai.platon.pulsar.protocol.browser.driver.WebDriverPoolManager
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import java.time.Duration
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicBoolean
 
-class BasicPrivacyContextManager(
+/**
+ * Keep [numPrivacyContexts] contexts active and dispatch every task to the less loaded one of two random contexts,
+ * the load of a context is measured by its running tasks, its free driver slots and its recent privacy warnings.
+ *
+ * A standby context is warmed up in the background once an active context starts to leak, so when the leaked
+ * context is retired, the standby one takes over immediately.
+ *
+ * Contexts of the same id share the browser and the driver pool, so a context is never created while a context of
+ * the same id is active or still closing. Retired contexts are closed in the background, the closing never holds the
+ * lock of the active context list.
+ * */
+open class BasicPrivacyContextManager(
     val driverPoolManager: WebDriverPoolManager,
     val proxyPoolManager: ProxyPoolManager? = null,
     val coreMetrics: CoreMetrics? = null,
@@ -20,8 +36,22 @@ class BasicPrivacyContextManager(
     constructor(driverPoolManager: WebDriverPoolManager, immutableConfig: ImmutableConfig)
             : this(driverPoolManager, null, null, immutableConfig)
 
+    val numPrivacyContexts = conf.getInt(PRIVACY_CONTEXT_NUMBER, 2).coerceAtLeast(1)
+    /**
+     * The contexts warmed up in the background, a standby context is activated when an active one is retired
+     * */
+    val standbyContexts = ConcurrentLinkedQueue<PrivacyContext>()
+    private val warmingUp = AtomicBoolean()
+    /**
+     * The retired contexts being closed in the background, keyed by their ids
+     * */
+    private val closingContexts = ConcurrentHashMap<PrivacyContextId, CompletableFuture<Unit>>()
+    private val closeTimeout = Duration.ofMinutes(2)
+    private val backgroundExecutor = Executors.newCachedThreadPool(
+            ThreadFactoryBuilder().setNameFormat("privacy-context-%d").setDaemon(true).build())
+
     override suspend fun run(task: FetchTask, fetchFun: suspend (FetchTask, WebDriver) -> FetchResult): FetchResult {
-        return run0(computeIfAbsent(privacyContextIdGenerator()), task, fetchFun)
+        return run0(computeNextContext(), task, fetchFun)
     }
 
     override fun createUnmanagedContext(id: PrivacyContextId): BrowserPrivacyContext {
@@ -32,14 +62,189 @@ class BasicPrivacyContextManager(
 
     override fun computeNextContext(): PrivacyContext {
         val context = computeIfNecessary()
-        return context.takeIf { it.isActive } ?: run { close(context); computeIfAbsent(privacyContextIdGenerator()) }
+        return context.takeIf { it.isActive } ?: run { retire(context); computeIfNecessary() }
     }
 
     override fun computeIfNecessary(): PrivacyContext {
-        return activeContexts.values.firstOrNull() ?: computeIfAbsent(privacyContextIdGenerator())
+        if (activeContexts.size < numPrivacyContexts) {
+            synchronized(activeContexts) {
+                // the id generator might return the same id every time, so do not loop until the size is reached
+                repeat(numPrivacyContexts - activeContexts.size) {
+                    val standby = standbyContexts.poll()
+                    if (standby != null) {
+                        activeContexts.putIfAbsent(standby.id, standby)
+                    } else {
+                        // do not wait for a closing context holding the lock
+                        privacyContextIdGenerator().takeUnless { isClosing(it) }?.let { computeIfAbsent(it) }
+                    }
+                }
+            }
+        }
+
+        val contexts = activeContexts.values.toList()
+        contexts.firstOrNull { isLeaking(it) }?.let { warmUpStandbyContextIfNecessary() }
+
+        return contexts.takeIf { it.isNotEmpty() }?.let { choose(it) } ?: computeIfAbsent(privacyContextIdGenerator())
+    }
+
+    /**
+     * Get the active context of the id, or create one. If a retired context of the same id is still closing, wait
+     * until it's closed, otherwise the new context might have its driver pool closed by the retired one.
+     * */
+    override fun computeIfAbsent(id: PrivacyContextId): PrivacyContext {
+        while (true) {
+            activeContexts[id]?.let { return it }
+
+            val closing = closingContexts[id]
+            if (closing != null) {
+                awaitClosed(id, closing)
+                continue
+            }
+
+            synchronized(activeContexts) {
+                if (!isClosing(id)) {
+                    return activeContexts.computeIfAbsent(id) { takeStandby(it) ?: createUnmanagedContext(it) }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the context from the active list, activate a replacement and close the context in the background.
+     * Closing does not wait for the running tasks, they are canceled.
+     * */
+    fun retire(privacyContext: PrivacyContext) {
+        val id = privacyContext.id
+        val closing = CompletableFuture<Unit>()
+        synchronized(activeContexts) {
+            if (activeContexts.remove(id) == null) {
+                return
+            }
+            zombieContexts.add(privacyContext)
+            closingContexts[id] = closing
+            standbyContexts.poll()?.let { activeContexts.putIfAbsent(it.id, it) }
+        }
+
+        val closeTask = Runnable {
+            try {
+                privacyContext.close()
+            } catch (t: Throwable) {
+                log.warn("Failed to close privacy context", t)
+            } finally {
+                closingContexts.remove(id, closing)
+                closing.complete(Unit)
+            }
+        }
+
+        try {
+            backgroundExecutor.execute(closeTask)
+        } catch (e: RejectedExecutionException) {
+            // the manager is closed
+            closeTask.run()
+        }
+    }
+
+    /**
+     * Check if a retired context of the id is still closing
+     * */
+    fun isClosing(id: PrivacyContextId) = closingContexts.containsKey(id)
+
+    override fun close() {
+        synchronized(activeContexts) {
+            standbyContexts.forEach { zombieContexts.add(it) }
+            standbyContexts.clear()
+        }
+        super.close()
+        backgroundExecutor.shutdownNow()
+    }
+
+    /**
+     * Power of two choices: pick two random contexts and choose the less loaded one
+     * */
+    private fun choose(contexts: List<PrivacyContext>): PrivacyContext {
+        if (contexts.size == 1) {
+            return contexts[0]
+        }
+
+        val random = ThreadLocalRandom.current()
+        val i = random.nextInt(contexts.size)
+        val j = random.nextInt(contexts.size - 1).let { if (it >= i) it + 1 else it }
+        val a = contexts[i]
+        val b = contexts[j]
+        return if (computeLoad(a) <= computeLoad(b)) a else b
+    }
+
+    /**
+     * The load of a context, the smaller the better, an inactive context is never chosen if there is an active one
+     * */
+    private fun computeLoad(context: PrivacyContext): Double {
+        if (!context.isActive) {
+            return Double.MAX_VALUE
+        }
+
+        val numRunningTasks = context.numRunningTasks.get()
+        val numAvailableSlots = (context as? BrowserPrivacyContext)?.numAvailableSlots ?: 0
+        val warningRate = 1.0 * context.privacyLeakWarnings.get() / context.maximumWarnings.coerceAtLeast(1)
+        return (1.0 + numRunningTasks) / (1.0 + numAvailableSlots.coerceAtLeast(0)) * (1.0 + warningRate)
+    }
+
+    /**
+     * A context is leaking if half of the allowed warnings are used, it will be retired soon
+     * */
+    private fun isLeaking(context: PrivacyContext): Boolean {
+        return !context.isActive || 2 * context.privacyLeakWarnings.get() >= context.maximumWarnings
     }
 
-    override fun computeIfAbsent(id: PrivacyContextId) = activeContexts.computeIfAbsent(id) { createUnmanagedContext(it) }
+    private fun awaitClosed(id: PrivacyContextId, closing: CompletableFuture<Unit>) {
+        try {
+            closing.get(closeTimeout.seconds, TimeUnit.SECONDS)
+        } catch (e: TimeoutException) {
+            log.warn("Timeout to close privacy context, create a new one anyway | {}", id.display)
+            closingContexts.remove(id, closing)
+        } catch (e: ExecutionException) {
+            closingContexts.remove(id, closing)
+        }
+    }
+
+    private fun takeStandby(id: PrivacyContextId): PrivacyContext? {
+        return standbyContexts.firstOrNull { it.id == id }?.takeIf { standbyContexts.remove(it) }
+    }
+
+    /**
+     * Create a standby context and warm it up in the background. The standby context is queued before it's warmed up,
+     * so it's never duplicated by a context of the same id, it might be activated before the warm-up is finished
+     * */
+    private fun warmUpStandbyContextIfNecessary() {
+        if (!isActive || standbyContexts.isNotEmpty() || !warmingUp.compareAndSet(false, true)) {
+            return
+        }
+
+        backgroundExecutor.execute {
+            var context: BrowserPrivacyContext? = null
+            try {
+                val id = privacyContextIdGenerator()
+                synchronized(activeContexts) {
+                    // the id generator might not generate a new id, in which case the context can not be warmed up
+                    if (!activeContexts.containsKey(id) && !isClosing(id) && standbyContexts.none { it.id == id }) {
+                        context = createUnmanagedContext(id).also { standbyContexts.add(it) }
+                    }
+                }
+
+                context?.let {
+                    it.warmUp()
+                    log.info("Privacy context is warmed up #{}", it.display)
+                }
+            } catch (t: Throwable) {
+                log.warn("Failed to warm up privacy context | {}", t.message)
+                synchronized(activeContexts) {
+                    // close it only if it's not activated yet
+                    context?.takeIf { standbyContexts.remove(it) }?.close()
+                }
+            } finally {
+                warmingUp.set(false)
+            }
+        }
+    }
 
     private suspend fun run0(privacyContext: PrivacyContext, task: FetchTask,
                             fetchFun: suspend (FetchTask, WebDriver) -> FetchResult)
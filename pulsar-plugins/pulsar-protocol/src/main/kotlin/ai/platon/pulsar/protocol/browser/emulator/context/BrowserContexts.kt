@@ -50,12 +50,17 @@ class WebDriverContext(
     private val isActive get() = !closed.get()
     private val isShutdown = AtomicBoolean()
 
+    init {
+        // the previous context of the same browser is closed, the browser is in service again
+        driverPoolManager.unretire(browserId)
+    }
+
     suspend fun run(task: FetchTask, browseFun: suspend (FetchTask, WebDriver) -> FetchResult): FetchResult {
         globalTasks.mark()
         return checkAbnormalResult(task) ?: try {
             runningTasks.add(task)
             numGlobalRunningTasks.incrementAndGet()
-            driverPoolManager.run(browserId, task.priority, task.volatileConfig) {
+            driverPoolManager.run(browserId, task.url, task.priority, task.volatileConfig) {
                 browseFun(task, it)
             }?:FetchResult.crawlRetry(task)
         } catch (e: WebDriverPoolExhaustedException) {
@@ -79,6 +84,15 @@ class WebDriverContext(
         }
     }
 
+    /**
+     * Launch the browser and open all the tabs ahead of the first task
+     * */
+    fun warmUp() {
+        if (isActive) {
+            driverPoolManager.warmUp(browserId)
+        }
+    }
+
     fun shutdown() {
         isShutdown.set(true)
         close()
@@ -163,15 +177,19 @@ class ProxyContext(
             ).forEach { AppMetrics.reg.register(this, it.key, it.value) }
         }
 
+        /**
+         * Create a proxy context, suspend until a proxy is available or the polling timeout is reached
+         * */
         @Throws(ProxyException::class)
-        fun create(
+        suspend fun create(
                 id: PrivacyContextId,
                 driverContext: WebDriverContext,
                 proxyPoolManager: ProxyPoolManager,
                 conf: ImmutableConfig
         ): ProxyContext {
             val proxyPool = proxyPoolManager.proxyPool
-            val proxy = proxyPool.take()
+            val pollingTimeout = conf.getDuration(CapabilityTypes.PROXY_POOL_POLLING_TIMEOUT, Duration.ofSeconds(20))
+            val proxy = proxyPool.take(pollingTimeout)
 
             if (proxy != null) {
                 numProxyAbsence.takeIf { it.get() > 0 }?.decrementAndGet()
@@ -13,6 +13,9 @@ import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
 import ai.platon.pulsar.crawl.fetch.privacy.PrivacyContext
 import ai.platon.pulsar.crawl.fetch.privacy.PrivacyContextId
 import ai.platon.pulsar.protocol.browser.driver.WebDriverPoolManager
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import org.slf4j.LoggerFactory
 
 /**
@@ -29,10 +32,16 @@ open class BrowserPrivacyContext(
     private val browserInstanceId = BrowserInstanceId.resolve(id.dataDir)
     private val driverContext = WebDriverContext(browserInstanceId, driverPoolManager, conf)
     private var proxyContext: ProxyContext? = null
+    private val proxyMutex = Mutex()
+    @Volatile
     var proxyEntry: ProxyEntry? = null
     val numFreeDrivers get() = driverPoolManager.numFreeDrivers
     val numWorkingDrivers get() = driverPoolManager.numWorkingDrivers
     val numAvailableDrivers get() = driverPoolManager.numAvailableDrivers
+    /**
+     * The number of drivers this context can still use
+     * */
+    val numAvailableSlots get() = driverPoolManager.numAvailableDrivers(browserInstanceId)
 
     @Throws(NoProxyException::class, ProxyVendorUntrustedException::class)
     override suspend fun doRun(task: FetchTask, browseFun: suspend (FetchTask, WebDriver) -> FetchResult): FetchResult {
@@ -43,6 +52,16 @@ open class BrowserPrivacyContext(
             driverContext.run(task, browseFun)
     }
 
+    /**
+     * Initialize the proxy and launch the browser, so the context is ready to serve once it's activated,
+     * it's called from a background thread, so it's fine to block
+     * */
+    @Throws(ProxyException::class)
+    open fun warmUp() {
+        runBlocking { initProxyIfAbsent() }
+        driverContext.warmUp()
+    }
+
     override fun report() {
         val isIdle = proxyContext?.proxyEntry?.isIdle == true
         log.info("Privacy context #{}{}{} has lived for {}" +
@@ -87,14 +106,24 @@ open class BrowserPrivacyContext(
     }
 
     @Throws(ProxyException::class)
-    @Synchronized
-    private fun initialize(task: FetchTask) {
-        if (proxyEntry == null && proxyPoolManager != null && proxyPoolManager.isEnabled) {
-            val pc = ProxyContext.create(id, driverContext, proxyPoolManager, conf)
-            proxyEntry = pc.proxyEntry
-            browserInstanceId.proxyServer = proxyEntry?.hostPort
-            proxyContext = pc
-        }
+    private suspend fun initialize(task: FetchTask) {
+        initProxyIfAbsent()
         task.page.variables[VAR_PRIVACY_CONTEXT_NAME] = display
     }
+
+    @Throws(ProxyException::class)
+    private suspend fun initProxyIfAbsent() {
+        if (proxyEntry != null || proxyPoolManager == null || !proxyPoolManager.isEnabled) {
+            return
+        }
+
+        proxyMutex.withLock {
+            if (proxyEntry == null) {
+                val pc = ProxyContext.create(id, driverContext, proxyPoolManager, conf)
+                proxyEntry = pc.proxyEntry
+                browserInstanceId.proxyServer = proxyEntry?.hostPort
+                proxyContext = pc
+            }
+        }
+    }
 }
@@ -0,0 +1,189 @@
+package ai.platon.pulsar.protocol.browser.emulator.context
+
+import ai.platon.pulsar.common.config.CapabilityTypes.PRIVACY_CONTEXT_ID_GENERATOR_CLASS
+import ai.platon.pulsar.common.config.CapabilityTypes.PRIVACY_CONTEXT_NUMBER
+import ai.platon.pulsar.common.config.ImmutableConfig
+import ai.platon.pulsar.common.config.MutableConfig
+import ai.platon.pulsar.crawl.fetch.privacy.*
+import ai.platon.pulsar.protocol.browser.driver.BrowserInstanceManager
+import ai.platon.pulsar.protocol.browser.driver.WebDriverControl
+import ai.platon.pulsar.protocol.browser.driver.WebDriverFactory
+import ai.platon.pulsar.protocol.browser.driver.WebDriverPoolManager
+import org.junit.After
+import org.junit.Test
+import java.nio.file.Files
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.*
+
+/**
+ * Generate a new id every time, no browser is launched for the ids in the tests
+ * */
+class SequentialTestPrivacyContextIdGenerator: PrivacyContextIdGenerator {
+    companion object {
+        private val baseDir = Files.createTempDirectory("privacy-context-test")
+        private val sequencer = AtomicInteger()
+    }
+
+    override fun invoke() = PrivacyContextId(baseDir.resolve(PrivacyContext.IDENT_PREFIX + sequencer.incrementAndGet()))
+}
+
+/**
+ * A context which never launches a browser, the warm-up is recorded only
+ * */
+class MockBrowserPrivacyContext(
+    driverPoolManager: WebDriverPoolManager, conf: ImmutableConfig, id: PrivacyContextId
+): BrowserPrivacyContext(null, driverPoolManager, null, conf, id) {
+    val isWarmedUp = AtomicBoolean()
+
+    override fun warmUp() {
+        isWarmedUp.set(true)
+    }
+}
+
+class MockPrivacyContextManager(driverPoolManager: WebDriverPoolManager, conf: ImmutableConfig)
+    : BasicPrivacyContextManager(driverPoolManager, conf) {
+    override fun createUnmanagedContext(id: PrivacyContextId) = MockBrowserPrivacyContext(driverPoolManager, conf, id)
+}
+
+class TestBasicPrivacyContextManager {
+    private val conf = MutableConfig().apply {
+        set(PRIVACY_CONTEXT_ID_GENERATOR_CLASS, SequentialTestPrivacyContextIdGenerator::class.java.name)
+    }
+    private val browserInstanceManager = BrowserInstanceManager()
+    private val driverPoolManager = WebDriverPoolManager(
+        WebDriverFactory(WebDriverControl(conf), browserInstanceManager, conf), conf)
+    private val managers = mutableListOf<BasicPrivacyContextManager>()
+
+    @After
+    fun tearDown() {
+        managers.forEach { it.close() }
+        driverPoolManager.close()
+        browserInstanceManager.close()
+    }
+
+    @Test
+    fun testNumPrivacyContexts() {
+        conf.setInt(PRIVACY_CONTEXT_NUMBER, 3)
+        val manager = createManager()
+        assertEquals(3, manager.numPrivacyContexts)
+
+        manager.computeIfNecessary()
+        assertEquals(3, manager.activeContexts.size)
+
+        conf.setInt(PRIVACY_CONTEXT_NUMBER, 0)
+        assertEquals(1, createManager().numPrivacyContexts)
+    }
+
+    @Test
+    fun testPowerOfTwoChoices() {
+        conf.setInt(PRIVACY_CONTEXT_NUMBER, 2)
+        val manager = createManager()
+        manager.computeIfNecessary()
+        val (busy, idle) = manager.activeContexts.values.toList()
+        busy.numRunningTasks.set(100)
+
+        // with two contexts, both of them are always compared, so the busy one is never chosen
+        repeat(100) {
+            assertSame(idle, manager.computeIfNecessary())
+        }
+
+        // a leaked context is never chosen if there is an active one
+        busy.numRunningTasks.set(0)
+        idle.numRunningTasks.set(100)
+        busy.markLeaked()
+        repeat(100) {
+            assertSame(idle, manager.computeIfNecessary())
+        }
+    }
+
+    @Test
+    fun testStandbyWarmUp() {
+        conf.setInt(PRIVACY_CONTEXT_NUMBER, 2)
+        val manager = createManager()
+        manager.computeIfNecessary()
+        assertTrue(manager.standbyContexts.isEmpty())
+
+        val leaking = manager.activeContexts.values.first()
+        leaking.markWarning(leaking.maximumWarnings / 2 + 1)
+        manager.computeIfNecessary()
+
+        val standby = awaitStandby(manager)
+        assertNotNull(standby)
+        assertFalse(manager.activeContexts.containsKey(standby.id))
+
+        // the standby context takes over once the leaking context is retired
+        manager.retire(leaking)
+        assertSame(standby, manager.activeContexts[standby.id])
+        assertEquals(2, manager.activeContexts.size)
+        assertTrue(manager.zombieContexts.contains(leaking))
+        assertTrue(awaitClosed(manager, leaking))
+    }
+
+    @Test
+    fun testRetire() {
+        conf.setInt(PRIVACY_CONTEXT_NUMBER, 1)
+        val manager = createManager()
+        val context = manager.computeIfNecessary()
+        context.markLeaked()
+
+        val next = manager.computeNextContext()
+        assertNotSame(context, next)
+        assertTrue(next.isActive)
+        assertFalse(manager.activeContexts.containsKey(context.id))
+        assertTrue(manager.zombieContexts.contains(context))
+
+        // the retired context is closed in the background
+        assertTrue(awaitClosed(manager, context))
+
+        // retire twice is a no-op
+        manager.retire(context)
+        assertEquals(1, manager.zombieContexts.size)
+    }
+
+    @Test
+    fun testRetireContextOfTheSameId() {
+        conf.set(PRIVACY_CONTEXT_ID_GENERATOR_CLASS, DefaultPrivacyContextIdGenerator::class.java.name)
+        conf.setInt(PRIVACY_CONTEXT_NUMBER, 1)
+        val manager = createManager()
+        val context = manager.computeIfNecessary()
+        val browserId = BrowserInstanceId.resolve(context.id.dataDir)
+
+        manager.retire(context)
+        assertFalse(manager.activeContexts.containsKey(context.id))
+
+        // the new context waits for the retired one to close, it reuses the browser of the closed one
+        val next = manager.computeIfNecessary()
+        assertTrue(context.closed.get())
+        assertFalse(manager.isClosing(context.id))
+        assertEquals(context.id, next.id)
+        assertNotSame(context, next)
+        assertTrue(next.isActive)
+        assertFalse(driverPoolManager.isRetiredPool(browserId))
+    }
+
+    private fun createManager(): BasicPrivacyContextManager {
+        return MockPrivacyContextManager(driverPoolManager, conf).also { managers.add(it) }
+    }
+
+    private fun awaitClosed(manager: BasicPrivacyContextManager, context: PrivacyContext): Boolean {
+        repeat(100) {
+            if (context.closed.get() && !manager.isClosing(context.id)) {
+                return true
+            }
+            Thread.sleep(50)
+        }
+        return false
+    }
+
+    private fun awaitStandby(manager: BasicPrivacyContextManager): MockBrowserPrivacyContext? {
+        repeat(100) {
+            val standby = manager.standbyContexts.peek() as? MockBrowserPrivacyContext
+            if (standby != null && standby.isWarmedUp.get()) {
+                return standby
+            }
+            Thread.sleep(50)
+        }
+        return null
+    }
+}
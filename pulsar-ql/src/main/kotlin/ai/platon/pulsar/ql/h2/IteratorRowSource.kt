@@ -0,0 +1,42 @@
+package ai.platon.pulsar.ql.h2
+
+import org.h2.tools.SimpleRowSource
+
+/**
+ * A row source reads rows from an iterator lazily, so a table function returns before all rows are computed.
+ *
+ * H2 may reset a result set and read it again, the rows already read are kept and replayed after a reset.
+ * The resource is closed when the row source is closed.
+ * */
+class IteratorRowSource(
+    private val rows: Iterator<Array<Any?>>,
+    private val resource: AutoCloseable? = null
+): SimpleRowSource {
+    private val readRows = mutableListOf<Array<Any?>>()
+    private var cursor = 0
+
+    @Synchronized
+    override fun readRow(): Array<Any?>? {
+        if (cursor < readRows.size) {
+            return readRows[cursor++]
+        }
+
+        if (!rows.hasNext()) {
+            return null
+        }
+
+        val row = rows.next()
+        readRows.add(row)
+        ++cursor
+        return row
+    }
+
+    @Synchronized
+    override fun reset() {
+        cursor = 0
+    }
+
+    override fun close() {
+        resource?.close()
+    }
+}
@@ -0,0 +1,128 @@
+package ai.platon.pulsar.ql.h2
+
+import ai.platon.pulsar.PulsarSession
+import ai.platon.pulsar.common.AppContext
+import ai.platon.pulsar.common.config.CapabilityTypes.BROWSER_MAX_ACTIVE_TABS
+import ai.platon.pulsar.common.config.CapabilityTypes.PRIVACY_CONTEXT_NUMBER
+import ai.platon.pulsar.common.options.LoadOptions
+import ai.platon.pulsar.dom.FeaturedDocument
+import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import org.slf4j.LoggerFactory
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Load and parse a batch of urls with bounded concurrency, the documents are returned in the order of the urls, a
+ * document is returned as soon as it and all the documents before it are parsed, so the first rows are available long
+ * before the whole batch is finished.
+ *
+ * Every url is loaded only once with its own options, which are the url's arguments applied to [options].
+ * A url fails to load is logged and skipped.
+ * The loader must be closed if it's not exhausted, which cancels all the pending tasks.
+ * */
+class ParallelDocumentLoader(
+    val session: PulsarSession,
+    val urls: Iterable<String>,
+    val options: LoadOptions = session.options(),
+    val concurrency: Int = defaultConcurrency(session)
+): Iterator<FeaturedDocument>, AutoCloseable {
+
+    companion object {
+        /**
+         * Keep all the browser tabs busy, just like the fetch loop does
+         * */
+        fun defaultConcurrency(session: PulsarSession): Int {
+            val conf = session.sessionConfig
+            return conf.getInt(PRIVACY_CONTEXT_NUMBER, 2) * conf.getInt(BROWSER_MAX_ACTIVE_TABS, AppContext.NCPU)
+        }
+    }
+
+    private val log = LoggerFactory.getLogger(ParallelDocumentLoader::class.java)
+    private val scope = CoroutineScope(Dispatchers.Default + SupervisorJob())
+    /**
+     * The pending loads in the order of the urls, the capacity limits how far the loads run ahead of the reader
+     * */
+    private val pendingDocuments = Channel<Deferred<FeaturedDocument?>>(concurrency.coerceAtLeast(1))
+    private var nextDocument: FeaturedDocument? = null
+    private val started = AtomicBoolean()
+    private val closed = AtomicBoolean()
+
+    override fun hasNext(): Boolean {
+        if (closed.get()) {
+            return false
+        }
+
+        if (nextDocument != null) {
+            return true
+        }
+
+        startIfNecessary()
+        nextDocument = try {
+            runBlocking { receiveNext() }
+        } catch (e: CancellationException) {
+            null
+        }
+
+        return nextDocument != null
+    }
+
+    override fun next(): FeaturedDocument {
+        if (!hasNext()) {
+            throw NoSuchElementException()
+        }
+        return nextDocument!!.also { nextDocument = null }
+    }
+
+    override fun close() {
+        if (closed.compareAndSet(false, true)) {
+            scope.cancel()
+            pendingDocuments.cancel()
+        }
+    }
+
+    private fun startIfNecessary() {
+        if (!started.compareAndSet(false, true)) {
+            return
+        }
+
+        val permits = Semaphore(concurrency.coerceAtLeast(1))
+        scope.launch {
+            try {
+                urls.distinct().forEach { url ->
+                    pendingDocuments.send(async { permits.withPermit { load(url) } })
+                }
+            } finally {
+                pendingDocuments.close()
+            }
+        }
+    }
+
+    /**
+     * Wait for the next document in the order of the urls, the failed ones are skipped
+     * */
+    private suspend fun receiveNext(): FeaturedDocument? {
+        for (deferred in pendingDocuments) {
+            deferred.await()?.let { return it }
+        }
+        return null
+    }
+
+    private suspend fun load(url: String): FeaturedDocument? {
+        return try {
+            val page = session.loadDeferred(url, options)
+            if (page.isNil) {
+                log.warn("Failed to load, the url is invalid or the page is absent | {}", url)
+                null
+            } else {
+                session.parse(page)
+            }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            log.warn("Failed to load $url", e)
+            null
+        }
+    }
+}
@@ -55,9 +55,7 @@ object Queries {
                 if (portal.list.isNotEmpty()) {
                     val normUrl = session.normalize(portal.list[0].string)
                     val itemOptions = normUrl.options.createItemOptions()
-                    for (configuredUrl in portal.list) {
-                        pages = session.loadAll(portal.list.map { configuredUrl.string }, itemOptions)
-                    }
+                    pages = session.loadAll(portal.list.map { it.string }, itemOptions)
                 }
             else -> throw DbException.get(ErrorCode.METHOD_NOT_FOUND_1, "Unsupported type ${Value::class}")
         }
@@ -82,24 +80,28 @@ object Queries {
         configuredUrls: Value, restrictCss: String, offset: Int, limit: Int,
         transformer: (Element, String, Int, Int) -> Collection<O>
     ): Collection<O> {
-        val collection: Collection<O>
-
-        when (configuredUrls) {
+        return when (configuredUrls) {
             is ValueString -> {
                 val doc = session.loadDocument(configuredUrls.getString())
-                collection = transformer(doc.document, restrictCss, offset, limit)
+                transformer(doc.document, restrictCss, offset, limit)
             }
-            is ValueArray -> {
-                collection = ArrayList()
-                for (configuredUrl in configuredUrls.list) {
-                    val doc = session.loadDocument(configuredUrl.string)
-                    collection.addAll(transformer(doc.document, restrictCss, offset, limit))
-                }
+            is ValueArray -> loadAllParallel(session, configuredUrls).use { loader ->
+                loader.asSequence().flatMap { transformer(it.document, restrictCss, offset, limit).asSequence() }.toList()
             }
             else -> throw DbException.get(ErrorCode.FUNCTION_NOT_FOUND_1, "Unknown custom type")
         }
+    }
 
-        return collection
+    /**
+     * Load and parse all the configured urls in parallel, the documents are available in the order of the urls,
+     * every url is loaded with its own options.
+     *
+     * @param session        The session
+     * @param configuredUrls The configured urls
+     * @return A loader iterates the documents, it must be closed if it's not exhausted
+     */
+    fun loadAllParallel(session: PulsarSession, configuredUrls: ValueArray): ParallelDocumentLoader {
+        return ParallelDocumentLoader(session, configuredUrls.list.map { it.string })
     }
 
     fun loadOutPages(
@@ -184,6 +186,24 @@ object Queries {
         return rs
     }
 
+    /**
+     * Get a result set reads the rows lazily, the result set contains just one column DOM or one column of strings,
+     * the resource is closed when the result set is closed
+     */
+    fun <E> toStreamingResultSet(colName: String, elements: Sequence<E>, resource: AutoCloseable? = null): ResultSet {
+        val colType = if (colName.equals("DOM", ignoreCase = true)) ValueDom.type else Value.STRING
+        val rows = if (colType == ValueDom.type) {
+            elements.map { arrayOf<Any?>(it) }
+        } else {
+            elements.map { arrayOf<Any?>(ValueString.get(it.toString())) }
+        }
+
+        val rs = SimpleResultSet(IteratorRowSource(rows.iterator(), resource))
+        rs.autoClose = false
+        rs.addColumn(colName, DataType.convertTypeToSQLType(colType), 0, 0)
+        return rs
+    }
+
     /**
      * Get a result set, the result set contains just one column DOM
      */
@@ -14,6 +14,7 @@ import ai.platon.pulsar.ql.annotation.UDFunction
 import ai.platon.pulsar.ql.h2.H2SessionFactory
 import ai.platon.pulsar.ql.h2.Queries
 import ai.platon.pulsar.ql.h2.Queries.toResultSet
+import ai.platon.pulsar.ql.h2.Queries.toStreamingResultSet
 import ai.platon.pulsar.ql.h2.domValue
 import ai.platon.pulsar.ql.types.ValueDom
 import ai.platon.pulsar.ql.annotation.H2Context
@@ -45,10 +46,8 @@ object DomFunctionTables {
             return toResultSet("DOM", listOf<ValueDom>())
         }
 
-        val pages = Queries.loadAll(session, portalUrls)
-        val doms = pages.map { session.parseValueDom(it) }
-
-        return toResultSet("DOM", doms)
+        val loader = Queries.loadAllParallel(session, portalUrls)
+        return toStreamingResultSet("DOM", loader.asSequence().map { ValueDom.get(it) }, loader)
     }
 
     @UDFunction(hasShortcut = true, description = "Load a page and select the specified element by cssQuery")
@@ -91,6 +90,12 @@ object DomFunctionTables {
             return toResultSet("LINK", listOf<String>())
         }
 
+        if (portalUrl is ValueArray) {
+            val loader = Queries.loadAllParallel(session, portalUrl)
+            val links = loader.asSequence().flatMap { Queries.getLinks(it.document, restrictCss, offset, limit).asSequence() }
+            return toStreamingResultSet("LINK", links, loader)
+        }
+
         val links = Queries.loadAll(session, portalUrl, restrictCss, offset, limit, Queries::getLinks)
         return toResultSet("LINK", links)
     }
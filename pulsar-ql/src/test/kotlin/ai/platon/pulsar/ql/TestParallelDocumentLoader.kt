@@ -0,0 +1,54 @@
+package ai.platon.pulsar.ql
+
+import ai.platon.pulsar.ql.h2.ParallelDocumentLoader
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TestParallelDocumentLoader : TestBase() {
+    private val urls = listOf(
+        TestResource.productIndexUrl,
+        TestResource.productDetailUrl,
+        TestResource.newsIndexUrl,
+        TestResource.newsDetailUrl
+    )
+
+    @Test
+    fun testDocumentsAreInInputOrder() {
+        val documents = ParallelDocumentLoader(session, urls, concurrency = 4).use { it.asSequence().toList() }
+        assertEquals(urls, documents.map { it.baseUri })
+    }
+
+    @Test
+    fun testFailedAndDuplicateUrlsAreSkipped() {
+        val configuredUrls = listOf(
+            urls[0],
+            "not a url",
+            urls[1],
+            urls[0]
+        )
+
+        val documents = ParallelDocumentLoader(session, configuredUrls, concurrency = 2).use { it.asSequence().toList() }
+        assertEquals(listOf(urls[0], urls[1]), documents.map { it.baseUri })
+    }
+
+    @Test
+    fun testPerUrlOptions() {
+        // the arguments of a url apply to that url only, the url without arguments is loaded with the default options
+        val configuredUrls = listOf("${urls[0]} -expires 1s", urls[1])
+
+        val documents = ParallelDocumentLoader(session, configuredUrls).use { it.asSequence().toList() }
+        assertEquals(listOf(urls[0], urls[1]), documents.map { it.baseUri })
+    }
+
+    @Test
+    fun testCloseBeforeExhausted() {
+        val loader = ParallelDocumentLoader(session, urls, concurrency = 1)
+        assertTrue(loader.hasNext())
+        assertEquals(urls[0], loader.next().baseUri)
+
+        loader.close()
+        assertFalse(loader.hasNext())
+    }
+}
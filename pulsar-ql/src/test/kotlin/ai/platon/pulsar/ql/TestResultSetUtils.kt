@@ -2,12 +2,14 @@ package ai.platon.pulsar.ql
 
 import ai.platon.pulsar.common.sql.ResultSetFormatter
 import ai.platon.pulsar.common.sql.SQLTemplate
+import ai.platon.pulsar.ql.h2.Queries
 import ai.platon.pulsar.ql.h2.addColumn
 import ai.platon.pulsar.ql.h2.utils.ResultSetUtils
 import org.h2.value.ValueString
 import org.junit.Test
 import java.sql.Types
 import kotlin.test.assertEquals
+import kotlin.test.assertTrue
 
 /**
  * Created by vincent on 17-7-29.
@@ -94,4 +96,34 @@ class TestResultSetUtils {
         }
         println(ResultSetFormatter(newRs, withHeader = true).toString())
     }
+
+    @Test
+    fun testStreamingResultSet() {
+        var numComputed = 0
+        var closed = false
+        val links = generateSequence(1) { it + 1 }.take(5).map { ++numComputed; "http://example.com/$it" }
+        val rs = Queries.toStreamingResultSet("LINK", links, AutoCloseable { closed = true })
+        assertEquals(0, numComputed)
+
+        assertTrue(rs.next())
+        assertTrue(rs.getString("LINK").contains("http://example.com/1"))
+        assertEquals(1, numComputed)
+
+        var i = 1
+        while (rs.next()) {
+            ++i
+        }
+        assertEquals(5, i)
+
+        rs.beforeFirst()
+        i = 0
+        while (rs.next()) {
+            ++i
+        }
+        assertEquals(5, i)
+        assertEquals(5, numComputed)
+
+        rs.close()
+        assertTrue(closed)
+    }
 }
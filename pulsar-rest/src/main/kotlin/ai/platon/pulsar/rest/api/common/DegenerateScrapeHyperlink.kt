@@ -9,6 +9,7 @@ import ai.platon.pulsar.crawl.common.GlobalCache
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.rest.api.entities.ScrapeRequest
 import org.slf4j.LoggerFactory
+import java.time.Instant
 import java.util.*
 
 /**
@@ -39,6 +40,9 @@ open class DegenerateScrapeHyperlink(
             logger.warn("Unexpected exception", t)
         } finally {
             response.isDone = true
+            response.finishTime = Instant.now()
+            // notify the waiters
+            complete(response)
         }
     }
 
@@ -69,7 +69,7 @@ open class ScrapeHyperlink(
     private val connectionPool get() = sqlContext.connectionPool
     private val randomConnection get() = sqlContext.randomConnection
 
-    val response = ScrapeResponse()
+    val response = ScrapeResponse(uuid)
 
     override var args: String? = "-parse ${sql.args}"
     override val loadEventHandler: LoadEventPipelineHandler = ScrapeLoadEventHandler(this, response)
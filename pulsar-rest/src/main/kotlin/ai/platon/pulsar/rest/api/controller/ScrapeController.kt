@@ -1,5 +1,6 @@
 package ai.platon.pulsar.rest.api.controller
 
+import ai.platon.pulsar.persist.jackson.pulsarObjectMapper
 import ai.platon.pulsar.rest.api.entities.ScrapeRequest
 import ai.platon.pulsar.rest.api.entities.ScrapeResponse
 import ai.platon.pulsar.rest.api.entities.ScrapeStatusRequest
@@ -7,6 +8,9 @@ import ai.platon.pulsar.rest.api.service.ScrapeService
 import org.springframework.context.ApplicationContext
 import org.springframework.http.MediaType
 import org.springframework.web.bind.annotation.*
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
 import javax.servlet.http.HttpServletRequest
 
 @RestController
@@ -50,4 +54,36 @@ class ScrapeController(
         val request = ScrapeStatusRequest(uuid)
         return scrapeService.getStatus(request)
     }
+
+    /**
+     * @param uuids The uuids of the tasks, separated by white spaces or commas
+     * @return The execution results as a json array, which is written as the results are retrieved
+     * */
+    @PostMapping("statuses")
+    fun statuses(@RequestBody uuids: String): StreamingResponseBody {
+        val responses = scrapeService.getStatuses(uuids.split("[\\s,]+".toRegex()).filter { it.isNotBlank() })
+        return StreamingResponseBody { out ->
+            val mapper = pulsarObjectMapper()
+            mapper.factory.createGenerator(out).use { generator ->
+                generator.writeStartArray()
+                responses.forEach { mapper.writeValue(generator, it) }
+                generator.writeEndArray()
+            }
+        }
+    }
+
+    /**
+     * Wait until the task is done, the request is held at most [timeout] seconds
+     *
+     * @param uuid The uuid of the task last submitted
+     * @param timeout The max seconds to wait
+     * @return The execution result, check isDone to see if the task is done
+     * */
+    @GetMapping("await", consumes = [MediaType.ALL_VALUE])
+    fun await(
+        @RequestParam uuid: String,
+        @RequestParam(defaultValue = "20") timeout: Long,
+    ): CompletableFuture<ScrapeResponse> {
+        return scrapeService.awaitStatus(ScrapeStatusRequest(uuid), Duration.ofSeconds(timeout))
+    }
 }
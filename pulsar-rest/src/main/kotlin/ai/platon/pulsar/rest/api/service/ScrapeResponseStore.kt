@@ -0,0 +1,196 @@
+package ai.platon.pulsar.rest.api.service
+
+import ai.platon.pulsar.common.chrono.scheduleAtFixedRate
+import ai.platon.pulsar.persist.jackson.pulsarObjectMapper
+import ai.platon.pulsar.rest.api.entities.ScrapeResponse
+import com.fasterxml.jackson.databind.DeserializationFeature
+import org.slf4j.LoggerFactory
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Duration
+import java.time.Instant
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * A bounded, expiring store of the responses of asynchronous scrape jobs.
+ *
+ * Responses are looked up by uuid in a hash map. A response lives for [ttl] after the job is done, and if there are
+ * more than [capacity] responses, the earliest completed ones are evicted. Jobs not done after [pendingTtl] are
+ * dropped. If a [spillDirectory] is specified, evicted responses are written to it as json files, and can be
+ * retrieved until they are older than [spillTtl].
+ *
+ * Clients can wait for the completion of a job by [await] instead of polling the status.
+ * */
+class ScrapeResponseStore(
+    /**
+     * The max number of responses in memory, pending jobs are never evicted
+     * */
+    val capacity: Int = DEFAULT_CAPACITY,
+    /**
+     * How long a response is kept after the job is done
+     * */
+    val ttl: Duration = DEFAULT_TTL,
+    /**
+     * How long a pending job is kept
+     * */
+    val pendingTtl: Duration = DEFAULT_PENDING_TTL,
+    /**
+     * The directory to spill evicted responses, no spill if it's null
+     * */
+    val spillDirectory: Path? = null,
+    /**
+     * How long a spilled response is kept
+     * */
+    val spillTtl: Duration = DEFAULT_SPILL_TTL
+): AutoCloseable {
+    companion object {
+        const val DEFAULT_CAPACITY = 100_000
+        val DEFAULT_TTL: Duration = Duration.ofMinutes(30)
+        val DEFAULT_PENDING_TTL: Duration = Duration.ofHours(2)
+        val DEFAULT_SPILL_TTL: Duration = Duration.ofDays(1)
+        val SWEEP_INTERVAL: Duration = Duration.ofMinutes(1)
+        val SPILL_SWEEP_INTERVAL: Duration = Duration.ofHours(1)
+    }
+
+    private class Entry(val response: ScrapeResponse, val completion: CompletableFuture<ScrapeResponse>) {
+        val createTime = Instant.now()
+        @Volatile
+        var finishTime: Instant? = null
+    }
+
+    private val logger = LoggerFactory.getLogger(ScrapeResponseStore::class.java)
+    private val entries = ConcurrentHashMap<String, Entry>()
+    /**
+     * The uuids of done jobs, in the order of completion
+     * */
+    private val completed = ConcurrentLinkedQueue<String>()
+    private val mapper = pulsarObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+    private val timer = Timer("ScrapeResponseStore", true)
+    private var lastSpillSweepTime = Instant.now()
+    private val closed = AtomicBoolean()
+
+    val size get() = entries.size
+
+    init {
+        spillDirectory?.let { Files.createDirectories(it) }
+        timer.scheduleAtFixedRate(SWEEP_INTERVAL, SWEEP_INTERVAL) { sweep() }
+    }
+
+    /**
+     * Add the response of a job, the response is considered done when [completion] completes
+     * */
+    fun put(uuid: String, response: ScrapeResponse, completion: CompletableFuture<ScrapeResponse>) {
+        val entry = Entry(response, completion)
+        entries[uuid] = entry
+        completion.whenComplete { _, _ ->
+            entry.finishTime = Instant.now()
+            completed.add(uuid)
+            evictOverflow()
+        }
+    }
+
+    /**
+     * Get the response of the job, or null if it's unknown or expired
+     * */
+    fun get(uuid: String): ScrapeResponse? {
+        return entries[uuid]?.response ?: loadSpilled(uuid)
+    }
+
+    /**
+     * Get the responses of the jobs lazily, unknown jobs are skipped
+     * */
+    fun getAll(uuids: Iterable<String>): Sequence<ScrapeResponse> {
+        return uuids.asSequence().mapNotNull { get(it) }
+    }
+
+    /**
+     * Wait for the job to be done, the returned future completes with the response when the job is done,
+     * or with the current response on timeout, or with null if the job is unknown
+     * */
+    fun await(uuid: String, timeout: Duration): CompletableFuture<ScrapeResponse?> {
+        val entry = entries[uuid] ?: return CompletableFuture.completedFuture(loadSpilled(uuid))
+
+        return entry.completion.handle { _, _ -> entry.response as ScrapeResponse? }
+            .completeOnTimeout(entry.response, timeout.toMillis(), TimeUnit.MILLISECONDS)
+    }
+
+    override fun close() {
+        if (closed.compareAndSet(false, true)) {
+            timer.cancel()
+        }
+    }
+
+    /**
+     * Remove expired responses, the completed queue is in completion order, so only the head is checked
+     * */
+    private fun sweep() {
+        try {
+            val now = Instant.now()
+            val expireTime = now - ttl
+            while (true) {
+                val uuid = completed.peek() ?: break
+                val finishTime = entries[uuid]?.finishTime
+                if (finishTime != null && finishTime > expireTime) {
+                    break
+                }
+                completed.remove(uuid)
+                entries.remove(uuid)
+            }
+
+            val pendingExpireTime = now - pendingTtl
+            entries.entries.removeIf { it.value.finishTime == null && it.value.createTime < pendingExpireTime }
+
+            if (spillDirectory != null && Duration.between(lastSpillSweepTime, now) > SPILL_SWEEP_INTERVAL) {
+                lastSpillSweepTime = now
+                sweepSpilled(now - spillTtl)
+            }
+        } catch (t: Throwable) {
+            logger.warn("Unexpected exception", t)
+        }
+    }
+
+    private fun evictOverflow() {
+        while (entries.size > capacity) {
+            val uuid = completed.poll() ?: break
+            val entry = entries.remove(uuid) ?: continue
+            spill(uuid, entry.response)
+        }
+    }
+
+    private fun spill(uuid: String, response: ScrapeResponse) {
+        val path = spillPath(uuid) ?: return
+        kotlin.runCatching {
+            Files.createDirectories(path.parent)
+            Files.write(path, mapper.writeValueAsBytes(response))
+        }.onFailure { logger.warn("Failed to spill response {} | {}", uuid, it.message) }
+    }
+
+    private fun loadSpilled(uuid: String): ScrapeResponse? {
+        val path = spillPath(uuid)?.takeIf { Files.exists(it) } ?: return null
+        return kotlin.runCatching { mapper.readValue(path.toFile(), ScrapeResponse::class.java) }
+            .onFailure { logger.warn("Failed to load spilled response {} | {}", uuid, it.message) }
+            .getOrNull()
+    }
+
+    private fun sweepSpilled(expireTime: Instant) {
+        val dir = spillDirectory ?: return
+        Files.walk(dir).use { paths ->
+            paths.filter { Files.isRegularFile(it) && Files.getLastModifiedTime(it).toInstant() < expireTime }
+                .forEach { Files.deleteIfExists(it) }
+        }
+    }
+
+    /**
+     * Spilled files are sharded by the first two characters of the uuid
+     * */
+    private fun spillPath(uuid: String): Path? {
+        val dir = spillDirectory ?: return null
+        val name = uuid.replace("[^a-zA-Z0-9-]".toRegex(), "_")
+        return dir.resolve(name.take(2)).resolve("$name.json")
+    }
+}
@@ -1,6 +1,7 @@
 package ai.platon.pulsar.rest.api.service
 
 import ai.platon.pulsar.PulsarSession
+import ai.platon.pulsar.common.AppPaths
 import ai.platon.pulsar.common.ResourceStatus
 import ai.platon.pulsar.crawl.common.GlobalCache
 import ai.platon.pulsar.persist.metadata.ProtocolStatusCodes
@@ -12,16 +13,24 @@ import ai.platon.pulsar.rest.api.entities.ScrapeResponse
 import ai.platon.pulsar.rest.api.entities.ScrapeStatusRequest
 import org.slf4j.LoggerFactory
 import org.springframework.stereotype.Service
-import java.util.concurrent.ConcurrentSkipListMap
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.TimeUnit
 
 @Service
 class ScrapeService(
     val session: PulsarSession,
     val globalCache: GlobalCache,
-) {
+): AutoCloseable {
+    companion object {
+        /**
+         * Keep below the async request timeout of the servlet container
+         * */
+        val MAX_AWAIT_TIMEOUT: Duration = Duration.ofSeconds(25)
+    }
+
     private val logger = LoggerFactory.getLogger(ScrapeService::class.java)
-    private val responseCache = ConcurrentSkipListMap<String, ScrapeResponse>()
+    private val responseStore = ScrapeResponseStore(spillDirectory = AppPaths.LOCAL_STORAGE_DIR.resolve("scrape"))
     private val fetchCaches get() = globalCache.fetchCaches
 
     /**
@@ -39,7 +48,7 @@ class ScrapeService(
      * */
     fun submitJob(request: ScrapeRequest): String {
         val hyperlink = createScrapeHyperlink(request)
-        responseCache[hyperlink.uuid] = hyperlink.response
+        responseStore.put(hyperlink.uuid, hyperlink.response, hyperlink)
         fetchCaches.normalCache.reentrantQueue.add(hyperlink)
         return hyperlink.uuid
     }
@@ -48,9 +57,30 @@ class ScrapeService(
      * Get the response
      * */
     fun getStatus(request: ScrapeStatusRequest): ScrapeResponse {
-        return responseCache.computeIfAbsent(request.uuid) {
-            ScrapeResponse(request.uuid, ResourceStatus.SC_NOT_FOUND, ProtocolStatusCodes.NOT_FOUND)
-        }
+        return responseStore.get(request.uuid) ?: createNotFoundResponse(request.uuid)
+    }
+
+    /**
+     * Get the responses of many jobs, the responses are retrieved lazily
+     * */
+    fun getStatuses(uuids: Iterable<String>): Sequence<ScrapeResponse> {
+        return uuids.asSequence().map { responseStore.get(it) ?: createNotFoundResponse(it) }
+    }
+
+    /**
+     * Wait until the job is done or timeout, the returned future completes with the latest response
+     * */
+    fun awaitStatus(request: ScrapeStatusRequest, timeout: Duration): CompletableFuture<ScrapeResponse> {
+        val t = timeout.coerceIn(Duration.ZERO, MAX_AWAIT_TIMEOUT)
+        return responseStore.await(request.uuid, t).thenApply { it ?: createNotFoundResponse(request.uuid) }
+    }
+
+    override fun close() {
+        responseStore.close()
+    }
+
+    private fun createNotFoundResponse(uuid: String): ScrapeResponse {
+        return ScrapeResponse(uuid, ResourceStatus.SC_NOT_FOUND, ProtocolStatusCodes.NOT_FOUND)
     }
 
     private fun createScrapeHyperlink(request: ScrapeRequest): ScrapeHyperlink {
@@ -0,0 +1,60 @@
+package ai.platon.pulsar.rest
+
+import ai.platon.pulsar.common.ResourceStatus
+import ai.platon.pulsar.rest.api.entities.ScrapeResponse
+import ai.platon.pulsar.rest.api.service.ScrapeResponseStore
+import org.junit.Test
+import java.nio.file.Files
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class ScrapeResponseStoreTests {
+
+    @Test
+    fun `When the store is full then the earliest completed responses are spilled`() {
+        val spillDirectory = Files.createTempDirectory("scrape")
+        ScrapeResponseStore(capacity = 2, spillDirectory = spillDirectory).use { store ->
+            val jobs = IntRange(1, 4).map { "uuid-$it" to CompletableFuture<ScrapeResponse>() }
+            jobs.forEach { (uuid, future) -> store.put(uuid, ScrapeResponse(uuid), future) }
+            // pending jobs are never evicted
+            assertEquals(4, store.size)
+
+            jobs.forEach { (uuid, future) ->
+                future.complete(ScrapeResponse(uuid, ResourceStatus.SC_OK).also { it.isDone = true })
+            }
+            assertEquals(2, store.size)
+
+            val spilled = assertNotNull(store.get("uuid-1"))
+            assertEquals("uuid-1", spilled.uuid)
+            assertNull(store.get("uuid-0"))
+            assertEquals(2, store.getAll(listOf("uuid-0", "uuid-1", "uuid-4")).count())
+        }
+    }
+
+    @Test
+    fun `When await a job then the response returns on completion or timeout`() {
+        ScrapeResponseStore().use { store ->
+            val response = ScrapeResponse("a")
+            val future = CompletableFuture<ScrapeResponse>()
+            store.put("a", response, future)
+
+            val timeout = store.await("a", Duration.ofMillis(100)).get(1, TimeUnit.SECONDS)
+            assertSame(response, timeout)
+            assertFalse { response.isDone }
+
+            val waiting = store.await("a", Duration.ofSeconds(10))
+            response.isDone = true
+            future.complete(response)
+            assertTrue { waiting.get(1, TimeUnit.SECONDS)!!.isDone }
+
+            assertNull(store.await("unknown", Duration.ofSeconds(10)).get(1, TimeUnit.SECONDS))
+        }
+    }
+}
@@ -32,8 +32,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A simple class for detecting character encodings.
@@ -74,15 +72,10 @@ public class EncodingDetector {
     private static final HashSet<String> DETECTABLES = new HashSet<>();
     // CharsetDetector will die without a minimum amount of data.
     private static final int MIN_LENGTH = 4;
-    // PULSAR-1006 Meta equiv with single quotes not accepted
-    private static Pattern metaPattern = Pattern.compile(
-            "<meta\\s+([^>]*http-equiv=(\"|')?content-type(\"|')?[^>]*)>",
-            Pattern.CASE_INSENSITIVE);
-    private static Pattern charsetPattern = Pattern.compile(
-            "charset=\\s*([a-z][_\\-0-9a-z]*)", Pattern.CASE_INSENSITIVE);
-    private static Pattern charsetPatternHTML5 = Pattern.compile(
-            "<meta\\s+charset\\s*=\\s*[\"']?([a-z][_\\-0-9a-z]*)[^>]*>",
-            Pattern.CASE_INSENSITIVE);
+    // The meta scanner is cheap, so it looks further than the chunk used by the legacy sniffer
+    private static final int META_SCAN_SIZE = 4096;
+    private static final byte[] META_TAG = "<meta".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHARSET_ATTR = "charset".getBytes(StandardCharsets.US_ASCII);
 
     static {
         DETECTABLES.add("text/html");
@@ -119,7 +112,8 @@ public class EncodingDetector {
         // ALIASES.put("ISO-8859-11", "Cp874");
     }
 
-    private final CharsetDetector detector = new CharsetDetector();
+    // Created only if the cheap clues are absent and auto detection is enabled
+    private CharsetDetector detector;
     private final List<EncodingClue> clues = new ArrayList<>();
     private int minConfidence = -1;
     private String defaultCharEncoding = "utf-8";
@@ -197,18 +191,183 @@ public class EncodingDetector {
         this.minConfidence = minConfidence;
     }
 
+    /**
+     * Detect the encoding of a page, the byte order mark, the http header and the meta tags are checked first,
+     * and ICU is used only if none of them gives an answer.
+     * */
     public String sniffEncoding(WebPage page) {
+        clearClues();
+
+        DetectedEncoding detected = detectFastWithSource(page);
+        if (detected != null) {
+            addClue(detected.getEncoding(), detected.getSource());
+            return detected.getEncoding();
+        }
+
+        autoDetectClues(page, true);
+
+        return guessEncoding(page, defaultCharEncoding);
+    }
+
+    /**
+     * Detect the encoding from the trusted header, the byte order mark, the content type header and the meta tags
+     * in order, the content is scanned in place without any copy or regex. The method is stateless and thread safe.
+     *
+     * @return The resolved encoding, or null if none of the clues is available
+     * */
+    public static String detectFast(WebPage page) {
+        DetectedEncoding detected = detectFastWithSource(page);
+        return detected == null ? null : detected.getEncoding();
+    }
+
+    /**
+     * The same as {@link #detectFast(WebPage)}, and tells where the encoding is found
+     *
+     * @return The resolved encoding and its source, or null if none of the clues is available
+     * */
+    public static DetectedEncoding detectFastWithSource(WebPage page) {
         String trustedEncoding = page.getHeaders().get(HttpHeaders.Q_TRUSTED_CONTENT_ENCODING);
         if (trustedEncoding != null) {
-            return trustedEncoding;
+            return new DetectedEncoding(trustedEncoding, "trusted header");
         }
 
-        clearClues();
+        ByteBuffer content = page.getContent();
+        String encoding = content == null ? null : resolveEncodingAlias(sniffBOM(content));
+        if (encoding != null) {
+            return new DetectedEncoding(encoding, "BOM");
+        }
 
-        autoDetectClues(page, true);
-        addClue(sniffCharacterEncoding(page.getContentAsBytes()), "sniffed");
+        encoding = resolveEncodingAlias(parseCharacterEncoding(page.getHeaders().get(HttpHeaders.CONTENT_TYPE)));
+        if (encoding != null) {
+            return new DetectedEncoding(encoding, "header");
+        }
 
-        return guessEncoding(page, defaultCharEncoding);
+        encoding = content == null ? null : resolveEncodingAlias(sniffMetaCharset(content, META_SCAN_SIZE));
+        if (encoding != null) {
+            return new DetectedEncoding(encoding, "meta");
+        }
+
+        return null;
+    }
+
+    /**
+     * Check the Unicode Byte Order Mark (BOM)
+     *
+     * @return The encoding specified by the BOM, or null if there is no BOM
+     * */
+    public static String sniffBOM(ByteBuffer content) {
+        int p = content.position();
+        int length = content.remaining();
+        if (length >= 3 && content.get(p) == (byte) 0xEF
+                && content.get(p + 1) == (byte) 0xBB && content.get(p + 2) == (byte) 0xBF) {
+            return "UTF-8";
+        } else if (length >= 2) {
+            if (content.get(p) == (byte) 0xFF && content.get(p + 1) == (byte) 0xFE) {
+                return "UTF-16LE";
+            } else if (content.get(p) == (byte) 0xFE && content.get(p + 1) == (byte) 0xFF) {
+                return "UTF-16BE";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Scan the meta tags in the first <code>limit</code> bytes for a charset, both
+     * <code>&lt;meta charset="gbk"&gt;</code> and
+     * <code>&lt;meta http-equiv="Content-Type" content="text/html; charset=gbk"&gt;</code> are recognized.
+     * The buffer is read in place and the position is not changed.
+     *
+     * @return The charset name, or null if no meta tag specifies a charset
+     * */
+    public static String sniffMetaCharset(ByteBuffer content, int limit) {
+        int end = content.position() + Math.min(content.remaining(), limit);
+        int i = content.position();
+        while ((i = indexOfIgnoreCase(content, META_TAG, i, end)) >= 0) {
+            i += META_TAG.length;
+            if (i >= end || !isSpace(content.get(i))) {
+                // not a meta tag, e.g. <metadata>
+                continue;
+            }
+
+            int tagEnd = indexOf(content, (byte) '>', i, end);
+            if (tagEnd < 0) {
+                return null;
+            }
+
+            int p = indexOfIgnoreCase(content, CHARSET_ATTR, i, tagEnd);
+            if (p >= 0) {
+                String charset = readCharsetName(content, p + CHARSET_ATTR.length, tagEnd);
+                if (charset != null) {
+                    return charset;
+                }
+            }
+
+            i = tagEnd;
+        }
+
+        return null;
+    }
+
+    /**
+     * Read a charset name like [a-z][_\-0-9a-z]* after "charset", the name is preceded by '=' and optional quotes
+     * */
+    private static String readCharsetName(ByteBuffer content, int start, int end) {
+        int i = start;
+        while (i < end && isSpace(content.get(i))) ++i;
+        if (i >= end || content.get(i) != '=') {
+            return null;
+        }
+        ++i;
+        while (i < end && (isSpace(content.get(i)) || content.get(i) == '"' || content.get(i) == '\'')) ++i;
+
+        if (i >= end || !Character.isLetter(content.get(i))) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        while (i < end) {
+            byte b = content.get(i++);
+            if (Character.isLetterOrDigit(b) || b == '-' || b == '_') {
+                sb.append((char) b);
+            } else {
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int indexOf(ByteBuffer content, byte b, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (content.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find an ascii pattern in lower case, ignoring the case of the content
+     * */
+    private static int indexOfIgnoreCase(ByteBuffer content, byte[] lowerCasePattern, int start, int end) {
+        int last = end - lowerCasePattern.length;
+        for (int i = start; i <= last; ++i) {
+            int j = 0;
+            while (j < lowerCasePattern.length && toLowerCase(content.get(i + j)) == lowerCasePattern[j]) {
+                ++j;
+            }
+            if (j == lowerCasePattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == '/';
     }
 
     public List<EncodingClue> getClues() {
@@ -241,49 +400,15 @@ public class EncodingDetector {
      * @param content <code>byte[]</code> representation of an html file
      */
     public String sniffCharacterEncoding(byte[] content) {
-        int length = content.length < CHUNK_SIZE ? content.length : CHUNK_SIZE;
-
-        // We don't care about non-ASCII parts so that it's sufficient
-        // to just inflate each byte to a 16-bit value by padding.
-        // For instance, the sequence {0x41, 0x82, 0xb7} will be turned into
-        // {U+0041, U+0082, U+00B7}.
-        String str = new String(content, 0, length, StandardCharsets.US_ASCII);
-
-        Matcher metaMatcher = metaPattern.matcher(str);
-        String encoding = null;
-        if (metaMatcher.find()) {
-            Matcher charsetMatcher = charsetPattern.matcher(metaMatcher.group(1));
-            if (charsetMatcher.find()) {
-                encoding = charsetMatcher.group(1);
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("metaPattern: " + encoding);
-                }
-            }
-        }
+        ByteBuffer buffer = ByteBuffer.wrap(content);
 
-        if (encoding == null) {
-            // check for HTML5 meta charset
-            metaMatcher = charsetPatternHTML5.matcher(str);
-            if (metaMatcher.find()) {
-                encoding = metaMatcher.group(1);
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("charsetPatternHTML5: " + encoding);
-                }
-            }
+        String encoding = sniffMetaCharset(buffer, CHUNK_SIZE);
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("meta charset: " + encoding);
         }
 
         if (encoding == null) {
-            // check for BOM
-            if (content.length >= 3 && content[0] == (byte) 0xEF
-                    && content[1] == (byte) 0xBB && content[2] == (byte) 0xBF) {
-                encoding = "UTF-8";
-            } else if (content.length >= 2) {
-                if (content[0] == (byte) 0xFF && content[1] == (byte) 0xFE) {
-                    encoding = "UTF-16LE";
-                } else if (content[0] == (byte) 0xFE && content[1] == (byte) 0xFF) {
-                    encoding = "UTF-16BE";
-                }
-            }
+            encoding = sniffBOM(buffer);
             if (LOG.isTraceEnabled()) {
                 LOG.trace("BOM: " + encoding);
             }
@@ -305,6 +430,9 @@ public class EncodingDetector {
             // do all these in a try/catch; setText and detect/detectAll
             // will sometimes throw exceptions
             try {
+                if (detector == null) {
+                    detector = new CharsetDetector();
+                }
                 detector.enableInputFilter(filter);
                 detector.setText(new ByteArrayInputStream(dataBuffer.array(),
                         dataBuffer.arrayOffset() + dataBuffer.position(), length));
@@ -459,6 +587,33 @@ public class EncodingDetector {
         }
     }
 
+    /**
+     * An encoding found by {@link #detectFastWithSource(WebPage)}, the source is one of "trusted header", "BOM",
+     * "header" and "meta"
+     * */
+    public static class DetectedEncoding {
+        private final String encoding;
+        private final String source;
+
+        public DetectedEncoding(String encoding, String source) {
+            this.encoding = encoding;
+            this.source = source;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            return encoding + " (" + source + ")";
+        }
+    }
+
     public class EncodingClue {
         private final String value;
         private final String source;
@@ -5,6 +5,7 @@ import ai.platon.pulsar.common.AppPaths
 import ai.platon.pulsar.common.AppPaths.WEB_CACHE_DIR
 import ai.platon.pulsar.common.BeanFactory
 import ai.platon.pulsar.common.IllegalApplicationContextStateException
+import ai.platon.pulsar.common.collect.StreamingHyperlinkExtractor
 import ai.platon.pulsar.common.config.VolatileConfig
 import ai.platon.pulsar.common.options.LoadOptions
 import ai.platon.pulsar.common.urls.NormUrl
@@ -18,7 +19,6 @@ import ai.platon.pulsar.dom.select.appendSelectorIfMissing
 import ai.platon.pulsar.dom.select.firstTextOrNull
 import ai.platon.pulsar.dom.select.selectFirstOrNull
 import ai.platon.pulsar.persist.WebPage
-import org.jsoup.nodes.Element
 import org.slf4j.LoggerFactory
 import java.nio.file.Path
 import java.time.Instant
@@ -278,9 +278,23 @@ abstract class AbstractPulsarSession(
         val normUrl = normalize(portalUrl, options)
 
         val opts = normUrl.options
-        val links = loadDocument(normUrl).select(outlinkSelector) {
-            parseLink(it, !opts.noNorm, opts.ignoreUrlQuery)?.substringBeforeLast("#")
-        }.mapNotNullTo(mutableSetOf()) { it }.take(opts.topLinks)
+        val page = load(normUrl)
+        // the parse component runs in the load if the page is required to parse, in which case only the links are
+        // required here, otherwise the page is parsed by the session as usual
+        val streaming = opts.parse && documentCache.getDatum(page.url) == null
+                && StreamingHyperlinkExtractor.isSupported(outlinkSelector)
+        val links = if (streaming) {
+            val links = mutableSetOf<String>()
+            StreamingHyperlinkExtractor(page, outlinkSelector).forEachLink { link ->
+                parseLink(link.href(), !opts.noNorm, opts.ignoreUrlQuery)?.let { links.add(it.substringBeforeLast("#")) }
+                links.size < opts.topLinks
+            }
+            links.take(opts.topLinks)
+        } else {
+            parse(page).select(outlinkSelector) {
+                parseLink(it.attr("abs:href"), !opts.noNorm, opts.ignoreUrlQuery)?.substringBeforeLast("#")
+            }.mapNotNullTo(mutableSetOf()) { it }.take(opts.topLinks)
+        }
 
         return loadAll(links, normUrl.options.createItemOptions())
     }
@@ -427,8 +441,8 @@ abstract class AbstractPulsarSession(
         return context.parse(page) ?: nil
     }
 
-    private fun parseLink(ele: Element, normalize: Boolean = false, ignoreQuery: Boolean = false): String? {
-        var link = ele.attr("abs:href").takeIf { it.startsWith("http") } ?: return null
+    private fun parseLink(href: String, normalize: Boolean = false, ignoreQuery: Boolean = false): String? {
+        var link = href.takeIf { it.startsWith("http") } ?: return null
         if (normalize) {
             link = normalizeOrNull(link)?.spec ?: return null
         }
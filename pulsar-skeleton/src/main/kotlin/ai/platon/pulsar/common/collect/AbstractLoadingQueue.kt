@@ -1,10 +1,16 @@
 package ai.platon.pulsar.common.collect
 
 import ai.platon.pulsar.common.urls.UrlAware
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.slf4j.LoggerFactory
 import java.time.Duration
 import java.time.Instant
 import java.util.*
 import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.Predicate
 
 interface LoadingQueue<T>: Queue<T>, Loadable<T> {
@@ -28,6 +34,15 @@ interface LoadingQueue<T>: Queue<T>, Loadable<T> {
 
 /**
  * An url queue should be small since every url uses about 1s to fetch
+ *
+ * Offers and polls are lock free, the queue size is tracked by an atomic counter since
+ * [ConcurrentLinkedQueue.size] walks the whole queue. When the queue drops to [lowWatermark], it's refilled
+ * from the external loader in a background thread, so [poll] never waits for disk I/O, except the very first
+ * access which loads the first page synchronously. The external size is cached and updated on every load.
+ *
+ * Overflowed urls are buffered in a lock free queue and written to the external loader in a background thread.
+ * The external I/O of a queue is serialized by a lock of its own, the queue monitor is never held during I/O,
+ * so offers and polls never wait for a load or a save.
  * */
 abstract class AbstractLoadingQueue(
         val loader: ExternalUrlLoader,
@@ -37,22 +52,66 @@ abstract class AbstractLoadingQueue(
          * The delay time to load after another load
          * */
         var loadDelay: Duration = Duration.ofSeconds(60),
-        val transformer: (UrlAware) -> UrlAware
+        val transformer: (UrlAware) -> UrlAware,
+        /**
+         * Refill the queue from the external loader if there are no more items than this
+         * */
+        val lowWatermark: Int = capacity / 4
 ): AbstractQueue<UrlAware>(), LoadingQueue<UrlAware> {
 
+    companion object {
+        private val log = LoggerFactory.getLogger(AbstractLoadingQueue::class.java)
+
+        /**
+         * Refills and overflow writes of all queues are performed in a small pool of daemon threads, a slow queue
+         * does not hold up the others, and every queue has at most one refill and one write pending
+         * */
+        private val ioExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors().coerceIn(2, 8),
+            ThreadFactoryBuilder().setNameFormat("queue-io-%d").setDaemon(true).build())
+    }
+
     protected val implementation = ConcurrentLinkedQueue<UrlAware>()
 
+    /**
+     * The overflowed urls not written to the external loader yet
+     * */
+    private val overflowBuffer = ConcurrentLinkedQueue<UrlAware>()
+
+    /**
+     * The number of urls in [overflowBuffer], the buffered urls are counted in the estimated external size
+     * */
+    private val numBuffered = AtomicInteger()
+
+    /**
+     * Serialize the external I/O of this queue, it's never held by offers and polls
+     * */
+    private val ioLock = Any()
+
+    /**
+     * The number of items in the queue and the slots reserved by ongoing offers
+     * */
+    private val counter = AtomicInteger()
+
+    private val started = AtomicBoolean()
+
+    private val refilling = AtomicBoolean()
+
+    private val flushing = AtomicBoolean()
+
+    private val loads = AtomicInteger()
+
+    private val saves = AtomicInteger()
+
     @Volatile
     private var _estimatedExternalSize: Int = -1
 
     @Volatile
     protected var lastLoadTime = Instant.EPOCH
 
-    var loadCount: Int = 0
-        protected set
+    val loadCount: Int get() = loads.get()
 
-    var savedCount: Int = 0
-        protected set
+    val savedCount: Int get() = saves.get()
 
     val isExpired get() = isExpired(loadDelay)
 
@@ -63,26 +122,32 @@ abstract class AbstractLoadingQueue(
     /**
      * The cache size
      * */
-    @get:Synchronized
     override val size: Int
-        get() = refreshIfNecessary().implementation.size
+        get() {
+            startIfNecessary()
+            refillIfNecessary()
+            return counter.get()
+        }
 
     /**
      * Query the underlying database, this operation might be slow, try to use estimatedExternalSize
      * */
-    @get:Synchronized
     override val externalSize: Int
-        get() = loader.countRemaining(group)
+        get() = synchronized(ioLock) {
+            flushOverflow()
+            estimate()
+            estimatedExternalSize
+        }
 
-    @get:Synchronized
+    /**
+     * The cached external size, it's updated on every load and overflow, never queries the underlying database
+     * */
     override val estimatedExternalSize: Int
         get() = _estimatedExternalSize.coerceAtLeast(0)
 
-    @get:Synchronized
     val freeSlots
-        get() = capacity - implementation.size
+        get() = (capacity - counter.get()).coerceAtLeast(0)
 
-    @get:Synchronized
     val isFull
         get() = freeSlots == 0
 
@@ -90,123 +155,321 @@ abstract class AbstractLoadingQueue(
         return lastLoadTime + delay < Instant.now()
     }
 
-    @Synchronized
     override fun clear() {
-        implementation.clear()
+        while (implementation.poll() != null) {
+            counter.decrementAndGet()
+        }
     }
 
     fun externalClear() {
-        loader.deleteAll(group)
+        synchronized(ioLock) {
+            while (overflowBuffer.poll() != null) {
+                numBuffered.decrementAndGet()
+            }
+            loader.deleteAll(group)
+            _estimatedExternalSize = 0
+        }
     }
 
-    @Synchronized
     override fun load() {
-        if (implementation.isEmpty() && estimatedExternalSize > 0) {
-            loadNow()
-        } else if (freeSlots > 0 && isExpired) {
-            loadNow()
+        synchronized(ioLock) {
+            if (_estimatedExternalSize < 0) {
+                estimate()
+            }
+
+            if (implementation.isEmpty() && estimatedExternalSize > 0) {
+                loadNow()
+            } else if (freeSlots > 0 && isExpired) {
+                loadNow()
+            }
         }
     }
 
-    @Synchronized
     override fun load(delay: Duration) {
-        if (freeSlots > 0 && isExpired(delay)) {
-            loadNow()
+        synchronized(ioLock) {
+            if (freeSlots > 0 && isExpired(delay)) {
+                loadNow()
+            }
         }
     }
 
-    @Synchronized
     override fun loadNow(): Collection<UrlAware> {
-        return if (freeSlots > 0) {
-            lastLoadTime = Instant.now()
-            loader.loadToNow(implementation, freeSlots, group, transformer).also {
-                _estimatedExternalSize = externalSize
-                ++loadCount
-            }
-        } else listOf()
+        return synchronized(ioLock) { loadNow0() }
+    }
+
+    /**
+     * Write the overflowed urls to the external loader now, the caller waits for the I/O
+     * */
+    fun flush() {
+        synchronized(ioLock) {
+            flushOverflow()
+        }
+    }
+
+    /**
+     * Load urls to the free slots, the overflowed urls are written first, so they can be loaded, [ioLock] is held
+     * */
+    private fun loadNow0(): Collection<UrlAware> {
+        flushOverflow()
+
+        val n = acquireSlots(freeSlots)
+        if (n <= 0) {
+            return listOf()
+        }
+
+        lastLoadTime = Instant.now()
+        val urls = try {
+            loader.loadToNow(ArrayList<UrlAware>(n), n, group, transformer)
+        } catch (e: Exception) {
+            counter.addAndGet(-n)
+            throw e
+        }
+
+        // release the slots not used
+        counter.addAndGet(urls.size - n)
+        implementation.addAll(urls)
+        estimate()
+        loads.incrementAndGet()
+
+        return urls
     }
 
     @Synchronized
     override fun shuffle() {
-        val l = implementation.toMutableList()
-        implementation.clear()
+        // the items are moved out and back, the counter is not changed
+        val l = mutableListOf<UrlAware>()
+        while (true) {
+            l.add(implementation.poll() ?: break)
+        }
         l.shuffle()
         implementation.addAll(l)
     }
 
-    @Synchronized
     override fun add(url: UrlAware) = offer(url)
 
-    @Synchronized
     override fun addAll(urls: Collection<UrlAware>): Boolean {
-        if (urls.size > freeSlots) {
-            val n = freeSlots
-            // TODO: can be optimized
-            super.addAll(urls.take(n))
+        val n = freeSlots
+        if (urls.size > n) {
+            urls.take(n).forEach { offer(it) }
             overflow(urls.drop(n))
         } else {
-            super.addAll(urls)
+            urls.forEach { offer(it) }
         }
         return true
     }
 
-    @Synchronized
     override fun offer(url: UrlAware): Boolean {
-        return if (!url.isPersistable || freeSlots > 0) {
-            implementation.add(url)
-        } else {
-            overflow(url)
-            true
-        }
+        return offerIfAdmitted(url) { true }
+    }
+
+    override fun remove(element: UrlAware): Boolean {
+        return implementation.remove(element).also { if (it) counter.decrementAndGet() }
     }
 
-    @Synchronized
     override fun removeIf(filter: Predicate<in UrlAware>): Boolean {
-        return implementation.removeIf(filter)
+        return implementation.filter { filter.test(it) }.count { remove(it) } > 0
     }
 
-    @Synchronized
-    override fun iterator(): MutableIterator<UrlAware> = refreshIfNecessary().implementation.iterator()
+    override fun iterator(): MutableIterator<UrlAware> {
+        startIfNecessary()
+        return Itr(implementation.iterator())
+    }
 
-    @Synchronized
     override fun peek(): UrlAware? {
-        refreshIfNecessary()
+        startIfNecessary()
+        refillIfNecessary()
         return implementation.peek()
     }
 
-    @Synchronized
     override fun poll(): UrlAware? {
-        refreshIfNecessary()
-        return implementation.poll()
+        startIfNecessary()
+        val url = implementation.poll()
+        if (url != null) {
+            counter.decrementAndGet()
+        }
+        refillIfNecessary()
+        return url
     }
 
-    @Synchronized
+    /**
+     * Buffer the url and write it to the external loader in background, the caller never waits for I/O
+     * */
     override fun overflow(url: UrlAware) {
-        loader.save(url, group)
-        ++savedCount
-        estimate()
+        overflowBuffer.add(url)
+        numBuffered.incrementAndGet()
+        _estimatedExternalSize = estimatedExternalSize + 1
+        flushInBackground()
     }
 
-    @Synchronized
+    /**
+     * Buffer the urls and write them to the external loader in background, the caller never waits for I/O
+     * */
     override fun overflow(urls: List<UrlAware>) {
-        loader.saveAll(urls, group)
-        savedCount += urls.size
-        estimate()
+        overflowBuffer.addAll(urls)
+        numBuffered.addAndGet(urls.size)
+        _estimatedExternalSize = estimatedExternalSize + urls.size
+        flushInBackground()
     }
 
-    private fun estimate() {
-        _estimatedExternalSize = externalSize
+    /**
+     * Offer the url if there is a free slot and [admit] accepts it, the url is saved to the external loader
+     * if the queue is full. Urls who are not persistable are never saved to the external loader.
+     * */
+    protected fun offerIfAdmitted(url: UrlAware, admit: () -> Boolean): Boolean {
+        if (!acquireSlot(url)) {
+            overflow(url)
+            return true
+        }
+
+        if (!admit()) {
+            releaseSlot()
+            return false
+        }
+
+        enqueue(url)
+        return true
     }
 
-    private fun refreshIfNecessary(): AbstractLoadingQueue {
-        if (_estimatedExternalSize < 0) {
-            estimate()
+    /**
+     * Reserve a slot for the url, urls who are not persistable always get a slot
+     * */
+    private fun acquireSlot(url: UrlAware): Boolean {
+        if (!url.isPersistable) {
+            counter.incrementAndGet()
+            return true
         }
 
-        if (implementation.isEmpty()) {
+        return acquireSlots(1) == 1
+    }
+
+    private fun releaseSlot() {
+        counter.decrementAndGet()
+    }
+
+    /**
+     * Add the url to the queue, a slot must be reserved
+     * */
+    private fun enqueue(url: UrlAware) {
+        implementation.add(url)
+    }
+
+    /**
+     * Reserve at most n slots, returns the number of slots reserved
+     * */
+    private fun acquireSlots(n: Int): Int {
+        while (true) {
+            val c = counter.get()
+            val acquired = n.coerceAtMost(capacity - c)
+            if (acquired <= 0) {
+                return 0
+            }
+            if (counter.compareAndSet(c, c + acquired)) {
+                return acquired
+            }
+        }
+    }
+
+    private fun estimate() {
+        _estimatedExternalSize = loader.countRemaining(group) + numBuffered.get()
+    }
+
+    /**
+     * Load the first page synchronously, so the queue is not empty on the first access if there are external items
+     * */
+    private fun startIfNecessary() {
+        if (started.compareAndSet(false, true)) {
             load()
         }
+    }
+
+    private fun refillIfNecessary() {
+        if (counter.get() > lowWatermark || (_estimatedExternalSize == 0 && !isExpired)) {
+            return
+        }
 
-        return this
+        if (refilling.compareAndSet(false, true)) {
+            try {
+                ioExecutor.execute {
+                    try {
+                        refill()
+                    } catch (t: Throwable) {
+                        log.warn("Failed to refill queue {} | {}", group, t.message)
+                    } finally {
+                        refilling.set(false)
+                    }
+                }
+            } catch (e: RejectedExecutionException) {
+                refilling.set(false)
+            }
+        }
+    }
+
+    private fun refill() {
+        synchronized(ioLock) {
+            if (freeSlots > 0 && (estimatedExternalSize > 0 || isExpired)) {
+                loadNow0()
+            }
+        }
+    }
+
+    private fun flushInBackground() {
+        if (flushing.compareAndSet(false, true)) {
+            try {
+                ioExecutor.execute {
+                    try {
+                        flush()
+                    } catch (t: Throwable) {
+                        log.warn("Failed to write overflowed urls of queue {} | {}", group, t.message)
+                    } finally {
+                        flushing.set(false)
+                        // urls overflowed after the drain and before the flag is reset are written by a new task
+                        if (overflowBuffer.isNotEmpty()) {
+                            flushInBackground()
+                        }
+                    }
+                }
+            } catch (e: RejectedExecutionException) {
+                flushing.set(false)
+            }
+        }
+    }
+
+    /**
+     * Drain the overflow buffer to the external loader, [ioLock] is held
+     * */
+    private fun flushOverflow() {
+        val urls = mutableListOf<UrlAware>()
+        while (true) {
+            urls.add(overflowBuffer.poll() ?: break)
+        }
+
+        if (urls.isNotEmpty()) {
+            try {
+                loader.saveAll(urls, group)
+            } catch (e: Exception) {
+                // put them back, so they are written by the next flush
+                overflowBuffer.addAll(urls)
+                throw e
+            }
+            numBuffered.addAndGet(-urls.size)
+            saves.addAndGet(urls.size)
+        }
+    }
+
+    /**
+     * Removing by the iterator keeps the counter in sync
+     * */
+    private inner class Itr(val iterator: MutableIterator<UrlAware>): MutableIterator<UrlAware> {
+        private var last: UrlAware? = null
+
+        override fun hasNext() = iterator.hasNext()
+
+        override fun next(): UrlAware = iterator.next().also { last = it }
+
+        override fun remove() {
+            val url = last ?: throw IllegalStateException()
+            last = null
+            this@AbstractLoadingQueue.remove(url)
+        }
     }
 }
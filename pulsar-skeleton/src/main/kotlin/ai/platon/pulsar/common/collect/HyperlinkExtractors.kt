@@ -7,14 +7,18 @@ import ai.platon.pulsar.common.urls.Hyperlink
 import ai.platon.pulsar.common.urls.StatefulHyperlink
 import ai.platon.pulsar.common.urls.Urls
 import ai.platon.pulsar.common.urls.preprocess.UrlNormalizer
+import ai.platon.pulsar.crawl.parse.html.JsoupParser
 import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.dom.nodes.node.ext.bestElement
 import ai.platon.pulsar.dom.nodes.node.ext.isAnchor
 import ai.platon.pulsar.dom.select.appendSelectorIfMissing
 import ai.platon.pulsar.dom.select.collectNotNull
 import ai.platon.pulsar.persist.WebPage
+import org.jsoup.parser.StreamingLinkExtractor
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
+import java.io.InputStreamReader
+import java.nio.charset.Charset
 
 open class HyperlinkExtractor(
     val page: WebPage,
@@ -42,6 +46,61 @@ open class HyperlinkExtractor(
     }
 }
 
+/**
+ * Extract hyperlinks straight from the page content, the page is tokenised but never parsed into a document.
+ *
+ * Only the selectors of tags, ids, classes and the descendant combinator are supported, check them by [isSupported]
+ * and fall back to [HyperlinkExtractor] for the others.
+ * */
+open class StreamingHyperlinkExtractor(
+    val page: WebPage,
+    val cssSelector: String,
+    val normalizer: UrlNormalizer? = null
+) {
+    companion object {
+        fun isSupported(cssSelector: String) =
+            StreamingLinkExtractor.isSupported(appendSelectorIfMissing(cssSelector, "a"))
+    }
+
+    private val log = LoggerFactory.getLogger(StreamingHyperlinkExtractor::class.java)
+
+    fun extract() = extractTo(LinkedHashSet())
+
+    fun extractTo(fetchUrls: MutableCollection<Hyperlink>): MutableCollection<Hyperlink> {
+        val parsedUrls = mutableListOf<Hyperlink>()
+        forEachLink { link ->
+            link.href().takeIf { Urls.isValidUrl(it) }
+                ?.let { Hyperlink(normalizer?.invoke(it) ?: it, link.text(), parsedUrls.size, referer = page.url, href = it) }
+                ?.let { parsedUrls.add(it) }
+            true
+        }
+        parsedUrls.toCollection(fetchUrls)
+
+        reportHyperlink(page, parsedUrls, fetchUrls, log)
+
+        return fetchUrls
+    }
+
+    /**
+     * Handle the selected links in document order, the rest of the content is skipped once the handler returns false
+     * */
+    fun forEachLink(handler: (StreamingLinkExtractor.Link) -> Boolean) {
+        if (page.content == null) {
+            return
+        }
+
+        if (page.encoding == null) {
+            JsoupParser.detectEncoding(page, page.conf)
+        }
+
+        val charset = page.encoding?.let { runCatching { Charset.forName(it) }.getOrNull() } ?: Charsets.UTF_8
+        val extractor = StreamingLinkExtractor(appendSelectorIfMissing(cssSelector, "a"))
+        InputStreamReader(page.contentAsInputStream, charset).use {
+            extractor.extract(it, page.baseUrl) { link -> handler(link) }
+        }
+    }
+}
+
 open class RegexHyperlinkExtractor(
     val page: WebPage,
     val document: FeaturedDocument,
@@ -1,7 +1,6 @@
 package ai.platon.pulsar.common.collect
 
 import ai.platon.pulsar.common.urls.UrlAware
-import com.google.common.collect.HashMultiset
 
 class ConcurrentLoadingQueue(
     loader: ExternalUrlLoader,
@@ -14,25 +13,20 @@ class ConcurrentNonReentrantLoadingQueue(
     loader: ExternalUrlLoader,
     group: UrlGroup,
     capacity: Int = LoadingQueue.DEFAULT_CAPACITY,
-    transformer: (UrlAware) -> UrlAware = { it }
+    transformer: (UrlAware) -> UrlAware = { it },
+    /**
+     * The seen urls, lookups and insertions are lock free
+     * */
+    val history: UrlHistory = ConcurrentFingerprintSet()
 ) : AbstractLoadingQueue(loader, group, capacity, transformer = transformer) {
-    private val historyHash = HashSet<Int>()
 
-    @Synchronized
-    fun count(url: UrlAware) = if (historyHash.contains(url.hashCode())) 1 else 0
+    fun count(url: UrlAware) = history.count(url.url).coerceAtMost(1)
 
-    @Synchronized
     override fun offer(url: UrlAware): Boolean {
-        val hashCode = url.hashCode()
+        val fingerprint = UrlHistory.fingerprint(url.url)
 
-        if (!historyHash.contains(hashCode)) {
-            return if (!url.isPersistable || freeSlots > 0) {
-                historyHash.add(hashCode)
-                implementation.add(url)
-            } else {
-                overflow(url)
-                true
-            }
+        if (fingerprint !in history) {
+            return offerIfAdmitted(url) { history.tryAdd(fingerprint) }
         }
 
         return false
@@ -44,26 +38,24 @@ class ConcurrentNEntrantLoadingQueue(
     group: UrlGroup,
     val n: Int = 3,
     capacity: Int = LoadingQueue.DEFAULT_CAPACITY,
-    transformer: (UrlAware) -> UrlAware = { it }
+    transformer: (UrlAware) -> UrlAware = { it },
+    /**
+     * The seen urls and how many times they are seen, lookups and insertions are lock free
+     * */
+    val history: UrlHistory = ConcurrentFingerprintSet()
 ) : AbstractLoadingQueue(loader, group, capacity, transformer = transformer) {
 
-    private val historyHash = HashMultiset.create<Int>()
+    init {
+        require(n < history.maxCount) { "The url history can count at most ${history.maxCount} times" }
+    }
 
-    @Synchronized
-    fun count(url: UrlAware) = historyHash.count(url.hashCode())
+    fun count(url: UrlAware) = history.count(url.url)
 
-    @Synchronized
     override fun offer(url: UrlAware): Boolean {
-        val hashCode = url.hashCode()
+        val fingerprint = UrlHistory.fingerprint(url.url)
 
-        if (historyHash.count(hashCode) <= n) {
-            return if (!url.isPersistable || freeSlots > 0) {
-                historyHash.add(hashCode)
-                implementation.add(url)
-            } else {
-                overflow(url)
-                true
-            }
+        if (history.count(fingerprint) <= n) {
+            return offerIfAdmitted(url) { history.tryAdd(fingerprint, n + 1) }
         }
 
         return false
@@ -0,0 +1,158 @@
+package ai.platon.pulsar.crawl
+
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.selects.select
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.withContext
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Admits tasks with backpressure.
+ *
+ * A task is admitted if there is no critical warning and there is a free permit. Producers suspend in [acquire]
+ * until both conditions hold, they are resumed as soon as a task releases it's permit or the last critical warning
+ * is cleared, no one polls.
+ *
+ * Critical warnings are fed by health signals, see [close] and [open].
+ * */
+class AdmissionGate(
+    /**
+     * The max number of tasks running at the same time
+     * */
+    val concurrency: Int,
+    /**
+     * The permits of the running tasks, gates sharing the permits bound the tasks of all of them together
+     * */
+    private val permits: Semaphore = Semaphore(concurrency)
+) {
+    private class State(val warnings: Set<CriticalWarning> = setOf(), val isShutdown: Boolean = false)
+
+    private val state = MutableStateFlow(State())
+    private val waitingCounter = AtomicInteger()
+    @Volatile
+    private var closedAt = Instant.EPOCH
+
+    /**
+     * The number of running tasks, including the tasks of the gates sharing the permits
+     * */
+    val numRunning get() = concurrency - permits.availablePermits
+
+    val availablePermits get() = permits.availablePermits
+
+    /**
+     * The number of producers waiting for admission
+     * */
+    val numWaiting get() = waitingCounter.get()
+
+    val warnings get() = state.value.warnings
+
+    val criticalWarning get() = warnings.firstOrNull()
+
+    val isOpen get() = warnings.isEmpty()
+
+    val isShutdown get() = state.value.isShutdown
+
+    /**
+     * How long the gate is closed by critical warnings, or zero if it's open
+     * */
+    val closedTime: Duration get() = if (isOpen) Duration.ZERO else Duration.between(closedAt, Instant.now())
+
+    /**
+     * Suspend until the gate is open and a permit is acquired.
+     *
+     * @return true if a permit is acquired, which must be released by [release] after the task is done,
+     * false if the gate is shutdown
+     * */
+    suspend fun acquire(): Boolean {
+        waitingCounter.incrementAndGet()
+        var acquired = false
+        try {
+            val s = state.first { it.warnings.isEmpty() || it.isShutdown }
+            if (s.isShutdown) {
+                return false
+            }
+
+            acquired = permits.tryAcquire() || acquireOrShutdown()
+            return acquired && !isShutdown
+        } finally {
+            waitingCounter.decrementAndGet()
+            if (acquired && isShutdown) {
+                permits.release()
+            }
+        }
+    }
+
+    fun release() = permits.release()
+
+    /**
+     * Suspend until a permit is acquired or the gate is shutdown. The permit is released if the caller is cancelled,
+     * it never leaks.
+     * */
+    private suspend fun acquireOrShutdown(): Boolean = coroutineScope {
+        val permit = async { permits.acquire() }
+        val shutdown = async { state.first { it.isShutdown } }
+        var acquired = false
+        try {
+            select<Unit> {
+                permit.onAwait {}
+                shutdown.onAwait {}
+            }
+        } finally {
+            shutdown.cancel()
+            permit.cancel()
+            // the permit might be acquired just before the cancellation
+            withContext(NonCancellable) { permit.join() }
+            acquired = !permit.isCancelled
+            if (acquired && !isActive) {
+                permits.release()
+                acquired = false
+            }
+        }
+        acquired
+    }
+
+    fun isClosedBy(warning: CriticalWarning) = warning in warnings
+
+    /**
+     * Close the gate because of the warning, producers are suspended until all warnings are cleared
+     * */
+    @Synchronized
+    fun close(warning: CriticalWarning) {
+        val s = state.value
+        if (warning !in s.warnings) {
+            if (s.warnings.isEmpty()) {
+                closedAt = Instant.now()
+            }
+            state.value = State(s.warnings + warning, s.isShutdown)
+        }
+    }
+
+    /**
+     * Clear the warning, the gate is open if there is no other warning
+     * */
+    @Synchronized
+    fun open(warning: CriticalWarning) {
+        val s = state.value
+        if (warning in s.warnings) {
+            state.value = State(s.warnings - warning, s.isShutdown)
+        }
+    }
+
+    fun update(warning: CriticalWarning, closed: Boolean) = if (closed) close(warning) else open(warning)
+
+    /**
+     * Reject all producers, including the ones waiting for warnings to clear and the ones waiting for permits,
+     * running tasks are not affected
+     * */
+    @Synchronized
+    fun shutdown() {
+        state.value = State(state.value.warnings, true)
+    }
+}
@@ -23,6 +23,7 @@ import ai.platon.pulsar.crawl.fetch.privacy.PrivacyContext
 import ai.platon.pulsar.persist.WebPage
 import com.codahale.metrics.Gauge
 import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Semaphore
 import org.apache.commons.lang3.RandomStringUtils
 import org.apache.commons.lang3.SystemUtils
 import java.io.IOException
@@ -96,6 +97,17 @@ open class StreamingCrawler<T : UrlAware>(
         private val availableMemory get() = AppMetrics.availableMemory
         private val requiredMemory = 500 * 1024 * 1024L // 500 MiB
         private val remainingMemory get() = availableMemory - requiredMemory
+        private const val MIN_FREE_DISK_SPACE_GB = 10.0
+
+        /**
+         * Health probes are sampled every tick, expensive probes run every several ticks
+         * */
+        private val healthCheckInterval = Duration.ofSeconds(1)
+        private const val MEMORY_CHECK_TICKS = 2
+        private const val DISK_CHECK_TICKS = 60
+        private const val PROXY_CHECK_TICKS = 180
+        private const val REPORT_TICKS = 60
+        private const val MAX_CONTEXT_LEAK_WAITING_TICKS = 600
         private var contextLeakWaitingTime = Duration.ZERO
         private var proxyVendorWaitingTime = Duration.ZERO
         private var criticalWarning: CriticalWarning? = null
@@ -106,6 +118,16 @@ open class StreamingCrawler<T : UrlAware>(
 
         private var wrongDistrict = AppMetrics.reg.multiMetric(this, "WRONG_DISTRICT_COUNT")
 
+        /**
+         * The permits are shared by all crawlers, so the tasks of the whole process are bounded by the fetch concurrency
+         * */
+        private var globalAdmissionPermits: Pair<Int, Semaphore>? = null
+
+        @Synchronized
+        private fun getOrCreateAdmissionPermits(concurrency: Int): Pair<Int, Semaphore> {
+            return globalAdmissionPermits ?: Pair(concurrency, Semaphore(concurrency)).also { globalAdmissionPermits = it }
+        }
+
         init {
             mapOf(
                 "globalRunningInstances" to Gauge { globalRunningInstances.get() },
@@ -134,11 +156,17 @@ open class StreamingCrawler<T : UrlAware>(
     private val isIdle get() = idleTime > idleTimeout
     private val defaultArgs = defaultOptions.toString()
 
-    private var proxyOutOfService = 0
     private var quit = false
     override val isActive get() = super.isActive && !quit && !isIllegalApplicationState.get()
     private val taskTimeout = Duration.ofMinutes(10)
 
+    /**
+     * Tasks are admitted with backpressure, health signals close the gate and task completion releases permits.
+     * The gate is closed and shutdown for this crawler only, but the permits are shared by all crawlers.
+     * */
+    private val admission = getOrCreateAdmissionPermits(fetchConcurrency)
+        .let { (concurrency, permits) -> AdmissionGate(concurrency, permits) }
+
     @Volatile
     private var flowState = FlowState.CONTINUE
 
@@ -149,7 +177,12 @@ open class StreamingCrawler<T : UrlAware>(
     val id = instanceSequencer.incrementAndGet()
 
     private val gauges = mapOf(
-        "idleTime" to Gauge { idleTime.readable() }
+        "idleTime" to Gauge { idleTime.readable() },
+        "admissionRunning" to Gauge { admission.numRunning },
+        "admissionWaiting" to Gauge { admission.numWaiting },
+        "admissionPermits" to Gauge { admission.availablePermits },
+        "admissionWarnings" to Gauge { admission.warnings.joinToString { it.name } },
+        "admissionClosedTime" to Gauge { admission.closedTime.readable() }
     )
 
     init {
@@ -181,6 +214,7 @@ open class StreamingCrawler<T : UrlAware>(
 
     fun quit() {
         quit = true
+        admission.shutdown()
     }
 
     protected suspend fun startCrawlLoop(scope: CoroutineScope) {
@@ -189,7 +223,24 @@ open class StreamingCrawler<T : UrlAware>(
         globalRunningInstances.incrementAndGet()
 
         val startTime = Instant.now()
+        val monitor = scope.launch(Dispatchers.Default + CoroutineName("health")) { monitorHealth() }
 
+        try {
+            startCrawlLoop0(scope)
+        } finally {
+            monitor.cancel()
+        }
+
+        globalRunningInstances.decrementAndGet()
+
+        logger.info(
+            "All done. Total {} tasks are processed in session {} in {}",
+            globalMetrics.tasks.counter.count, session,
+            DateTimes.elapsedTime(startTime).readable()
+        )
+    }
+
+    private suspend fun startCrawlLoop0(scope: CoroutineScope) {
         while (isActive) {
             if (!urls.iterator().hasNext()) {
                 sleepSeconds(1)
@@ -198,14 +249,7 @@ open class StreamingCrawler<T : UrlAware>(
             urls.forEachIndexed { j, url ->
                 if (!isActive) {
                     globalMetrics.drops.mark()
-                    return@startCrawlLoop
-                }
-
-                // The largest disk must have at least 10GiB remaining space
-                if (AppMetrics.freeSpace.maxOfOrNull { ByteUnit.convert(it, "G") } ?: 0.0 < 10.0) {
-                    logger.error("Disk space is full!")
-                    criticalWarning = CriticalWarning.OUT_OF_DISK_STORAGE
-                    return@startCrawlLoop
+                    return
                 }
 
                 if (url.isNil) {
@@ -221,7 +265,7 @@ open class StreamingCrawler<T : UrlAware>(
                 }
 
                 if (state != FlowState.CONTINUE) {
-                    return@startCrawlLoop
+                    return
                 } else {
                     // if urls is ConcurrentLoadingIterable
                     // TODO: the line below can be removed
@@ -229,65 +273,28 @@ open class StreamingCrawler<T : UrlAware>(
                 }
             }
         }
-
-        globalRunningInstances.decrementAndGet()
-
-        logger.info(
-            "All done. Total {} tasks are processed in session {} in {}",
-            globalMetrics.tasks.counter.count, session,
-            DateTimes.elapsedTime(startTime).readable()
-        )
     }
 
     private suspend fun runWithStatusCheck(j: Int, url: UrlAware, scope: CoroutineScope): FlowState {
         lastActiveTime = Instant.now()
 
-        while (isActive && globalRunningTasks.get() > fetchConcurrency) {
-            if (j % 120 == 0) {
-                logger.info(
-                    "$j. Long time to run $globalRunningTasks tasks" +
-                            " | $lastActiveTime -> {}", idleTime.readable()
-                )
-            }
-            delay(1000)
-        }
-
-        var k = 0
-        while (isActive && remainingMemory < 0) {
-            if (k++ % 20 == 0) {
-                handleMemoryShortage(k)
-            }
-            criticalWarning = CriticalWarning.OUT_OF_MEMORY
-            delay(1000)
-        }
-
-        val contextLeaksRate = PrivacyContext.globalMetrics.contextLeaks.meter.fifteenMinuteRate
-        if (contextLeaksRate >= 5 / 60f) {
-            criticalWarning = CriticalWarning.FAST_CONTEXT_LEAK
-            handleContextLeaks()
-        }
-
-        if (wrongDistrict.hourlyCounter.count > 60) {
-            handleWrongDistrict()
-        }
-
-        if (proxyOutOfService > 0) {
-            criticalWarning = CriticalWarning.NO_PROXY
-            handleProxyOutOfService()
-        }
-
         if (FileCommand.check("finish-job")) {
             logger.info("Find finish-job command, quit streaming crawler ...")
             flowState = FlowState.BREAK
             return flowState
         }
 
-        if (!isActive) {
+        // suspend until a running task finishes and all critical warnings are cleared
+        if (!admission.acquire()) {
             flowState = FlowState.BREAK
             return flowState
         }
 
-        criticalWarning = null
+        if (!isActive) {
+            admission.release()
+            flowState = FlowState.BREAK
+            return flowState
+        }
 
         val context = Dispatchers.Default + CoroutineName("w")
         // must increase before launch because we have to control the number of running tasks
@@ -301,6 +308,7 @@ open class StreamingCrawler<T : UrlAware>(
                 runUrlTask(url)
             } finally {
                 lastActiveTime = Instant.now()
+                admission.release()
                 globalRunningTasks.decrementAndGet()
                 globalMetrics.finishes.mark()
                 if (AmazonDiagnosis.isAmazon(url.url)) {
@@ -363,6 +371,9 @@ open class StreamingCrawler<T : UrlAware>(
         lastHtmlIntegrity = page.htmlIntegrity.toString()
         if (page.htmlIntegrity == HtmlIntegrity.WRONG_DISTRICT) {
             wrongDistrict.mark()
+            if (wrongDistrict.hourlyCounter.count > 60) {
+                warn(CriticalWarning.WRONG_DISTRICT, true)
+            }
         }
 
         if (page.isFetched) {
@@ -448,8 +459,8 @@ open class StreamingCrawler<T : UrlAware>(
                 logger.warn("Illegal state", e)
             }
             is ProxyInsufficientBalanceException -> {
-                proxyOutOfService++
-                logger.warn("{}. {}", proxyOutOfService, e.message)
+                warn(CriticalWarning.NO_PROXY, true)
+                logger.warn("{}", e.message)
             }
             is ProxyVendorUntrustedException -> {
                 logger.warn("Proxy is untrusted | {}", e.message)
@@ -504,6 +515,74 @@ open class StreamingCrawler<T : UrlAware>(
         }
     }
 
+    /**
+     * Sample the health signals and feed them to the admission gate, producers are suspended by the gate
+     * rather than polling the signals themselves
+     * */
+    private suspend fun monitorHealth() {
+        var tick = 0L
+        var contextLeakTicks = 0
+        var memoryShortageTicks = 0
+
+        try {
+            while (isActive) {
+                if (tick % MEMORY_CHECK_TICKS == 0L) {
+                    val shortage = remainingMemory < 0
+                    if (shortage && memoryShortageTicks++ % 10 == 0) {
+                        handleMemoryShortage(memoryShortageTicks)
+                    }
+                    if (!shortage) memoryShortageTicks = 0
+                    warn(CriticalWarning.OUT_OF_MEMORY, shortage)
+                }
+
+                if (tick % DISK_CHECK_TICKS == 0L) {
+                    checkDiskSpace()
+                }
+
+                val contextLeak = isContextLeakTooFast() && contextLeakTicks < MAX_CONTEXT_LEAK_WAITING_TICKS
+                contextLeakTicks = if (contextLeak) contextLeakTicks + 1 else 0
+                contextLeakWaitingTime = healthCheckInterval.multipliedBy(contextLeakTicks.toLong())
+                warn(CriticalWarning.FAST_CONTEXT_LEAK, contextLeak)
+
+                warn(CriticalWarning.WRONG_DISTRICT, wrongDistrict.hourlyCounter.count > 60)
+
+                if (admission.isClosedBy(CriticalWarning.NO_PROXY)) {
+                    proxyVendorWaitingTime += healthCheckInterval
+                    if (tick % PROXY_CHECK_TICKS == 0L) {
+                        checkProxyService()
+                    }
+                } else {
+                    proxyVendorWaitingTime = Duration.ZERO
+                }
+
+                if (tick % REPORT_TICKS == 0L && admission.numWaiting > 0) {
+                    reportAdmission()
+                }
+
+                delay(healthCheckInterval.toMillis())
+                ++tick
+            }
+        } finally {
+            // wake up the waiting producers
+            admission.shutdown()
+        }
+    }
+
+    private fun warn(warning: CriticalWarning, on: Boolean) {
+        admission.update(warning, on)
+        criticalWarning = admission.criticalWarning
+    }
+
+    private fun reportAdmission() {
+        if (admission.isOpen) {
+            logger.info("Long time to run {} tasks | {} -> {}", admission.numRunning, lastActiveTime, idleTime.readable())
+        } else {
+            logger.warn("{} | all tasks are paused for {}, memory: {}",
+                admission.warnings.joinToString { it.message }, admission.closedTime.readable(),
+                Strings.readableBytes(availableMemory))
+        }
+    }
+
     private fun handleMemoryShortage(j: Int) {
         logger.info(
             "$j.\tnumRunning: {}, availableMemory: {}, requiredMemory: {}, shortage: {}",
@@ -516,65 +595,46 @@ open class StreamingCrawler<T : UrlAware>(
         System.gc()
     }
 
+    /**
+     * The largest disk must have at least 10GiB remaining space, or the crawler quits
+     * */
+    private fun checkDiskSpace() {
+        if (AppMetrics.freeSpace.maxOfOrNull { ByteUnit.convert(it, "G") } ?: 0.0 < MIN_FREE_DISK_SPACE_GB) {
+            logger.error("Disk space is full!")
+            warn(CriticalWarning.OUT_OF_DISK_STORAGE, true)
+            quit()
+        }
+    }
+
     /**
      * The vendor proclaimed every ip can be used for more than 5 minutes,
      * If proxy is not enabled, the rate is always 0
      *
      * 5 / 60f = 0.083
      * */
-    private suspend fun handleContextLeaks() {
+    private fun isContextLeakTooFast(): Boolean {
         val contextLeaks = PrivacyContext.globalMetrics.contextLeaks
-        val contextLeaksRate = contextLeaks.meter.fifteenMinuteRate
-        var k = 0
-        while (isActive && contextLeaksRate >= 5 / 60f && ++k < 600) {
-            logger.takeIf { k % 60 == 0 }
-                ?.warn("Context leaks too fast: {} leaks/seconds, memory: {}",
-                    contextLeaksRate, Strings.readableBytes(availableMemory))
-            delay(1000)
-
+        if (admission.isClosedBy(CriticalWarning.FAST_CONTEXT_LEAK)) {
             // trigger the meter updating
             contextLeaks.inc(-1)
             contextLeaks.inc(1)
-
-            contextLeakWaitingTime += Duration.ofSeconds(1)
         }
-
-        contextLeakWaitingTime = Duration.ZERO
+        return contextLeaks.meter.fifteenMinuteRate >= 5 / 60f
     }
 
-    private suspend fun handleProxyOutOfService() {
-        while (isActive && proxyOutOfService > 0) {
-            delay(1000)
-            proxyVendorWaitingTime += Duration.ofSeconds(1)
-            handleProxyOutOfService0()
+    private fun checkProxyService() {
+        logger.warn("Proxy account insufficient balance, check it again ...")
+        val p = proxyPool
+        if (p == null) {
+            warn(CriticalWarning.NO_PROXY, false)
+            return
         }
 
-        proxyVendorWaitingTime = Duration.ZERO
-    }
-
-    private fun handleProxyOutOfService0() {
-        if (++proxyOutOfService % 180 == 0) {
-            logger.warn("Proxy account insufficient balance, check it again ...")
-            val p = proxyPool
-            if (p != null) {
-                p.runCatching { take() }.onFailure {
-                    if (it !is ProxyInsufficientBalanceException) {
-                        proxyOutOfService = 0
-                    }
-                }.onSuccess { proxyOutOfService = 0 }
-            } else {
-                proxyOutOfService = 0
+        p.runCatching { take() }.onFailure {
+            if (it !is ProxyInsufficientBalanceException) {
+                warn(CriticalWarning.NO_PROXY, false)
             }
-        }
-    }
-
-    private suspend fun handleWrongDistrict() {
-        var k = 0
-        while (wrongDistrict.hourlyCounter.count > 60) {
-            criticalWarning = CriticalWarning.WRONG_DISTRICT
-            logger.takeIf { k++ % 20 == 0 }?.warn("{}", criticalWarning?.message ?: "")
-            delay(1000)
-        }
+        }.onSuccess { warn(CriticalWarning.NO_PROXY, false) }
     }
 
     private fun generateFinishCommand() {
@@ -4,21 +4,23 @@ import ai.platon.pulsar.common.collect.ConcurrentFetchCacheManager
 import ai.platon.pulsar.common.collect.FetchCacheManager
 import ai.platon.pulsar.common.concurrent.ConcurrentExpiringLRUCache
 import ai.platon.pulsar.common.concurrent.ConcurrentExpiringLRUCache.Companion.CACHE_CAPACITY
-import ai.platon.pulsar.common.config.CapabilityTypes.GLOBAL_DOCUMENT_CACHE_SIZE
-import ai.platon.pulsar.common.config.CapabilityTypes.GLOBAL_PAGE_CACHE_SIZE
+import ai.platon.pulsar.common.concurrent.ConcurrentExpiringLRUCache.Companion.CACHE_TTL
+import ai.platon.pulsar.common.config.CapabilityTypes.*
 import ai.platon.pulsar.common.config.ImmutableConfig
+import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.urls.UrlAware
 import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.persist.WebPage
+import com.codahale.metrics.Gauge
 import java.util.concurrent.ConcurrentSkipListSet
 
 /**
- * TODO: WebPage is very large, we need a loading cache
+ * WebPage is very large, the page cache is bounded by the total content length
  * */
 typealias PageCatch = ConcurrentExpiringLRUCache<WebPage>
 
 /**
- * TODO: FeaturedDocument is very large, we need a loading cache
+ * FeaturedDocument is very large, the document cache is bounded by the total node count
  * */
 typealias DocumentCatch = ConcurrentExpiringLRUCache<FeaturedDocument>
 
@@ -61,6 +63,14 @@ open class GlobalCache(val conf: ImmutableConfig) {
      * The document cache capacity
      * */
     private val documentCacheCapacity = conf.getUint(GLOBAL_DOCUMENT_CACHE_SIZE, CACHE_CAPACITY)
+    /**
+     * The max total content length of pages in the page cache
+     * */
+    private val pageCacheMaxWeight = conf.getLong(GLOBAL_PAGE_CACHE_WEIGHT, 256L * 1024 * 1024)
+    /**
+     * The max total node count of documents in the document cache
+     * */
+    private val documentCacheMaxWeight = conf.getLong(GLOBAL_DOCUMENT_CACHE_WEIGHT, 2_000_000L)
     /**
      * The fetch cache manager, hold on queues of fetch items
      * TODO: fetchCaches should be a val
@@ -69,14 +79,31 @@ open class GlobalCache(val conf: ImmutableConfig) {
     /**
      * The global page cache, a page might be removed if it's expired or the cache is full
      * */
-    open val pageCache = PageCatch(pageCacheCapacity)
+    open val pageCache = PageCatch(pageCacheCapacity, CACHE_TTL, pageCacheMaxWeight) {
+        it.contentLength.coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+    }
     /**
      * The global document cache, a document might be removed if it's expired or the cache is full
      * */
-    open val documentCache = DocumentCatch(documentCacheCapacity)
+    open val documentCache = DocumentCatch(documentCacheCapacity, CACHE_TTL, documentCacheMaxWeight) {
+        it.numNodes
+    }
 
     open val fetchingCache = FetchingCache()
 
+    init {
+        mapOf(
+            "pageCacheHits" to Gauge { pageCache.hitCount },
+            "pageCacheMisses" to Gauge { pageCache.missCount },
+            "pageCacheEvictions" to Gauge { pageCache.evictionCount + pageCache.expirationCount },
+            "pageCacheWeight" to Gauge { pageCache.weight },
+            "documentCacheHits" to Gauge { documentCache.hitCount },
+            "documentCacheMisses" to Gauge { documentCache.missCount },
+            "documentCacheEvictions" to Gauge { documentCache.evictionCount + documentCache.expirationCount },
+            "documentCacheWeight" to Gauge { documentCache.weight }
+        ).let { AppMetrics.reg.registerAll(this, it) }
+    }
+
     fun resetCaches() {
         fetchingCache.clear()
         pageCache.clear()
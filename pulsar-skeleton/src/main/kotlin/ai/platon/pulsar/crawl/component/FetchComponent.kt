@@ -18,6 +18,7 @@
  */
 package ai.platon.pulsar.crawl.component
 
+import ai.platon.pulsar.common.HttpHeaders
 import ai.platon.pulsar.common.PulsarParams.VAR_LOAD_OPTIONS
 import ai.platon.pulsar.common.config.AppConstants
 import ai.platon.pulsar.common.config.ImmutableConfig
@@ -333,6 +334,9 @@ open class FetchComponent(
             var contentType = contentTypeHint
 
             page.setContent(pageDatum.content)
+            // The content is already encoded by the protocol, e.g. the browser always returns UTF-8,
+            // tell the parser so the encoding detection is skipped
+            pageDatum.headers[HttpHeaders.Q_TRUSTED_CONTENT_ENCODING]?.let { page.encoding = it }
 
             if (contentType != null) {
                 pageDatum.contentType = contentType
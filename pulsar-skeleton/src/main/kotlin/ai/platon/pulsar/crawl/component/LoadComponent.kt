@@ -7,6 +7,7 @@ import ai.platon.pulsar.common.config.AppConstants
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.measure.ByteUnit
 import ai.platon.pulsar.common.message.LoadedPageFormatter
+import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.options.LoadOptions
 import ai.platon.pulsar.common.persist.ext.loadEventHandler
 import ai.platon.pulsar.common.urls.NormUrl
@@ -16,11 +17,14 @@ import ai.platon.pulsar.crawl.common.FetchState
 import ai.platon.pulsar.crawl.common.GlobalCache
 import ai.platon.pulsar.crawl.common.url.CompletableListenableHyperlink
 import ai.platon.pulsar.crawl.parse.ParseResult
+import ai.platon.pulsar.crawl.signature.MD5Signature
 import ai.platon.pulsar.persist.WebDb
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.persist.gora.generated.GHypeLink
 import ai.platon.pulsar.persist.gora.generated.GWebPage
+import ai.platon.pulsar.persist.metadata.Name
 import ai.platon.pulsar.persist.model.ActiveDomStat
+import com.codahale.metrics.Gauge
 import org.slf4j.LoggerFactory
 import org.springframework.stereotype.Component
 import java.net.URL
@@ -28,6 +32,7 @@ import java.time.Duration
 import java.time.Instant
 import java.util.*
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicLong
@@ -53,8 +58,55 @@ class LoadComponent(
         private const val VAR_REFRESH = "refresh"
         val pageCacheHits = AtomicLong()
         val dbGetCount = AtomicLong()
+        /**
+         * The number of persists skipped since nothing changed
+         * */
+        val skippedPersists = AtomicLong()
+        /**
+         * The content bytes not written since the content is not changed
+         * */
+        val skippedPersistBytes = AtomicLong()
+
+        /**
+         * The fields derived from the content, they are not written if the content is not changed
+         * */
+        private val contentFields = listOf(
+            GWebPage.Field.CONTENT,
+            GWebPage.Field.PAGE_TEXT,
+            GWebPage.Field.CONTENT_TEXT
+        )
+
+        private val contentSignature = MD5Signature()
+
         // TODO: configurable
         var maxBatchWaitTime = 90L
+
+        /**
+         * Check if the raw content just fetched is the same as the content written last time, and record the digest
+         * of the new content in the page metadata. Call it only if the content is stored, see [clearPersistContent].
+         *
+         * The text signature calculated by the parser is not used: the markup can change while the text remains,
+         * and the text might be stale.
+         * */
+        fun updateContentDigest(page: WebPage): Boolean {
+            if (page.content == null) {
+                return false
+            }
+
+            val digest = Base64.getEncoder().encodeToString(contentSignature.calculate(page))
+            val unchanged = digest == page.metadata.get(Name.CONTENT_DIGEST)
+            page.metadata.set(Name.CONTENT_DIGEST, digest)
+            return unchanged
+        }
+
+        /**
+         * Clear the content to persist together with its digest. Otherwise a later fetch storing the content would be
+         * taken as unchanged, and the content would never be written.
+         * */
+        fun clearPersistContent(page: WebPage) {
+            page.clearPersistContent()
+            page.metadata.remove(Name.CONTENT_DIGEST)
+        }
     }
 
     private val logger = LoggerFactory.getLogger(LoadComponent::class.java)
@@ -64,19 +116,20 @@ class LoadComponent(
     val pageCache get() = globalCache.pageCache
     val documentCache get() = globalCache.documentCache
 
-    private val nonMetadataFields = listOf(
-        GWebPage.Field.CONTENT,
-        GWebPage.Field.PAGE_TEXT,
-        GWebPage.Field.PAGE_MODEL
-    )
-    val metadataFields = GWebPage.Field.values()
-        .filterNot { it in nonMetadataFields }
-        .map { it.getName() }
-        .toTypedArray()
-
     private val coreMetrics get() = fetchComponent.coreMetrics
     private val closed = AtomicBoolean()
 
+    /**
+     * The pages read from the database by [loadAll] and handed to the crawl loop, the loop takes them instead
+     * of reading the metadata again, the page is null if it's not in the database
+     * */
+    private class PreloadedPage(val page: WebPage?)
+    /**
+     * The preloaded pages indexed by url, concurrent [loadAll] calls of the same url add a page each,
+     * and a call only removes the pages it added. The queues are only accessed inside the map's compute functions
+     * */
+    private val preloadedPages = ConcurrentHashMap<String, ArrayDeque<PreloadedPage>>()
+
     /**
      * TODO: only check active before blocking calls
      * */
@@ -90,6 +143,13 @@ class LoadComponent(
     var lastPageReport: String? = null
         protected set
 
+    init {
+        mapOf(
+            "skippedPersists" to Gauge { skippedPersists.get() },
+            "skippedPersistMBytes" to Gauge { ByteUnit.convert(skippedPersistBytes.get(), "M") }
+        ).let { AppMetrics.reg.registerAll(this, it) }
+    }
+
     constructor(
         webDb: WebDb,
         globalCache: GlobalCache,
@@ -188,7 +248,49 @@ class LoadComponent(
         return page
     }
 
+    /**
+     * Load all the urls, the pages are returned in the order of the urls, internal pages are excluded
+     * */
     fun loadAll(normUrls: Iterable<NormUrl>, options: LoadOptions): Collection<WebPage> {
+        // read the metadata of all pages in one batch, pages need not to fetch are loaded right now,
+        // and the others are fetched in the crawl loop
+        val urls = normUrls.toList()
+        val loadedPages = webDb.getAllLazy(urls.map { it.spec })
+        val pages = arrayOfNulls<WebPage>(urls.size)
+        val fetchIndexes = mutableListOf<Int>()
+        val preloaded = mutableListOf<PreloadedPage>()
+        urls.zip(loadedPages).forEachIndexed { i, (normUrl, loadedPage) ->
+            val page = createPageShell(normUrl) { loadedPage }
+            if (page.variables.contains(VAR_REFRESH)) {
+                fetchIndexes.add(i)
+                preloaded.add(addPreloadedPage(normUrl.spec, PreloadedPage(loadedPage)))
+            } else {
+                beforeLoad(normUrl, page)
+                afterLoad(page, normUrl)
+                pages[i] = page
+            }
+        }
+
+        val fetchUrls = fetchIndexes.map { urls[it] }
+        val fetchedPages = try {
+            fetchAll(fetchUrls)
+        } finally {
+            // the pages not taken by the crawl loop, timeout for example
+            fetchUrls.zip(preloaded).forEach { (normUrl, p) -> removePreloadedPage(normUrl.spec, p) }
+        }
+        fetchIndexes.zip(fetchedPages).forEach { (i, page) -> pages[i] = page }
+
+        return pages.filterNotNull().filter { it.isNotInternal }
+    }
+
+    /**
+     * Fetch the urls in the crawl loop, the pages are returned in the order of the urls
+     * */
+    private fun fetchAll(normUrls: List<NormUrl>): List<WebPage> {
+        if (normUrls.isEmpty()) {
+            return listOf()
+        }
+
         val queue = globalCache.fetchCaches.highestCache.nReentrantQueue
         val links = normUrls
             .asSequence()
@@ -207,7 +309,7 @@ class LoadComponent(
         val future = CompletableFuture.allOf(*links.toTypedArray())
         future.join()
 
-        return links.mapNotNull { it.get() }.filter { it.isNotInternal }
+        return links.map { it.get() }
     }
 
     private fun load0(normUrl: NormUrl): WebPage {
@@ -250,6 +352,38 @@ class LoadComponent(
      * Create a page shell, the page shell is the process unit for most tasks
      * */
     private fun createPageShell(normUrl: NormUrl): WebPage {
+        val preloaded = takePreloadedPage(normUrl.spec)
+        return createPageShell(normUrl) { if (preloaded != null) preloaded.page else webDb.getLazy(normUrl.spec) }
+    }
+
+    private fun addPreloadedPage(url: String, preloaded: PreloadedPage): PreloadedPage {
+        preloadedPages.compute(url) { _, pages -> (pages ?: ArrayDeque()).also { it.add(preloaded) } }
+        return preloaded
+    }
+
+    private fun takePreloadedPage(url: String): PreloadedPage? {
+        var preloaded: PreloadedPage? = null
+        preloadedPages.computeIfPresent(url) { _, pages ->
+            preloaded = pages.pollFirst()
+            pages.takeIf { it.isNotEmpty() }
+        }
+        return preloaded
+    }
+
+    /**
+     * Remove the page if it's not taken yet, the pages added by other calls are kept
+     * */
+    private fun removePreloadedPage(url: String, preloaded: PreloadedPage) {
+        preloadedPages.computeIfPresent(url) { _, pages ->
+            pages.remove(preloaded)
+            pages.takeIf { it.isNotEmpty() }
+        }
+    }
+
+    /**
+     * Create a page shell, the page is loaded from the database by [loader] if it's not in the page cache
+     * */
+    private fun createPageShell(normUrl: NormUrl, loader: () -> WebPage?): WebPage {
         val cachedPage = getCachedPageOrNull(normUrl)
         var page = FetchEntry.createPageShell(normUrl)
 
@@ -271,10 +405,10 @@ class LoadComponent(
             assert(!page.isFetched)
             assert(page.isNotInternal)
         } else {
-            // get the metadata of the page from the database, this is very fast for a crawler
-            // TODO: two step loading or one step loading?
-//            val loadedPage = webDb.getOrNull(normUrl.spec, fields = metadataFields)
-            val loadedPage = webDb.getOrNull(normUrl.spec)
+            // get the metadata of the page from the database, this is very fast for a crawler,
+            // the content and other heavy fields are loaded on first access, which is not required if the page
+            // is to be fetched
+            val loadedPage = loader()
             dbGetCount.incrementAndGet()
             if (loadedPage != null) {
                 // override the old variables: args, href, etc
@@ -322,11 +456,6 @@ class LoadComponent(
     private fun afterLoad(page: WebPage, normUrl: NormUrl) {
         val options = normUrl.options
 
-        // handle page content
-        if (!page.isCached) {
-            // processPageContent(page, normUrl)
-        }
-
         // handle cache
         if (!options.readonly) {
             if (page.isFetched && page.protocolStatus.isSuccess) {
@@ -351,10 +480,8 @@ class LoadComponent(
             logger.warn("Failed to invoke afterLoad | ${page.configuredUrl}", e)
         }
 
-        // persist if it's not loaded from the cache so it's not updated
-        // we might persist only when it's fetched
-        // TODO: do not persist content if it's not changed, we can add a contentPage inside a WebPage
-        // TODO: do not we persist if it's loaded from cache or no fields change
+        // persist if it's not loaded from the cache so it's not updated,
+        // only the changed fields are written, see persist()
         if (!page.isCached && !options.readonly && options.persist) {
             persist(page, options)
         }
@@ -373,29 +500,6 @@ class LoadComponent(
         return parseResult
     }
 
-    /**
-     * Because the content is large, a general webpage is up to 2M, so we do not load it from the database unless have to
-     *
-     * if the page is fetched, the content is set by the fetch component, so we do not load it from the database
-     * if the protocol status is not success, the content is useless and not loaded
-     * */
-    private fun processPageContent(page: WebPage, normUrl: NormUrl) {
-        val options = normUrl.options
-
-        if (page.protocolStatus.isSuccess && page.content == null) {
-            shouldBe(false, page.isFetched) { "Page should not be fetched | ${page.configuredUrl}" }
-            // load the content of the page
-            val contentPage = webDb.getOrNull(page.url, GWebPage.Field.CONTENT)
-            if (contentPage != null) {
-                page.content = contentPage.content
-                // TODO: test the dirty flag
-                page.unbox().clearDirty(GWebPage.Field.CONTENT.index)
-            }
-        }
-
-        shouldBe(options.conf, page.conf) { "Conf should be the same \n${options.conf} \n${page.conf}" }
-    }
-
     private fun report(page: WebPage) {
         if (logger.isInfoEnabled) {
             val verbose = logger.isDebugEnabled
@@ -538,10 +642,13 @@ class LoadComponent(
     }
 
     private fun persist(page: WebPage, options: LoadOptions) {
+        // the digest is calculated from the raw content, so check it before the content is cleared
+        val contentUnchanged = page.isFetched && options.storeContent && updateContentDigest(page)
+
         // Remove content if storingContent is false. Content is added to page earlier
         // so PageParser is able to parse it, now, we can clear it
         if (!options.storeContent && page.content != null) {
-            page.clearPersistContent()
+            clearPersistContent(page)
         }
 
         // the content is loaded from cache, the content remains unchanged, do not persist it
@@ -550,6 +657,19 @@ class LoadComponent(
             assert(!page.unbox().isContentDirty)
         }
 
+        // the content is re-fetched but not changed, write the metadata only
+        if (contentUnchanged) {
+            val bytes = page.persistContent?.remaining() ?: 0
+            contentFields.forEach { page.unbox().clearDirty(it.index) }
+            skippedPersistBytes.addAndGet(bytes.toLong())
+        }
+
+        // Gora stores write only the dirty fields
+        if (!page.unbox().isDirty) {
+            skippedPersists.incrementAndGet()
+            return
+        }
+
         webDb.put(page)
         ++numWrite
 
@@ -566,7 +686,8 @@ class LoadComponent(
         val metrics = coreMetrics
         if (metrics != null) {
             metrics.persists.mark()
-            val bytes = page.content?.array()?.size ?: 0
+            // the content is not written if it's not changed
+            val bytes = if (page.unbox().isContentDirty) page.content?.array()?.size ?: 0 else 0
             if (bytes > 0) {
                 metrics.contentPersists.mark()
                 metrics.persistContentMBytes.inc(ByteUnit.convert(bytes, "M").toLong())
@@ -2,6 +2,7 @@ package ai.platon.pulsar.crawl.fetch.driver
 
 import ai.platon.pulsar.common.proxy.ProxyEntry
 import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
+import java.time.Duration
 import java.util.concurrent.atomic.AtomicReference
 
 abstract class AbstractWebDriver(
@@ -35,6 +36,10 @@ abstract class AbstractWebDriver(
      * Whether the web page source is mocked
      * */
     override val isMockedPageSource: Boolean = false
+    /**
+     * Whether the driver tracks the page readiness by browser events
+     * */
+    override val isReadinessTracked: Boolean = false
     /**
      * Driver status
      * */
@@ -60,6 +65,9 @@ abstract class AbstractWebDriver(
             stopLoading()
         }
     }
+    override suspend fun evaluateDeferred(expression: String): Any? = evaluate(expression)
+    override suspend fun waitForLoad(timeout: Duration): Boolean = false
+    override suspend fun waitForReady(timeout: Duration): String? = null
     override fun evaluateSilently(expression: String): Any? = takeIf { isWorking }?.runCatching { evaluate(expression) }
 
     override fun equals(other: Any?): Boolean = other is AbstractWebDriver && other.id == this.id
@@ -3,6 +3,7 @@ package ai.platon.pulsar.crawl.fetch.driver
 import ai.platon.pulsar.browser.driver.BrowserControl
 import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
 import ai.platon.pulsar.persist.metadata.BrowserType
+import java.time.Duration
 
 interface WebDriver {
     val id: Int
@@ -17,6 +18,10 @@ interface WebDriver {
     val browserType: BrowserType
     val supportJavascript: Boolean
     val isMockedPageSource: Boolean
+    /**
+     * Whether the driver tracks the page readiness by browser events, so it's not necessary to poll the page
+     * */
+    val isReadinessTracked: Boolean
     val sessionId: String?
     val currentUrl: String?
     val pageSource: String
@@ -24,6 +29,9 @@ interface WebDriver {
     fun navigateTo(url: String)
     fun setTimeouts(driverConfig: BrowserControl)
     fun evaluate(expression: String): Any?
+    suspend fun evaluateDeferred(expression: String): Any?
+    suspend fun waitForLoad(timeout: Duration): Boolean
+    suspend fun waitForReady(timeout: Duration): String?
     fun bringToFront()
     fun stopLoading()
     fun evaluateSilently(expression: String): Any?
@@ -19,6 +19,8 @@
 package ai.platon.pulsar.crawl.parse.html
 
 import ai.platon.pulsar.persist.metadata.MultiMetadata
+import org.jsoup.nodes.Document
+import org.jsoup.nodes.Element
 import org.w3c.dom.Node
 import java.net.URL
 import java.util.*
@@ -27,7 +29,21 @@ import java.util.*
  * This class holds the information about HTML "meta" tags extracted from a
  * page. Some special tags have convenience methods for easy checking.
  */
-class HTMLMetaTags(root: Node, private val currURL: URL?) {
+class HTMLMetaTags private constructor(private val currURL: URL?) {
+    /**
+     * Extract the meta tags from a W3C DOM
+     */
+    constructor(root: Node, currURL: URL?): this(currURL) {
+        walk(root)
+    }
+
+    /**
+     * Extract the meta tags from a jsoup document, no W3C DOM is required
+     */
+    constructor(document: Document, currURL: URL?): this(currURL) {
+        walk(document)
+    }
+
     /**
      * A convenience method. Returns the current value of `noIndex`.
      */
@@ -146,108 +162,9 @@ class HTMLMetaTags(root: Node, private val currURL: URL?) {
                         contentNode = attr
                     }
                 }
-                if (nameNode != null) {
-                    if (contentNode != null) {
-                        val name = nameNode.nodeValue.toLowerCase()
-                        generalTags.put(name, contentNode.nodeValue)
-                        if ("robots" == name) {
-                            if (contentNode != null) {
-                                val directives = contentNode.nodeValue.toLowerCase()
-                                var index = directives.indexOf("none")
-                                if (index >= 0) {
-                                    noIndex = true
-                                    noFollow = true
-                                }
-                                index = directives.indexOf("all")
-                                if (index >= 0) { // do nothing...
-                                }
-                                index = directives.indexOf("noindex")
-                                if (index >= 0) {
-                                    noIndex = true
-                                }
-                                index = directives.indexOf("nofollow")
-                                if (index >= 0) {
-                                    noFollow = true
-                                }
-                                index = directives.indexOf("nocache")
-                                if (index >= 0) {
-                                    noCache = true
-                                }
-                            }
-                        } // end if (name == robots)
-                    }
-                }
-                if (equivNode != null) {
-                    if (contentNode != null) {
-                        val name = equivNode.nodeValue.toLowerCase()
-                        var content = contentNode.nodeValue
-                        httpEquivTags.setProperty(name, content)
-                        if ("pragma" == name) {
-                            content = content.toLowerCase()
-                            val index = content.indexOf("no-cache")
-                            if (index >= 0) noCache = true
-                        } else if ("refresh" == name) {
-                            var idx = content.indexOf(';')
-                            val time = if (idx == -1) { // just the refresh time
-                                content
-                            } else content.substring(0, idx)
-
-                            try {
-                                refreshTime = time.toInt()
-                                // skip this if we couldn't parse the time
-                                refresh = true
-                            } catch (e: Exception) {
-                            }
-
-                            var refreshUrl: URL? = null
-                            if (refresh && idx != -1) { // set the URL
-                                idx = content.toLowerCase().indexOf("url=")
-                                if (idx == -1) {
-                                    // assume a mis-formatted entry with just the url
-                                    idx = content.indexOf(';') + 1
-                                } else idx += 4
-                                if (idx != -1) {
-                                    val url = content.substring(idx)
-                                    refreshUrl = try {
-                                        URL(url)
-                                    } catch (e: Exception) {
-                                        // XXX according to the spec, this has to be an absolute
-                                        // XXX url. However, many websites use relative URLs and
-                                        // XXX expect browsers to handle that.
-                                        // XXX Unfortunately, in some cases this may create a
-                                        // XXX infinitely recursive paths (a crawler trap)...
-                                        // if (!url.startsWith("/")) url = "/" + url;
-                                        try {
-                                            URL(currURL, url)
-                                        } catch (e1: Exception) {
-                                            null
-                                        }
-                                    }
-                                }
-                            }
-                            if (refresh) {
-                                if (refreshUrl == null) {
-                                    // apparently only refresh time was present. set the URL
-                                    // to the same URL.
-                                    refreshUrl = currURL
-                                }
-                                refreshHref = refreshUrl
-                            }
-                        }
-                    }
-                }
+                processMeta(nameNode?.nodeValue, equivNode?.nodeValue, contentNode?.nodeValue)
             } else if ("base".equals(node.nodeName, ignoreCase = true)) {
-                val attrs = node.attributes
-                val hrefNode = attrs.getNamedItem("href")
-                if (hrefNode != null) {
-                    val urlString = hrefNode.nodeValue
-                    var url: URL? = null
-                    try {
-                        url = currURL?.let { URL(it, urlString) } ?: URL(urlString)
-                    } catch (ignored: Exception) {
-                    }
-                    if (url != null) baseHref = url
-                }
+                processBase(node.attributes.getNamedItem("href")?.nodeValue)
             }
         }
         val children = node.childNodes
@@ -259,6 +176,124 @@ class HTMLMetaTags(root: Node, private val currURL: URL?) {
         }
     }
 
+    /**
+     * Walk the jsoup tree directly, the same as [walk] does on a W3C DOM, the body is skipped, so
+     * in practice just the head is visited
+     */
+    private fun walk(element: Element) {
+        when (element.normalName()) {
+            "body" -> return
+            "meta" -> processMeta(element.attrOrNull("name"), element.attrOrNull("http-equiv"), element.attrOrNull("content"))
+            "base" -> processBase(element.attrOrNull("href"))
+        }
+        element.children().forEach { walk(it) }
+    }
+
+    private fun Element.attrOrNull(key: String) = if (hasAttr(key)) attr(key) else null
+
+    private fun processMeta(name: String?, equiv: String?, content: String?) {
+        if (content == null) {
+            return
+        }
+
+        if (name != null) {
+            processGeneralTag(name.toLowerCase(), content)
+        }
+
+        if (equiv != null) {
+            processHttpEquivTag(equiv.toLowerCase(), content)
+        }
+    }
+
+    private fun processGeneralTag(name: String, content: String) {
+        generalTags.put(name, content)
+        if ("robots" == name) {
+            val directives = content.toLowerCase()
+            if (directives.contains("none")) {
+                noIndex = true
+                noFollow = true
+            }
+            if (directives.contains("noindex")) {
+                noIndex = true
+            }
+            if (directives.contains("nofollow")) {
+                noFollow = true
+            }
+            if (directives.contains("nocache")) {
+                noCache = true
+            }
+        }
+    }
+
+    private fun processHttpEquivTag(name: String, content: String) {
+        httpEquivTags.setProperty(name, content)
+        if ("pragma" == name) {
+            if (content.toLowerCase().contains("no-cache")) {
+                noCache = true
+            }
+        } else if ("refresh" == name) {
+            var idx = content.indexOf(';')
+            val time = if (idx == -1) { // just the refresh time
+                content
+            } else content.substring(0, idx)
+
+            try {
+                refreshTime = time.toInt()
+                // skip this if we couldn't parse the time
+                refresh = true
+            } catch (e: Exception) {
+            }
+
+            var refreshUrl: URL? = null
+            if (refresh && idx != -1) { // set the URL
+                idx = content.toLowerCase().indexOf("url=")
+                if (idx == -1) {
+                    // assume a mis-formatted entry with just the url
+                    idx = content.indexOf(';') + 1
+                } else idx += 4
+                if (idx != -1) {
+                    val url = content.substring(idx)
+                    refreshUrl = try {
+                        URL(url)
+                    } catch (e: Exception) {
+                        // XXX according to the spec, this has to be an absolute
+                        // XXX url. However, many websites use relative URLs and
+                        // XXX expect browsers to handle that.
+                        // XXX Unfortunately, in some cases this may create a
+                        // XXX infinitely recursive paths (a crawler trap)...
+                        // if (!url.startsWith("/")) url = "/" + url;
+                        try {
+                            URL(currURL, url)
+                        } catch (e1: Exception) {
+                            null
+                        }
+                    }
+                }
+            }
+            if (refresh) {
+                if (refreshUrl == null) {
+                    // apparently only refresh time was present. set the URL
+                    // to the same URL.
+                    refreshUrl = currURL
+                }
+                refreshHref = refreshUrl
+            }
+        }
+    }
+
+    private fun processBase(urlString: String?) {
+        if (urlString == null) {
+            return
+        }
+
+        var url: URL? = null
+        try {
+            url = currURL?.let { URL(it, urlString) } ?: URL(urlString)
+        } catch (ignored: Exception) {
+        }
+        if (url != null) baseHref = url
+    }
+
     override fun toString(): String {
         val sb = StringBuffer()
         sb.append("base=$baseHref, noCache=$noCache, noFollow=$noFollow, noIndex=$noIndex, refresh=$refresh, refreshHref=$refreshHref")
@@ -273,8 +308,4 @@ class HTMLMetaTags(root: Node, private val currURL: URL?) {
         }
         return sb.toString()
     }
-
-    init {
-        walk(root)
-    }
 }
\ No newline at end of file
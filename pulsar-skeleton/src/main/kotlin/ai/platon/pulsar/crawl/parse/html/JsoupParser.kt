@@ -1,5 +1,6 @@
 package ai.platon.pulsar.crawl.parse.html
 
+import ai.platon.pulsar.common.EncodingDetector
 import ai.platon.pulsar.common.config.AppConstants
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.persist.ext.options
@@ -24,6 +25,28 @@ class JsoupParser(
     companion object {
         val numJsoupParses = AtomicInteger()
         val numJsoupParsed = AtomicInteger()
+
+        // The detector keeps the clues of the last detection, so every thread has its own one
+        private val encodingDetector = ThreadLocal.withInitial { EncodingDetector() }
+
+        /**
+         * The cheap clues are enough for almost all pages, the thread's detector is used only if they are absent
+         * */
+        fun detectEncoding(page: WebPage, conf: ImmutableConfig) {
+            val detected = EncodingDetector.detectFastWithSource(page)
+            if (detected != null) {
+                page.encoding = detected.encoding
+                page.encodingClues = detected.toString()
+                return
+            }
+
+            // the detector is shared by all configs, set the options as EncodingDetector(conf) does
+            val detector = encodingDetector.get()
+            detector.minConfidence = conf.getInt(EncodingDetector.MIN_CONFIDENCE_KEY, -1)
+            detector.defaultCharEncoding = conf.get("parser.character.encoding.default", "utf-8")
+            page.encoding = detector.sniffEncoding(page)
+            page.encodingClues = detector.cluesAsString
+        }
     }
 
     val LOG = LoggerFactory.getLogger(JsoupParser::class.java)
@@ -35,8 +58,7 @@ class JsoupParser(
         numJsoupParses.incrementAndGet()
 
         if (page.encoding == null) {
-            val primerParser = PrimerParser(conf)
-            primerParser.detectEncoding(page)
+            detectEncoding(page, conf)
         }
 
         try {
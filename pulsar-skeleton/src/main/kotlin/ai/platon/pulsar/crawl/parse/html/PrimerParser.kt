@@ -47,7 +47,8 @@ import java.util.*
 class PrimerParser(conf: ImmutableConfig) {
     private val log = LoggerFactory.getLogger(Parser::class.java)
 
-    private var encodingDetector = EncodingDetector(conf)
+    // The detector keeps the clues of the last detection, so every thread has its own one
+    private val encodingDetector = ThreadLocal.withInitial { EncodingDetector(conf) }
     private val linkParams = HashMap<String, LinkParams>()
 
     init {
@@ -79,10 +80,11 @@ class PrimerParser(conf: ImmutableConfig) {
     }
 
     fun detectEncoding(page: WebPage) {
-        val encoding = encodingDetector.sniffEncoding(page)
+        val detector = encodingDetector.get()
+        val encoding = detector.sniffEncoding(page)
         if (encoding != null && encoding.isNotEmpty()) {
             page.encoding = encoding
-            page.encodingClues = encodingDetector.cluesAsString
+            page.encodingClues = detector.cluesAsString
         } else {
             log.warn("Failed to detect encoding, url: " + page.url)
         }
@@ -0,0 +1,113 @@
+package ai.platon.pulsar.crawl
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.withTimeout
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TestAdmissionGate {
+
+    @Test
+    fun testPermitsAreReleasedImmediately() = runBlocking {
+        val gate = AdmissionGate(2)
+        assertTrue { gate.acquire() }
+        assertTrue { gate.acquire() }
+        assertEquals(2, gate.numRunning)
+
+        val producer = async { gate.acquire() }
+        delay(100)
+        assertEquals(1, gate.numWaiting)
+        assertFalse { producer.isCompleted }
+
+        gate.release()
+        assertTrue { withTimeout(1000) { producer.await() } }
+        assertEquals(0, gate.numWaiting)
+    }
+
+    @Test
+    fun testSharedPermitsBoundAllGates() = runBlocking {
+        val permits = Semaphore(2)
+        val gate1 = AdmissionGate(2, permits)
+        val gate2 = AdmissionGate(2, permits)
+        assertTrue { gate1.acquire() }
+        assertTrue { gate2.acquire() }
+        assertEquals(2, gate1.numRunning)
+
+        val producer = async { gate1.acquire() }
+        delay(100)
+        assertFalse { producer.isCompleted }
+
+        // shutdown one gate does not affect the others
+        gate2.shutdown()
+        gate2.release()
+        assertTrue { withTimeout(1000) { producer.await() } }
+        assertFalse { gate2.acquire() }
+    }
+
+    @Test
+    fun testWarningsSuspendProducers() = runBlocking {
+        val gate = AdmissionGate(2)
+        gate.close(CriticalWarning.OUT_OF_MEMORY)
+        gate.close(CriticalWarning.NO_PROXY)
+        assertFalse { gate.isOpen }
+
+        val producer = async { gate.acquire() }
+        delay(100)
+        assertFalse { producer.isCompleted }
+
+        gate.open(CriticalWarning.OUT_OF_MEMORY)
+        delay(100)
+        assertFalse { producer.isCompleted }
+        assertEquals(CriticalWarning.NO_PROXY, gate.criticalWarning)
+
+        gate.open(CriticalWarning.NO_PROXY)
+        assertTrue { withTimeout(1000) { producer.await() } }
+        assertTrue { gate.isOpen }
+    }
+
+    @Test
+    fun testShutdownWakesUpProducers() = runBlocking {
+        val gate = AdmissionGate(1)
+        gate.close(CriticalWarning.WRONG_DISTRICT)
+
+        val producer = async { gate.acquire() }
+        delay(100)
+        gate.shutdown()
+        assertFalse { withTimeout(1000) { producer.await() } }
+        assertFalse { gate.acquire() }
+    }
+
+    @Test
+    fun testShutdownWakesUpProducersWaitingForPermits() = runBlocking {
+        val gate = AdmissionGate(1)
+        assertTrue { gate.acquire() }
+
+        val producer = async { gate.acquire() }
+        delay(100)
+        assertEquals(1, gate.numWaiting)
+        gate.shutdown()
+        assertFalse { withTimeout(1000) { producer.await() } }
+        assertEquals(0, gate.numWaiting)
+        assertEquals(1, gate.numRunning)
+    }
+
+    @Test
+    fun testCancelledProducerLeaksNoPermit() = runBlocking {
+        val gate = AdmissionGate(1)
+        assertTrue { gate.acquire() }
+
+        val producer = async { gate.acquire() }
+        delay(100)
+        producer.cancel()
+        producer.join()
+        gate.release()
+
+        assertEquals(1, gate.availablePermits)
+        assertEquals(0, gate.numWaiting)
+    }
+}
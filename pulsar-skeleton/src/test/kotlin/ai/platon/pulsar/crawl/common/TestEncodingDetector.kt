@@ -20,6 +20,7 @@ import ai.platon.pulsar.common.EncodingDetector
 import ai.platon.pulsar.common.HttpHeaders
 import ai.platon.pulsar.common.config.MutableConfig
 import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.crawl.parse.html.JsoupParser
 import ai.platon.pulsar.persist.WebPage
 import org.apache.avro.util.Utf8
 import org.junit.Assert
@@ -84,4 +85,72 @@ class TestEncodingDetector {
         encoding = detector.guessEncoding(page, "utf-8")
         Assert.assertEquals("utf-8", encoding.toLowerCase())
     }
+
+    @Test
+    fun testSniffMetaCharset() {
+        val pages = mapOf(
+            """<html><head><meta charset="gbk"><title>a</title></head></html>""" to "gbk",
+            """<html><head><META CHARSET=Big5></head></html>""" to "Big5",
+            """<html><head><meta http-equiv='Content-Type' content='text/html; charset=GB2312'></head></html>""" to "GB2312",
+            """<html><head><metadata charset="gbk"><meta name="robots" content="all"></head></html>""" to null,
+            """<html><head><title>no meta</title></head></html>""" to null
+        )
+
+        pages.forEach { (html, expected) ->
+            val actual = EncodingDetector.sniffMetaCharset(ByteBuffer.wrap(html.toByteArray()), 4096)
+            Assert.assertEquals(html, expected, actual)
+        }
+    }
+
+    @Test
+    fun testDetectFast() {
+        val url = "http://www.example.com/"
+        val html = """<html><head><meta charset="gbk"></head><body>中文</body></html>"""
+
+        var page = WebPage.newWebPage(url, conf)
+        page.setContent(html.toByteArray(charset("gbk")))
+        Assert.assertEquals("gbk", EncodingDetector.detectFast(page))
+
+        page = WebPage.newWebPage(url, conf)
+        page.setContent(html.toByteArray(charset("gbk")))
+        page.headers.put(HttpHeaders.CONTENT_TYPE, "text/html; charset=Big5")
+        Assert.assertEquals("big5", EncodingDetector.detectFast(page))
+
+        page = WebPage.newWebPage(url, conf)
+        page.setContent(byteArrayOf(0xEF.toByte(), 0xBB.toByte(), 0xBF.toByte()) + html.toByteArray())
+        page.headers.put(HttpHeaders.CONTENT_TYPE, "text/html; charset=Big5")
+        Assert.assertEquals("utf-8", EncodingDetector.detectFast(page))
+
+        page = WebPage.newWebPage(url, conf)
+        page.setContent("<html><body>plain</body></html>".toByteArray())
+        Assert.assertNull(EncodingDetector.detectFast(page))
+    }
+
+    @Test
+    fun testEncodingClueSources() {
+        val url = "http://www.example.com/"
+        val html = """<html><head><meta charset="gbk"><title>a</title></head></html>"""
+
+        var page = WebPage.newWebPage(url, conf)
+        page.setContent(html.toByteArray(charset("gbk")))
+        JsoupParser.detectEncoding(page, conf)
+        Assert.assertEquals("gbk (meta)", page.encodingClues)
+
+        page = WebPage.newWebPage(url, conf)
+        page.setContent(html.toByteArray(charset("gbk")))
+        page.headers.put(HttpHeaders.CONTENT_TYPE, "text/html; charset=Big5")
+        JsoupParser.detectEncoding(page, conf)
+        Assert.assertEquals("big5 (header)", page.encodingClues)
+
+        page = WebPage.newWebPage(url, conf)
+        page.setContent(byteArrayOf(0xEF.toByte(), 0xBB.toByte(), 0xBF.toByte()) + html.toByteArray())
+        JsoupParser.detectEncoding(page, conf)
+        Assert.assertEquals("utf-8 (BOM)", page.encodingClues)
+
+        page = WebPage.newWebPage(url, conf)
+        page.setContent(html.toByteArray())
+        page.headers.put(HttpHeaders.Q_TRUSTED_CONTENT_ENCODING, "utf-8")
+        JsoupParser.detectEncoding(page, conf)
+        Assert.assertEquals("utf-8 (trusted header)", page.encodingClues)
+    }
 }
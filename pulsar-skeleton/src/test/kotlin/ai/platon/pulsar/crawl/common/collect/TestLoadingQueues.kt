@@ -1,15 +1,39 @@
 package ai.platon.pulsar.crawl.common.collect
 
-import ai.platon.pulsar.common.collect.ConcurrentNEntrantLoadingQueue
-import ai.platon.pulsar.common.collect.FetchCacheCollector
-import ai.platon.pulsar.common.collect.LoadingFetchCache
+import ai.platon.pulsar.common.collect.*
+import ai.platon.pulsar.common.config.AppConstants
 import ai.platon.pulsar.common.urls.Hyperlink
 import ai.platon.pulsar.common.urls.UrlAware
+import org.junit.After
+import org.junit.Before
 import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
 import kotlin.test.assertTrue
 
 class TestLoadingQueues : TestBase() {
+    /**
+     * The tests need an exact remaining count, which the local file loader does not keep
+     * */
+    private lateinit var appendLogLoader: TemporaryAppendLogUrlLoader
+
+    @Before
+    fun setUpAppendLogLoader() {
+        appendLogLoader = TemporaryAppendLogUrlLoader()
+        val hyperlinks = IntRange(1, queueSize).map { AppConstants.EXAMPLE_URL + "/$it" }
+                .mapIndexed { i, url -> Hyperlink(url, order = 1 + i) }
+        appendLogLoader.saveAll(hyperlinks, group)
+    }
+
+    @After
+    fun tearDownAppendLogLoader() {
+        appendLogLoader.close()
+        appendLogLoader.directory.toFile().deleteRecursively()
+    }
 
     @Test
     fun `When create a LoadingFetchCache then the first page is loaded`() {
@@ -48,4 +72,77 @@ class TestLoadingQueues : TestBase() {
         }
         assertTrue { queue.isEmpty() }
     }
+
+    @Test
+    fun `When the queue drops to the low watermark then it is refilled in background`() {
+        val queue = ConcurrentLoadingQueue(appendLogLoader, group, 10)
+        queue.load()
+        assertEquals(10, queue.size)
+        assertEquals(queueSize - 10, queue.estimatedExternalSize)
+
+        repeat(8) { assertNotNull(queue.poll()) }
+
+        var i = 0
+        while (i++ < 50 && queue.loadCount < 2) {
+            Thread.sleep(100)
+        }
+        assertEquals(2, queue.loadCount)
+        assertEquals(10, queue.size)
+        assertEquals(queueSize - 18, queue.estimatedExternalSize)
+    }
+
+    @Test
+    fun `When offer and poll concurrently then no url is lost`() {
+        // no external url, so no refill happens
+        appendLogLoader.deleteAll(group)
+        val queue = ConcurrentNonReentrantLoadingQueue(appendLogLoader, group, 1000)
+
+        val numThreads = 4
+        val numUrls = 1000
+        val polled = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(numThreads)
+        repeat(numThreads) { t ->
+            executor.submit {
+                repeat(numUrls) { i ->
+                    queue.offer(Hyperlink(AppConstants.EXAMPLE_URL + "/$t/$i"))
+                    if (queue.poll() != null) {
+                        polled.incrementAndGet()
+                    }
+                }
+            }
+        }
+        executor.shutdown()
+        assertTrue { executor.awaitTermination(1, TimeUnit.MINUTES) }
+
+        // the counter is consistent with the underlying queue, and every url is either polled or in the queue
+        assertEquals(queue.toList().size, queue.size)
+        assertEquals(0, queue.savedCount)
+        assertEquals(numThreads * numUrls, polled.get() + queue.size)
+    }
+
+    @Test
+    fun `When the overflowed urls are being written then offers and polls do not wait`() {
+        val writing = CountDownLatch(1)
+        val loader = object: TemporaryLocalFileUrlLoader() {
+            override fun saveAll(urls: Iterable<UrlAware>, group: UrlGroup) {
+                writing.await()
+                super.saveAll(urls, group)
+            }
+        }
+        val queue = ConcurrentLoadingQueue(loader, group, 10)
+        // the first access loads synchronously
+        assertEquals(0, queue.size)
+
+        repeat(15) { queue.offer(Hyperlink(AppConstants.EXAMPLE_URL + "/overflow/$it")) }
+        // the writer is blocked, but the queue is still served
+        assertEquals(10, queue.size)
+        assertEquals(5, queue.estimatedExternalSize)
+        assertNotNull(queue.poll())
+        assertTrue { queue.offer(Hyperlink(AppConstants.EXAMPLE_URL + "/overflow/15")) }
+        assertEquals(10, queue.size)
+
+        writing.countDown()
+        queue.flush()
+        assertEquals(5, queue.savedCount)
+    }
 }
@@ -0,0 +1,60 @@
+package ai.platon.pulsar.crawl.component
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.persist.WebPage
+import ai.platon.pulsar.persist.metadata.Name
+import org.junit.Test
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class TestContentDigest {
+    private val conf = VolatileConfig()
+    private val url = "http://example.com/item/1.html"
+
+    @Test
+    fun testUnchangedContent() {
+        val page = WebPage.newWebPage(url, conf)
+        page.setContent("<html><body><p>Hello world</p></body></html>".toByteArray())
+        assertFalse(LoadComponent.updateContentDigest(page))
+        assertNotNull(page.metadata.get(Name.CONTENT_DIGEST))
+
+        page.setContent("<html><body><p>Hello world</p></body></html>".toByteArray())
+        assertTrue(LoadComponent.updateContentDigest(page))
+    }
+
+    @Test
+    fun testChangedMarkupWithIdenticalText() {
+        val page = WebPage.newWebPage(url, conf)
+        page.setContent("<html><body><p>Hello world</p></body></html>".toByteArray())
+        assertFalse(LoadComponent.updateContentDigest(page))
+
+        // the text is the same, but the markup is changed, so the content must be written
+        page.setContent("<html><body><div class='price'><p>Hello world</p></div></body></html>".toByteArray())
+        assertFalse(LoadComponent.updateContentDigest(page))
+    }
+
+    @Test
+    fun testContentNotStored() {
+        val page = WebPage.newWebPage(url, conf)
+        page.setContent("<html><body><p>Hello world</p></body></html>".toByteArray())
+        assertFalse(LoadComponent.updateContentDigest(page))
+        assertNotNull(page.metadata.get(Name.CONTENT_DIGEST))
+
+        // the content is not stored, nor is its digest
+        LoadComponent.clearPersistContent(page)
+        assertNull(page.metadata.get(Name.CONTENT_DIGEST))
+
+        // the content is stored this time, it must be written although it's not changed
+        page.setContent("<html><body><p>Hello world</p></body></html>".toByteArray())
+        assertFalse(LoadComponent.updateContentDigest(page))
+    }
+
+    @Test
+    fun testNoContent() {
+        val page = WebPage.newWebPage(url, conf)
+        assertFalse(LoadComponent.updateContentDigest(page))
+        assertFalse(LoadComponent.updateContentDigest(page))
+    }
+}
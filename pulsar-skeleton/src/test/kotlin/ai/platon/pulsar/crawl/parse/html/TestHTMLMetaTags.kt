@@ -0,0 +1,54 @@
+package ai.platon.pulsar.crawl.parse.html
+
+import org.jsoup.Jsoup
+import org.jsoup.helper.W3CDom
+import org.junit.Test
+import java.net.URL
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TestHTMLMetaTags {
+    private val baseURL = URL("http://www.pulsar.org/foo/")
+
+    private val pages = listOf(
+        """<html><head><title>test page</title>
+            <MeTa NaMe="RoBoTs" CoNtEnT="nOnE"><MeTa HtTp-EqUiV="pRaGmA" cOnTeNt="No-CaChE">
+            </head><body>some text</body></html>""",
+        """<html><head><title>test page</title>
+            <meta name="robots" content="noindex,follow"><meta name="keywords" content="a, b">
+            <base href="/base/"></head><body>some text</body></html>""",
+        """<html><head><title>test page</title>
+            <meta http-equiv="refresh" content="5; url=../next.html">
+            </head><body><meta name="robots" content="noindex">some text</body></html>"""
+    )
+
+    @Test
+    fun testMetaTagsFromJsoup() {
+        val metaTags = HTMLMetaTags(Jsoup.parse(pages[0], baseURL.toString()), baseURL)
+        assertTrue(metaTags.noIndex)
+        assertTrue(metaTags.noFollow)
+        assertTrue(metaTags.noCache)
+
+        val metaTags2 = HTMLMetaTags(Jsoup.parse(pages[1], baseURL.toString()), baseURL)
+        assertTrue(metaTags2.noIndex)
+        assertFalse(metaTags2.noFollow)
+        assertEquals("a, b", metaTags2.generalTags["keywords"])
+        assertEquals(URL("http://www.pulsar.org/base/"), metaTags2.baseHref)
+
+        val metaTags3 = HTMLMetaTags(Jsoup.parse(pages[2], baseURL.toString()), baseURL)
+        assertTrue(metaTags3.refresh)
+        assertEquals(5, metaTags3.refreshTime)
+        assertEquals(URL("http://www.pulsar.org/next.html"), metaTags3.refreshHref)
+    }
+
+    @Test
+    fun testJsoupAndW3CDomAgree() {
+        pages.forEach { html ->
+            val document = Jsoup.parse(html, baseURL.toString())
+            val expected = HTMLMetaTags(W3CDom().fromJsoup(document), baseURL)
+            val actual = HTMLMetaTags(document, baseURL)
+            assertEquals(expected.toString(), actual.toString(), html)
+        }
+    }
+}
@@ -0,0 +1,662 @@
+package org.jsoup.parser;
+
+import org.jsoup.helper.Validate;
+import org.jsoup.internal.Normalizer;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Attributes;
+
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Extracts the links of a html document straight from the token stream, no DOM tree is built.
+ * <p>
+ * Only the open elements are tracked, and a restricted subset of css selectors is evaluated incrementally as the
+ * elements open: groups of descendant chains, each step of a chain is a tag, an id, classes or a combination of them,
+ * and the last step selects the anchors, for example <code>#list .item a, ul.links a.title</code>. Use
+ * {@link #isSupported(String)} to check a selector before creating an extractor.
+ * </p>
+ * <p>
+ * Like the tree builder, the content of script, style, title and the other raw text elements is tokenised as text,
+ * the first {@code <base href>} changes the base uri, and the common implied end tags are honored, but mis-nested
+ * markup is not fixed up the way the tree builder does, so the result on badly broken html can differ slightly from
+ * selecting on the parsed document.
+ * </p>
+ */
+public final class StreamingLinkExtractor {
+    private static final String[] voidTags = {
+            "area", "base", "basefont", "bgsound", "br", "col", "embed", "frame", "hr", "img", "input", "keygen",
+            "link", "meta", "param", "source", "track", "wbr"
+    };
+    private static final String[] headTags = {
+            "base", "basefont", "bgsound", "link", "meta", "noframes", "noscript", "script", "style", "template", "title"
+    };
+    private static final String[] rawtextTags = {"iframe", "noembed", "noframes", "style", "xmp"};
+    private static final String[] rcdataTags = {"textarea", "title"};
+    private static final String[] closesParagraph = {
+            "address", "article", "aside", "blockquote", "center", "details", "dialog", "dir", "div", "dl", "fieldset",
+            "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hgroup", "hr",
+            "li", "main", "menu", "nav", "ol", "p", "pre", "section", "summary", "table", "ul"
+    };
+    private static final String[] paragraphScope = {"button", "caption", "html", "body", "marquee", "object", "table", "td", "th"};
+    private static final String[] listItemScope = {"ol", "ul", "body", "html", "table"};
+    private static final String[] definitionScope = {"dl", "body", "html", "table"};
+    private static final String[] rowScope = {"table", "tbody", "thead", "tfoot", "body", "html"};
+    private static final String[] cellScope = {"tr", "table", "body", "html"};
+    private static final String[] optionScope = {"select", "datalist", "optgroup", "body", "html"};
+    private static final String[] impliedEndTags = {"dd", "dt", "li", "option", "p", "td", "th", "tr"};
+
+    static {
+        Arrays.sort(voidTags);
+        Arrays.sort(headTags);
+        Arrays.sort(rawtextTags);
+        Arrays.sort(rcdataTags);
+        Arrays.sort(closesParagraph);
+        Arrays.sort(impliedEndTags);
+    }
+
+    /**
+     * A link found in the document.
+     */
+    public static final class Link {
+        private final String href;
+        private final String text;
+        private final String path;
+
+        Link(String href, String text, String path) {
+            this.href = href;
+            this.text = text;
+            this.path = path;
+        }
+
+        /**
+         * @return the absolute url of the link, resolved against the base uri just like <code>attr("abs:href")</code>
+         */
+        public String href() {
+            return href;
+        }
+
+        /**
+         * @return the anchor text, with the whitespace normalized just like {@link org.jsoup.nodes.Element#text()}
+         */
+        public String text() {
+            return text;
+        }
+
+        /**
+         * @return a css path hint of the anchor, from the nearest ancestor with an id, or from the body if there is no
+         * such ancestor, for example <code>div#list &gt; ul.items &gt; li &gt; a</code>
+         */
+        public String path() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return href + " " + text + " | " + path;
+        }
+    }
+
+    /**
+     * Handles the links as soon as they are found.
+     */
+    public interface Handler {
+        /**
+         * @param link the link found
+         * @return true to continue, or false to stop the extraction
+         */
+        boolean onLink(Link link);
+    }
+
+    private final Step[][] chains;
+
+    /**
+     * Create an extractor selects the anchors with the css query
+     * @param cssQuery the css query, must be supported, see {@link #isSupported(String)}
+     */
+    public StreamingLinkExtractor(String cssQuery) {
+        Validate.notNull(cssQuery);
+        chains = parse(cssQuery);
+        if (chains == null)
+            throw new IllegalArgumentException("Unsupported selector for streaming link extraction: " + cssQuery);
+    }
+
+    /**
+     * Check if a css query can be evaluated by the streaming extractor: comma separated groups of descendant chains,
+     * the steps are made of a tag or <code>*</code>, an id and classes, and the last step of every chain is an anchor,
+     * for example <code>div.nav a</code>. Combinators other than the descendant one, attributes and pseudo selectors
+     * are not supported.
+     */
+    public static boolean isSupported(String cssQuery) {
+        return cssQuery != null && parse(cssQuery) != null;
+    }
+
+    /**
+     * Extract all the selected links in the html
+     */
+    public List<Link> extract(String html, String baseUri) {
+        List<Link> links = new ArrayList<>();
+        extract(new CharacterReader(html), baseUri, links::add);
+        return links;
+    }
+
+    /**
+     * Extract all the selected links in the html, the input is read in buffered chunks and never loaded in full,
+     * it is not closed by the extractor
+     */
+    public List<Link> extract(Reader html, String baseUri) {
+        List<Link> links = new ArrayList<>();
+        extract(new CharacterReader(html), baseUri, links::add);
+        return links;
+    }
+
+    /**
+     * Extract the selected links in the html, each link is handled as soon as its anchor is closed, and the rest of the
+     * input is skipped once the handler stops the extraction. The input is not closed by the extractor
+     */
+    public void extract(Reader html, String baseUri, Handler handler) {
+        extract(new CharacterReader(html), baseUri, handler);
+    }
+
+    private void extract(CharacterReader reader, String baseUri, Handler handler) {
+        Validate.notNull(baseUri);
+        Validate.notNull(handler);
+        new Scanner(chains, reader, baseUri, handler).run();
+    }
+
+    /**
+     * A compound selector, all the present parts must match
+     */
+    private static final class Step {
+        String tag; // lower case, null for any tag
+        String id;
+        final List<String> classes = new ArrayList<>(2);
+
+        boolean matches(Frame frame) {
+            if (tag != null && !tag.equals(frame.name))
+                return false;
+            if (id != null && !id.equals(frame.id))
+                return false;
+            for (String className : classes) {
+                if (!frame.hasClass(className))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * An open element
+     */
+    private static final class Frame {
+        final String name;
+        final String id;
+        final String className;
+        final boolean impliedEnd;
+        /** the number of steps of each chain, but the last one, matched by this element and its ancestors */
+        final int[] progress;
+
+        Frame(String name, String id, String className, Frame parent, Step[][] chains) {
+            this.name = name;
+            this.id = id;
+            this.className = className;
+            this.impliedEnd = StringUtil.inSorted(name, impliedEndTags);
+            this.progress = new int[chains.length];
+            for (int i = 0; i < chains.length; i++) {
+                Step[] chain = chains[i];
+                int k = parent == null ? 0 : parent.progress[i];
+                if (k < chain.length - 1 && chain[k].matches(this))
+                    k++;
+                progress[i] = k;
+            }
+        }
+
+        /**
+         * Scan the class attribute for the class, case insensitive, the same way as {@link org.jsoup.nodes.Element#hasClass(String)}
+         */
+        boolean hasClass(String name) {
+            final int len = className.length();
+            final int wantLen = name.length();
+            boolean inClass = false;
+            int start = 0;
+            for (int i = 0; i <= len; i++) {
+                if (i == len || Character.isWhitespace(className.charAt(i))) {
+                    if (inClass) {
+                        if (i - start == wantLen && className.regionMatches(true, start, name, 0, wantLen))
+                            return true;
+                        inClass = false;
+                    }
+                } else if (!inClass) {
+                    inClass = true;
+                    start = i;
+                }
+            }
+            return false;
+        }
+
+        void appendPath(StringBuilder sb) {
+            sb.append(name);
+            if (!id.isEmpty()) {
+                sb.append('#').append(id);
+            } else {
+                boolean lastWasWhite = true;
+                for (int i = 0; i < className.length(); i++) {
+                    char c = className.charAt(i);
+                    if (Character.isWhitespace(c)) {
+                        lastWasWhite = true;
+                    } else {
+                        if (lastWasWhite)
+                            sb.append('.');
+                        sb.append(c);
+                        lastWasWhite = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of a single extraction
+     */
+    private static final class Scanner {
+        private final Step[][] chains;
+        private final Tokeniser tokeniser;
+        private final Handler handler;
+        private final List<Frame> stack = new ArrayList<>(32);
+        private URL base; // null if the base uri is not a valid url
+        private boolean baseUriSetFromDoc = false;
+        private int impliedEndElements = 0; // the open elements might be closed by an implied end tag
+        private boolean stopped = false;
+
+        // the open anchor, and the link under construction if the anchor is selected
+        private Frame anchor;
+        private String anchorHref;
+        private String anchorPath;
+        private final StringBuilder anchorText = new StringBuilder();
+        // a block element just closed in the anchor, it is separated from the text right after it by a space
+        private boolean spaceBeforeText = false;
+
+        Scanner(Step[][] chains, CharacterReader reader, String baseUri, Handler handler) {
+            this.chains = chains;
+            this.tokeniser = new Tokeniser(reader, ParseErrorList.noTracking());
+            this.base = toUrl(baseUri);
+            this.handler = handler;
+        }
+
+        void run() {
+            while (!stopped) {
+                Token token = tokeniser.read();
+                switch (token.type) {
+                    case StartTag:
+                        spaceBeforeText = false;
+                        startTag(token.asStartTag());
+                        break;
+                    case EndTag:
+                        spaceBeforeText = false;
+                        endTag(token.asEndTag().normalName());
+                        break;
+                    case Character:
+                        characters(token.asCharacter().getData());
+                        break;
+                    case EOF:
+                        popTo(0);
+                        return;
+                    default:
+                        // doctypes and comments
+                        break;
+                }
+                token.reset();
+            }
+        }
+
+        private void startTag(Token.StartTag tag) {
+            String name = tag.normalName();
+
+            if (name.equals("html")) {
+                if (stack.isEmpty())
+                    push(tag);
+                return;
+            }
+            if (stack.isEmpty())
+                push("html");
+
+            if (name.equals("head")) {
+                if (stack.size() == 1)
+                    push(tag);
+                return;
+            }
+            if (name.equals("body")) {
+                if (indexOf("body") < 0) {
+                    popTo(1);
+                    push(tag);
+                }
+                return;
+            }
+            if (indexOf("body") < 0 && !(StringUtil.inSorted(name, headTags) && stack.size() <= 2)) {
+                popTo(1);
+                push("body");
+            }
+
+            if (name.equals("base")) {
+                String href = attr(tag, "href");
+                if (!baseUriSetFromDoc && href != null && !href.isEmpty()) {
+                    URL resolved = toUrl(resolve(href));
+                    if (resolved != null) {
+                        base = resolved;
+                        baseUriSetFromDoc = true;
+                    }
+                }
+            }
+
+            closeImplied(name);
+            if (inAnchorText() && (name.equals("br") || Tag.valueOf(name).isBlock()))
+                appendSpace();
+
+            if (StringUtil.inSorted(name, voidTags))
+                return;
+
+            Frame frame = push(tag);
+            if (name.equals("a"))
+                openAnchor(tag, frame);
+            if (tag.isSelfClosing()) {
+                // the tree builder inserts any self closing tag as an empty element
+                popTo(stack.size() - 1);
+                return;
+            }
+
+            if (name.equals("script"))
+                tokeniser.transition(TokeniserState.ScriptData);
+            else if (StringUtil.inSorted(name, rawtextTags))
+                tokeniser.transition(TokeniserState.Rawtext);
+            else if (StringUtil.inSorted(name, rcdataTags))
+                tokeniser.transition(TokeniserState.Rcdata);
+            else if (name.equals("plaintext"))
+                tokeniser.transition(TokeniserState.PLAINTEXT); // once in, never gets out
+        }
+
+        private void endTag(String name) {
+            if (name.equals("html") || name.equals("body"))
+                return;
+
+            int bottom = Math.max(indexOf("body"), 0);
+            for (int i = stack.size() - 1; i > bottom; i--) {
+                if (stack.get(i).name.equals(name)) {
+                    boolean block = inAnchorText() && Tag.valueOf(name).isBlock();
+                    popTo(i);
+                    spaceBeforeText = block && inAnchorText();
+                    return;
+                }
+            }
+        }
+
+        private void characters(String data) {
+            if (!inAnchorText())
+                return;
+            String current = stack.get(stack.size() - 1).name;
+            if (current.equals("script") || current.equals("style"))
+                return;
+            if (spaceBeforeText) {
+                appendSpace();
+                spaceBeforeText = false;
+            }
+            StringUtil.appendNormalisedWhitespace(anchorText, data, lastCharIsWhitespace());
+        }
+
+        /**
+         * Close the elements the start tag implicitly ends, the same way the tree builder generates the implied end tags
+         */
+        private void closeImplied(String name) {
+            switch (name) {
+                case "a":
+                    if (anchor != null)
+                        popTo(stack.indexOf(anchor));
+                    break;
+                case "li":
+                    closeInScope(listItemScope, "li");
+                    break;
+                case "dd":
+                case "dt":
+                    closeInScope(definitionScope, "dd", "dt");
+                    break;
+                case "tr":
+                    closeInScope(rowScope, "tr");
+                    break;
+                case "td":
+                case "th":
+                    closeInScope(cellScope, "td", "th");
+                    break;
+                case "option":
+                    closeInScope(optionScope, "option");
+                    break;
+            }
+            if (StringUtil.inSorted(name, closesParagraph))
+                closeInScope(paragraphScope, "p");
+        }
+
+        private void closeInScope(String[] scope, String... names) {
+            if (impliedEndElements == 0)
+                return;
+            for (int i = stack.size() - 1; i >= 0; i--) {
+                String open = stack.get(i).name;
+                if (StringUtil.in(open, names)) {
+                    popTo(i);
+                    return;
+                }
+                if (StringUtil.in(open, scope))
+                    return;
+            }
+        }
+
+        private void openAnchor(Token.StartTag tag, Frame frame) {
+            anchor = frame;
+            anchorHref = null;
+            anchorText.setLength(0);
+
+            String href = attr(tag, "href");
+            if (href == null || !isSelected(frame))
+                return;
+
+            String abs = resolve(href);
+            if (abs.isEmpty())
+                return;
+
+            anchorHref = abs;
+            anchorPath = path();
+        }
+
+        private boolean isSelected(Frame frame) {
+            Frame parent = stack.size() > 1 ? stack.get(stack.size() - 2) : null;
+            for (int i = 0; i < chains.length; i++) {
+                Step[] chain = chains[i];
+                int k = parent == null ? 0 : parent.progress[i];
+                if (k == chain.length - 1 && chain[k].matches(frame))
+                    return true;
+            }
+            return false;
+        }
+
+        private void closeAnchor() {
+            if (anchorHref != null) {
+                String text = anchorText.toString().trim();
+                if (!stopped && !handler.onLink(new Link(anchorHref, text, anchorPath)))
+                    stopped = true;
+            }
+            anchor = null;
+            anchorHref = null;
+            anchorPath = null;
+            anchorText.setLength(0);
+        }
+
+        private boolean inAnchorText() {
+            return anchorHref != null;
+        }
+
+        private void appendSpace() {
+            if (anchorText.length() > 0 && !lastCharIsWhitespace())
+                anchorText.append(' ');
+        }
+
+        private boolean lastCharIsWhitespace() {
+            return anchorText.length() != 0 && anchorText.charAt(anchorText.length() - 1) == ' ';
+        }
+
+        private String path() {
+            StringBuilder sb = StringUtil.borrowBuilder();
+            int top = stack.size() - 1;
+            int from = top;
+            while (from > 0) {
+                Frame frame = stack.get(from);
+                if (!frame.id.isEmpty() || frame.name.equals("body"))
+                    break;
+                from--;
+            }
+            for (int i = from; i <= top; i++) {
+                if (i > from)
+                    sb.append(" > ");
+                stack.get(i).appendPath(sb);
+            }
+            return StringUtil.releaseBuilder(sb);
+        }
+
+        private Frame push(Token.StartTag tag) {
+            String id = attr(tag, "id");
+            String className = attr(tag, "class");
+            return push(tag.normalName(), id == null ? "" : id, className == null ? "" : className);
+        }
+
+        private Frame push(String name) {
+            return push(name, "", "");
+        }
+
+        private Frame push(String name, String id, String className) {
+            Frame parent = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+            Frame frame = new Frame(name, id, className, parent, chains);
+            if (frame.impliedEnd)
+                impliedEndElements++;
+            stack.add(frame);
+            return frame;
+        }
+
+        /**
+         * Pop the elements from the top of the stack down to the element at the index, inclusive
+         */
+        private void popTo(int index) {
+            if (index < 0)
+                return;
+            for (int i = stack.size() - 1; i >= index; i--) {
+                Frame frame = stack.remove(i);
+                if (frame.impliedEnd)
+                    impliedEndElements--;
+                if (frame == anchor)
+                    closeAnchor();
+            }
+        }
+
+        private int indexOf(String name) {
+            // html, head and body are always at the bottom
+            for (int i = 0; i < stack.size() && i < 3; i++) {
+                if (stack.get(i).name.equals(name))
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Resolve the href against the base uri, the same way as {@link StringUtil#resolve(String, String)}, but the
+         * base url is parsed only once
+         */
+        private String resolve(String href) {
+            try {
+                return base == null ? new URL(href).toExternalForm() : StringUtil.resolve(base, href).toExternalForm();
+            } catch (MalformedURLException e) {
+                return "";
+            }
+        }
+
+        private static URL toUrl(String url) {
+            try {
+                return new URL(url);
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+
+        private static String attr(Token.StartTag tag, String key) {
+            Attributes attributes = tag.attributes;
+            if (attributes == null || !attributes.hasKeyIgnoreCase(key))
+                return null;
+            return attributes.getIgnoreCase(key);
+        }
+    }
+
+    /**
+     * Parse the css query into chains of steps, or return null if the query is not supported
+     */
+    private static Step[][] parse(String cssQuery) {
+        String[] groups = cssQuery.split(",", -1);
+        Step[][] chains = new Step[groups.length][];
+        for (int i = 0; i < groups.length; i++) {
+            String group = groups[i].trim();
+            if (group.isEmpty())
+                return null;
+
+            String[] parts = group.split("\\s+");
+            Step[] chain = new Step[parts.length];
+            for (int j = 0; j < parts.length; j++) {
+                chain[j] = parseStep(parts[j]);
+                if (chain[j] == null)
+                    return null;
+            }
+            if (!"a".equals(chain[chain.length - 1].tag))
+                return null;
+            chains[i] = chain;
+        }
+        return chains;
+    }
+
+    private static Step parseStep(String part) {
+        Step step = new Step();
+        int i = 0;
+        int n = part.length();
+        if (part.charAt(0) == '*') {
+            i = 1;
+        } else if (part.charAt(0) != '#' && part.charAt(0) != '.') {
+            i = endOfIdentifier(part, 0);
+            if (i == 0)
+                return null;
+            step.tag = Normalizer.lowerCase(part.substring(0, i));
+        }
+
+        while (i < n) {
+            char c = part.charAt(i);
+            int end = endOfIdentifier(part, i + 1);
+            if (end == i + 1 || (c != '#' && c != '.'))
+                return null;
+            String name = part.substring(i + 1, end);
+            if (c == '#') {
+                if (step.id != null)
+                    return null;
+                step.id = name;
+            } else {
+                step.classes.add(name);
+            }
+            i = end;
+        }
+        return step;
+    }
+
+    private static int endOfIdentifier(String s, int start) {
+        int i = start;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_'))
+                break;
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,89 @@
+package org.jsoup.parser;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingLinkExtractorTest {
+    private static final String baseUri = "http://example.com/dir/page.html";
+
+    private static final String[] pages = {
+        "<script>var s = '<a href=\"/x\">x</a>';</script><a href='/y'>y</a>",
+        "<head><base href='http://other.com/base/'><title>t <a href=1></title></head><body><a href='z'>z</a>",
+        "<a href=1>one<a href=2>two</a>",
+        "<ul class=l><li><a href=1>1</a><li><a href=2>2</a></ul><p class=q><a href=3>3</a>",
+        "<html class='no-js'><body id=b><div id=m><div class=c><a href=4 class=t>4<br>x<div>in</div>after</a></div></div>",
+        "<a href=5>  a &amp; b <style>.x{}</style> <textarea>t</textarea></a>",
+        "<table><tr><td><a href=6>6</a><td><a href=7>7</a><tr><td class=c><a href=8>8</a></table>",
+        "<p><a href=9>9</a><div class=c><a href=10>10</a></div>",
+        "<dl><dt><a href=11>11<dd><a href=12>12</a></dl><a href=''>empty</a><a>no href</a><A HREF=13>up</A>",
+        "<div class=c><span/><a href=14>14</a></div><foo/><a href=15>15</a><a href=16 />x<script/><a href=17>17</a>",
+    };
+
+    private static final String[] selectors = {
+        "a", "body a", ".c a", "#m .c a.t", "li a", "p a", "ul.l a", "td a, dd a", "tr td.c a", "div a", "html.no-js a",
+        "span a", "* a"
+    };
+
+    @Test
+    public void selectsTheSameLinksAsTheDocument() {
+        for (String html : pages) {
+            Document doc = Jsoup.parse(html, baseUri);
+            for (String selector : selectors) {
+                List<String> expected = new ArrayList<>();
+                for (Element a : doc.select(selector)) {
+                    String href = a.attr("abs:href");
+                    if (!href.isEmpty())
+                        expected.add(href + " " + a.text());
+                }
+
+                List<String> actual = new ArrayList<>();
+                for (StreamingLinkExtractor.Link link : new StreamingLinkExtractor(selector).extract(html, baseUri))
+                    actual.add(link.href() + " " + link.text());
+
+                assertEquals(html + " <" + selector + ">", expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void pathHints() {
+        String html = "<div id=m><ul class='links  main'><li><a href=1>1</a></ul></div><p><a href=2>2</a>";
+        List<StreamingLinkExtractor.Link> links = new StreamingLinkExtractor("a").extract(new StringReader(html), baseUri);
+        assertEquals(2, links.size());
+        assertEquals("div#m > ul.links.main > li > a", links.get(0).path());
+        assertEquals("body > p > a", links.get(1).path());
+    }
+
+    @Test
+    public void stopsWhenTheHandlerSaysSo() {
+        String html = "<a href=1>1</a><a href=2>2</a><a href=3>3</a>";
+        final List<String> hrefs = new ArrayList<>();
+        new StreamingLinkExtractor("a").extract(new StringReader(html), baseUri, link -> hrefs.add(link.href()) && hrefs.size() < 2);
+        assertEquals(2, hrefs.size());
+        assertEquals("http://example.com/dir/2", hrefs.get(1));
+    }
+
+    @Test
+    public void supportedSelectors() {
+        assertTrue(StreamingLinkExtractor.isSupported("a"));
+        assertTrue(StreamingLinkExtractor.isSupported(" div#list  .item a.title, ul a "));
+        assertTrue(StreamingLinkExtractor.isSupported("* a"));
+
+        assertFalse(StreamingLinkExtractor.isSupported("div > a"));
+        assertFalse(StreamingLinkExtractor.isSupported("a[href]"));
+        assertFalse(StreamingLinkExtractor.isSupported("a:first-child"));
+        assertFalse(StreamingLinkExtractor.isSupported(".nav"));
+        assertFalse(StreamingLinkExtractor.isSupported("abbr"));
+        assertFalse(StreamingLinkExtractor.isSupported("a,"));
+    }
+}
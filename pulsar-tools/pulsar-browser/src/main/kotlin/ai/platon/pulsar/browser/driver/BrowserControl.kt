@@ -20,6 +20,16 @@ open class BrowserControl(
         // required
         var viewPort = AppConstants.DEFAULT_VIEW_PORT
 
+        /**
+         * The runtime binding the injected script calls to report the document is ready
+         * */
+        const val READY_BINDING_NAME = "__pulsar_ready__"
+
+        /**
+         * The window variable holds the id of the navigation the document belongs to
+         * */
+        const val NAVIGATION_ID_NAME = "__pulsar_navigation_id__"
+
         fun generateUserDataDir(): Path {
             val numInstances = Files.list(AppPaths.BROWSER_TMP_DIR).filter { Files.isDirectory(it) }.count().inc()
             val rand = Random.nextInt(0, 1000000).toString(Character.MAX_RADIX)
@@ -63,7 +73,12 @@ open class BrowserControl(
         mapOf(
                 "propertyNames" to propertyNames,
                 "viewPortWidth" to viewPort.width,
-                "viewPortHeight" to viewPort.height
+                "viewPortHeight" to viewPort.height,
+                "readyBindingName" to READY_BINDING_NAME,
+                "navigationIdName" to NAVIGATION_ID_NAME,
+                // leave 5 seconds to wait for script finish
+                "readyMaxRound" to (scriptTimeout.seconds - 5).coerceAtLeast(1),
+                "readyInitialScroll" to 5
         ).also { jsParameters.putAll(it) }
 
         jsParameters.putAll(parameters)
@@ -105,6 +120,7 @@ open class BrowserControl(
             // set predefined variables shared between javascript and jvm program
             sb.appendln("let META_INFORMATION_ID = \"${AppConstants.PULSAR_META_INFORMATION_ID}\";")
             sb.appendln("let SCRIPT_SECTION_ID = \"${AppConstants.PULSAR_SCRIPT_SECTION_ID}\";")
+            sb.appendln("let GEOMETRY_SECTION_ID = \"${AppConstants.PULSAR_GEOMETRY_SECTION_ID}\";")
             sb.appendln("let ATTR_HIDDEN = \"${AppConstants.PULSAR_ATTR_HIDDEN}\";")
             sb.appendln("let ATTR_OVERFLOW_HIDDEN = \"${AppConstants.PULSAR_ATTR_OVERFLOW_HIDDEN}\";")
             sb.appendln("let ATTR_OVERFLOW_VISIBLE = \"${AppConstants.PULSAR_ATTR_OVERFLOW_VISIBLE}\";")
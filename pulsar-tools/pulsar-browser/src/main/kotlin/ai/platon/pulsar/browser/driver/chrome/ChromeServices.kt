@@ -4,6 +4,8 @@ import ai.platon.pulsar.browser.driver.chrome.util.WebSocketServiceException
 import com.github.kklisura.cdt.protocol.ChromeDevTools
 import com.github.kklisura.cdt.protocol.support.types.EventHandler
 import com.github.kklisura.cdt.protocol.support.types.EventListener
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 import java.net.URI
 import java.util.concurrent.Future
 import java.util.function.Consumer
@@ -45,6 +47,23 @@ interface RemoteDevTools: ChromeDevTools, AutoCloseable {
             method: MethodInvocation
     ): T?
 
+    /**
+     * Invoke a remote method and suspend until the response arrives, the default implementation
+     * falls back to the blocking [invoke] on the IO dispatcher
+     * */
+    suspend fun <T> invokeDeferred(
+            returnProperty: String?,
+            clazz: Class<T>,
+            returnTypeClasses: Array<Class<out Any>>?,
+            method: MethodInvocation
+    ): T? = withContext(Dispatchers.IO) { invoke(returnProperty, clazz, returnTypeClasses, method) }
+
+    /**
+     * Invoke a generated protocol method and suspend until the response arrives, the default implementation
+     * falls back to the blocking protocol proxies on the IO dispatcher
+     * */
+    suspend fun <T> invokeDeferred(action: ChromeDevTools.() -> T?): T? = withContext(Dispatchers.IO) { action() }
+
     fun waitUntilClosed()
 
     fun addEventListener(domainName: String, eventName: String, eventHandler: EventHandler<Any>, eventType: Class<*>): EventListener
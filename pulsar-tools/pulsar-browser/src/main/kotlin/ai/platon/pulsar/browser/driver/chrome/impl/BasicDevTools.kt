@@ -16,8 +16,11 @@ import com.fasterxml.jackson.databind.JavaType
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.type.TypeFactory
+import com.github.kklisura.cdt.protocol.ChromeDevTools
 import com.github.kklisura.cdt.protocol.support.types.EventHandler
 import com.github.kklisura.cdt.protocol.support.types.EventListener
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.withTimeoutOrNull
 import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.time.Duration
@@ -37,11 +40,16 @@ internal class InvocationFuture(val returnProperty: String? = null) {
     var result: JsonNode? = null
     var isSuccess = false
     private val countDownLatch = CountDownLatch(1)
+    /**
+     * Completed when the response arrives, suspend callers wait on it without holding a thread
+     * */
+    val deferred = CompletableDeferred<Boolean>()
 
     fun signal(isSuccess: Boolean, result: JsonNode?) {
         this.isSuccess = isSuccess
         this.result = result
         countDownLatch.countDown()
+        deferred.complete(isSuccess)
     }
 
     @Throws(InterruptedException::class)
@@ -85,6 +93,8 @@ abstract class BasicDevTools(
         private val metrics = SharedMetricRegistries.getOrCreate(AppConstants.DEFAULT_METRICS_NAME)
         private val metricsPrefix = "c.i.BasicDevTools.global"
         private val numInvokes = metrics.counter("$metricsPrefix.invokes")
+        private val numDeferredInvokes = metrics.counter("$metricsPrefix.deferredInvokes")
+        private val numPendingInvokes = metrics.counter("$metricsPrefix.pendingInvokes")
         private val numAccepts = metrics.counter("$metricsPrefix.accepts")
         private val gauges = mapOf(
                 "idleTime" to Gauge { idleTime.readable() }
@@ -148,23 +158,7 @@ abstract class BasicDevTools(
                 throw ChromeDevToolsInvocationException("Timeout to wait for ws response #${numInvokes.count}")
             }
 
-            if (future.isSuccess) {
-                return when {
-                    Void.TYPE == clazz -> null
-                    returnTypeClasses != null -> readJsonObject(returnTypeClasses, clazz, future.result)
-                    else -> readJsonObject(clazz, future.result)
-                }
-            }
-
-            // Received a error
-            val error = readJsonObject(ErrorObject::class.java, future.result)
-            val sb = StringBuilder(error.message)
-            if (error.data != null) {
-                sb.append(": ")
-                sb.append(error.data)
-            }
-
-            throw ChromeDevToolsInvocationException(error.code, sb.toString())
+            return readResult(future, clazz, returnTypeClasses)
         } catch (e: WebSocketServiceException) {
             throw ChromeDevToolsInvocationException("Web socket connection lost", e)
         } catch (e: InterruptedException) {
@@ -176,6 +170,80 @@ abstract class BasicDevTools(
         }
     }
 
+    /**
+     * Invoke a remote method without blocking the calling thread: the message is sent by [WebSocketClient.asyncSend]
+     * and the coroutine suspends until the response arrives. If the coroutine is canceled, the wait is aborted
+     * and the response, if any, is dropped.
+     * */
+    override suspend fun <T> invokeDeferred(
+            returnProperty: String?,
+            clazz: Class<T>,
+            returnTypeClasses: Array<Class<out Any>>?,
+            method: MethodInvocation
+    ): T? {
+        if (!isOpen) {
+            return null
+        }
+
+        numInvokes.inc()
+        numDeferredInvokes.inc()
+        numPendingInvokes.inc()
+        lastActiveTime = Instant.now()
+
+        val future = invocationFutures.computeIfAbsent(method.id) { InvocationFuture(returnProperty) }
+
+        try {
+            wsClient.asyncSend(OBJECT_MAPPER.writeValueAsString(method))
+
+            val timeout = devToolsConfig.readTimeout
+            val responded = if (timeout.isZero) {
+                future.deferred.await()
+                true
+            } else {
+                withTimeoutOrNull(timeout.toMillis()) { future.deferred.await() } != null
+            }
+            lastActiveTime = Instant.now()
+
+            if (!responded) {
+                logger.warn("Timeout to wait for ws response #{}", numInvokes.count)
+                throw ChromeDevToolsInvocationException("Timeout to wait for ws response #${numInvokes.count}")
+            }
+
+            return readResult(future, clazz, returnTypeClasses)
+        } catch (e: WebSocketServiceException) {
+            throw ChromeDevToolsInvocationException("Web socket connection lost", e)
+        } catch (e: IOException) {
+            throw ChromeDevToolsInvocationException("Failed reading response message", e)
+        } finally {
+            numPendingInvokes.dec()
+            invocationFutures.remove(method.id)
+            lock.withLock {
+                if (invocationFutures.isEmpty()) {
+                    notBusy.signalAll()
+                }
+            }
+        }
+    }
+
+    /**
+     * Invoke a generated protocol method without blocking the calling thread, for example:
+     *
+     * ```kotlin
+     * val evaluate = devTools.invokeDeferred { runtime.evaluate("document.title") }
+     * ```
+     *
+     * The action is called on a recording proxy, it must call exactly one protocol method of this dev tools,
+     * the method is captured and invoked by [invokeDeferred], the value returned by the action is ignored.
+     * */
+    override suspend fun <T> invokeDeferred(action: ChromeDevTools.() -> T?): T? {
+        val invocation = DevToolsInvocationHandler.capture { action(this) }
+            ?: throw ChromeDevToolsInvocationException("No protocol method is invoked in the action")
+
+        @Suppress("UNCHECKED_CAST")
+        val clazz = invocation.returnType as Class<T>
+        return invokeDeferred(invocation.returnProperty, clazz, invocation.returnTypeClasses, invocation.method)
+    }
+
     override fun addEventListener(domainName: String,
             eventName: String, eventHandler: EventHandler<Any>, eventType: Class<*>): EventListener {
         val name = "$domainName.$eventName"
@@ -300,6 +368,27 @@ abstract class BasicDevTools(
         }
     }
 
+    @Throws(IOException::class)
+    private fun <T> readResult(future: InvocationFuture, clazz: Class<T>, returnTypeClasses: Array<Class<out Any>>?): T? {
+        if (future.isSuccess) {
+            return when {
+                Void.TYPE == clazz -> null
+                returnTypeClasses != null -> readJsonObject(returnTypeClasses, clazz, future.result)
+                else -> readJsonObject(clazz, future.result)
+            }
+        }
+
+        // Received a error
+        val error = readJsonObject(ErrorObject::class.java, future.result)
+        val sb = StringBuilder(error.message)
+        if (error.data != null) {
+            sb.append(": ")
+            sb.append(error.data)
+        }
+
+        throw ChromeDevToolsInvocationException(error.code, sb.toString())
+    }
+
     @Throws(IOException::class)
     private fun <T> readJsonObject(classParameters: Array<Class<*>>, parameterizedClazz: Class<T>, jsonNode: JsonNode?): T {
         if (jsonNode == null) {
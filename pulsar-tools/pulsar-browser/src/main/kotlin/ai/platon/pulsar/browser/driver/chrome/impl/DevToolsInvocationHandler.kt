@@ -15,10 +15,46 @@ import java.lang.reflect.ParameterizedType
 import java.util.*
 import java.util.concurrent.atomic.AtomicLong
 
+/**
+ * A protocol method invocation captured by [DevToolsInvocationHandler.capture], which is sent later
+ * */
+class CapturedInvocation(
+        val returnProperty: String?,
+        val returnType: Class<*>,
+        val returnTypeClasses: Array<Class<out Any>>?,
+        val method: MethodInvocation
+)
+
 class DevToolsInvocationHandler: InvocationHandler {
     companion object {
         private const val EVENT_LISTENER_PREFIX = "on"
         private val ID_SUPPLIER = AtomicLong(1L)
+        private val capturedInvocations = ThreadLocal<Array<CapturedInvocation?>>()
+
+        /**
+         * Run the action in capture mode: protocol methods called by the action in the current thread
+         * are not sent but recorded, the last recorded invocation is returned
+         * */
+        fun capture(action: () -> Any?): CapturedInvocation? {
+            val holder = arrayOfNulls<CapturedInvocation>(1)
+            capturedInvocations.set(holder)
+            try {
+                action()
+            } finally {
+                capturedInvocations.remove()
+            }
+            return holder[0]
+        }
+
+        private fun defaultValue(type: Class<*>): Any? {
+            return when (type) {
+                java.lang.Boolean.TYPE -> false
+                java.lang.Integer.TYPE -> 0
+                java.lang.Long.TYPE -> 0L
+                java.lang.Double.TYPE -> 0.0
+                else -> null
+            }
+        }
     }
 
     lateinit var devTools: RemoteDevTools
@@ -40,6 +76,13 @@ class DevToolsInvocationHandler: InvocationHandler {
                 ?.value?.map { it.java }?.toTypedArray()
         val returnProperty = method.getAnnotation(Returns::class.java)?.value
         val methodInvocation = createMethodInvocation(method, args)
+
+        val holder = capturedInvocations.get()
+        if (holder != null) {
+            holder[0] = CapturedInvocation(returnProperty, returnType, returnTypeClasses, methodInvocation)
+            return defaultValue(returnType)
+        }
+
         return devTools.invoke(returnProperty, returnType, returnTypeClasses, methodInvocation)
     }
 
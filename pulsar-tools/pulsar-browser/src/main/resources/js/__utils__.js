@@ -43,6 +43,47 @@ __utils__.waitForReady = function(maxRound = 30, scroll = 2) {
     return __utils__.checkPulsarStatus(maxRound, scroll);
 };
 
+/**
+ * Check the document state in the page itself, and report to the driver through the runtime binding
+ * once the document is ready, so the driver does not need to poll the page.
+ * The report is prefixed by the navigation id, so the driver can ignore a late report of the last document.
+ * Nothing happens if the binding is not installed.
+ *
+ * @param maxRound The maximum round to check ready
+ * @param scroll The count to scroll down
+ * @param interval The interval between two checks in milliseconds
+ * */
+__utils__.signalReadyWhenReady = function(maxRound = 30, scroll = 2, interval = 500) {
+    if (!__utils__.isReadySignaling()) {
+        return false
+    }
+
+    let binding = window[PULSAR_CONFIGS.readyBindingName];
+    let navigationId = window[PULSAR_CONFIGS.navigationIdName];
+    let check = function() {
+        let message = __utils__.checkPulsarStatus(maxRound, scroll);
+        if (message) {
+            binding(navigationId + ":" + String(message))
+        } else {
+            setTimeout(check, interval)
+        }
+    };
+    check();
+
+    return true
+};
+
+/**
+ * Whether the document reports its readiness through the runtime binding, only the top window reports
+ *
+ * @return {boolean}
+ * */
+__utils__.isReadySignaling = function() {
+    return window === window.top
+        && typeof window[PULSAR_CONFIGS.readyBindingName] === "function"
+        && window[PULSAR_CONFIGS.navigationIdName] !== undefined
+};
+
 __utils__.isBrowserError = function () {
     if (document.documentURI.startsWith("chrome-error")) {
         return true
@@ -131,6 +172,51 @@ __utils__.writePulsarData = function() {
     document.body.appendChild(script);
 };
 
+/**
+ * Write the geometry records as a packed block, which is a hidden script node holding base64 encoded
+ * little endian floats: [version, numElements, record*], the record of element i is the i-th record,
+ * see NodeFeatureCalculator.packGeometry for the record layout.
+ *
+ * @param records {Array} the geometry records indexed by element ordinal
+ * */
+__utils__.writeGeometry = function(records) {
+    if (!document.body || document.getElementById(GEOMETRY_SECTION_ID) != null) {
+        return
+    }
+
+    let size = 2;
+    for (let i = 0; i < records.length; ++i) {
+        size += records[i] ? records[i].length : 1;
+    }
+
+    let view = new DataView(new ArrayBuffer(size * 4));
+    let offset = 0;
+    let put = function (value) {
+        view.setFloat32(offset, value, true);
+        offset += 4;
+    };
+
+    put(GEOMETRY_DATA_VERSION);
+    put(records.length);
+    // records might be sparse, for example, iframes have no record
+    for (let i = 0; i < records.length; ++i) {
+        (records[i] || [0]).forEach(put)
+    }
+
+    let bytes = new Uint8Array(view.buffer);
+    let binary = '';
+    for (let i = 0; i < bytes.length; i += 0x8000) {
+        binary += String.fromCharCode.apply(null, bytes.subarray(i, i + 0x8000))
+    }
+
+    let script = document.createElement('script');
+    script.id = GEOMETRY_SECTION_ID;
+    script.type = 'application/octet-stream';
+    script.textContent = btoa(binary);
+
+    document.body.appendChild(script);
+};
+
 /**
  * Check if the document is ready to analyze.
  * A document is hardly be perfect ready in time, since it's very common there are very slow sub resources to wait for.
@@ -789,7 +875,10 @@ __utils__.compute = function() {
     });
 
     // traverse the DOM and compute necessary data, we must compute data before we perform humanization
-    new PlatonNodeTraversor(new NodeFeatureCalculator()).traverse(document.body);
+    let calculator = new NodeFeatureCalculator();
+    new PlatonNodeTraversor(calculator).traverse(document.body);
+
+    __utils__.writeGeometry(calculator.geometry);
 
     __utils__.generateMetadata();
 
@@ -815,3 +904,10 @@ __utils__.addProjectSpecifiedData = function() {
 __utils__.add = function(a, b) {
     return a + b
 };
+
+// only the top window reports the readiness, frames are ignored
+if (window === window.top && PULSAR_CONFIGS.readyBindingName) {
+    document.addEventListener("DOMContentLoaded", function () {
+        __utils__.signalReadyWhenReady(PULSAR_CONFIGS.readyMaxRound, PULSAR_CONFIGS.readyInitialScroll)
+    });
+}
@@ -1,6 +1,7 @@
 // The following variables should be initialized programmatically
 META_INFORMATION_ID = META_INFORMATION_ID || "META_INFORMATION_ID";
 SCRIPT_SECTION_ID = SCRIPT_SECTION_ID || "SCRIPT_SECTION_ID";
+GEOMETRY_SECTION_ID = GEOMETRY_SECTION_ID || "GEOMETRY_SECTION_ID";
 PULSAR_CONFIGS = PULSAR_CONFIGS || {};
 ATTR_HIDDEN = ATTR_HIDDEN||'_h';
 ATTR_OVERFLOW_HIDDEN = ATTR_OVERFLOW_HIDDEN||'_oh';
@@ -13,6 +14,10 @@ const DATA_VERSION = "0.2.3";
 const VISION_SCHEMA = ["left", "top", "width", "height"];
 const VISION_SCHEMA_STRING = "l-t-w-h";
 const CODE_STRUCTURE_SCHEMA_STRING = "d-s";
+// the layout version of the packed geometry block, keeps consistent with PackedGeometry
+const GEOMETRY_DATA_VERSION = 1;
+// the attribute holds the ordinal of the geometry record of an element, keeps consistent with PackedGeometry
+const ATTR_GEOMETRY_ORDINAL = 'gi';
 
 const ATTR_COMPUTED_STYLE = 'st';
 const ATTR_ELEMENT_NODE_VI = 'vi';
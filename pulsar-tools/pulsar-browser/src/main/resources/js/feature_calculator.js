@@ -15,6 +15,12 @@ let NodeFeatureCalculator = function() {
     this.debug = this.config.debug;
 
     this.sequence = 0;
+
+    // the number of elements seen, the ordinal of an element is it's index in document order
+    this.elementCount = 0;
+
+    // the geometry records of elements, indexed by the element ordinal
+    this.geometry = [];
 };
 
 /**
@@ -30,6 +36,9 @@ NodeFeatureCalculator.prototype.isStopped = function() {
  * @param  depth {Number} the depth in the DOM
  */
 NodeFeatureCalculator.prototype.head = function(node, depth) {
+    // the ordinal of the geometry record
+    let ordinal = node.isElement() ? this.elementCount++ : -1;
+
     if (node.isIFrame()) {
         return
     }
@@ -37,6 +46,7 @@ NodeFeatureCalculator.prototype.head = function(node, depth) {
     ++this.sequence;
 
     node.nodeExt = new NodeExt(node, this.config);
+    node.nodeExt.ordinal = ordinal;
 
     this.calcSelfIndicator(node, depth);
 };
@@ -111,16 +121,10 @@ NodeFeatureCalculator.prototype.tail = function(node, depth) {
 
     if (node.isElement()) {
         node.setAttributeIfNotBlank(ATTR_COMPUTED_STYLE, nodeExt.formatStyles());
-        node.setAttributeIfNotBlank(ATTR_ELEMENT_NODE_VI, nodeExt.formatDOMRect());
-
-        // calculate the rectangle of each child text node
-        for (let i = 0; i < node.childNodes.length; ++i) {
-            let childNodeExt = node.childNodes[i].nodeExt;
-            if (childNodeExt && childNodeExt.node.isText()) {
-                // 'tv' is short for 'text node vision information'
-                node.setAttributeIfNotBlank(ATTR_TEXT_NODE_VI + i, childNodeExt.formatDOMRect());
-            }
-        }
+        this.geometry[nodeExt.ordinal] = this.packGeometry(node);
+        // the document is parsed again on the jvm side, where the element order might differ: the content of
+        // noscript and template, invalid nesting created by scripts, etc, so records are located by the attribute
+        node.setAttribute(ATTR_GEOMETRY_ORDINAL, nodeExt.ordinal.toString());
     }
 
     if (this.debug > 0) {
@@ -128,6 +132,38 @@ NodeFeatureCalculator.prototype.tail = function(node, depth) {
     }
 };
 
+/**
+ * Pack the rectangles of the element and it's child text nodes into a geometry record, instead of
+ * writing them to "vi" and "tv" attributes which the jvm side has to parse again.
+ *
+ * A record is [header, (left, top, width, height)?, (childIndex, left, top, width, height)*],
+ * the header is the number of text rectangles * 2, plus 1 if the element has a rectangle.
+ *
+ * @param node {Element} the element
+ * @return {Array} the record
+ */
+NodeFeatureCalculator.prototype.packGeometry = function(node) {
+    let record = [0];
+
+    let rect = node.nodeExt.rect;
+    if (__utils__.formatDOMRect(rect)) {
+        record[0] = 1;
+        record.push(rect.left, rect.top, rect.width, rect.height)
+    }
+
+    // the rectangle of each child text node
+    for (let i = 0; i < node.childNodes.length; ++i) {
+        let childNodeExt = node.childNodes[i].nodeExt;
+        if (childNodeExt && childNodeExt.node.isText() && __utils__.formatDOMRect(childNodeExt.rect)) {
+            let r = childNodeExt.rect;
+            record[0] += 2;
+            record.push(i, r.left, r.top, r.width, r.height)
+        }
+    }
+
+    return record
+};
+
 /**
  * Calculate the width of the text node, this is a complement of the rectangle information, can be used for debugging
  *
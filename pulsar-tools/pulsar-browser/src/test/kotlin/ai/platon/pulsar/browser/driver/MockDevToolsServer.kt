@@ -0,0 +1,77 @@
+package ai.platon.pulsar.browser.driver
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.netty.bootstrap.ServerBootstrap
+import io.netty.channel.Channel
+import io.netty.channel.ChannelHandlerContext
+import io.netty.channel.ChannelInitializer
+import io.netty.channel.SimpleChannelInboundHandler
+import io.netty.channel.nio.NioEventLoopGroup
+import io.netty.channel.socket.SocketChannel
+import io.netty.channel.socket.nio.NioServerSocketChannel
+import io.netty.handler.codec.http.HttpObjectAggregator
+import io.netty.handler.codec.http.HttpServerCodec
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler
+import java.net.InetSocketAddress
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+/**
+ * A local web socket server who answers every devtools method call with a fixed result after a delay,
+ * it's used to test and benchmark the devtools client without a real browser
+ * */
+class MockDevToolsServer(
+    val responseDelay: Duration = Duration.ofMillis(20)
+): AutoCloseable {
+    companion object {
+        const val WS_PATH = "/devtools/page"
+    }
+
+    private val objectMapper = ObjectMapper()
+    private val bossGroup = NioEventLoopGroup(1)
+    private val workerGroup = NioEventLoopGroup(2)
+    private lateinit var channel: Channel
+
+    var port = 0
+        private set
+
+    val wsUrl get() = "ws://localhost:$port$WS_PATH"
+
+    fun start(): MockDevToolsServer {
+        channel = ServerBootstrap()
+            .group(bossGroup, workerGroup)
+            .channel(NioServerSocketChannel::class.java)
+            .childHandler(object: ChannelInitializer<SocketChannel>() {
+                override fun initChannel(ch: SocketChannel) {
+                    ch.pipeline().addLast(
+                        HttpServerCodec(),
+                        HttpObjectAggregator(65536),
+                        WebSocketServerProtocolHandler(WS_PATH, null, false, 10 * 1024 * 1024),
+                        MethodCallHandler()
+                    )
+                }
+            })
+            .bind(0).sync().channel()
+        port = (channel.localAddress() as InetSocketAddress).port
+        return this
+    }
+
+    override fun close() {
+        if (::channel.isInitialized) {
+            channel.close().sync()
+        }
+        workerGroup.shutdownGracefully()
+        bossGroup.shutdownGracefully()
+    }
+
+    private inner class MethodCallHandler: SimpleChannelInboundHandler<TextWebSocketFrame>() {
+        override fun channelRead0(ctx: ChannelHandlerContext, frame: TextWebSocketFrame) {
+            val id = objectMapper.readTree(frame.text()).get("id").asLong()
+            val response = """{"id":$id,"result":{"result":{"type":"string","value":"ok"}}}"""
+            ctx.executor().schedule({
+                ctx.writeAndFlush(TextWebSocketFrame(response))
+            }, responseDelay.toMillis(), TimeUnit.MILLISECONDS)
+        }
+    }
+}
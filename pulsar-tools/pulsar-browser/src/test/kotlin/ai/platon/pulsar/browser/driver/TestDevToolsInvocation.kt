@@ -0,0 +1,119 @@
+package ai.platon.pulsar.browser.driver
+
+import ai.platon.pulsar.browser.driver.chrome.ChromeTab
+import ai.platon.pulsar.browser.driver.chrome.DevToolsConfig
+import ai.platon.pulsar.browser.driver.chrome.RemoteDevTools
+import ai.platon.pulsar.browser.driver.chrome.impl.Chrome
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeoutOrNull
+import org.junit.After
+import org.junit.Before
+import org.junit.Ignore
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.time.Duration
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class TestDevToolsInvocation {
+    private val numTabs = 128
+    private val numCallsPerTab = 20
+
+    private lateinit var server: MockDevToolsServer
+    private lateinit var chrome: Chrome
+    private val devToolsConfig = DevToolsConfig()
+
+    @Before
+    fun setup() {
+        server = MockDevToolsServer(Duration.ofMillis(20)).start()
+        chrome = Chrome(server.port)
+    }
+
+    @After
+    fun teardown() {
+        chrome.close()
+        server.close()
+    }
+
+    @Test
+    fun testInvokeDeferred() {
+        val devTools = createDevTools(1)
+        val evaluate = runBlocking { devTools.invokeDeferred { runtime.evaluate("document.title") } }
+        assertEquals("ok", evaluate?.result?.value)
+    }
+
+    @Test
+    fun testInvokeDeferredCancellation() {
+        val devTools = createDevTools(1)
+        val evaluate = runBlocking { withTimeoutOrNull(1) { devTools.invokeDeferred { runtime.evaluate("1") } } }
+        assertNull(evaluate)
+        // the connection is still usable after a canceled invocation
+        val evaluate2 = runBlocking { devTools.invokeDeferred { runtime.evaluate("2") } }
+        assertEquals("ok", evaluate2?.result?.value)
+    }
+
+    @Ignore("Time consuming task, should be run separately")
+    @Test
+    fun benchmarkBlockingVsDeferredInvocation() {
+        val tabs = IntRange(1, numTabs).map { createDevTools(it) }
+        val threadBean = ManagementFactory.getThreadMXBean()
+
+        // blocking invocation, one thread per tab, which is how the drivers run on Dispatchers.IO
+        var latencies = ConcurrentLinkedQueue<Long>()
+        threadBean.resetPeakThreadCount()
+        var threadsBefore = threadBean.threadCount
+        val executor = Executors.newFixedThreadPool(numTabs)
+        var startTime = System.nanoTime()
+        tabs.forEach { devTools ->
+            executor.submit {
+                repeat(numCallsPerTab) {
+                    val t = System.nanoTime()
+                    devTools.runtime.evaluate("1")
+                    latencies.add(System.nanoTime() - t)
+                }
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.MINUTES)
+        report("blocking", latencies, System.nanoTime() - startTime, threadBean.peakThreadCount - threadsBefore)
+
+        // suspend invocation, all tabs share the default dispatcher
+        latencies = ConcurrentLinkedQueue<Long>()
+        threadBean.resetPeakThreadCount()
+        threadsBefore = threadBean.threadCount
+        startTime = System.nanoTime()
+        runBlocking(Dispatchers.Default) {
+            tabs.forEach { devTools ->
+                launch {
+                    repeat(numCallsPerTab) {
+                        val t = System.nanoTime()
+                        devTools.invokeDeferred { runtime.evaluate("1") }
+                        latencies.add(System.nanoTime() - t)
+                    }
+                }
+            }
+        }
+        report("deferred", latencies, System.nanoTime() - startTime, threadBean.peakThreadCount - threadsBefore)
+    }
+
+    private fun createDevTools(i: Int): RemoteDevTools {
+        val tab = ChromeTab().apply {
+            id = "mock-tab-$i"
+            webSocketDebuggerUrl = server.wsUrl
+        }
+        return chrome.createDevTools(tab, devToolsConfig)
+    }
+
+    private fun report(mode: String, latencies: Collection<Long>, elapsedNanos: Long, extraThreads: Int) {
+        val sorted = latencies.sorted()
+        val p50 = sorted[sorted.size / 2] / 1_000_000.0
+        val p99 = sorted[(sorted.size * 0.99).toInt().coerceAtMost(sorted.size - 1)] / 1_000_000.0
+        println(String.format("%-8s tabs: %d calls: %d elapsed: %dms extra threads: %d p50: %.2fms p99: %.2fms",
+            mode, numTabs, sorted.size, elapsedNanos / 1_000_000, extraThreads, p50, p99))
+    }
+}